@@ -20,6 +20,7 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 
 import io.tidb.bigdata.cdc.Event;
 import io.tidb.bigdata.cdc.Key.Type;
+import io.tidb.bigdata.cdc.KeyFilter;
 import io.tidb.bigdata.cdc.ParserFactory;
 import io.tidb.bigdata.cdc.RowChangedValue;
 import io.tidb.bigdata.cdc.RowColumn;
@@ -99,28 +100,14 @@ public class CraftDeserializationSchema implements DeserializationSchema<RowData
     this.ignoreParseErrors = ignoreParseErrors;
     this.physicalFieldCount = rowType.getFieldCount();
     this.producedFieldCount = this.physicalFieldCount + requestedMetadata.size();
-    this.parserFactory = ParserFactory.craft();
     int index = 0;
     this.columns = new HashMap<>();
     for (final RowField field : rowType.getFields()) {
       columns.put(field.getName(), new ColumnContext(index++, field));
     }
-  }
-
-  private boolean acceptEvent(final Event event) {
-    if (event.getTs() < earliestTs) {
-      // skip not events that have ts older than specific
-      return false;
-    }
-    // skip not interested types
-    return types == null || types.contains(event.getType());
-  }
-
-  private boolean acceptSchemaAndTable(final Event event) {
-    if (schemas != null && !schemas.contains(event.getSchema())) {
-      return false;
-    }
-    return tables == null || tables.contains(event.getTable());
+    // skip decoding columns which are not converted, and values of events which are filtered out
+    this.parserFactory = ParserFactory.craft(columns.keySet(),
+        new KeyFilter(types, schemas, tables, earliestTs));
   }
 
   private Object[] convert(final Event event, final RowColumn[] columns) {
@@ -192,20 +179,12 @@ public class CraftDeserializationSchema implements DeserializationSchema<RowData
   }
 
   // ------------------------------------------------------------------------------------------
+  // events are already filtered by the parser
   private void collectEvent(final Event event, final Collector<RowData> out) {
-    if (!acceptEvent(event)) {
-      return;
-    }
-    Type type = event.getType();
-    if (type == Type.RESOLVED) {
-      // Resolved event is always eligible even though they don't have schema and table specified
-      collectResolved(event, out);
-      return;
-    }
-    if (!acceptSchemaAndTable(event)) {
-      return;
-    }
-    switch (type) {
+    switch (event.getType()) {
+      case RESOLVED:
+        collectResolved(event, out);
+        break;
       case ROW_CHANGED:
         collectRowChanged(event, out);
         break;
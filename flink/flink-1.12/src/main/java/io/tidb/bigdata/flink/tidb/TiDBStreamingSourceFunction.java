@@ -3,11 +3,19 @@ package io.tidb.bigdata.flink.tidb;
 import io.tidb.bigdata.cdc.Key;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import org.apache.flink.api.common.functions.AbstractRichFunction;
+import org.apache.flink.api.common.functions.AggregateFunction;
 import org.apache.flink.api.common.functions.RuntimeContext;
 import org.apache.flink.api.common.state.CheckpointListener;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeinfo.TypeHint;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.core.io.InputSplit;
@@ -16,16 +24,21 @@ import org.apache.flink.runtime.state.FunctionSnapshotContext;
 import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
 import org.apache.flink.streaming.api.functions.source.RichSourceFunction;
 import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.streaming.api.operators.StreamingRuntimeContext;
 import org.apache.flink.table.connector.source.ScanTableSource.ScanRuntimeProvider;
 import org.apache.flink.table.connector.source.SourceFunctionProvider;
-import org.apache.flink.table.data.GenericRowData;
 import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.types.logical.LogicalType;
 import org.apache.flink.util.ExceptionUtils;
 
 public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
     implements CheckpointedFunction, CheckpointListener, ResultTypeQueryable<RowData> {
 
+  private static final long SNAPSHOT_BARRIER_POLL_INTERVAL_MS = 1000;
+  private static final String SPLIT_STATE_NAME = "tidb-snapshot-splits";
+  private static final long SPLIT_FINISHED = Long.MAX_VALUE;
+
   private final TiDBRowDataInputFormat inputFormat;
   private final SourceFunction<RowData> sourceFunction;
   private final CheckpointedFunction checkpointedFunction;
@@ -33,10 +46,16 @@ public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
   private final AbstractRichFunction abstractRichFunction;
   private final ResultTypeQueryable<RowData> resultTypeQueryable;
 
-  private final AtomicBoolean runningSnapshot = new AtomicBoolean(true);
+  private volatile boolean running = true;
   private final StreamingReadableMetadata[] metadata;
   private final long version;
 
+  // rows emitted of every snapshot split, or SPLIT_FINISHED, guarded by the checkpoint lock
+  private transient ListState<Tuple2<Integer, Long>> splitState;
+  private transient Map<Integer, Long> splitProgress;
+  private transient int currentSplit;
+  private transient long currentSplitRows;
+
   public TiDBStreamingSourceFunction(TiDBRowDataInputFormat inputFormat,
       StreamingReadableMetadata[] metadata, long version, ScanRuntimeProvider streamingProvider) {
     this.inputFormat = inputFormat;
@@ -68,6 +87,7 @@ public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
   @Override
   public void setRuntimeContext(RuntimeContext t) {
     super.setRuntimeContext(t);
+    this.inputFormat.setRuntimeContext(t);
     this.abstractRichFunction.setRuntimeContext(t);
   }
 
@@ -97,7 +117,19 @@ public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
 
   @Override
   public void snapshotState(FunctionSnapshotContext functionSnapshotContext) throws Exception {
-    if (checkpointedFunction == null || runningSnapshot.get()) {
+    final int parallelism = getRuntimeContext().getNumberOfParallelSubtasks();
+    final int subtask = getRuntimeContext().getIndexOfThisSubtask();
+    splitState.clear();
+    for (Map.Entry<Integer, Long> entry : splitProgress.entrySet()) {
+      // every subtask keeps the splits it reads, the union of them is restored to all subtasks
+      if (entry.getKey() % parallelism == subtask && entry.getKey() != currentSplit) {
+        splitState.add(Tuple2.of(entry.getKey(), entry.getValue()));
+      }
+    }
+    if (currentSplit >= 0) {
+      splitState.add(Tuple2.of(currentSplit, currentSplitRows));
+    }
+    if (checkpointedFunction == null) {
       return;
     }
     checkpointedFunction.snapshotState(functionSnapshotContext);
@@ -106,28 +138,53 @@ public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
   @Override
   public void initializeState(FunctionInitializationContext functionInitializationContext)
       throws Exception {
+    splitState = functionInitializationContext.getOperatorStateStore().getUnionListState(
+        new ListStateDescriptor<>(SPLIT_STATE_NAME,
+            TypeInformation.of(new TypeHint<Tuple2<Integer, Long>>() {})));
+    splitProgress = new HashMap<>();
+    currentSplit = -1;
+    if (functionInitializationContext.isRestored()) {
+      for (Tuple2<Integer, Long> split : splitState.get()) {
+        splitProgress.merge(split.f0, split.f1, Math::max);
+      }
+    }
     if (checkpointedFunction == null) {
       return;
     }
     checkpointedFunction.initializeState(functionInitializationContext);
   }
 
-  private void runBatchSplitWithMetadata(SourceContext<RowData> sourceContext,
-      Object[] realMetadata) throws IOException  {
-    while (!inputFormat.reachedEnd()) {
-      GenericRowData row = inputFormat.nextRecordWithFactory(
-          s -> new GenericRowData(s + realMetadata.length));
-      int field = row.getArity() - realMetadata.length;
-      for (Object meta : realMetadata) {
-        row.setField(field++, meta);
-      }
-      sourceContext.collect(row);
-    }
+  private boolean isSplitFinished(InputSplit split) {
+    return splitProgress.getOrDefault(split.getSplitNumber(), 0L) == SPLIT_FINISHED;
   }
 
-  private void runBatchSplit(SourceContext<RowData> sourceContext) throws IOException  {
+  /**
+   * Reads a snapshot split, skipping the rows emitted before the restored checkpoint, since a
+   * split is always read in the same order at the same version.
+   */
+  private void runBatchSplit(SourceContext<RowData> sourceContext, InputSplit split)
+      throws IOException {
+    final Object lock = sourceContext.getCheckpointLock();
+    final long emitted = splitProgress.getOrDefault(split.getSplitNumber(), 0L);
+    for (long skipped = 0; skipped < emitted; skipped++) {
+      if (inputFormat.reachedEnd()) {
+        break;
+      }
+    }
+    synchronized (lock) {
+      currentSplit = split.getSplitNumber();
+      currentSplitRows = emitted;
+    }
     while (!inputFormat.reachedEnd()) {
-      sourceContext.collect(inputFormat.nextRecord(null));
+      RowData row = inputFormat.nextRecord(null);
+      synchronized (lock) {
+        sourceContext.collect(row);
+        currentSplitRows++;
+      }
+    }
+    synchronized (lock) {
+      splitProgress.put(currentSplit, SPLIT_FINISHED);
+      currentSplit = -1;
     }
   }
 
@@ -143,24 +200,100 @@ public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
   }
 
   private void runBatch(SourceContext<RowData> sourceContext) throws Exception {
+    // every subtask reads its own share of the snapshot splits
+    final int parallelism = getRuntimeContext().getNumberOfParallelSubtasks();
+    final int subtask = getRuntimeContext().getIndexOfThisSubtask();
+    final InputSplit[] splits = inputFormat.createInputSplits(parallelism);
+    if (Arrays.stream(splits).allMatch(this::isSplitFinished)) {
+      // restored after the whole snapshot was read, so no snapshot rows are emitted again
+      return;
+    }
+    updateSnapshotBarrier(~subtask);
     try {
-      Object[] realMetadata = null;
       if (metadata != null) {
-        realMetadata = Arrays.stream(metadata).map(this::convertMetadata).toArray(Object[]::new);
+        // metadata columns are written along with the rows
+        inputFormat.setMetadata(
+            Arrays.stream(metadata).map(m -> m.type.getLogicalType()).toArray(LogicalType[]::new),
+            Arrays.stream(metadata).map(this::convertMetadata).toArray());
       }
       inputFormat.openInputFormat();
-      for (InputSplit split : inputFormat.createInputSplits(1)) {
-        inputFormat.open(split);
-        if (realMetadata == null) {
-          runBatchSplit(sourceContext);
-        } else {
-          runBatchSplitWithMetadata(sourceContext, realMetadata);
+      for (InputSplit split : splits) {
+        if (!running) {
+          break;
         }
+        if (split.getSplitNumber() % parallelism != subtask || isSplitFinished(split)) {
+          continue;
+        }
+        inputFormat.open(split);
+        runBatchSplit(sourceContext, split);
         ExceptionUtils.suppressExceptions(inputFormat::close);
       }
     } finally {
       ExceptionUtils.suppressExceptions(inputFormat::closeInputFormat);
-      this.runningSnapshot.set(false);
+    }
+    waitForSnapshot(subtask);
+  }
+
+  private int updateSnapshotBarrier(int value) throws IOException {
+    final StreamingRuntimeContext context = (StreamingRuntimeContext) getRuntimeContext();
+    // the name outlives failovers, which restart some or all subtasks from different checkpoints
+    return context.getGlobalAggregateManager().updateGlobalAggregate(
+        "tidb-snapshot-" + context.getOperatorUniqueID(), value, new SnapshotBarrier());
+  }
+
+  /**
+   * Blocks until every subtask has read its snapshot splits, so that no change events are
+   * emitted before snapshot rows of the same keys which are read by other subtasks.
+   */
+  private void waitForSnapshot(int subtask) throws Exception {
+    final int parallelism = getRuntimeContext().getNumberOfParallelSubtasks();
+    if (parallelism <= 1) {
+      return;
+    }
+    int finished = updateSnapshotBarrier(subtask);
+    while (running && finished < parallelism) {
+      Thread.sleep(SNAPSHOT_BARRIER_POLL_INTERVAL_MS);
+      finished = updateSnapshotBarrier(SnapshotBarrier.POLL);
+    }
+  }
+
+  /**
+   * Counts the subtasks which have finished reading the snapshot. A subtask adds itself once it
+   * has read its splits, and removes itself, as {@code ~subtask}, whenever it starts reading
+   * them again after a failover.
+   */
+  private static class SnapshotBarrier
+      implements AggregateFunction<Integer, Set<Integer>, Integer> {
+
+    private static final int POLL = Integer.MIN_VALUE;
+
+    @Override
+    public Set<Integer> createAccumulator() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<Integer> add(Integer value, Set<Integer> finished) {
+      if (value == POLL) {
+        return finished;
+      }
+      if (value >= 0) {
+        finished.add(value);
+      } else {
+        finished.remove(~value);
+      }
+      return finished;
+    }
+
+    @Override
+    public Integer getResult(Set<Integer> finished) {
+      return finished.size();
+    }
+
+    @Override
+    public Set<Integer> merge(Set<Integer> a, Set<Integer> b) {
+      a.addAll(b);
+      return a;
     }
   }
 
@@ -179,6 +312,7 @@ public class TiDBStreamingSourceFunction extends RichSourceFunction<RowData>
 
   @Override
   public void cancel() {
+    running = false;
     if (sourceFunction == null) {
       return;
     }
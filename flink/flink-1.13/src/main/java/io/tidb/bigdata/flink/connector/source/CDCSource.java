@@ -16,6 +16,10 @@
 
 package io.tidb.bigdata.flink.connector.source;
 
+import io.tidb.bigdata.flink.connector.source.reader.ClosingSourceReader;
+import io.tidb.bigdata.flink.connector.source.reader.ResolvedTsWatermarkReader;
+import io.tidb.bigdata.flink.format.cdc.CDCDeserializationSchema;
+import javax.annotation.Nullable;
 import org.apache.flink.api.connector.source.Boundedness;
 import org.apache.flink.api.connector.source.Source;
 import org.apache.flink.api.connector.source.SourceReader;
@@ -29,9 +33,31 @@ import org.apache.flink.table.data.RowData;
 public class CDCSource<SplitT extends SourceSplit, EnumChkT>
     implements Source<RowData, SplitT, EnumChkT> {
   private final Source<RowData, SplitT, EnumChkT> wrapped;
+  // closed along with the reader, it is the same object as the one deserialized in the wrapped
+  // source, because both are deserialized together for every subtask
+  @Nullable
+  private final CDCDeserializationSchema schema;
+  private final boolean resolvedTsWatermarks;
+  private final long idleTimeoutMs;
 
   protected CDCSource(Source<RowData, SplitT, EnumChkT> wrapped) {
+    this(wrapped, null, false, 0);
+  }
+
+  /**
+   * @param schema the schema used by the wrapped source, which is closed along with the reader,
+   *     null if there is nothing to close
+   * @param resolvedTsWatermarks whether the wrapped source reads resolved ts markers, which are
+   *     turned into watermarks
+   * @param idleTimeoutMs splits without anything read for this long are marked idle, 0 to never
+   *     mark splits idle
+   */
+  protected CDCSource(Source<RowData, SplitT, EnumChkT> wrapped,
+      @Nullable CDCDeserializationSchema schema, boolean resolvedTsWatermarks, long idleTimeoutMs) {
     this.wrapped = wrapped;
+    this.schema = schema;
+    this.resolvedTsWatermarks = resolvedTsWatermarks;
+    this.idleTimeoutMs = idleTimeoutMs;
   }
 
   @Override
@@ -42,7 +68,14 @@ public class CDCSource<SplitT extends SourceSplit, EnumChkT>
   @Override
   public SourceReader<RowData, SplitT> createReader(SourceReaderContext context)
       throws Exception {
-    return wrapped.createReader(context);
+    SourceReader<RowData, SplitT> reader = wrapped.createReader(context);
+    if (schema != null) {
+      reader = new ClosingSourceReader<>(reader, schema::close);
+    }
+    if (!resolvedTsWatermarks) {
+      return reader;
+    }
+    return new ResolvedTsWatermarkReader<>(reader, idleTimeoutMs);
   }
 
   @Override
@@ -17,16 +17,23 @@
 package io.tidb.bigdata.flink.connector.source;
 
 import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.avro.SchemaRegistry;
+import io.tidb.bigdata.flink.format.cdc.CDCDeserializationSchema;
 import io.tidb.bigdata.flink.format.cdc.CDCDeserializationSchemaBuilder;
 import io.tidb.bigdata.flink.format.cdc.CDCMetadata;
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Set;
+import java.util.function.Function;
 import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.connector.source.Source;
 import org.apache.flink.api.connector.source.SourceSplit;
 import org.apache.flink.shaded.guava18.com.google.common.collect.ImmutableSet;
 import org.apache.flink.streaming.connectors.kafka.KafkaDeserializationSchema;
 import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.Preconditions;
 import org.tikv.common.meta.TiTimestamp;
 
 public abstract class CDCSourceBuilder<SplitT extends SourceSplit, EnumChkT> implements
@@ -37,6 +44,9 @@ public abstract class CDCSourceBuilder<SplitT extends SourceSplit, EnumChkT> imp
 
   private static final Set<Key.Type> ROW_CHANGED_EVENT = ImmutableSet.of(Key.Type.ROW_CHANGED);
 
+  private static final Set<Key.Type> ROW_CHANGED_AND_RESOLVED_EVENT =
+      ImmutableSet.of(Key.Type.ROW_CHANGED, Key.Type.RESOLVED);
+
   public abstract Type type();
 
   protected abstract CDCSource<SplitT, EnumChkT>
@@ -45,32 +55,66 @@ public abstract class CDCSourceBuilder<SplitT extends SourceSplit, EnumChkT> imp
   protected abstract CDCSource<SplitT, EnumChkT>
       doBuild(KafkaDeserializationSchema<RowData> schema);
 
+  /**
+   * Build a source compacting the changes of every partition between its resolved events.
+   */
+  protected abstract CDCSource<SplitT, EnumChkT>
+      doBuildCompacting(CDCDeserializationSchema schema, int maxRows);
+
+  private <S extends CDCDeserializationSchema> CDCSource<SplitT, EnumChkT>
+      build(S schema, Function<S, CDCSource<SplitT, EnumChkT>> factory) {
+    this.schema = schema;
+    return compactionMaxRows > 0
+        ? doBuildCompacting(schema, compactionMaxRows) : factory.apply(schema);
+  }
+
   public CDCSource<SplitT, EnumChkT> craft() {
-    return doBuild(builder.craft());
+    return build(builder.craft(), this::doBuild);
   }
 
   public CDCSource<SplitT, EnumChkT> json() {
-    return doBuild(builder.json());
+    return build(builder.json(), this::doBuild);
+  }
+
+  public CDCSource<SplitT, EnumChkT> avro(SchemaRegistry registry) {
+    return build(builder.avro(registry), this::doBuild);
+  }
+
+  public CDCSource<SplitT, EnumChkT> canalJson() {
+    return build(builder.canalJson(), this::doBuild);
   }
 
   private final CDCDeserializationSchemaBuilder builder;
+  private boolean resolvedTsWatermarks;
+  private long idleTimeoutMs;
+  // 0 to emit every change right away
+  private int compactionMaxRows;
+  // the schema of the source being built, closed along with its readers
+  private CDCDeserializationSchema schema;
 
   protected CDCSourceBuilder(CDCDeserializationSchemaBuilder builder) {
     this.builder = builder;
   }
 
-  public static KafkaCDCSourceBuilder
-      kafka(String database, String table, TiTimestamp ts, TiDBSchemaAdapter schema) {
-    CDCMetadata[] cdcMetadata = null;
+  protected CDCSource<SplitT, EnumChkT> wrap(Source<RowData, SplitT, EnumChkT> source) {
+    return new CDCSource<>(source, schema, resolvedTsWatermarks, idleTimeoutMs);
+  }
+
+  static CDCMetadata[] getCDCMetadata(TiDBSchemaAdapter schema) {
     TiDBMetadata[] metadata = schema.getMetadata();
-    if (metadata != null) {
-      cdcMetadata = Arrays.stream(metadata).map(TiDBMetadata::toCraft).toArray(CDCMetadata[]::new);
+    if (metadata == null) {
+      return null;
     }
+    return Arrays.stream(metadata).map(TiDBMetadata::toCraft).toArray(CDCMetadata[]::new);
+  }
+
+  public static KafkaCDCSourceBuilder
+      kafka(String database, String table, TiTimestamp ts, TiDBSchemaAdapter schema) {
     return new KafkaCDCSourceBuilder(
         new CDCDeserializationSchemaBuilder(schema.getPhysicalDataType(),
             (ignored) -> schema.getProducedType())
             .startTs(ts.getVersion())
-            .metadata(cdcMetadata)
+            .metadata(getCDCMetadata(schema))
             .types(ROW_CHANGED_EVENT)
             .schemas(ImmutableSet.of(database))
             .tables(ImmutableSet.of(table)));
@@ -80,4 +124,49 @@ public abstract class CDCSourceBuilder<SplitT extends SourceSplit, EnumChkT> imp
     this.builder.ignoreParseErrors(ignore);
     return (T) this;
   }
+
+  public <T extends CDCSourceBuilder<SplitT, EnumChkT>> T decodeParallelism(int parallelism) {
+    this.builder.decodeParallelism(parallelism);
+    return (T) this;
+  }
+
+  /**
+   * Emit updates as upserts by the key columns, i.e. only the rows after them, instead of
+   * retractions.
+   *
+   * @param key names of the key columns, empty to take the columns flagged as primary key by TiCDC
+   */
+  public <T extends CDCSourceBuilder<SplitT, EnumChkT>> T upsertKey(Collection<String> key) {
+    this.builder.upsertKey(key);
+    return (T) this;
+  }
+
+  /**
+   * Compact the changes of every partition between its resolved events into the net change of
+   * every row, which is emitted along with the resolved event.
+   *
+   * @param maxRows the changes of a partition are emitted early over this number of rows
+   */
+  public <T extends CDCSourceBuilder<SplitT, EnumChkT>> T compact(int maxRows) {
+    Preconditions.checkArgument(maxRows > 0, "Compaction max rows must be positive: %s", maxRows);
+    this.compactionMaxRows = maxRows;
+    this.builder.types(ROW_CHANGED_AND_RESOLVED_EVENT);
+    return (T) this;
+  }
+
+  /**
+   * Turn the resolved ts of every partition of the changelogs into watermarks of the partition,
+   * partitions without anything read for the idle timeout are marked idle.
+   *
+   * @param idleTimeout the idle timeout, zero to never mark partitions idle
+   */
+  public <T extends CDCSourceBuilder<SplitT, EnumChkT>> T resolvedTsWatermarks(
+      Duration idleTimeout) {
+    Preconditions.checkArgument(!idleTimeout.isNegative(),
+        "Idle timeout must not be negative: %s", idleTimeout);
+    this.resolvedTsWatermarks = true;
+    this.idleTimeoutMs = idleTimeout.toMillis();
+    this.builder.types(ROW_CHANGED_AND_RESOLVED_EVENT).resolvedTsMarkers(true);
+    return (T) this;
+  }
 }
\ No newline at end of file
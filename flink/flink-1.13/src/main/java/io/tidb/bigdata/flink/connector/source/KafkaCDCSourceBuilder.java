@@ -16,10 +16,14 @@
 
 package io.tidb.bigdata.flink.connector.source;
 
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_AVRO_SCHEMA_REGISTRY_URL;
 import static org.apache.flink.streaming.connectors.kafka.table.KafkaOptions.PROPS_BOOTSTRAP_SERVERS;
 import static org.apache.flink.streaming.connectors.kafka.table.KafkaOptions.PROPS_GROUP_ID;
 import static org.apache.flink.streaming.connectors.kafka.table.KafkaOptions.TOPIC;
 
+import io.tidb.bigdata.cdc.avro.CachedSchemaRegistryClient;
+import io.tidb.bigdata.cdc.avro.SchemaRegistry;
+import io.tidb.bigdata.flink.format.cdc.CDCDeserializationSchema;
 import io.tidb.bigdata.flink.format.cdc.CDCDeserializationSchemaBuilder;
 import java.util.Arrays;
 import java.util.List;
@@ -38,7 +42,9 @@ import org.apache.flink.connector.kafka.source.split.KafkaPartitionSplit;
 import org.apache.flink.streaming.connectors.kafka.KafkaDeserializationSchema;
 import org.apache.flink.table.data.RowData;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 
 /**
  * @see org.apache.flink.connector.kafka.source.KafkaSourceBuilder
@@ -51,6 +57,8 @@ public class KafkaCDCSourceBuilder
 
   private static final int OPTION_PREFIX_LENGTH = OPTION_PREFIX.length();
 
+  private static final String PROPERTIES_PREFIX = "properties.";
+
   public KafkaCDCSourceBuilder(final CDCDeserializationSchemaBuilder builder) {
     super(builder);
   }
@@ -64,14 +72,21 @@ public class KafkaCDCSourceBuilder
   protected CDCSource<KafkaPartitionSplit, KafkaSourceEnumState>
       doBuild(DeserializationSchema<RowData> schema) {
     setDeserializer(schema);
-    return new CDCSource<>(builder.build());
+    return wrap(builder.build());
   }
 
   @Override
   protected CDCSource<KafkaPartitionSplit, KafkaSourceEnumState>
       doBuild(KafkaDeserializationSchema<RowData> schema) {
     setDeserializer(schema);
-    return new CDCSource<>(builder.build());
+    return wrap(builder.build());
+  }
+
+  @Override
+  protected CDCSource<KafkaPartitionSplit, KafkaSourceEnumState>
+      doBuildCompacting(CDCDeserializationSchema schema, int maxRows) {
+    builder.setDeserializer(new KafkaCompactingDeserializationSchema(schema, maxRows));
+    return wrap(builder.build());
   }
 
   public KafkaCDCSourceBuilder setBootstrapServers(String bootstrapServers) {
@@ -157,4 +172,53 @@ public class KafkaCDCSourceBuilder
     }
     return this;
   }
-}
\ No newline at end of file
+
+  /**
+   * @return the changelog topic configured by the table options
+   */
+  public static String getTopic(Map<String, String> properties) {
+    String topic = properties.get(OPTION_PREFIX + TOPIC.key());
+    if (topic == null) {
+      throw new IllegalArgumentException("'" + OPTION_PREFIX + TOPIC.key() + "' is not set");
+    }
+    return topic;
+  }
+
+  /**
+   * @return the client of the schema registry of avro changelogs configured by the table options
+   */
+  public static SchemaRegistry getSchemaRegistry(Map<String, String> properties) {
+    String url = properties.get(STREAMING_AVRO_SCHEMA_REGISTRY_URL.key());
+    if (url == null) {
+      throw new IllegalArgumentException(
+          "'" + STREAMING_AVRO_SCHEMA_REGISTRY_URL.key() + "' is not set");
+    }
+    return new CachedSchemaRegistryClient(url);
+  }
+
+  /**
+   * Create a plain consumer of the kafka cluster configured by the table options, for following
+   * the changelogs outside of a kafka source. The consumer neither joins the consumer group nor
+   * commits any offset, and it is not assigned to any partition yet.
+   */
+  public static KafkaConsumer<byte[], byte[]> createConsumer(Map<String, String> properties) {
+    Properties kafkaProperties = new Properties();
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      if (!entry.getKey().startsWith(OPTION_PREFIX)) {
+        continue;
+      }
+      String key = entry.getKey().substring(OPTION_PREFIX_LENGTH);
+      if (TOPIC.key().equals(key)) {
+        continue;
+      }
+      if (key.startsWith(PROPERTIES_PREFIX)) {
+        key = key.substring(PROPERTIES_PREFIX.length());
+      }
+      kafkaProperties.put(key, entry.getValue());
+    }
+    kafkaProperties.remove(ConsumerConfig.GROUP_ID_CONFIG);
+    kafkaProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    return new KafkaConsumer<>(kafkaProperties,
+        new ByteArrayDeserializer(), new ByteArrayDeserializer());
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.source;
+
+import io.tidb.bigdata.flink.format.cdc.CDCDeserializationSchema;
+import io.tidb.bigdata.flink.format.cdc.ChangeCompactor;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.connector.kafka.source.reader.deserializer.KafkaRecordDeserializationSchema;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.Collector;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Compacts the changes of every partition between its resolved events into the net change of
+ * every row, which is emitted along with the resolved event.
+ *
+ * <p>Messages of which the changes are buffered don't produce any record, so the offset of the
+ * partition only moves past them once their changes are emitted, and they are read again after a
+ * failover instead of being lost. The changes of a partition are emitted early when more than the
+ * max rows are buffered.
+ */
+final class KafkaCompactingDeserializationSchema
+    implements KafkaRecordDeserializationSchema<RowData> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final CDCDeserializationSchema schema;
+  private final int maxRows;
+  private transient Map<TopicPartition, ChangeCompactor> compactors;
+
+  KafkaCompactingDeserializationSchema(CDCDeserializationSchema schema, int maxRows) {
+    this.schema = schema;
+    this.maxRows = maxRows;
+  }
+
+  @Override
+  public void deserialize(ConsumerRecord<byte[], byte[]> record, Collector<RowData> out)
+      throws IOException {
+    if (compactors == null) {
+      compactors = new HashMap<>();
+    }
+    ChangeCompactor compactor = compactors.computeIfAbsent(
+        new TopicPartition(record.topic(), record.partition()), ignored -> new ChangeCompactor());
+    schema.deserialize(record.key(), record.value(), compactor, out);
+    if (compactor.size() > maxRows) {
+      schema.flush(compactor, out);
+    }
+  }
+
+  @Override
+  public TypeInformation<RowData> getProducedType() {
+    return schema.getProducedType();
+  }
+}
@@ -19,6 +19,7 @@ package io.tidb.bigdata.flink.connector.source;
 import io.tidb.bigdata.flink.connector.source.enumerator.TiDBSourceSplitEnumState;
 import io.tidb.bigdata.flink.connector.source.enumerator.TiDBSourceSplitEnumStateSerializer;
 import io.tidb.bigdata.flink.connector.source.enumerator.TiDBSourceSplitEnumerator;
+import io.tidb.bigdata.flink.connector.source.reader.CDCPrefetcher;
 import io.tidb.bigdata.flink.connector.source.reader.TiDBSourceReader;
 import io.tidb.bigdata.flink.connector.source.reader.TiDBSourceSplitReader;
 import io.tidb.bigdata.flink.connector.source.split.TiDBSourceSplit;
@@ -26,8 +27,10 @@ import io.tidb.bigdata.flink.connector.source.split.TiDBSourceSplitSerializer;
 import io.tidb.bigdata.tidb.ClientConfig;
 import io.tidb.bigdata.tidb.ClientSession;
 import io.tidb.bigdata.tidb.ColumnHandleInternal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.connector.source.Boundedness;
 import org.apache.flink.api.connector.source.Source;
@@ -39,6 +42,7 @@ import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.core.io.SimpleVersionedSerializer;
 import org.apache.flink.table.data.RowData;
+import org.tikv.common.expression.Expression;
 
 public class SnapshotSource implements Source<RowData, TiDBSourceSplit, TiDBSourceSplitEnumState>,
     ResultTypeQueryable<RowData> {
@@ -46,13 +50,42 @@ public class SnapshotSource implements Source<RowData, TiDBSourceSplit, TiDBSour
   private final String tableName;
   private final Map<String, String> properties;
   private final TiDBSchemaAdapter schema;
+  private final Expression expression;
+  @Nullable
+  private final CDCPrefetcher.Options prefetchOptions;
+  private final boolean objectReuse;
 
   public SnapshotSource(String databaseName, String tableName,
-      Map<String, String> properties, TiDBSchemaAdapter schema) {
+      Map<String, String> properties, TiDBSchemaAdapter schema,
+      @Nullable Expression expression) {
+    this(databaseName, tableName, properties, schema, expression, null);
+  }
+
+  /**
+   * @param prefetchOptions prefetch the changelogs while reading the snapshot if not null
+   */
+  public SnapshotSource(String databaseName, String tableName,
+      Map<String, String> properties, TiDBSchemaAdapter schema,
+      @Nullable Expression expression, @Nullable CDCPrefetcher.Options prefetchOptions) {
+    this(databaseName, tableName, properties, schema, expression, prefetchOptions, false);
+  }
+
+  /**
+   * @param prefetchOptions prefetch the changelogs while reading the snapshot if not null
+   * @param objectReuse whether object reuse is enabled for the job, the rows read are copied if
+   *     it is not
+   */
+  public SnapshotSource(String databaseName, String tableName,
+      Map<String, String> properties, TiDBSchemaAdapter schema,
+      @Nullable Expression expression, @Nullable CDCPrefetcher.Options prefetchOptions,
+      boolean objectReuse) {
+    this.prefetchOptions = prefetchOptions;
+    this.objectReuse = objectReuse;
     this.databaseName = databaseName;
     this.tableName = tableName;
     this.properties = properties;
     this.schema = schema;
+    this.expression = expression;
   }
 
   @Override
@@ -80,10 +113,10 @@ public class SnapshotSource implements Source<RowData, TiDBSourceSplit, TiDBSour
           .orElseThrow(() -> new NullPointerException("Could not get columns for TiDB table:"
               + databaseName + "." + tableName));
       final ClientSession s = session;
-      schema.open();
+      schema.open(objectReuse);
       return new TiDBSourceReader(
-          () -> new TiDBSourceSplitReader(s, columns, schema),
-          toConfiguration(properties), context);
+          () -> new TiDBSourceSplitReader(s, columns, schema, expression),
+          toConfiguration(properties), context, prefetchOptions);
     } catch (Exception ex) {
       if (session != null) {
         session.close();
@@ -95,14 +128,16 @@ public class SnapshotSource implements Source<RowData, TiDBSourceSplit, TiDBSour
   @Override
   public SplitEnumerator<TiDBSourceSplit, TiDBSourceSplitEnumState> createEnumerator(
       SplitEnumeratorContext<TiDBSourceSplit> context) {
-    return new TiDBSourceSplitEnumerator(this.properties, context);
+    return new TiDBSourceSplitEnumerator(this.properties, context, Collections.emptySet(),
+        prefetchOptions != null);
   }
 
   @Override
   public SplitEnumerator<TiDBSourceSplit, TiDBSourceSplitEnumState> restoreEnumerator(
       SplitEnumeratorContext<TiDBSourceSplit> context,
       TiDBSourceSplitEnumState state) {
-    return new TiDBSourceSplitEnumerator(this.properties, context, state.assignedSplits());
+    return new TiDBSourceSplitEnumerator(this.properties, context, state.assignedSplits(),
+        prefetchOptions != null);
   }
 
   @Override
@@ -18,6 +18,7 @@ package io.tidb.bigdata.flink.connector.source;
 
 import com.google.common.collect.ImmutableSet;
 import io.tidb.bigdata.tidb.ClientConfig;
+import java.time.Duration;
 import java.util.Set;
 import org.apache.flink.configuration.ConfigOption;
 import org.apache.flink.configuration.ConfigOptions;
@@ -71,8 +72,86 @@ public class TiDBOptions {
 
   public static final String STREAMING_CODEC_JSON = "json";
   public static final String STREAMING_CODEC_CRAFT = "craft";
-  public static final Set<String> VALID_STREAMING_CODECS =
-      ImmutableSet.of(STREAMING_CODEC_CRAFT, STREAMING_CODEC_JSON);
+  public static final String STREAMING_CODEC_AVRO = "avro";
+  public static final String STREAMING_CODEC_CANAL_JSON = "canal-json";
+  public static final Set<String> VALID_STREAMING_CODECS = ImmutableSet.of(STREAMING_CODEC_CRAFT,
+      STREAMING_CODEC_JSON, STREAMING_CODEC_AVRO, STREAMING_CODEC_CANAL_JSON);
+
+  public static final ConfigOption<String> STREAMING_AVRO_SCHEMA_REGISTRY_URL =
+      ConfigOptions.key("tidb.streaming.avro.schema-registry.url")
+          .stringType()
+          .noDefaultValue()
+          .withDescription("the url of the schema registry which the avro schemas of the "
+              + "changelogs are registered to, required by the avro codec.");
+
+  public static final ConfigOption<Boolean> STREAMING_PREFETCH =
+      ConfigOptions.key("tidb.streaming.prefetch")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription("whether to consume the changelogs from the snapshot timestamp "
+              + "while the snapshot is still being read, compacting them by key, instead of "
+              + "starting to consume them after the snapshot is read.");
+
+  public static final ConfigOption<Integer> STREAMING_PREFETCH_MAX_ROWS =
+      ConfigOptions.key("tidb.streaming.prefetch.max-rows")
+          .intType()
+          .defaultValue(1000000)
+          .withDescription("the max number of compacted changes buffered by a subtask while "
+              + "prefetching, over this number the subtask stops prefetching and its changelogs "
+              + "are consumed after the snapshot as usual.");
+
+  public static final ConfigOption<Integer> STREAMING_DECODE_PARALLELISM =
+      ConfigOptions.key("tidb.streaming.decode.parallelism")
+          .intType()
+          .defaultValue(1)
+          .withDescription("the number of workers of a subtask converting the changelogs of a "
+              + "kafka message in parallel, the changelogs are still decoded by the subtask and "
+              + "emitted in order. Only messages of at least 256 changelogs are converted in "
+              + "parallel.");
+
+  public static final ConfigOption<Boolean> STREAMING_COMPACTION =
+      ConfigOptions.key("tidb.streaming.compaction")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription("whether to compact the changes of every partition of the changelogs "
+              + "between its resolved ts into the net change of every row, which is emitted at "
+              + "the resolved ts.");
+
+  public static final ConfigOption<Integer> STREAMING_COMPACTION_MAX_ROWS =
+      ConfigOptions.key("tidb.streaming.compaction.max-rows")
+          .intType()
+          .defaultValue(100000)
+          .withDescription("the max number of compacted changes buffered for a partition, over "
+              + "this number they are emitted before the resolved ts.");
+
+  public static final String STREAMING_CHANGELOG_MODE_ALL = "all";
+  public static final String STREAMING_CHANGELOG_MODE_UPSERT = "upsert";
+  public static final Set<String> VALID_STREAMING_CHANGELOG_MODES =
+      ImmutableSet.of(STREAMING_CHANGELOG_MODE_ALL, STREAMING_CHANGELOG_MODE_UPSERT);
+
+  public static final ConfigOption<String> STREAMING_CHANGELOG_MODE =
+      ConfigOptions.key("tidb.streaming.changelog-mode")
+          .stringType()
+          .defaultValue(STREAMING_CHANGELOG_MODE_ALL)
+          .withDescription("\"all\" to emit updates as retractions, i.e. the rows before and "
+              + "after them. \"upsert\" to emit only the rows after them, keyed by the primary "
+              + "key of the table, which is required.");
+
+  public static final ConfigOption<Boolean> STREAMING_WATERMARK_RESOLVED_TS =
+      ConfigOptions.key("tidb.streaming.watermark.resolved-ts")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription("whether to turn the resolved ts of every partition of the changelogs "
+              + "into watermarks of the partition, so that windows close as soon as TiCDC "
+              + "guarantees all the changes before them have been received.");
+
+  public static final ConfigOption<Duration> STREAMING_WATERMARK_IDLE_TIMEOUT =
+      ConfigOptions.key("tidb.streaming.watermark.idle-timeout")
+          .durationType()
+          .defaultValue(Duration.ZERO)
+          .withDescription("partitions of the changelogs without any change or resolved ts for "
+              + "this long are marked idle, so that they don't hold back the watermarks of "
+              + "\"tidb.streaming.watermark.resolved-ts\". 0 to never mark partitions idle.");
 
   public static Set<ConfigOption<?>> requiredOptions() {
     return withMoreRequiredOptions();
@@ -95,6 +174,15 @@ public class TiDBOptions {
         MAX_POOL_SIZE,
         MIN_IDLE_SIZE,
         STREAMING_SOURCE,
+        STREAMING_PREFETCH,
+        STREAMING_PREFETCH_MAX_ROWS,
+        STREAMING_DECODE_PARALLELISM,
+        STREAMING_AVRO_SCHEMA_REGISTRY_URL,
+        STREAMING_COMPACTION,
+        STREAMING_COMPACTION_MAX_ROWS,
+        STREAMING_CHANGELOG_MODE,
+        STREAMING_WATERMARK_RESOLVED_TS,
+        STREAMING_WATERMARK_IDLE_TIMEOUT,
         WRITE_MODE)
         .add(options)
         .build();
@@ -20,6 +20,7 @@ import static org.tikv.common.types.MySQLType.TypeDatetime;
 import static org.tikv.common.types.MySQLType.TypeTimestamp;
 
 import com.google.common.collect.ImmutableMap;
+import io.tidb.bigdata.flink.tidb.BinaryRowDataWriter;
 import io.tidb.bigdata.flink.tidb.TypeUtils;
 import io.tidb.bigdata.tidb.RecordCursorInternal;
 import java.io.Serializable;
@@ -45,11 +46,11 @@ import org.apache.flink.table.catalog.Column;
 import org.apache.flink.table.catalog.ResolvedCatalogTable;
 import org.apache.flink.table.catalog.ResolvedSchema;
 import org.apache.flink.table.data.DecimalData;
-import org.apache.flink.table.data.GenericRowData;
 import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.data.StringData;
 import org.apache.flink.table.data.TimestampData;
 import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalType;
 import org.apache.flink.table.types.utils.DataTypeUtils;
 import org.apache.flink.types.RowKind;
 import org.tikv.common.meta.TiTimestamp;
@@ -60,11 +61,12 @@ public class TiDBSchemaAdapter implements Serializable {
   private final int physicalFieldCount;
   private final String[] physicalFieldNames;
   private final DataType[] physicalFieldTypes;
-  private final int producedFieldCount;
+  private final LogicalType[] producedFieldTypes;
   private final TiDBMetadata[] metadata;
   private final TypeInformation<RowData> typeInfo;
   private final Map<String, String> properties;
   private transient DateTimeFormatter[] dateTimeFormatters;
+  private transient BinaryRowDataWriter rowWriter;
 
   public TiDBSchemaAdapter(ResolvedCatalogTable table,
       Function<DataType, TypeInformation<RowData>> typeInfoFactory,
@@ -95,11 +97,11 @@ public class TiDBSchemaAdapter implements Serializable {
     if (metadata != null) {
       producedDataType = DataTypeUtils.appendRowFields(physicalDataType,
           Arrays.stream(metadata).map(TiDBMetadata::toField).collect(Collectors.toList()));
-      producedFieldCount = physicalFieldCount + metadata.length;
     } else {
       producedDataType = physicalDataType;
-      producedFieldCount = physicalFieldCount;
     }
+    this.producedFieldTypes = producedDataType.getChildren().stream()
+        .map(DataType::getLogicalType).toArray(LogicalType[]::new);
     this.typeInfo = typeInfoFactory.apply(producedDataType);
     this.metadata = metadata;
     this.properties = table.getOptions();
@@ -109,29 +111,26 @@ public class TiDBSchemaAdapter implements Serializable {
     return metadata;
   }
 
-  private Object[] makeRow(final TiTimestamp timestamp) {
-    int metaIndex = physicalFieldCount;
-    Object[] objects = new Object[producedFieldCount];
-    if (metadata != null) {
-      for (TiDBMetadata meta : metadata) {
-        objects[metaIndex++] = meta.extract(timestamp);
-      }
-    }
-    return objects;
-  }
-
   public String[] getPhysicalFieldNames() {
     return physicalFieldNames;
   }
 
-  public GenericRowData convert(final TiTimestamp timestamp, RecordCursorInternal cursor) {
-    Object[] objects = makeRow(timestamp);
+  public RowData convert(final TiTimestamp timestamp, RecordCursorInternal cursor) {
+    rowWriter.reset(RowKind.INSERT);
     for (int idx = 0; idx < physicalFieldCount; idx++) {
-      objects[idx] = toRowDataType(
+      rowWriter.write(idx,
           getObjectWithDataType(cursor.getObject(idx), physicalFieldTypes[idx],
               cursor.getType(idx), dateTimeFormatters[idx]).orElse(null));
     }
-    return GenericRowData.ofKind(RowKind.INSERT, objects);
+    if (metadata != null) {
+      int metaIndex = physicalFieldCount;
+      for (TiDBMetadata meta : metadata) {
+        rowWriter.writeInternal(metaIndex++, meta.extract(timestamp));
+      }
+    }
+    // With object reuse, SourceReaderBase emits every record right after fetching it, before the
+    // row is overwritten by the next one.
+    return rowWriter.complete();
   }
 
   // These two methods were copied from flink-base as some interfaces changed in 1.13 made
@@ -268,8 +267,13 @@ public class TiDBSchemaAdapter implements Serializable {
     return typeInfo;
   }
 
-  public void open() {
+  /**
+   * @param objectReuse whether object reuse is enabled for the job, rows are written into the same
+   *     {@link org.apache.flink.table.data.binary.BinaryRowData} if it is, copied otherwise
+   */
+  public void open(boolean objectReuse) {
     this.dateTimeFormatters = TypeUtils.extractDateTimeFormatter(
         physicalFieldNames, properties, true);
+    this.rowWriter = new BinaryRowDataWriter(producedFieldTypes, objectReuse);
   }
 }
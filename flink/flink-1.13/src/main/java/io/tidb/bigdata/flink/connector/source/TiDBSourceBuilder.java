@@ -17,30 +17,53 @@
 package io.tidb.bigdata.flink.connector.source;
 
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.DATABASE_NAME;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CHANGELOG_MODE;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CHANGELOG_MODE_UPSERT;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_AVRO;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_CANAL_JSON;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_CRAFT;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_JSON;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_COMPACTION;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_COMPACTION_MAX_ROWS;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_DECODE_PARALLELISM;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_PREFETCH;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_PREFETCH_MAX_ROWS;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_SOURCE;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_SOURCE_KAFKA;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_WATERMARK_IDLE_TIMEOUT;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_WATERMARK_RESOLVED_TS;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.TABLE_NAME;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.VALID_STREAMING_CHANGELOG_MODES;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.VALID_STREAMING_CODECS;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.VALID_STREAMING_SOURCES;
 import static io.tidb.bigdata.flink.format.cdc.CDCOptions.IGNORE_PARSE_ERRORS;
 
 import io.tidb.bigdata.flink.connector.source.enumerator.TiDBSourceSplitEnumerator;
+import io.tidb.bigdata.flink.connector.source.reader.CDCPrefetcher;
+import io.tidb.bigdata.flink.format.cdc.CDCSchemaAdapter;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import javax.annotation.Nullable;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.connector.source.Boundedness;
 import org.apache.flink.api.connector.source.Source;
 import org.apache.flink.connector.base.source.hybrid.HybridSource;
+import org.apache.flink.connector.kafka.source.enumerator.initializer.OffsetsInitializer;
 import org.apache.flink.table.catalog.ResolvedCatalogTable;
+import org.apache.flink.table.catalog.UniqueConstraint;
 import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.types.DataType;
 import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.TimeUtils;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.tikv.common.expression.Expression;
 import org.tikv.common.meta.TiTimestamp;
 
 public class TiDBSourceBuilder implements Serializable {
@@ -51,13 +74,80 @@ public class TiDBSourceBuilder implements Serializable {
   private String streamingCodec;
   private Map<String, String> properties;
   private boolean ignoreParseErrors;
+  private boolean prefetch;
+  private int prefetchMaxRows;
+  private int decodeParallelism;
+  private boolean resolvedTsWatermarks;
+  private Duration watermarkIdleTimeout;
+  private boolean compaction;
+  private int compactionMaxRows;
+  // null to emit updates as retractions
+  private List<String> upsertKey;
+  private boolean objectReuse;
   private final TiDBSchemaAdapter schema;
+  private final Expression expression;
 
   public TiDBSourceBuilder(ResolvedCatalogTable table,
       Function<DataType, TypeInformation<RowData>> typeInfoFactory,
       TiDBMetadata[] metadata, int[] projectedFields) {
+    this(table, typeInfoFactory, metadata, projectedFields, null);
+  }
+
+  public TiDBSourceBuilder(ResolvedCatalogTable table,
+      Function<DataType, TypeInformation<RowData>> typeInfoFactory,
+      TiDBMetadata[] metadata, int[] projectedFields, @Nullable Expression expression) {
     schema = new TiDBSchemaAdapter(table, typeInfoFactory, metadata, projectedFields);
+    this.expression = expression;
     setProperties(table.getOptions());
+    if (getOptionalProperty(STREAMING_CHANGELOG_MODE.key())
+        .map(v -> validateProperty(STREAMING_CHANGELOG_MODE.key(), v,
+            VALID_STREAMING_CHANGELOG_MODES))
+        .filter(STREAMING_CHANGELOG_MODE_UPSERT::equals).isPresent()) {
+      this.upsertKey = getUpsertKey(table);
+    }
+    validateStreamingCodec(properties);
+  }
+
+  /**
+   * @param objectReuse whether object reuse is enabled in the execution config of the job, in which
+   *     case the snapshot is read into the same row, otherwise every row is a copy
+   */
+  public TiDBSourceBuilder objectReuse(boolean objectReuse) {
+    this.objectReuse = objectReuse;
+    return this;
+  }
+
+  /**
+   * Avro changelogs decode updates as insertions without the old value and deletions as key only
+   * tombstones without commit ts, so they are only consumed as upserts by key, and never compacted
+   * or prefetched, both of which rely on complete and ordered changes.
+   */
+  public static void validateStreamingCodec(Map<String, String> properties) {
+    if (!properties.containsKey(STREAMING_SOURCE.key())
+        || !STREAMING_CODEC_AVRO.equals(properties.get(STREAMING_CODEC.key()))) {
+      return;
+    }
+    Preconditions.checkArgument(
+        STREAMING_CHANGELOG_MODE_UPSERT.equals(properties.get(STREAMING_CHANGELOG_MODE.key())),
+        "Streaming codec '%s' requires '%s' to be '%s'",
+        STREAMING_CODEC_AVRO, STREAMING_CHANGELOG_MODE.key(), STREAMING_CHANGELOG_MODE_UPSERT);
+    Preconditions.checkArgument(!Boolean.parseBoolean(properties.get(STREAMING_PREFETCH.key())),
+        "Streaming codec '%s' does not support '%s'", STREAMING_CODEC_AVRO,
+        STREAMING_PREFETCH.key());
+    Preconditions.checkArgument(!Boolean.parseBoolean(properties.get(STREAMING_COMPACTION.key())),
+        "Streaming codec '%s' does not support '%s'", STREAMING_CODEC_AVRO,
+        STREAMING_COMPACTION.key());
+  }
+
+  /**
+   * @return the primary key of the table, which upsert changelogs are keyed by
+   */
+  public static List<String> getUpsertKey(ResolvedCatalogTable table) {
+    return table.getResolvedSchema().getPrimaryKey()
+        .map(UniqueConstraint::getColumns)
+        .orElseThrow(() -> new IllegalArgumentException("'" + STREAMING_CHANGELOG_MODE.key()
+            + "' is '" + STREAMING_CHANGELOG_MODE_UPSERT
+            + "', which requires the primary key of the table to be defined"));
   }
 
   private static String validateRequired(String key, String value) {
@@ -94,23 +184,67 @@ public class TiDBSourceBuilder implements Serializable {
         .orElse(STREAMING_CODEC_CRAFT);
     this.ignoreParseErrors = getOptionalProperty(IGNORE_PARSE_ERRORS.key())
         .map(Boolean::parseBoolean).orElse(false);
+    this.prefetch = getOptionalProperty(STREAMING_PREFETCH.key())
+        .map(Boolean::parseBoolean).orElse(STREAMING_PREFETCH.defaultValue());
+    this.prefetchMaxRows = getOptionalProperty(STREAMING_PREFETCH_MAX_ROWS.key())
+        .map(Integer::parseInt).orElse(STREAMING_PREFETCH_MAX_ROWS.defaultValue());
+    this.decodeParallelism = getOptionalProperty(STREAMING_DECODE_PARALLELISM.key())
+        .map(Integer::parseInt).orElse(STREAMING_DECODE_PARALLELISM.defaultValue());
+    this.compaction = getOptionalProperty(STREAMING_COMPACTION.key())
+        .map(Boolean::parseBoolean).orElse(STREAMING_COMPACTION.defaultValue());
+    this.compactionMaxRows = getOptionalProperty(STREAMING_COMPACTION_MAX_ROWS.key())
+        .map(Integer::parseInt).orElse(STREAMING_COMPACTION_MAX_ROWS.defaultValue());
+    this.resolvedTsWatermarks = getOptionalProperty(STREAMING_WATERMARK_RESOLVED_TS.key())
+        .map(Boolean::parseBoolean).orElse(STREAMING_WATERMARK_RESOLVED_TS.defaultValue());
+    this.watermarkIdleTimeout = getOptionalProperty(STREAMING_WATERMARK_IDLE_TIMEOUT.key())
+        .map(TimeUtils::parseDuration).orElse(STREAMING_WATERMARK_IDLE_TIMEOUT.defaultValue());
     return this;
   }
 
-  private CDCSourceBuilder createCDCBuilder(TiTimestamp timestamp) {
+  private CDCSourceBuilder createCDCBuilder(TiTimestamp timestamp,
+      Map<TopicPartition, Long> prefetchedOffsets) {
     if (streamingSource.equals(STREAMING_SOURCE_KAFKA)) {
-      return CDCSourceBuilder
+      KafkaCDCSourceBuilder builder = CDCSourceBuilder
           .kafka(databaseName, tableName, timestamp, schema)
           .<KafkaCDCSourceBuilder>ignoreParseErrors(ignoreParseErrors)
+          .<KafkaCDCSourceBuilder>decodeParallelism(decodeParallelism)
           .setProperties(properties);
+      if (resolvedTsWatermarks) {
+        builder.resolvedTsWatermarks(watermarkIdleTimeout);
+      }
+      if (upsertKey != null) {
+        builder.upsertKey(upsertKey);
+      }
+      if (compaction) {
+        builder.compact(compactionMaxRows);
+      }
+      if (!prefetchedOffsets.isEmpty()) {
+        // continue right after the changes prefetched while reading the snapshot
+        builder.setStartingOffsets(
+            OffsetsInitializer.offsets(prefetchedOffsets, OffsetResetStrategy.EARLIEST));
+      }
+      return builder;
     } else {
       throw new IllegalArgumentException(
           "Only kafka is supported as streaming source at this time");
     }
   }
 
+  @Nullable
+  private CDCPrefetcher.Options createPrefetchOptions() {
+    if (!prefetch || !STREAMING_SOURCE_KAFKA.equals(streamingSource)) {
+      return null;
+    }
+    return new CDCPrefetcher.Options(properties, databaseName, tableName, streamingCodec,
+        new CDCSchemaAdapter(schema.getPhysicalDataType(), (ignored) -> schema.getProducedType(),
+            CDCSourceBuilder.getCDCMetadata(schema), upsertKey),
+        prefetchMaxRows);
+  }
+
   public Source<RowData, ?, ?> build() {
-    final SnapshotSource source = new SnapshotSource(databaseName, tableName, properties, schema);
+    final SnapshotSource source = new SnapshotSource(
+        databaseName, tableName, properties, schema, expression, createPrefetchOptions(),
+        objectReuse);
     if (streamingSource == null) {
       return source;
     }
@@ -118,12 +252,17 @@ public class TiDBSourceBuilder implements Serializable {
         HybridSource.builder(source);
     builder.addSource(
         (enumerator) -> {
-          final CDCSourceBuilder cdcBuilder = createCDCBuilder(enumerator.getTimestamp());
+          final CDCSourceBuilder cdcBuilder = createCDCBuilder(
+              enumerator.getTimestamp(), enumerator.getPrefetchedOffsets());
           switch (streamingCodec) {
             case STREAMING_CODEC_CRAFT:
               return cdcBuilder.craft();
             case STREAMING_CODEC_JSON:
               return cdcBuilder.json();
+            case STREAMING_CODEC_AVRO:
+              return cdcBuilder.avro(KafkaCDCSourceBuilder.getSchemaRegistry(properties));
+            case STREAMING_CODEC_CANAL_JSON:
+              return cdcBuilder.canalJson();
             default:
               throw new IllegalArgumentException("Invalid streaming codec: '"
                   + streamingCodec + "'");
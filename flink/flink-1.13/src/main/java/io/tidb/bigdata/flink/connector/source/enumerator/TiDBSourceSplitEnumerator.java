@@ -16,6 +16,10 @@
 
 package io.tidb.bigdata.flink.connector.source.enumerator;
 
+import io.tidb.bigdata.flink.connector.source.event.PrefetchFinishedEvent;
+import io.tidb.bigdata.flink.connector.source.event.PrefetchReleaseEvent;
+import io.tidb.bigdata.flink.connector.source.event.PrefetchStartEvent;
+import io.tidb.bigdata.flink.connector.source.event.SnapshotFinishedEvent;
 import io.tidb.bigdata.flink.connector.source.split.TiDBSourceSplit;
 import io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory;
 import io.tidb.bigdata.tidb.ClientConfig;
@@ -37,6 +41,7 @@ import org.apache.flink.api.connector.source.SourceEvent;
 import org.apache.flink.api.connector.source.SplitEnumerator;
 import org.apache.flink.api.connector.source.SplitEnumeratorContext;
 import org.apache.flink.api.connector.source.SplitsAssignment;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tikv.common.meta.TiTimestamp;
@@ -54,6 +59,12 @@ public class TiDBSourceSplitEnumerator implements
   private final Set<Integer> notifiedReaders;
   private final Set<TiDBSourceSplit> assignedSplits;
   private TiTimestamp timestamp;
+  // whether readers prefetch the changelogs while reading the snapshot
+  private final boolean prefetch;
+  private final Set<Integer> snapshotFinishedReaders;
+  private final Map<TopicPartition, Long> prefetchedOffsets;
+  // whether the readers were told to emit their prefetched changes
+  private boolean prefetchReleased;
 
   public TiDBSourceSplitEnumerator(
       Map<String, String> properties,
@@ -65,7 +76,18 @@ public class TiDBSourceSplitEnumerator implements
       Map<String, String> properties,
       SplitEnumeratorContext<TiDBSourceSplit> context,
       Set<TiDBSourceSplit> assignedSplits) {
+    this(properties, context, assignedSplits, false);
+  }
+
+  public TiDBSourceSplitEnumerator(
+      Map<String, String> properties,
+      SplitEnumeratorContext<TiDBSourceSplit> context,
+      Set<TiDBSourceSplit> assignedSplits,
+      boolean prefetch) {
     this.properties = properties;
+    this.prefetch = prefetch;
+    this.snapshotFinishedReaders = new HashSet<>();
+    this.prefetchedOffsets = new HashMap<>();
     this.context = context;
     this.assignedSplits = new HashSet<>(assignedSplits);
     this.pendingSplitAssignment = new HashMap<>();
@@ -143,6 +165,13 @@ public class TiDBSourceSplitEnumerator implements
     return timestamp;
   }
 
+  /**
+   * @return the kafka offsets the readers stopped prefetching at, empty if not prefetching
+   */
+  public Map<TopicPartition, Long> getPrefetchedOffsets() {
+    return prefetchedOffsets;
+  }
+
   @Override
   public void handleSplitRequest(int subtaskId, @Nullable String requesterHostName) {
   }
@@ -157,10 +186,24 @@ public class TiDBSourceSplitEnumerator implements
   public void addReader(int subtaskId) {
     LOG.debug("Adding reader {} to TiDBSourceSplitEnumerator", subtaskId);
     assignPendingSplits(Collections.singleton(subtaskId));
+    if (prefetch) {
+      snapshotFinishedReaders.remove(subtaskId);
+      context.sendEventToSourceReader(subtaskId,
+          new PrefetchStartEvent(timestamp.getVersion(), context.currentParallelism()));
+    }
   }
 
+  /**
+   * Neither the prefetched changes the readers emitted nor the offsets they stopped prefetching
+   * at are part of the state, so checkpoints are declined from the release of the prefetched
+   * changes until the changelog source takes over. Restoring always starts over prefetching.
+   */
   @Override
-  public TiDBSourceSplitEnumState snapshotState(long l) {
+  public TiDBSourceSplitEnumState snapshotState(long checkpointId) {
+    if (prefetchReleased) {
+      throw new IllegalStateException("Declining checkpoint " + checkpointId
+          + " while prefetched changes are emitted");
+    }
     return new TiDBSourceSplitEnumState(assignedSplits);
   }
 
@@ -170,6 +213,19 @@ public class TiDBSourceSplitEnumerator implements
 
   @Override
   public void handleSourceEvent(int subtaskId, SourceEvent event) {
-    SplitEnumerator.super.handleSourceEvent(subtaskId, event);
+    if (event instanceof SnapshotFinishedEvent) {
+      snapshotFinishedReaders.add(subtaskId);
+      if (snapshotFinishedReaders.size() == context.currentParallelism()) {
+        LOG.info("All readers finished reading the snapshot, releasing prefetched changes");
+        prefetchReleased = true;
+        for (int reader : snapshotFinishedReaders) {
+          context.sendEventToSourceReader(reader, new PrefetchReleaseEvent());
+        }
+      }
+    } else if (event instanceof PrefetchFinishedEvent) {
+      prefetchedOffsets.putAll(((PrefetchFinishedEvent) event).getOffsets());
+    } else {
+      SplitEnumerator.super.handleSourceEvent(subtaskId, event);
+    }
   }
 }
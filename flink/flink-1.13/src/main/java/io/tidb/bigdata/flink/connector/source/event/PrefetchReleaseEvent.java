@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.source.event;
+
+import org.apache.flink.api.connector.source.SourceEvent;
+
+/**
+ * Sent by the snapshot enumerator to every reader once the whole snapshot has been read, so the
+ * prefetched changes can not overtake snapshot rows of the same keys anymore.
+ */
+public class PrefetchReleaseEvent implements SourceEvent {
+
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public String toString() {
+    return "PrefetchReleaseEvent";
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.source.reader;
+
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_AVRO;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_CANAL_JSON;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_CRAFT;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_JSON;
+
+import io.tidb.bigdata.cdc.Codec;
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.flink.connector.source.KafkaCDCSourceBuilder;
+import io.tidb.bigdata.flink.format.cdc.CDCSchemaAdapter;
+import io.tidb.bigdata.flink.format.cdc.ChangeCompactor;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.apache.flink.table.data.RowData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumes the changelogs committed after the snapshot while the snapshot is still being read,
+ * so the changelog source does not start hours behind after a long snapshot.
+ *
+ * <p>Every reader prefetches the kafka partitions it owns by partition number, and keeps only the
+ * net change of every row, identified by its handle columns, between the snapshot and the
+ * prefetched offsets. A reader gives up prefetching if it buffers too many changes, or if a
+ * change can not be compacted, in which case the changelog source reads its partitions from the
+ * beginning as it does without prefetching.
+ */
+public final class CDCPrefetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CDCPrefetcher.class);
+
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+  public static final class Options implements Serializable {
+
+    private final Map<String, String> properties;
+    private final String databaseName;
+    private final String tableName;
+    private final String codec;
+    private final CDCSchemaAdapter schema;
+    private final int maxRows;
+
+    public Options(Map<String, String> properties, String databaseName, String tableName,
+        String codec, CDCSchemaAdapter schema, int maxRows) {
+      this.properties = properties;
+      this.databaseName = databaseName;
+      this.tableName = tableName;
+      this.codec = codec;
+      this.schema = schema;
+      this.maxRows = maxRows;
+    }
+  }
+
+  /**
+   * Changes prefetched by a reader, and the offsets to continue consuming from.
+   */
+  public static final class Result {
+
+    private final Map<TopicPartition, Long> offsets;
+    private final List<RowData> rows;
+
+    private Result(Map<TopicPartition, Long> offsets, List<RowData> rows) {
+      this.offsets = offsets;
+      this.rows = rows;
+    }
+
+    public Map<TopicPartition, Long> getOffsets() {
+      return offsets;
+    }
+
+    public List<RowData> getRows() {
+      return rows;
+    }
+  }
+
+  private final Options options;
+  private final Codec codec;
+  private final long startTs;
+  private final int subtask;
+  private final int parallelism;
+  private final ChangeCompactor changes = new ChangeCompactor();
+  private final Thread thread;
+  private KafkaConsumer<byte[], byte[]> consumer;
+  private List<TopicPartition> partitions = Collections.emptyList();
+  private volatile boolean running;
+  private volatile boolean failed;
+
+  public CDCPrefetcher(Options options, long startTs, int subtask, int parallelism) {
+    this.options = options;
+    switch (options.codec) {
+      case STREAMING_CODEC_CRAFT:
+        this.codec = Codec.craft();
+        break;
+      case STREAMING_CODEC_JSON:
+        this.codec = Codec.json();
+        break;
+      case STREAMING_CODEC_AVRO:
+        // avro carries neither the old value of updates nor the commit ts of deletions
+        throw new IllegalArgumentException(
+            "Streaming codec '" + STREAMING_CODEC_AVRO + "' only supports upsert changelogs");
+      case STREAMING_CODEC_CANAL_JSON:
+        this.codec = Codec.canalJson();
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid streaming codec: '" + options.codec + "'");
+    }
+    this.startTs = startTs;
+    this.subtask = subtask;
+    this.parallelism = parallelism;
+    this.thread = new Thread(this::consume, "tidb-cdc-prefetcher-" + subtask);
+    this.thread.setDaemon(true);
+  }
+
+  public void start() {
+    running = true;
+    thread.start();
+  }
+
+  private void consume() {
+    try {
+      consumer = KafkaCDCSourceBuilder.createConsumer(options.properties);
+      String topic = KafkaCDCSourceBuilder.getTopic(options.properties);
+      partitions = consumer.partitionsFor(topic).stream()
+          .filter(info -> info.partition() % parallelism == subtask)
+          .map(info -> new TopicPartition(info.topic(), info.partition()))
+          .collect(Collectors.toList());
+      consumer.assign(partitions);
+      consumer.seekToBeginning(partitions);
+      LOG.info("Prefetching changelogs of {} from {}", partitions, startTs);
+      while (running) {
+        // a whole batch is always applied, so the positions match the prefetched changes
+        for (ConsumerRecord<byte[], byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+          for (Event event : codec.decode(record.key(), record.value())) {
+            apply(event);
+          }
+        }
+        if (changes.size() > options.maxRows) {
+          giveUp("more than " + options.maxRows + " changes are prefetched", null);
+        }
+      }
+    } catch (Throwable e) {
+      giveUp("prefetching failed", e);
+    }
+  }
+
+  private void giveUp(String reason, @Nullable Throwable e) {
+    LOG.warn("Stop prefetching changelogs of {}: {}", partitions, reason, e);
+    failed = true;
+    running = false;
+    changes.clear();
+  }
+
+  private void apply(Event event) {
+    if (event.getType() != Key.Type.ROW_CHANGED || event.getTs() < startTs
+        || !options.databaseName.equals(event.getSchema())
+        || !options.tableName.equals(event.getTable())) {
+      return;
+    }
+    if (!changes.apply(event)) {
+      throw new IllegalStateException("Compacting changelogs requires the old value of updates");
+    }
+  }
+
+  /**
+   * Stop prefetching.
+   *
+   * @return the net changes since the snapshot and the offsets they were prefetched up to, or
+   *     no changes and the beginning offsets if prefetching was given up
+   */
+  public Result finish() throws InterruptedException {
+    running = false;
+    thread.join();
+    if (consumer == null) {
+      return new Result(Collections.emptyMap(), Collections.emptyList());
+    }
+    try {
+      Map<TopicPartition, Long> offsets = new HashMap<>();
+      if (failed) {
+        offsets.putAll(consumer.beginningOffsets(partitions));
+        return new Result(offsets, Collections.emptyList());
+      }
+      for (TopicPartition partition : partitions) {
+        offsets.put(partition, consumer.position(partition));
+      }
+      List<RowData> rows = new ArrayList<>(changes.size());
+      changes.collect(options.schema, rows::add);
+      LOG.info("Prefetched {} changes of {} up to {}", rows.size(), partitions, offsets);
+      return new Result(offsets, rows);
+    } finally {
+      close();
+    }
+  }
+
+  public void close() throws InterruptedException {
+    running = false;
+    thread.join();
+    changes.clear();
+    if (consumer != null) {
+      consumer.close();
+      consumer = null;
+    }
+  }
+}
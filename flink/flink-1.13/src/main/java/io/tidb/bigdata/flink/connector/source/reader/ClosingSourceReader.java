@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.source.reader;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.flink.api.connector.source.ReaderOutput;
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SourceReader;
+import org.apache.flink.api.connector.source.SourceSplit;
+import org.apache.flink.core.io.InputStatus;
+
+/**
+ * Closes a resource used by the wrapped reader, e.g. its deserialization schema, which has no hook
+ * to be closed itself, after the wrapped reader is closed.
+ */
+public class ClosingSourceReader<T, SplitT extends SourceSplit>
+    implements SourceReader<T, SplitT> {
+
+  private final SourceReader<T, SplitT> wrapped;
+  private final AutoCloseable resource;
+
+  public ClosingSourceReader(SourceReader<T, SplitT> wrapped, AutoCloseable resource) {
+    this.wrapped = wrapped;
+    this.resource = resource;
+  }
+
+  @Override
+  public void start() {
+    wrapped.start();
+  }
+
+  @Override
+  public InputStatus pollNext(ReaderOutput<T> output) throws Exception {
+    return wrapped.pollNext(output);
+  }
+
+  @Override
+  public List<SplitT> snapshotState(long checkpointId) {
+    return wrapped.snapshotState(checkpointId);
+  }
+
+  @Override
+  public CompletableFuture<Void> isAvailable() {
+    return wrapped.isAvailable();
+  }
+
+  @Override
+  public void addSplits(List<SplitT> splits) {
+    wrapped.addSplits(splits);
+  }
+
+  @Override
+  public void notifyNoMoreSplits() {
+    wrapped.notifyNoMoreSplits();
+  }
+
+  @Override
+  public void handleSourceEvents(SourceEvent sourceEvent) {
+    wrapped.handleSourceEvents(sourceEvent);
+  }
+
+  @Override
+  public void notifyCheckpointComplete(long checkpointId) throws Exception {
+    wrapped.notifyCheckpointComplete(checkpointId);
+  }
+
+  @Override
+  public void notifyCheckpointAborted(long checkpointId) throws Exception {
+    wrapped.notifyCheckpointAborted(checkpointId);
+  }
+
+  @Override
+  public void close() throws Exception {
+    try {
+      wrapped.close();
+    } finally {
+      resource.close();
+    }
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.source.reader;
+
+import io.tidb.bigdata.flink.format.cdc.ResolvedTsRowData;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.api.common.eventtime.Watermark;
+import org.apache.flink.api.connector.source.ReaderOutput;
+import org.apache.flink.api.connector.source.SourceEvent;
+import org.apache.flink.api.connector.source.SourceOutput;
+import org.apache.flink.api.connector.source.SourceReader;
+import org.apache.flink.api.connector.source.SourceSplit;
+import org.apache.flink.core.io.InputStatus;
+import org.apache.flink.table.data.RowData;
+import org.tikv.common.meta.TiTimestamp;
+
+/**
+ * Turns the {@link ResolvedTsRowData} markers read from a split, i.e. a partition of the
+ * changelogs, into watermarks of the split instead of emitting them. Flink combines the watermarks
+ * of the splits, so the watermark of the source advances as soon as TiCDC guarantees that all the
+ * changes before it have been received from every partition.
+ *
+ * <p>Splits which have neither rows nor resolved ts for the idle timeout are marked idle, so that
+ * they don't hold back the watermark of the source. They become active again with their next row
+ * or resolved ts. Detecting an idle split may take up to twice the timeout.
+ */
+public class ResolvedTsWatermarkReader<SplitT extends SourceSplit>
+    implements SourceReader<RowData, SplitT> {
+
+  private final SourceReader<RowData, SplitT> wrapped;
+  // 0 to never mark splits idle
+  private final long idleTimeoutMs;
+  private final Map<String, SplitOutput> splitOutputs = new HashMap<>();
+  private ReaderOutput<RowData> output;
+  private MarkerReaderOutput readerOutput;
+  private long nextIdleCheckMs;
+  private ScheduledExecutorService timer;
+
+  public ResolvedTsWatermarkReader(SourceReader<RowData, SplitT> wrapped, long idleTimeoutMs) {
+    this.wrapped = wrapped;
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  /**
+   * @return the watermark guaranteed by a resolved ts, in epoch millis. Changes committed in the
+   *     same millisecond as the resolved ts, but after it, might still come.
+   */
+  static long toWatermark(long resolvedTs) {
+    return TiTimestamp.extractPhysical(resolvedTs) - 1;
+  }
+
+  @Override
+  public void start() {
+    wrapped.start();
+  }
+
+  @Override
+  public InputStatus pollNext(ReaderOutput<RowData> output) throws Exception {
+    if (output != this.output) {
+      this.output = output;
+      this.readerOutput = new MarkerReaderOutput(output);
+    }
+    InputStatus status = wrapped.pollNext(readerOutput);
+    if (idleTimeoutMs > 0) {
+      checkIdle(System.currentTimeMillis());
+    }
+    return status;
+  }
+
+  void checkIdle(long now) {
+    if (now < nextIdleCheckMs) {
+      return;
+    }
+    nextIdleCheckMs = now + idleTimeoutMs;
+    for (SplitOutput splitOutput : splitOutputs.values()) {
+      splitOutput.checkIdle(now, idleTimeoutMs);
+    }
+  }
+
+  @Override
+  public List<SplitT> snapshotState(long checkpointId) {
+    return wrapped.snapshotState(checkpointId);
+  }
+
+  @Override
+  public CompletableFuture<Void> isAvailable() {
+    CompletableFuture<Void> available = wrapped.isAvailable();
+    if (idleTimeoutMs <= 0 || available.isDone() || !hasActiveSplits()) {
+      return available;
+    }
+    // wake up to mark the splits idle even though nothing arrives at all
+    CompletableFuture<Void> idleCheck = new CompletableFuture<>();
+    long delay = Math.max(nextIdleCheckMs - System.currentTimeMillis(), 0);
+    getTimer().schedule(() -> idleCheck.complete(null), delay, TimeUnit.MILLISECONDS);
+    return CompletableFuture.anyOf(available, idleCheck).thenApply(ignored -> null);
+  }
+
+  private boolean hasActiveSplits() {
+    for (SplitOutput splitOutput : splitOutputs.values()) {
+      if (!splitOutput.idle) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ScheduledExecutorService getTimer() {
+    if (timer == null) {
+      timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tidb-cdc-idleness-timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return timer;
+  }
+
+  @Override
+  public void addSplits(List<SplitT> splits) {
+    wrapped.addSplits(splits);
+  }
+
+  @Override
+  public void notifyNoMoreSplits() {
+    wrapped.notifyNoMoreSplits();
+  }
+
+  @Override
+  public void handleSourceEvents(SourceEvent sourceEvent) {
+    wrapped.handleSourceEvents(sourceEvent);
+  }
+
+  @Override
+  public void notifyCheckpointComplete(long checkpointId) throws Exception {
+    wrapped.notifyCheckpointComplete(checkpointId);
+  }
+
+  @Override
+  public void notifyCheckpointAborted(long checkpointId) throws Exception {
+    wrapped.notifyCheckpointAborted(checkpointId);
+  }
+
+  @Override
+  public void close() throws Exception {
+    try {
+      wrapped.close();
+    } finally {
+      if (timer != null) {
+        timer.shutdownNow();
+      }
+    }
+  }
+
+  private static class SplitOutput implements SourceOutput<RowData> {
+    private final SourceOutput<RowData> output;
+    private long watermark = Long.MIN_VALUE;
+    // whether anything arrived since the last idle check
+    private boolean active = true;
+    private long lastActiveMs = System.currentTimeMillis();
+    private boolean idle;
+
+    private SplitOutput(SourceOutput<RowData> output) {
+      this.output = output;
+    }
+
+    @Override
+    public void collect(RowData record) {
+      if (!collectMarker(record)) {
+        output.collect(record);
+      }
+    }
+
+    @Override
+    public void collect(RowData record, long timestamp) {
+      if (!collectMarker(record)) {
+        output.collect(record, timestamp);
+      }
+    }
+
+    private boolean collectMarker(RowData record) {
+      active = true;
+      if (!(record instanceof ResolvedTsRowData)) {
+        if (idle) {
+          // the split holds the watermark back again, from where it has been
+          idle = false;
+          output.emitWatermark(new Watermark(watermark));
+        }
+        return false;
+      }
+      long resolved = toWatermark(((ResolvedTsRowData) record).getTs());
+      if (resolved > watermark || idle) {
+        watermark = Math.max(watermark, resolved);
+        idle = false;
+        output.emitWatermark(new Watermark(watermark));
+      }
+      return true;
+    }
+
+    private void checkIdle(long now, long idleTimeoutMs) {
+      if (active) {
+        active = false;
+        lastActiveMs = now;
+      } else if (!idle && now - lastActiveMs >= idleTimeoutMs) {
+        idle = true;
+        output.markIdle();
+      }
+    }
+
+    @Override
+    public void emitWatermark(Watermark watermark) {
+      output.emitWatermark(watermark);
+    }
+
+    @Override
+    public void markIdle() {
+      output.markIdle();
+    }
+  }
+
+  private class MarkerReaderOutput extends SplitOutput implements ReaderOutput<RowData> {
+    private final ReaderOutput<RowData> output;
+
+    private MarkerReaderOutput(ReaderOutput<RowData> output) {
+      super(output);
+      this.output = output;
+    }
+
+    @Override
+    public SourceOutput<RowData> createOutputForSplit(String splitId) {
+      SplitOutput splitOutput = new SplitOutput(output.createOutputForSplit(splitId));
+      splitOutputs.put(splitId, splitOutput);
+      return splitOutput;
+    }
+
+    @Override
+    public void releaseOutputForSplit(String splitId) {
+      splitOutputs.remove(splitId);
+      output.releaseOutputForSplit(splitId);
+    }
+  }
+}
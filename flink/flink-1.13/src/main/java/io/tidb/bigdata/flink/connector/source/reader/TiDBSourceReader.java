@@ -16,25 +16,115 @@
 
 package io.tidb.bigdata.flink.connector.source.reader;
 
+import io.tidb.bigdata.flink.connector.source.event.PrefetchFinishedEvent;
+import io.tidb.bigdata.flink.connector.source.event.PrefetchReleaseEvent;
+import io.tidb.bigdata.flink.connector.source.event.PrefetchStartEvent;
+import io.tidb.bigdata.flink.connector.source.event.SnapshotFinishedEvent;
 import io.tidb.bigdata.flink.connector.source.split.TiDBSourceSplit;
 import io.tidb.bigdata.flink.connector.source.split.TiDBSourceSplitState;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.apache.flink.api.connector.source.ReaderOutput;
+import org.apache.flink.api.connector.source.SourceEvent;
 import org.apache.flink.api.connector.source.SourceReaderContext;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.connector.base.source.reader.SingleThreadMultiplexSourceReaderBase;
 import org.apache.flink.connector.base.source.reader.splitreader.SplitReader;
+import org.apache.flink.core.io.InputStatus;
 import org.apache.flink.table.data.RowData;
 
 public class TiDBSourceReader extends
     SingleThreadMultiplexSourceReaderBase<RowData, RowData,
         TiDBSourceSplit, TiDBSourceSplitState> {
 
+  @Nullable
+  private final CDCPrefetcher.Options prefetchOptions;
+  @Nullable
+  private CDCPrefetcher prefetcher;
+  private boolean snapshotFinished;
+  private final CompletableFuture<Void> prefetchReleased = new CompletableFuture<>();
+  @Nullable
+  private Iterator<RowData> prefetchedRows;
+
   public TiDBSourceReader(
       Supplier<SplitReader<RowData, TiDBSourceSplit>> splitReaderSupplier,
       Configuration config,
       SourceReaderContext context) {
+    this(splitReaderSupplier, config, context, null);
+  }
+
+  public TiDBSourceReader(
+      Supplier<SplitReader<RowData, TiDBSourceSplit>> splitReaderSupplier,
+      Configuration config,
+      SourceReaderContext context,
+      @Nullable CDCPrefetcher.Options prefetchOptions) {
     super(splitReaderSupplier, new TiDBRecordEmitter(), config, context);
+    this.prefetchOptions = prefetchOptions;
+  }
+
+  /**
+   * While prefetching, the end of the snapshot splits is not the end of the input. The reader
+   * waits until every reader has read its snapshot splits, then emits the changes it prefetched.
+   */
+  @Override
+  public InputStatus pollNext(ReaderOutput<RowData> output) throws Exception {
+    if (prefetchOptions == null) {
+      return super.pollNext(output);
+    }
+    if (!snapshotFinished) {
+      InputStatus status = super.pollNext(output);
+      if (status != InputStatus.END_OF_INPUT) {
+        return status;
+      }
+      snapshotFinished = true;
+      context.sendSourceEventToCoordinator(new SnapshotFinishedEvent());
+    }
+    if (!prefetchReleased.isDone()) {
+      return InputStatus.NOTHING_AVAILABLE;
+    }
+    if (prefetchedRows == null) {
+      CDCPrefetcher.Result result = prefetcher == null ? null : prefetcher.finish();
+      prefetcher = null;
+      prefetchedRows = result == null
+          ? Collections.emptyIterator() : result.getRows().iterator();
+      context.sendSourceEventToCoordinator(new PrefetchFinishedEvent(
+          result == null ? new HashMap<>() : new HashMap<>(result.getOffsets())));
+    }
+    if (prefetchedRows.hasNext()) {
+      output.collect(prefetchedRows.next());
+      return InputStatus.MORE_AVAILABLE;
+    }
+    return InputStatus.END_OF_INPUT;
+  }
+
+  @Override
+  public CompletableFuture<Void> isAvailable() {
+    if (snapshotFinished && !prefetchReleased.isDone()) {
+      return prefetchReleased;
+    }
+    return super.isAvailable();
+  }
+
+  @Override
+  public void handleSourceEvents(SourceEvent sourceEvent) {
+    if (sourceEvent instanceof PrefetchStartEvent) {
+      if (prefetchOptions == null || prefetcher != null) {
+        return;
+      }
+      PrefetchStartEvent event = (PrefetchStartEvent) sourceEvent;
+      prefetcher = new CDCPrefetcher(prefetchOptions, event.getStartTs(),
+          context.getIndexOfSubtask(), event.getParallelism());
+      prefetcher.start();
+    } else if (sourceEvent instanceof PrefetchReleaseEvent) {
+      prefetchReleased.complete(null);
+    } else {
+      super.handleSourceEvents(sourceEvent);
+    }
   }
 
   @Override
@@ -60,4 +150,15 @@ public class TiDBSourceReader extends
   public void notifyCheckpointAborted(long checkpointId) throws Exception {
     super.notifyCheckpointAborted(checkpointId);
   }
+
+  @Override
+  public void close() throws Exception {
+    try {
+      if (prefetcher != null) {
+        prefetcher.close();
+      }
+    } finally {
+      super.close();
+    }
+  }
 }
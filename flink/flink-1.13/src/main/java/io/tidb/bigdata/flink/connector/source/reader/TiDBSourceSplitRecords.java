@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.flink.connector.base.source.reader.RecordsWithSplitIds;
 import org.apache.flink.table.data.RowData;
+import org.tikv.common.expression.Expression;
 import org.tikv.common.meta.TiTimestamp;
 
 public class TiDBSourceSplitRecords implements RecordsWithSplitIds<RowData> {
@@ -41,15 +42,18 @@ public class TiDBSourceSplitRecords implements RecordsWithSplitIds<RowData> {
   private final List<ColumnHandleInternal> columns;
   private final TiDBSchemaAdapter schema;
   private final TiTimestamp timestamp;
+  private final Optional<Expression> expression;
 
   public TiDBSourceSplitRecords(ClientSession session, List<TiDBSourceSplit> splits,
-      List<ColumnHandleInternal> columns, TiDBSchemaAdapter schema) {
+      List<ColumnHandleInternal> columns, TiDBSchemaAdapter schema,
+      @Nullable Expression expression) {
     this.session = session;
     this.splits = splits.toArray(new TiDBSourceSplit[0]);
     this.finishedSplits = splits.stream().map(TiDBSourceSplit::splitId).collect(Collectors.toSet());
     this.schema = schema;
     this.columns = columns;
     this.timestamp = this.splits[0].getSplit().getTimestamp();
+    this.expression = Optional.ofNullable(expression);
   }
 
   @Nullable
@@ -63,7 +67,7 @@ public class TiDBSourceSplitRecords implements RecordsWithSplitIds<RowData> {
     TiDBSourceSplit split = splits[currentSplit];
     SplitInternal splitInternal = split.getSplit();
     RecordSetInternal recordSetInternal = new RecordSetInternal(session,
-        splitInternal, columns, Optional.empty(), Optional.empty());
+        splitInternal, columns, expression, Optional.empty());
     cursor = recordSetInternal.cursor();
     return splits[currentSplit].splitId();
   }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import static io.tidb.bigdata.flink.connector.source.TiDBSchemaAdapter.getObjectWithDataType;
+
+import io.tidb.bigdata.flink.tidb.BinaryRowDataWriter;
+import io.tidb.bigdata.tidb.ClientSession;
+import io.tidb.bigdata.tidb.ColumnHandleInternal;
+import io.tidb.bigdata.tidb.RecordCursorInternal;
+import io.tidb.bigdata.tidb.RecordSetInternal;
+import io.tidb.bigdata.tidb.SplitInternal;
+import io.tidb.bigdata.tidb.SplitManagerInternal;
+import io.tidb.bigdata.tidb.TableHandleInternal;
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.RowData.FieldGetter;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.types.RowKind;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tikv.common.meta.TiTimestamp;
+
+/**
+ * Lookup cache which holds the whole table, keyed on the lookup keys. The table is scanned split
+ * by split in parallel at a single timestamp, and the scan is repeated in the background at a
+ * fixed interval. A reload only replaces the cached rows once it has completed.
+ *
+ * <p>Keys are matched by their values rather than by TiDB, so string key columns have to be
+ * compared byte by byte by their collation, or after trimming trailing spaces for the PAD SPACE
+ * {@code _bin} collations. Key columns of other collations, such as case insensitive ones, are
+ * rejected.
+ */
+final class AllLookupCache implements LookupCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AllLookupCache.class);
+
+  private final ClientSession session;
+  private final String databaseName;
+  private final String tableName;
+  private final String[] fieldNames;
+  private final DataType[] fieldTypes;
+  private final LogicalType[] logicalTypes;
+  private final FieldGetter[] keyGetters;
+  private final KeyCollation[] keyCollations;
+  private final DateTimeFormatter[] formatters;
+  private final ScheduledExecutorService reloader;
+  private volatile Map<RowData, List<RowData>> rows;
+
+  private AllLookupCache(ClientSession session, String databaseName, String tableName,
+      String[] fieldNames, DataType[] fieldTypes, int[] keyIndexes, KeyCollation[] keyCollations,
+      DateTimeFormatter[] formatters) {
+    this.session = session;
+    this.databaseName = databaseName;
+    this.tableName = tableName;
+    this.fieldNames = fieldNames;
+    this.fieldTypes = fieldTypes;
+    this.logicalTypes = new LogicalType[fieldTypes.length];
+    for (int i = 0; i < fieldTypes.length; i++) {
+      logicalTypes[i] = fieldTypes[i].getLogicalType();
+    }
+    this.keyGetters = new FieldGetter[keyIndexes.length];
+    for (int i = 0; i < keyIndexes.length; i++) {
+      keyGetters[i] = RowData.createFieldGetter(logicalTypes[keyIndexes[i]], keyIndexes[i]);
+    }
+    this.keyCollations = keyCollations;
+    this.formatters = formatters;
+    this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "tidb-lookup-cache-reloader");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Load the whole table, and reload it every {@code reloadInterval} afterwards.
+   */
+  static AllLookupCache create(ClientSession session, String databaseName, String tableName,
+      String[] fieldNames, DataType[] fieldTypes, int[] keyIndexes, KeyCollation[] keyCollations,
+      DateTimeFormatter[] formatters, Duration reloadInterval) throws Exception {
+    Preconditions.checkArgument(reloadInterval.toMillis() > 0,
+        "lookup cache reload interval must be positive");
+    for (int i = 0; i < keyIndexes.length; i++) {
+      Preconditions.checkArgument(keyCollations[i] != KeyCollation.OTHER,
+          "'lookup.cache.mode' = 'all' matches lookup keys by their values, which does not work "
+              + "for the key column %s, whose collation is neither binary nor _bin, please use "
+              + "another lookup cache mode", fieldNames[keyIndexes[i]]);
+    }
+    AllLookupCache cache = new AllLookupCache(session, databaseName, tableName, fieldNames,
+        fieldTypes, keyIndexes, keyCollations, formatters);
+    try {
+      cache.rows = cache.load();
+    } catch (Exception e) {
+      cache.close();
+      throw e;
+    }
+    long intervalMs = reloadInterval.toMillis();
+    cache.reloader.scheduleWithFixedDelay(cache::reload, intervalMs, intervalMs,
+        TimeUnit.MILLISECONDS);
+    return cache;
+  }
+
+  private void reload() {
+    try {
+      rows = load();
+    } catch (Exception e) {
+      // keep serving the rows of the last successful load
+      LOG.error("Failed to reload lookup cache of {}.{}", databaseName, tableName, e);
+    }
+  }
+
+  private Map<RowData, List<RowData>> load() throws Exception {
+    long start = System.currentTimeMillis();
+    TableHandleInternal table = new TableHandleInternal(
+        UUID.randomUUID().toString(), databaseName, tableName);
+    List<ColumnHandleInternal> columns = session.getTableColumns(table,
+        Arrays.asList(fieldNames))
+        .orElseThrow(() -> new IllegalStateException("Could not get columns for TiDB table:"
+            + databaseName + "." + tableName));
+    TiTimestamp timestamp = session.getTimestamp();
+    List<SplitInternal> splits = new SplitManagerInternal(session).getSplits(table, timestamp);
+    if (splits.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    int parallelism = Math.min(splits.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      List<Future<Map<RowData, List<RowData>>>> futures = new ArrayList<>(parallelism);
+      for (int i = 0; i < parallelism; i++) {
+        final int first = i;
+        futures.add(executor.submit(() -> {
+          Map<RowData, List<RowData>> result = new HashMap<>();
+          BinaryRowDataWriter writer = new BinaryRowDataWriter(logicalTypes, false);
+          for (int s = first; s < splits.size(); s += parallelism) {
+            scan(splits.get(s), columns, timestamp, writer, result);
+          }
+          return result;
+        }));
+      }
+      Map<RowData, List<RowData>> result = new HashMap<>();
+      for (Future<Map<RowData, List<RowData>>> future : futures) {
+        future.get().forEach((key, rows) ->
+            result.computeIfAbsent(key, k -> new ArrayList<>()).addAll(rows));
+      }
+      LOG.info("Loaded {} keys of {}.{} in {} ms", result.size(), databaseName, tableName,
+          System.currentTimeMillis() - start);
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void scan(SplitInternal split, List<ColumnHandleInternal> columns,
+      TiTimestamp timestamp, BinaryRowDataWriter writer, Map<RowData, List<RowData>> result) {
+    RecordCursorInternal cursor = new RecordSetInternal(session, split, columns,
+        Optional.empty(), Optional.of(timestamp)).cursor();
+    try {
+      while (cursor.advanceNextPosition()) {
+        writer.reset(RowKind.INSERT);
+        for (int i = 0; i < fieldTypes.length; i++) {
+          writer.write(i, getObjectWithDataType(cursor.getObject(i), fieldTypes[i],
+              cursor.getType(i), formatters[i]).orElse(null));
+        }
+        BinaryRowData row = writer.complete();
+        RowData key = getKey(row);
+        if (key != null) {
+          result.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+        }
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private RowData getKey(RowData row) {
+    GenericRowData key = new GenericRowData(keyGetters.length);
+    for (int i = 0; i < keyGetters.length; i++) {
+      Object field = keyGetters[i].getFieldOrNull(row);
+      if (field == null) {
+        // null never equals to any lookup key
+        return null;
+      }
+      key.setField(i, keyCollations[i].normalize(field));
+    }
+    return key;
+  }
+
+  @Override
+  public List<RowData> getIfPresent(RowData key) {
+    // the whole table is cached, keys absent from it have no rows
+    return rows.getOrDefault(KeyCollation.normalize(keyCollations, (GenericRowData) key),
+        Collections.emptyList());
+  }
+
+  @Override
+  public void put(RowData key, List<RowData> rows, long version) {
+  }
+
+  @Override
+  public void close() {
+    reloader.shutdownNow();
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.table;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.tikv.common.meta.TiTimestamp;
+
+/**
+ * Resolves a batch of lookup keys against TiDB at once.
+ */
+interface BatchLookup {
+
+  /**
+   * @param keys distinct lookup keys
+   * @param timestamp the snapshot to read the rows at
+   * @return matching rows by key, keys without any match may be absent
+   */
+  Map<RowData, List<RowData>> lookup(List<GenericRowData> keys, TiTimestamp timestamp)
+      throws Exception;
+
+  /**
+   * @return whether every key matches at most one row
+   */
+  boolean isUniqueKey();
+}
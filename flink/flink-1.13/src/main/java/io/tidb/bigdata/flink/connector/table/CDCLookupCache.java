@@ -0,0 +1,318 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.DATABASE_NAME;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_AVRO;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_CANAL_JSON;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_CRAFT;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_JSON;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.TABLE_NAME;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.tidb.bigdata.cdc.Codec;
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.RowChangedValue;
+import io.tidb.bigdata.cdc.RowColumn;
+import io.tidb.bigdata.flink.connector.source.KafkaCDCSourceBuilder;
+import io.tidb.bigdata.flink.format.cdc.CDCSchemaAdapter;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.RowData.FieldGetter;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.utils.TypeConversions;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lookup cache which is kept consistent with TiDB by consuming the TiCDC changelogs of the
+ * table, the same kafka topic the streaming source reads, instead of expiring entries.
+ *
+ * <p>Every entry carries the TiDB timestamp it is valid at. Changelogs update or invalidate the
+ * entries of the keys they touch, and lookup results read at an older timestamp than the entry
+ * never overwrite it, so changes racing with in-flight lookups are not lost. Lookup results older
+ * than the changelogs applied so far are not cached at all, since the entry of the change they
+ * miss may have been evicted already.
+ */
+final class CDCLookupCache implements LookupCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CDCLookupCache.class);
+
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+  private static final class Entry {
+
+    private final long version;
+    // null if the rows of the key are unknown since this version
+    @Nullable
+    private final List<RowData> rows;
+
+    private Entry(long version, @Nullable List<RowData> rows) {
+      this.version = version;
+      this.rows = rows;
+    }
+  }
+
+  private final ConcurrentMap<RowData, Entry> entries;
+  private final String databaseName;
+  private final String tableName;
+  private final Codec codec;
+  private final CDCSchemaAdapter schema;
+  private final Set<String> keyNames;
+  private final FieldGetter[] keyGetters;
+  // whether every key matches at most one row
+  private final boolean uniqueKey;
+  private final KafkaConsumer<byte[], byte[]> consumer;
+  private final Thread updater;
+  // lookup results read before this version are not cached anymore
+  private volatile long minVersion;
+  // highest version of the changelogs applied so far, which evicted entries may have been at
+  private volatile long appliedVersion;
+  private volatile boolean running;
+
+  private CDCLookupCache(Map<String, String> properties, String[] fieldNames, RowType rowType,
+      int[] keyIndexes, boolean uniqueKey, long maxSize) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (maxSize >= 0) {
+      builder.maximumSize(maxSize);
+    }
+    Cache<RowData, Entry> cache = builder.build();
+    this.entries = cache.asMap();
+    this.databaseName = properties.get(DATABASE_NAME.key());
+    this.tableName = properties.get(TABLE_NAME.key());
+    String codecName = properties.getOrDefault(STREAMING_CODEC.key(), STREAMING_CODEC_CRAFT);
+    switch (codecName) {
+      case STREAMING_CODEC_CRAFT:
+        this.codec = Codec.craft();
+        break;
+      case STREAMING_CODEC_JSON:
+        this.codec = Codec.json();
+        break;
+      case STREAMING_CODEC_AVRO:
+        // avro carries neither the old value of updates nor the commit ts of deletions
+        throw new IllegalArgumentException(
+            "Streaming codec '" + STREAMING_CODEC_AVRO + "' only supports upsert changelogs");
+      case STREAMING_CODEC_CANAL_JSON:
+        this.codec = Codec.canalJson();
+        break;
+      default:
+        throw new IllegalArgumentException("Invalid streaming codec: '" + codecName + "'");
+    }
+    this.schema = new CDCSchemaAdapter(TypeConversions.fromLogicalToDataType(rowType),
+        dataType -> InternalTypeInfo.of(dataType.getLogicalType()), null);
+    this.keyNames = Arrays.stream(keyIndexes).mapToObj(i -> fieldNames[i])
+        .collect(Collectors.toSet());
+    this.keyGetters = Arrays.stream(keyIndexes)
+        .mapToObj(i -> RowData.createFieldGetter(rowType.getTypeAt(i), i))
+        .toArray(FieldGetter[]::new);
+    this.uniqueKey = uniqueKey;
+    this.consumer = createConsumer(properties);
+    this.updater = new Thread(this::consume, "tidb-lookup-cache-updater");
+    this.updater.setDaemon(true);
+  }
+
+  /**
+   * Create a cache and start following the changelogs from the current end of the topic.
+   *
+   * @param uniqueKey whether every lookup key matches at most one row
+   * @param maxSize max number of cached keys, negative for unlimited
+   */
+  static CDCLookupCache create(Map<String, String> properties, String[] fieldNames,
+      RowType rowType, int[] keyIndexes, boolean uniqueKey, long maxSize) {
+    CDCLookupCache cache =
+        new CDCLookupCache(properties, fieldNames, rowType, keyIndexes, uniqueKey, maxSize);
+    cache.start();
+    return cache;
+  }
+
+  private static KafkaConsumer<byte[], byte[]> createConsumer(Map<String, String> properties) {
+    String topic = KafkaCDCSourceBuilder.getTopic(properties);
+    // every subtask follows all the partitions on its own, there is nothing to commit
+    KafkaConsumer<byte[], byte[]> consumer = KafkaCDCSourceBuilder.createConsumer(properties);
+    try {
+      List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+          .map(info -> new TopicPartition(info.topic(), info.partition()))
+          .collect(Collectors.toList());
+      consumer.assign(partitions);
+      consumer.seekToEnd(partitions);
+      // seeking is lazy, resolve the positions before any lookup is cached
+      partitions.forEach(consumer::position);
+    } catch (RuntimeException e) {
+      consumer.close();
+      throw e;
+    }
+    return consumer;
+  }
+
+  private void start() {
+    running = true;
+    updater.start();
+  }
+
+  private void consume() {
+    try {
+      while (running) {
+        for (ConsumerRecord<byte[], byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+          for (Event event : codec.decode(record.key(), record.value())) {
+            apply(event);
+          }
+        }
+      }
+    } catch (WakeupException e) {
+      // closed
+    } catch (Throwable e) {
+      // without changelogs, nothing cached can be trusted anymore
+      LOG.error("Failed to follow the changelogs of {}.{}, lookup cache is disabled",
+          databaseName, tableName, e);
+      running = false;
+      minVersion = Long.MAX_VALUE;
+      entries.clear();
+    }
+  }
+
+  void apply(Event event) {
+    if (event.getType() != Key.Type.ROW_CHANGED
+        || !databaseName.equals(event.getSchema()) || !tableName.equals(event.getTable())) {
+      return;
+    }
+    final long version = event.getTs();
+    // raised before the entries, so a racing lookup either sees it or is merged with the entry
+    appliedVersion = Math.max(appliedVersion, version);
+    final RowChangedValue value = event.asRowChanged();
+    final RowColumn[] oldValue = value.getOldValue();
+    final RowColumn[] newValue = value.getNewValue();
+    switch (value.getType()) {
+      case DELETE:
+        remove(event, oldValue, version);
+        break;
+      case INSERT:
+        upsert(event, newValue, version);
+        break;
+      case UPDATE:
+        remove(event, oldValue, version);
+        upsert(event, newValue, version);
+        break;
+      default:
+        invalidateAll(version);
+    }
+  }
+
+  private void remove(Event event, @Nullable RowColumn[] columns, long version) {
+    if (!hasKeyColumns(columns)) {
+      // without the old value the key which changed is unknown
+      invalidateAll(version);
+      return;
+    }
+    RowData key = getKey(schema.convert(event, columns).insert());
+    if (key != null) {
+      update(key, new Entry(version, uniqueKey ? Collections.emptyList() : null));
+    }
+  }
+
+  private void upsert(Event event, @Nullable RowColumn[] columns, long version) {
+    if (!hasKeyColumns(columns)) {
+      invalidateAll(version);
+      return;
+    }
+    RowData row = schema.convert(event, columns).insert();
+    RowData key = getKey(row);
+    if (key != null) {
+      update(key, new Entry(version, uniqueKey ? Collections.singletonList(row) : null));
+    }
+  }
+
+  private boolean hasKeyColumns(@Nullable RowColumn[] columns) {
+    if (columns == null) {
+      return false;
+    }
+    int found = 0;
+    for (RowColumn column : columns) {
+      if (keyNames.contains(column.getName())) {
+        found++;
+      }
+    }
+    return found == keyNames.size();
+  }
+
+  @Nullable
+  private RowData getKey(RowData row) {
+    GenericRowData key = new GenericRowData(keyGetters.length);
+    for (int i = 0; i < keyGetters.length; i++) {
+      Object field = keyGetters[i].getFieldOrNull(row);
+      if (field == null) {
+        // null never equals to any lookup key
+        return null;
+      }
+      key.setField(i, field);
+    }
+    return key;
+  }
+
+  private void update(RowData key, Entry entry) {
+    if (entry.version < minVersion) {
+      return;
+    }
+    entries.merge(key, entry, (old, e) -> old.version > e.version ? old : e);
+  }
+
+  private void invalidateAll(long version) {
+    minVersion = Math.max(minVersion, version);
+    entries.clear();
+  }
+
+  @Override
+  public List<RowData> getIfPresent(RowData key) {
+    Entry entry = entries.get(key);
+    return entry == null ? null : entry.rows;
+  }
+
+  @Override
+  public void put(RowData key, List<RowData> rows, long version) {
+    if (version < appliedVersion) {
+      // the key may have changed since, and the entry of that change been evicted already
+      return;
+    }
+    update(key, new Entry(version, rows));
+  }
+
+  @Override
+  public void close() throws Exception {
+    running = false;
+    consumer.wakeup();
+    updater.join();
+    consumer.close();
+    entries.clear();
+  }
+}
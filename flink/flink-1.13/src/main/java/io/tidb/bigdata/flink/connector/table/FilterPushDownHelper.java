@@ -21,10 +21,11 @@ import io.tidb.bigdata.flink.connector.source.TiDBOptions;
 import io.tidb.bigdata.tidb.ClientConfig;
 import io.tidb.bigdata.tidb.ClientSession;
 import io.tidb.bigdata.tidb.Expressions;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.flink.table.catalog.ResolvedCatalogTable;
 import org.apache.flink.table.connector.source.abilities.SupportsFilterPushDown.Result;
@@ -32,13 +33,18 @@ import org.apache.flink.table.expressions.CallExpression;
 import org.apache.flink.table.expressions.FieldReferenceExpression;
 import org.apache.flink.table.expressions.ResolvedExpression;
 import org.apache.flink.table.expressions.ValueLiteralExpression;
+import org.apache.flink.table.types.logical.LogicalTypeRoot;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tikv.common.expression.ColumnRef;
 import org.tikv.common.expression.Expression;
 import org.tikv.common.expression.visitor.SupportedExpressionValidator;
 import org.tikv.common.meta.TiColumnInfo;
 import org.tikv.common.types.DataType;
+import org.tikv.common.types.DecimalType;
+import org.tikv.common.types.IntegerType;
+import org.tikv.common.types.RealType;
 
 public class FilterPushDownHelper {
   private static final Set<String> COMPARISON_BINARY_FILTERS = ImmutableSet.of(
@@ -50,16 +56,43 @@ public class FilterPushDownHelper {
       "notEquals",
       "like"
   );
+
+  private static final Set<LogicalTypeRoot> WIDENING_CAST_TARGETS = ImmutableSet.of(
+      LogicalTypeRoot.BIGINT,
+      LogicalTypeRoot.DECIMAL,
+      LogicalTypeRoot.DOUBLE
+  );
+
   static final Logger LOG = LoggerFactory.getLogger(FilterPushDownHelper.class);
 
   private Expression expression;
   private Map<String, DataType> nameTypeMap;
   private final ResolvedCatalogTable table;
+  /**
+   * Whether the expression being built evaluates exactly like the flink filter, rather than
+   * selecting a superset of its rows.
+   */
+  private boolean exact;
 
   FilterPushDownHelper(ResolvedCatalogTable table) {
     this.table = table;
   }
 
+  FilterPushDownHelper(ResolvedCatalogTable table, Map<String, DataType> nameTypeMap) {
+    this.table = table;
+    this.nameTypeMap = nameTypeMap;
+  }
+
+  /**
+   * @return a helper with the same pushed down expression, which filters applied to later do not
+   *     change the expression of this helper
+   */
+  FilterPushDownHelper copy() {
+    FilterPushDownHelper helper = new FilterPushDownHelper(table, nameTypeMap);
+    helper.expression = expression;
+    return helper;
+  }
+
   private String getRequiredProperties(String key) {
     return Preconditions.checkNotNull(table.getOptions().get(key), key + " can not be null");
   }
@@ -76,21 +109,16 @@ public class FilterPushDownHelper {
     }
   }
 
-  private Expression createExpression(List<ResolvedExpression> filters) {
-    if (filters == null || filters.size() == 0) {
-      return null;
-    }
-    if (nameTypeMap == null) {
-      queryNameType();
-    }
-    return getExpression(filters);
-  }
-
   private Expression getExpression(List<ResolvedExpression> resolvedExpressions) {
     return Expressions.and(resolvedExpressions.stream().map(this::getExpression)
         .filter(exp -> exp != Expressions.alwaysTrue()));
   }
 
+  /**
+   * Convert a flink filter to a TiDB expression. Filters which can not be pushed down are
+   * converted to {@link Expressions#alwaysTrue()}, which makes the expression select a superset
+   * of the rows, so {@link #exact} is cleared whenever that happens.
+   */
   private Expression getExpression(ResolvedExpression resolvedExpression) {
     if (resolvedExpression instanceof CallExpression) {
       CallExpression callExpression = (CallExpression) resolvedExpression;
@@ -99,25 +127,41 @@ public class FilterPushDownHelper {
       Expression left = null;
       Expression right = null;
       if (COMPARISON_BINARY_FILTERS.contains(functionName)) {
+        if (resolvedChildren.size() != 2) {
+          // like with escape character
+          return unsupported();
+        }
         left = getExpression(resolvedChildren.get(0));
         right = getExpression(resolvedChildren.get(1));
         if (left == Expressions.alwaysTrue() || right == Expressions.alwaysTrue()) {
-          return Expressions.alwaysTrue();
+          return unsupported();
+        }
+        if (!isExactlyComparable(left) || !isExactlyComparable(right)) {
+          // collations and implicit conversions may differ between TiDB and flink
+          exact = false;
         }
       }
       switch (functionName) {
         case "cast":
-          // we only need column name
-          return getExpression(resolvedChildren.get(0));
-        case "or":
+          return getCastExpression(callExpression);
+        case "and":
           // ignore always true expression
-          return Expressions.or(resolvedChildren.stream().map(this::getExpression)
-              .filter(exp -> exp != Expressions.alwaysTrue()));
+          Expression and = getExpression(resolvedChildren);
+          return and == null ? unsupported() : and;
+        case "or":
+          // dropping any operand of or would filter out matching rows
+          return getAllOrNothing(resolvedChildren, Expressions::or);
         case "not":
-          if (left == Expressions.alwaysTrue()) {
-            return Expressions.alwaysTrue();
-          }
-          return alwaysTrueIfNotSupported(Expressions.not(left));
+          return getNotExpression(resolvedChildren.get(0));
+        case "isNull":
+          return getUnaryExpression(resolvedChildren.get(0), Expressions::isNull);
+        case "isNotNull":
+          return getUnaryExpression(resolvedChildren.get(0), Expressions::isNotNull);
+        case "in":
+          return getAllOrNothing(resolvedChildren, this::getInExpression);
+        case "between":
+          return getAllOrNothing(resolvedChildren, c -> alwaysTrueIfNotSupported(
+              Expressions.between(c.get(0), c.get(1), c.get(2))));
         case "greaterThan":
           return alwaysTrueIfNotSupported(Expressions.greaterThan(left, right));
         case "greaterThanOrEqual":
@@ -131,36 +175,142 @@ public class FilterPushDownHelper {
         case "notEquals":
           return alwaysTrueIfNotSupported(Expressions.notEqual(left, right));
         case "like":
+          // TiDB may match case insensitively depending on the collation
+          exact = false;
           return alwaysTrueIfNotSupported(Expressions.like(left, right));
         default:
-          return Expressions.alwaysTrue();
+          return unsupported();
       }
     }
     if (resolvedExpression instanceof FieldReferenceExpression) {
       String name = ((FieldReferenceExpression) resolvedExpression).getName();
-      return Expressions.column(name, nameTypeMap.get(name));
+      DataType type = nameTypeMap.get(name);
+      if (type == null) {
+        return unsupported();
+      }
+      return Expressions.column(name, type);
     }
     if (resolvedExpression instanceof ValueLiteralExpression) {
       ValueLiteralExpression valueLiteralExpression = (ValueLiteralExpression) resolvedExpression;
-      Object value = valueLiteralExpression
+      return valueLiteralExpression
           .getValueAs(valueLiteralExpression.getOutputDataType().getConversionClass())
-          .orElseThrow(() -> new IllegalStateException("can not get value"));
-      return Expressions.constant(value, null);
+          .map(value -> Expressions.constant(value, null))
+          // comparing with null literal is never true, leave it to flink
+          .orElseGet(this::unsupported);
     }
+    return unsupported();
+  }
+
+  private Expression unsupported() {
+    exact = false;
     return Expressions.alwaysTrue();
   }
 
+  private Expression getCastExpression(CallExpression cast) {
+    Expression child = getExpression(cast.getResolvedChildren().get(0));
+    LogicalTypeRoot target = cast.getOutputDataType().getLogicalType().getTypeRoot();
+    // flink widens numeric operands before comparing them, we only need column name
+    if (!(child instanceof ColumnRef) || !isNumeric(((ColumnRef) child).getDataType())
+        || !WIDENING_CAST_TARGETS.contains(target)) {
+      return unsupported();
+    }
+    exact = false;
+    return child;
+  }
+
+  private Expression getNotExpression(ResolvedExpression resolvedChild) {
+    boolean outerExact = exact;
+    exact = true;
+    Expression child = getExpression(resolvedChild);
+    boolean childExact = exact;
+    exact = outerExact;
+    // negating a superset of rows would filter out matching rows
+    if (!childExact || child == Expressions.alwaysTrue()) {
+      return unsupported();
+    }
+    return alwaysTrueIfNotSupported(Expressions.not(child));
+  }
+
+  private Expression getUnaryExpression(ResolvedExpression resolvedChild,
+      Function<Expression, Expression> function) {
+    Expression child = getExpression(resolvedChild);
+    if (child == Expressions.alwaysTrue()) {
+      return unsupported();
+    }
+    return alwaysTrueIfNotSupported(function.apply(child));
+  }
+
+  private Expression getAllOrNothing(List<ResolvedExpression> resolvedChildren,
+      Function<List<Expression>, Expression> function) {
+    List<Expression> children = new ArrayList<>(resolvedChildren.size());
+    for (ResolvedExpression resolvedChild : resolvedChildren) {
+      Expression child = getExpression(resolvedChild);
+      if (child == Expressions.alwaysTrue()) {
+        return unsupported();
+      }
+      children.add(child);
+    }
+    return function.apply(children);
+  }
+
+  private Expression getInExpression(List<Expression> children) {
+    if (children.size() < 2 || !(children.get(0) instanceof ColumnRef)) {
+      return unsupported();
+    }
+    if (!isExactlyComparable(children.get(0))) {
+      exact = false;
+    }
+    return alwaysTrueIfNotSupported(Expressions.in(children));
+  }
+
+  private static boolean isNumeric(DataType type) {
+    return type instanceof IntegerType || type instanceof DecimalType
+        || type instanceof RealType;
+  }
+
+  private static boolean isExactlyComparable(Expression expression) {
+    return !(expression instanceof ColumnRef)
+        || isNumeric(((ColumnRef) expression).getDataType());
+  }
+
   private Expression alwaysTrueIfNotSupported(Expression expression) {
     return SupportedExpressionValidator.isSupportedExpression(expression, null)
-        ? expression : Expressions.alwaysTrue();
+        ? expression : unsupported();
+  }
+
+  public Expression getPushedDownExpression() {
+    return expression;
   }
 
   public Result applyFilters(List<ResolvedExpression> filters) {
     LOG.debug("Flink filters: " + filters);
-    if (new ClientConfig(table.getOptions()).isFilterPushDown()) {
-      this.expression = createExpression(filters);
+    this.expression = null;
+    if (filters == null || filters.isEmpty()
+        || !new ClientConfig(table.getOptions()).isFilterPushDown()) {
+      return Result.of(new ArrayList<>(), filters);
+    }
+    if (nameTypeMap == null) {
+      queryNameType();
+    }
+    // the streaming part of the source is not filtered, flink has to evaluate all filters then
+    boolean streaming = table.getOptions().containsKey(TiDBOptions.STREAMING_SOURCE.key());
+    List<ResolvedExpression> acceptedFilters = new ArrayList<>();
+    List<ResolvedExpression> remainingFilters = new ArrayList<>();
+    List<Expression> expressions = new ArrayList<>();
+    for (ResolvedExpression filter : filters) {
+      exact = true;
+      Expression expression = getExpression(filter);
+      if (expression != Expressions.alwaysTrue()) {
+        expressions.add(expression);
+      }
+      if (exact && !streaming) {
+        acceptedFilters.add(filter);
+      } else {
+        remainingFilters.add(filter);
+      }
     }
-    LOG.debug("TiDB expression: " + this.expression);
-    return Result.of(Collections.emptyList(), filters);
+    this.expression = Expressions.and(expressions);
+    LOG.debug("TiDB expression: " + this.expression + ", accepted filters: " + acceptedFilters);
+    return Result.of(acceptedFilters, remainingFilters);
   }
-}
\ No newline at end of file
+}
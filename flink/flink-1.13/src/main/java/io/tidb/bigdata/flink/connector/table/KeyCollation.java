@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.table;
+
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.types.logical.LogicalTypeFamily;
+import org.apache.flink.table.types.logical.RowType;
+import org.tikv.common.meta.Collation;
+import org.tikv.common.meta.TiTableInfo;
+
+/**
+ * How TiDB compares the values of a lookup key column, so that lookup keys can be matched to rows
+ * on the client the way TiDB matches them.
+ */
+enum KeyCollation {
+  /**
+   * Compared by their values, which is how non-string columns and the binary collation compare.
+   */
+  BINARY,
+  /**
+   * Compared by their values without trailing spaces, which is how the PAD SPACE {@code _bin}
+   * collations compare.
+   */
+  PAD_SPACE,
+  /**
+   * Compared in a way the client does not reproduce, such as case insensitively.
+   */
+  OTHER;
+
+  static KeyCollation of(String collation) {
+    if ("binary".equals(collation)) {
+      return BINARY;
+    }
+    return collation != null && collation.endsWith("_bin") ? PAD_SPACE : OTHER;
+  }
+
+  /**
+   * @return collations of the key columns, by the key index
+   */
+  static KeyCollation[] of(TiTableInfo table, String[] fieldNames, RowType rowType,
+      int[] keyIndexes) {
+    KeyCollation[] collations = new KeyCollation[keyIndexes.length];
+    for (int i = 0; i < keyIndexes.length; i++) {
+      collations[i] = rowType.getTypeAt(keyIndexes[i]).getTypeRoot().getFamilies()
+          .contains(LogicalTypeFamily.CHARACTER_STRING)
+          ? of(Collation.translate(table.getColumn(fieldNames[keyIndexes[i]]).getType()
+          .getCollationCode()))
+          : BINARY;
+    }
+    return collations;
+  }
+
+  /**
+   * @return whether keys of the collations could be matched on the client
+   */
+  static boolean isComparable(KeyCollation[] collations) {
+    for (KeyCollation collation : collations) {
+      if (collation == OTHER) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return a key equal to every key which the collations consider equal to it
+   */
+  static GenericRowData normalize(KeyCollation[] collations, GenericRowData key) {
+    GenericRowData normalized = new GenericRowData(key.getArity());
+    for (int i = 0; i < key.getArity(); i++) {
+      normalized.setField(i, collations[i].normalize(key.getField(i)));
+    }
+    return normalized;
+  }
+
+  Object normalize(Object field) {
+    return this == PAD_SPACE && field != null ? trimTrailingSpaces((StringData) field) : field;
+  }
+
+  static StringData trimTrailingSpaces(StringData value) {
+    String string = value.toString();
+    int end = string.length();
+    while (end > 0 && string.charAt(end - 1) == ' ') {
+      end--;
+    }
+    return end == string.length() ? value : StringData.fromString(string.substring(0, end));
+  }
+}
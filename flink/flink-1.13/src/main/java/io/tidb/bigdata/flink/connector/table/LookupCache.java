@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.flink.table.data.RowData;
+
+/**
+ * Cache of lookup results, keyed on the lookup keys.
+ */
+interface LookupCache extends AutoCloseable {
+
+  /**
+   * @return cached rows of the key, null if the key has to be looked up
+   */
+  @Nullable
+  List<RowData> getIfPresent(RowData key);
+
+  /**
+   * @param version TiDB timestamp which the rows are at least as new as
+   */
+  void put(RowData key, List<RowData> rows, long version);
+
+  @Override
+  default void close() throws Exception {
+  }
+}
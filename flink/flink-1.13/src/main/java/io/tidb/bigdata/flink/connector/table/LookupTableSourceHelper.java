@@ -16,6 +16,10 @@
 
 package io.tidb.bigdata.flink.connector.table;
 
+import static io.tidb.bigdata.flink.connector.table.TiDBDynamicTableFactory.LOOKUP_CACHE_MODE_CDC;
+import static io.tidb.bigdata.flink.connector.table.TiDBDynamicTableFactory.LOOKUP_CACHE_MODE_TTL;
+
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import org.apache.flink.connector.jdbc.internal.options.JdbcLookupOptions;
@@ -23,6 +27,7 @@ import org.apache.flink.connector.jdbc.table.JdbcRowDataLookupFunction;
 import org.apache.flink.table.catalog.Column;
 import org.apache.flink.table.catalog.ResolvedCatalogTable;
 import org.apache.flink.table.catalog.ResolvedSchema;
+import org.apache.flink.table.connector.source.AsyncTableFunctionProvider;
 import org.apache.flink.table.connector.source.LookupTableSource.LookupContext;
 import org.apache.flink.table.connector.source.LookupTableSource.LookupRuntimeProvider;
 import org.apache.flink.table.connector.source.TableFunctionProvider;
@@ -31,15 +36,31 @@ import org.apache.flink.util.Preconditions;
 
 public class LookupTableSourceHelper {
   private final JdbcLookupOptions lookupOptions;
+  private final String lookupCacheMode;
+  private final Duration lookupCacheReloadInterval;
+  private final boolean asyncLookup;
+  private final int lookupBatchSize;
 
   public LookupTableSourceHelper(
       JdbcLookupOptions lookupOptions) {
+    this(lookupOptions, LOOKUP_CACHE_MODE_TTL, null, false, 1);
+  }
+
+  public LookupTableSourceHelper(JdbcLookupOptions lookupOptions, String lookupCacheMode,
+      Duration lookupCacheReloadInterval, boolean asyncLookup, int lookupBatchSize) {
+    Preconditions.checkArgument(lookupBatchSize > 0, "lookup batch size must be positive");
     this.lookupOptions = lookupOptions;
+    this.lookupCacheMode = lookupCacheMode;
+    this.lookupCacheReloadInterval = lookupCacheReloadInterval;
+    // only the TiDB lookup function supports other cache modes than ttl
+    this.asyncLookup = asyncLookup || !LOOKUP_CACHE_MODE_TTL.equals(lookupCacheMode);
+    this.lookupBatchSize = lookupBatchSize;
   }
 
   public LookupRuntimeProvider getLookupRuntimeProvider(
       ResolvedCatalogTable table, LookupContext context) {
     String[] keyNames = new String[context.getKeys().length];
+    int[] keyIndexes = new int[keyNames.length];
     ResolvedSchema schema = table.getResolvedSchema();
     Column[] columns = schema.getColumns().stream()
         .filter(Column::isPhysical).toArray(Column[]::new);
@@ -49,9 +70,25 @@ public class LookupTableSourceHelper {
       Preconditions.checkArgument(
           innerKeyArr.length == 1, "JDBC only support non-nested look up keys");
       keyNames[i] = columns[innerKeyArr[0]].getName();
+      keyIndexes[i] = innerKeyArr[0];
     }
     final RowType rowType = (RowType) schema.toSourceRowDataType().getLogicalType();
 
+    if (asyncLookup) {
+      return AsyncTableFunctionProvider.of(
+          new TiDBAsyncLookupFunction(
+              properties,
+              lookupOptions,
+              lookupCacheMode,
+              lookupCacheReloadInterval,
+              lookupBatchSize,
+              Arrays.stream(columns).map(Column::getName).toArray(String[]::new),
+              Arrays.stream(columns).map(Column::getDataType).toArray(
+                  org.apache.flink.table.types.DataType[]::new),
+              keyIndexes,
+              rowType));
+    }
+
     return TableFunctionProvider.of(
         new JdbcRowDataLookupFunction(
             JdbcUtils.getJdbcOptions(properties),
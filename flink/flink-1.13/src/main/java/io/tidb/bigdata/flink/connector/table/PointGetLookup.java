@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.table;
+
+import static io.tidb.bigdata.flink.connector.source.TiDBSchemaAdapter.getObjectWithDataType;
+import static io.tidb.bigdata.flink.connector.source.TiDBSchemaAdapter.toRowDataType;
+
+import com.google.common.collect.ImmutableSet;
+import io.tidb.bigdata.tidb.ClientSession;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalTypeRoot;
+import org.tikv.common.Snapshot;
+import org.tikv.common.meta.SchemaState;
+import org.tikv.common.meta.TiColumnInfo;
+import org.tikv.common.meta.TiIndexColumn;
+import org.tikv.common.meta.TiIndexInfo;
+import org.tikv.common.meta.TiTableInfo;
+import org.tikv.common.meta.TiTimestamp;
+import org.tikv.common.row.Row;
+import org.tikv.common.types.IntegerType;
+
+/**
+ * Resolves lookup keys with TiKV batch point gets, either directly when the keys are the int
+ * handle of the table, or through a unique index which only consists of integer columns.
+ */
+final class PointGetLookup implements BatchLookup {
+
+  private static final Set<LogicalTypeRoot> INTEGER_TYPES = ImmutableSet.of(
+      LogicalTypeRoot.TINYINT,
+      LogicalTypeRoot.SMALLINT,
+      LogicalTypeRoot.INTEGER,
+      LogicalTypeRoot.BIGINT
+  );
+
+  private final ClientSession session;
+  private final TiTableInfo table;
+  @Nullable
+  private final TiIndexInfo index;
+  // position of every index column in the lookup key
+  private final int[] indexKeyPositions;
+  // position of every flink field in the TiDB row
+  private final int[] columnIndexes;
+  private final DataType[] fieldTypes;
+  private final DateTimeFormatter[] formatters;
+
+  private PointGetLookup(ClientSession session, TiTableInfo table, @Nullable TiIndexInfo index,
+      int[] indexKeyPositions, String[] fieldNames, DataType[] fieldTypes,
+      DateTimeFormatter[] formatters) {
+    this.session = session;
+    this.table = table;
+    this.index = index;
+    this.indexKeyPositions = indexKeyPositions;
+    this.fieldTypes = fieldTypes;
+    this.formatters = formatters;
+    List<TiColumnInfo> columns = table.getColumns();
+    Map<String, Integer> columnIndexByName = new HashMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      columnIndexByName.put(columns.get(i).getName().toLowerCase(), i);
+    }
+    this.columnIndexes = Arrays.stream(fieldNames)
+        .mapToInt(name -> columnIndexByName.get(name.toLowerCase())).toArray();
+  }
+
+  /**
+   * @return a point get lookup if the lookup keys identify rows by their int handle, either
+   *     directly or through a unique index
+   */
+  static Optional<PointGetLookup> create(ClientSession session, TiTableInfo table,
+      String[] fieldNames, DataType[] fieldTypes, int[] keyIndexes,
+      DateTimeFormatter[] formatters) {
+    // rows of partitioned tables are stored under the ids of the partitions
+    if (table.isPartitionEnabled()) {
+      return Optional.empty();
+    }
+    String[] keyNames = new String[keyIndexes.length];
+    for (int i = 0; i < keyIndexes.length; i++) {
+      if (!INTEGER_TYPES.contains(fieldTypes[keyIndexes[i]].getLogicalType().getTypeRoot())) {
+        return Optional.empty();
+      }
+      keyNames[i] = fieldNames[keyIndexes[i]];
+    }
+    if (table.isPkHandle() && keyNames.length == 1
+        && table.getPKIsHandleColumn().getName().equalsIgnoreCase(keyNames[0])) {
+      return Optional.of(new PointGetLookup(session, table, null, new int[0], fieldNames,
+          fieldTypes, formatters));
+    }
+    // a primary key which is not the int handle might be a clustered index
+    if (!table.isPkHandle() && table.hasPrimaryKey()) {
+      return Optional.empty();
+    }
+    for (TiIndexInfo index : table.getIndices()) {
+      Optional<int[]> positions = getIndexKeyPositions(table, index, keyNames);
+      if (positions.isPresent()) {
+        return Optional.of(new PointGetLookup(session, table, index, positions.get(), fieldNames,
+            fieldTypes, formatters));
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<int[]> getIndexKeyPositions(TiTableInfo table, TiIndexInfo index,
+      String[] keyNames) {
+    List<TiIndexColumn> indexColumns = index.getIndexColumns();
+    if (!index.isUnique() || index.getSchemaState() != SchemaState.StatePublic
+        || indexColumns.size() != keyNames.length) {
+      return Optional.empty();
+    }
+    int[] positions = new int[indexColumns.size()];
+    for (int i = 0; i < positions.length; i++) {
+      TiIndexColumn indexColumn = indexColumns.get(i);
+      if (indexColumn.isPrefixIndex()
+          || !(table.getColumn(indexColumn.getOffset()).getType() instanceof IntegerType)) {
+        return Optional.empty();
+      }
+      positions[i] = -1;
+      for (int k = 0; k < keyNames.length; k++) {
+        if (indexColumn.matchName(keyNames[k])) {
+          positions[i] = k;
+        }
+      }
+      if (positions[i] < 0) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(positions);
+  }
+
+  @Override
+  public Map<RowData, List<RowData>> lookup(List<GenericRowData> keys, TiTimestamp timestamp) {
+    List<GenericRowData> validKeys = new ArrayList<>(keys.size());
+    for (GenericRowData key : keys) {
+      // null never equals to anything
+      if (!hasNullField(key)) {
+        validKeys.add(key);
+      }
+    }
+    Snapshot snapshot = session.createSnapshot(timestamp);
+    List<Long> handles;
+    if (index == null) {
+      handles = new ArrayList<>(validKeys.size());
+      for (GenericRowData key : validKeys) {
+        handles.add(((Number) key.getField(0)).longValue());
+      }
+    } else {
+      List<Object[]> indexValues = new ArrayList<>(validKeys.size());
+      for (GenericRowData key : validKeys) {
+        Object[] values = new Object[indexKeyPositions.length];
+        for (int i = 0; i < values.length; i++) {
+          // integer columns are encoded from long values
+          values[i] = ((Number) key.getField(indexKeyPositions[i])).longValue();
+        }
+        indexValues.add(values);
+      }
+      handles = session.batchGetHandles(snapshot, table, index, indexValues);
+    }
+
+    return matchByPosition(validKeys, handles, found -> {
+      List<RowData> rows = new ArrayList<>(found.size());
+      for (Row row : session.batchGetRows(snapshot, table, found)) {
+        rows.add(row == null ? null : toRowData(row));
+      }
+      return rows;
+    });
+  }
+
+  /**
+   * Match the handles of the keys, and the rows read by those handles, back to the keys by their
+   * positions, so keys never have to equal the values of the key columns of their rows.
+   *
+   * @param handles handle of every key, null if the key does not exist
+   * @param rowReader reads the row of every handle, null if the row does not exist
+   */
+  static Map<RowData, List<RowData>> matchByPosition(List<GenericRowData> keys,
+      List<Long> handles, Function<List<Long>, List<RowData>> rowReader) {
+    List<GenericRowData> foundKeys = new ArrayList<>(handles.size());
+    List<Long> foundHandles = new ArrayList<>(handles.size());
+    for (int i = 0; i < handles.size(); i++) {
+      if (handles.get(i) != null) {
+        foundKeys.add(keys.get(i));
+        foundHandles.add(handles.get(i));
+      }
+    }
+    List<RowData> rows = rowReader.apply(foundHandles);
+    Map<RowData, List<RowData>> result = new HashMap<>();
+    for (int i = 0; i < rows.size(); i++) {
+      RowData row = rows.get(i);
+      if (row != null) {
+        result.put(foundKeys.get(i), Collections.singletonList(row));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isUniqueKey() {
+    return true;
+  }
+
+  private RowData toRowData(Row row) {
+    GenericRowData rowData = new GenericRowData(columnIndexes.length);
+    for (int i = 0; i < columnIndexes.length; i++) {
+      int columnIndex = columnIndexes[i];
+      org.tikv.common.types.DataType type = table.getColumn(columnIndex).getType();
+      rowData.setField(i, toRowDataType(getObjectWithDataType(row.get(columnIndex, type),
+          fieldTypes[i], type, formatters[i]).orElse(null)));
+    }
+    return rowData;
+  }
+
+  private static boolean hasNullField(RowData key) {
+    for (int i = 0; i < key.getArity(); i++) {
+      if (key.isNullAt(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
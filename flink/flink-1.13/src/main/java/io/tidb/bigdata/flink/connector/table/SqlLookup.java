@@ -0,0 +1,253 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import io.tidb.bigdata.tidb.ClientSession;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.apache.flink.connector.jdbc.dialect.JdbcDialect;
+import org.apache.flink.connector.jdbc.internal.converter.JdbcRowConverter;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.RowData.FieldGetter;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.tikv.common.meta.TiTimestamp;
+
+/**
+ * Resolves a batch of lookup keys with a single {@code SELECT ... WHERE key IN (...)} query, at
+ * the snapshot of the requested timestamp.
+ *
+ * <p>Rows are matched back to their keys by the values of their key columns, compared the way
+ * their collations compare them, which may differ from plain equality under PAD SPACE
+ * collations. Keys of collations the client can not reproduce, such as case insensitive ones, are
+ * matched by TiDB instead: every row comes with the positions of the keys it matches, evaluated
+ * as {@code key = ?} for every key, which is quadratic in the size of the batch.
+ */
+final class SqlLookup implements BatchLookup {
+
+  // max number of parameters of a prepared statement in the mysql protocol
+  private static final int MAX_PARAMETERS = 65535;
+
+  private final ClientSession session;
+  private final String columns;
+  private final String table;
+  private final String keyColumns;
+  private final String keyPlaceholder;
+  private final int fieldCount;
+  private final JdbcRowConverter rowConverter;
+  private final LogicalType[] keyTypes;
+  private final FieldGetter[] keyGetters;
+  private final KeyCollation[] keyCollations;
+  private final boolean matchOnClient;
+  private final int maxBatchSize;
+
+  SqlLookup(ClientSession session, JdbcDialect dialect, String databaseName, String tableName,
+      String[] fieldNames, RowType rowType, int[] keyIndexes, KeyCollation[] keyCollations) {
+    this.session = session;
+    this.rowConverter = dialect.getRowConverter(rowType);
+    this.keyTypes = new LogicalType[keyIndexes.length];
+    this.keyGetters = new FieldGetter[keyIndexes.length];
+    this.fieldCount = fieldNames.length;
+    String[] keyNames = new String[keyIndexes.length];
+    for (int i = 0; i < keyIndexes.length; i++) {
+      keyTypes[i] = rowType.getTypeAt(keyIndexes[i]);
+      keyGetters[i] = RowData.createFieldGetter(keyTypes[i], keyIndexes[i]);
+      keyNames[i] = dialect.quoteIdentifier(fieldNames[keyIndexes[i]]);
+    }
+    this.keyCollations = keyCollations;
+    this.matchOnClient = KeyCollation.isComparable(keyCollations);
+    // keys are bound twice if they are matched by TiDB
+    this.maxBatchSize = MAX_PARAMETERS / (keyIndexes.length * (matchOnClient ? 1 : 2));
+    this.columns = Arrays.stream(fieldNames).map(dialect::quoteIdentifier)
+        .collect(Collectors.joining(", "));
+    this.table = dialect.quoteIdentifier(databaseName) + "." + dialect.quoteIdentifier(tableName);
+    String keyColumns = String.join(", ", keyNames);
+    String placeholder = String.join(", ", Collections.nCopies(keyNames.length, "?"));
+    if (keyNames.length > 1) {
+      keyColumns = "(" + keyColumns + ")";
+      placeholder = "(" + placeholder + ")";
+    }
+    this.keyColumns = keyColumns;
+    this.keyPlaceholder = placeholder;
+  }
+
+  /**
+   * @return the max number of keys looked up by one query, limited by the number of parameters
+   */
+  int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * @return the query of the given number of keys. If keys are matched by TiDB, it takes the keys
+   *     twice as parameters, first to match the rows and then to select them.
+   */
+  String getSql(int keyCount) {
+    StringBuilder sql = new StringBuilder("SELECT ").append(columns);
+    if (!matchOnClient) {
+      sql.append(", CONCAT_WS(','");
+      for (int i = 0; i < keyCount; i++) {
+        sql.append(", IF(").append(keyColumns).append(" = ").append(keyPlaceholder)
+            .append(", ").append(i).append(", NULL)");
+      }
+      sql.append(")");
+    }
+    sql.append(" FROM ").append(table).append(" WHERE ").append(keyColumns).append(" IN (");
+    for (int i = 0; i < keyCount; i++) {
+      sql.append(i == 0 ? "" : ", ").append(keyPlaceholder);
+    }
+    return sql.append(")").toString();
+  }
+
+  /**
+   * @return the keys by their values normalized by the collations, several keys may be equal
+   */
+  Map<GenericRowData, List<GenericRowData>> groupByNormalized(List<GenericRowData> keys) {
+    Map<GenericRowData, List<GenericRowData>> keysByNormalized = new HashMap<>();
+    for (GenericRowData key : keys) {
+      keysByNormalized.computeIfAbsent(KeyCollation.normalize(keyCollations, key),
+          k -> new ArrayList<>()).add(key);
+    }
+    return keysByNormalized;
+  }
+
+  /**
+   * Add a row to the rows of every key equal to its key columns by the collations.
+   */
+  void addMatches(Map<GenericRowData, List<GenericRowData>> keysByNormalized, RowData row,
+      Map<RowData, List<RowData>> result) {
+    GenericRowData key = new GenericRowData(keyGetters.length);
+    for (int i = 0; i < keyGetters.length; i++) {
+      key.setField(i, keyCollations[i].normalize(keyGetters[i].getFieldOrNull(row)));
+    }
+    for (GenericRowData match : keysByNormalized.getOrDefault(key, Collections.emptyList())) {
+      result.computeIfAbsent(match, k -> new ArrayList<>()).add(row);
+    }
+  }
+
+  /**
+   * Add a row to the rows of every key it matches.
+   *
+   * @param matches comma separated positions of the keys which the row matches
+   */
+  static void addMatches(List<GenericRowData> keys, RowData row, @Nullable String matches,
+      Map<RowData, List<RowData>> result) {
+    if (matches == null || matches.isEmpty()) {
+      return;
+    }
+    for (String position : matches.split(",")) {
+      result.computeIfAbsent(keys.get(Integer.parseInt(position)), k -> new ArrayList<>())
+          .add(row);
+    }
+  }
+
+  @Override
+  public Map<RowData, List<RowData>> lookup(List<GenericRowData> keys, TiTimestamp timestamp)
+      throws SQLException {
+    Map<RowData, List<RowData>> result = new HashMap<>();
+    if (keys.isEmpty()) {
+      return result;
+    }
+    try (Connection connection = session.getJdbcConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("SET @@tidb_snapshot = " + timestamp.getVersion());
+      try {
+        for (int from = 0; from < keys.size(); from += maxBatchSize) {
+          lookup(connection, keys.subList(from, Math.min(keys.size(), from + maxBatchSize)),
+              result);
+        }
+      } finally {
+        // the connection is pooled
+        statement.execute("SET @@tidb_snapshot = ''");
+      }
+    }
+    return result;
+  }
+
+  private void lookup(Connection connection, List<GenericRowData> keys,
+      Map<RowData, List<RowData>> result) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(getSql(keys.size()))) {
+      int parameterIndex = 1;
+      for (int round = matchOnClient ? 1 : 0; round < 2; round++) {
+        for (GenericRowData key : keys) {
+          for (int i = 0; i < keyTypes.length; i++) {
+            statement.setObject(parameterIndex++, toExternal(key.getField(i), keyTypes[i]));
+          }
+        }
+      }
+      Map<GenericRowData, List<GenericRowData>> keysByNormalized =
+          matchOnClient ? groupByNormalized(keys) : null;
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          RowData row = rowConverter.toInternal(resultSet);
+          if (matchOnClient) {
+            addMatches(keysByNormalized, row, result);
+          } else {
+            addMatches(keys, row, resultSet.getString(fieldCount + 1), result);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean isUniqueKey() {
+    return false;
+  }
+
+  private static Object toExternal(Object value, LogicalType type) {
+    if (value == null) {
+      return null;
+    }
+    switch (type.getTypeRoot()) {
+      case CHAR:
+      case VARCHAR:
+        return ((StringData) value).toString();
+      case DECIMAL:
+        return ((DecimalData) value).toBigDecimal();
+      case DATE:
+        return Date.valueOf(LocalDate.ofEpochDay((int) value));
+      case TIME_WITHOUT_TIME_ZONE:
+        return Time.valueOf(LocalTime.ofNanoOfDay((int) value * 1_000_000L));
+      case TIMESTAMP_WITHOUT_TIME_ZONE:
+      case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+        return ((TimestampData) value).toTimestamp();
+      default:
+        return value;
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.DATABASE_NAME;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.TABLE_NAME;
+import static io.tidb.bigdata.flink.connector.table.TiDBDynamicTableFactory.LOOKUP_CACHE_MODE_ALL;
+import static io.tidb.bigdata.flink.connector.table.TiDBDynamicTableFactory.LOOKUP_CACHE_MODE_CDC;
+
+import io.tidb.bigdata.flink.tidb.TypeUtils;
+import io.tidb.bigdata.tidb.ClientConfig;
+import io.tidb.bigdata.tidb.ClientSession;
+import java.time.Duration;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.connector.jdbc.internal.options.JdbcLookupOptions;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.functions.AsyncTableFunction;
+import org.apache.flink.table.functions.FunctionContext;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.RowType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tikv.common.meta.TiTableInfo;
+import org.tikv.common.meta.TiTimestamp;
+
+/**
+ * Looks up rows asynchronously. Pending keys are collected by a single dispatcher thread, which
+ * resolves up to {@code maxBatchSize} distinct keys with one round trip to TiDB.
+ */
+public class TiDBAsyncLookupFunction extends AsyncTableFunction<RowData> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TiDBAsyncLookupFunction.class);
+
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final Map<String, String> properties;
+  private final String cacheMode;
+  private final Duration cacheReloadInterval;
+  private final long cacheMaxSize;
+  private final long cacheExpireMs;
+  private final int maxRetryTimes;
+  private final int maxBatchSize;
+  private final String[] fieldNames;
+  private final DataType[] fieldTypes;
+  private final int[] keyIndexes;
+  private final RowType rowType;
+
+  private transient ClientSession session;
+  private transient BatchLookup lookup;
+  private transient LookupCache cache;
+  private transient BlockingQueue<Request> requests;
+  private transient Thread dispatcher;
+  private transient volatile boolean running;
+
+  public TiDBAsyncLookupFunction(Map<String, String> properties, JdbcLookupOptions lookupOptions,
+      String cacheMode, Duration cacheReloadInterval, int maxBatchSize, String[] fieldNames,
+      DataType[] fieldTypes, int[] keyIndexes, RowType rowType) {
+    this.properties = new HashMap<>(properties);
+    this.cacheMode = cacheMode;
+    this.cacheReloadInterval = cacheReloadInterval;
+    this.cacheMaxSize = lookupOptions.getCacheMaxSize();
+    this.cacheExpireMs = lookupOptions.getCacheExpireMs();
+    this.maxRetryTimes = lookupOptions.getMaxRetryTimes();
+    this.maxBatchSize = maxBatchSize;
+    this.fieldNames = fieldNames;
+    this.fieldTypes = fieldTypes;
+    this.keyIndexes = keyIndexes;
+    this.rowType = rowType;
+  }
+
+  @Override
+  public void open(FunctionContext context) throws Exception {
+    super.open(context);
+    this.session = ClientSession.create(new ClientConfig(properties));
+    String databaseName = properties.get(DATABASE_NAME.key());
+    String tableName = properties.get(TABLE_NAME.key());
+    TiTableInfo table = session.getTableMust(databaseName, tableName);
+    DateTimeFormatter[] formatters =
+        TypeUtils.extractDateTimeFormatter(fieldNames, properties, true);
+    KeyCollation[] keyCollations = KeyCollation.of(table, fieldNames, rowType, keyIndexes);
+    this.lookup = PointGetLookup.create(session, table, fieldNames, fieldTypes, keyIndexes,
+        formatters)
+        .map(BatchLookup.class::cast)
+        .orElseGet(() -> new SqlLookup(session,
+            JdbcUtils.getJdbcOptions(properties).getDialect(), databaseName, tableName,
+            fieldNames, rowType, keyIndexes, keyCollations));
+    LOG.info("Look up {}.{} asynchronously with {}", databaseName, tableName,
+        lookup.getClass().getSimpleName());
+    this.cache = createCache(databaseName, tableName, formatters, keyCollations);
+    this.requests = new LinkedBlockingQueue<>();
+    this.running = true;
+    this.dispatcher = new Thread(this::dispatch, "tidb-lookup-dispatcher");
+    this.dispatcher.setDaemon(true);
+    this.dispatcher.start();
+  }
+
+  private LookupCache createCache(String databaseName, String tableName,
+      DateTimeFormatter[] formatters, KeyCollation[] keyCollations) throws Exception {
+    if (LOOKUP_CACHE_MODE_ALL.equals(cacheMode)) {
+      return AllLookupCache.create(session, databaseName, tableName, fieldNames, fieldTypes,
+          keyIndexes, keyCollations, formatters, cacheReloadInterval);
+    }
+    if (LOOKUP_CACHE_MODE_CDC.equals(cacheMode)) {
+      return CDCLookupCache.create(properties, fieldNames, rowType, keyIndexes,
+          lookup.isUniqueKey(), cacheMaxSize);
+    }
+    return cacheMaxSize == -1 || cacheExpireMs == -1
+        ? null : new TtlLookupCache(cacheMaxSize, cacheExpireMs);
+  }
+
+  /**
+   * This is a lookup method which is called by Flink framework in runtime.
+   *
+   * @param future the future to complete with the matching rows
+   * @param keys lookup keys
+   */
+  public void eval(CompletableFuture<Collection<RowData>> future, Object... keys) {
+    GenericRowData keyRow = GenericRowData.of(keys);
+    if (cache != null) {
+      List<RowData> cachedRows = cache.getIfPresent(keyRow);
+      if (cachedRows != null) {
+        future.complete(cachedRows);
+        return;
+      }
+    }
+    requests.add(new Request(keyRow, future));
+  }
+
+  private void dispatch() {
+    List<Request> batch = new ArrayList<>(maxBatchSize);
+    while (running) {
+      try {
+        Request first = requests.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        requests.drainTo(batch, maxBatchSize - 1);
+        lookup(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void lookup(List<Request> batch) throws InterruptedException {
+    // the same key is only looked up once per batch
+    Map<GenericRowData, List<CompletableFuture<Collection<RowData>>>> futures =
+        new LinkedHashMap<>();
+    for (Request request : batch) {
+      futures.computeIfAbsent(request.key, k -> new ArrayList<>()).add(request.future);
+    }
+    List<GenericRowData> keys = new ArrayList<>(futures.keySet());
+    for (int retry = 0; retry <= maxRetryTimes; retry++) {
+      try {
+        TiTimestamp timestamp = session.getTimestamp();
+        Map<RowData, List<RowData>> result = lookup.lookup(keys, timestamp);
+        for (GenericRowData key : keys) {
+          List<RowData> rows = result.getOrDefault(key, Collections.emptyList());
+          if (cache != null) {
+            cache.put(key, rows, timestamp.getVersion());
+          }
+          futures.get(key).forEach(future -> future.complete(rows));
+        }
+        return;
+      } catch (Exception e) {
+        LOG.error(String.format("TiDB lookup error, retry times = %d", retry), e);
+        if (retry >= maxRetryTimes) {
+          futures.values().forEach(list -> list.forEach(f -> f.completeExceptionally(
+              new RuntimeException("Execution of TiDB lookup failed.", e))));
+          return;
+        }
+        Thread.sleep(1000L * retry);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    running = false;
+    if (dispatcher != null) {
+      dispatcher.interrupt();
+      dispatcher.join();
+      dispatcher = null;
+    }
+    if (requests != null) {
+      Request request;
+      while ((request = requests.poll()) != null) {
+        request.future.completeExceptionally(
+            new IllegalStateException("TiDB lookup function is closed"));
+      }
+    }
+    if (cache != null) {
+      cache.close();
+      cache = null;
+    }
+    if (session != null) {
+      session.close();
+      session = null;
+    }
+    super.close();
+  }
+
+  private static final class Request {
+
+    private final GenericRowData key;
+    private final CompletableFuture<Collection<RowData>> future;
+
+    private Request(GenericRowData key, CompletableFuture<Collection<RowData>> future) {
+      this.key = key;
+      this.future = future;
+    }
+  }
+}
@@ -17,24 +17,35 @@
 package io.tidb.bigdata.flink.connector.table;
 
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.DATABASE_NAME;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CHANGELOG_MODE;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CHANGELOG_MODE_UPSERT;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_CODEC_AVRO;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_SOURCE;
+import static io.tidb.bigdata.flink.connector.source.TiDBOptions.STREAMING_SOURCE_KAFKA;
 import static io.tidb.bigdata.flink.connector.source.TiDBOptions.WRITE_MODE;
+import static io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory.SINK_SEMANTIC;
+import static io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory.SINK_TRANSACTION_MAX_SIZE;
+import static io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory.SINK_TRANSACTION_TABLE;
+import static io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory.isExactlyOnce;
 
 import com.google.common.collect.ImmutableSet;
 import io.tidb.bigdata.flink.connector.source.TiDBOptions;
+import io.tidb.bigdata.flink.connector.source.TiDBSourceBuilder;
+import io.tidb.bigdata.flink.tidb.TiDBDynamicTableSink;
 import io.tidb.bigdata.tidb.ClientConfig;
 import io.tidb.bigdata.tidb.ClientSession;
 import io.tidb.bigdata.tidb.TiDBWriteMode;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.flink.configuration.ConfigOption;
 import org.apache.flink.configuration.ConfigOptions;
+import org.apache.flink.configuration.PipelineOptions;
 import org.apache.flink.configuration.ReadableConfig;
-import org.apache.flink.connector.jdbc.JdbcExecutionOptions;
-import org.apache.flink.connector.jdbc.internal.options.JdbcDmlOptions;
 import org.apache.flink.connector.jdbc.internal.options.JdbcLookupOptions;
-import org.apache.flink.connector.jdbc.internal.options.JdbcOptions;
-import org.apache.flink.connector.jdbc.table.JdbcDynamicTableSink;
 import org.apache.flink.table.api.TableSchema;
 import org.apache.flink.table.connector.ChangelogMode;
 import org.apache.flink.table.connector.sink.DynamicTableSink;
@@ -42,6 +53,7 @@ import org.apache.flink.table.connector.source.DynamicTableSource;
 import org.apache.flink.table.factories.DynamicTableSinkFactory;
 import org.apache.flink.table.factories.DynamicTableSourceFactory;
 import org.apache.flink.table.factories.FactoryUtil;
+import org.apache.flink.util.Preconditions;
 
 public class TiDBDynamicTableFactory implements DynamicTableSourceFactory, DynamicTableSinkFactory {
   public static final String IDENTIFIER = "tidb";
@@ -87,6 +99,39 @@ public class TiDBDynamicTableFactory implements DynamicTableSourceFactory, Dynam
       .intType()
       .defaultValue(3)
       .withDescription("the max retry times if lookup database failed.");
+  public static final String LOOKUP_CACHE_MODE_TTL = "ttl";
+  public static final String LOOKUP_CACHE_MODE_CDC = "cdc";
+  public static final String LOOKUP_CACHE_MODE_ALL = "all";
+  public static final Set<String> VALID_LOOKUP_CACHE_MODES =
+      ImmutableSet.of(LOOKUP_CACHE_MODE_TTL, LOOKUP_CACHE_MODE_CDC, LOOKUP_CACHE_MODE_ALL);
+  public static final ConfigOption<String> LOOKUP_CACHE_MODE = ConfigOptions
+      .key("lookup.cache.mode")
+      .stringType()
+      .defaultValue(LOOKUP_CACHE_MODE_TTL)
+      .withDescription("how cached rows are kept up to date. \"ttl\" expires them after "
+          + "\"cache.ttl\". \"cdc\" keeps them until they change by following the TiCDC "
+          + "changelogs of \"tidb.streaming.source\". \"all\" loads the whole table and "
+          + "reloads it every \"lookup.cache.reload-interval\", string keys of it have to be "
+          + "of binary or _bin collations. Both imply \"lookup.async\".");
+  public static final ConfigOption<Duration> LOOKUP_CACHE_RELOAD_INTERVAL = ConfigOptions
+      .key("lookup.cache.reload-interval")
+      .durationType()
+      .defaultValue(Duration.ofHours(1))
+      .withDescription("the interval between two loads of the whole table when "
+          + "\"lookup.cache.mode\" is \"all\". The default value is 1h.");
+  public static final ConfigOption<Boolean> LOOKUP_ASYNC = ConfigOptions
+      .key("lookup.async")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("whether to look up rows asynchronously in batches. Keys on the int "
+          + "handle or on an integer unique index are resolved with TiKV point gets, other keys "
+          + "with one IN query per batch. Disabled as default.");
+  public static final ConfigOption<Integer> LOOKUP_BATCH_SIZE = ConfigOptions
+      .key("lookup.batch-size")
+      .intType()
+      .defaultValue(64)
+      .withDescription("the max number of keys looked up together when \"lookup.async\" "
+          + "is enabled. The default value is 64.");
 
   @Override
   public String factoryIdentifier() {
@@ -102,13 +147,37 @@ public class TiDBDynamicTableFactory implements DynamicTableSourceFactory, Dynam
   public DynamicTableSource createDynamicTableSource(Context context) {
     FactoryUtil.TableFactoryHelper helper = FactoryUtil.createTableFactoryHelper(this, context);
     ReadableConfig config = helper.getOptions();
-    return new TiDBDynamicTableSource(context.getCatalogTable(),
-        config.getOptional(STREAMING_SOURCE).isPresent()
-            ? ChangelogMode.all() : ChangelogMode.insertOnly(),
+    String lookupCacheMode = config.get(LOOKUP_CACHE_MODE);
+    Preconditions.checkArgument(VALID_LOOKUP_CACHE_MODES.contains(lookupCacheMode),
+        "Invalid lookup cache mode: '%s'", lookupCacheMode);
+    Preconditions.checkArgument(!LOOKUP_CACHE_MODE_CDC.equals(lookupCacheMode)
+            || STREAMING_SOURCE_KAFKA.equals(config.get(STREAMING_SOURCE)),
+        "Lookup cache mode '%s' requires '%s' to be '%s'",
+        lookupCacheMode, STREAMING_SOURCE.key(), STREAMING_SOURCE_KAFKA);
+    Preconditions.checkArgument(!LOOKUP_CACHE_MODE_CDC.equals(lookupCacheMode)
+            || !STREAMING_CODEC_AVRO.equals(config.get(STREAMING_CODEC)),
+        "Lookup cache mode '%s' does not support streaming codec '%s'",
+        lookupCacheMode, STREAMING_CODEC_AVRO);
+    TiDBSourceBuilder.validateStreamingCodec(context.getCatalogTable().getOptions());
+    ChangelogMode changelogMode = ChangelogMode.insertOnly();
+    if (config.getOptional(STREAMING_SOURCE).isPresent()) {
+      changelogMode = ChangelogMode.all();
+      if (STREAMING_CHANGELOG_MODE_UPSERT.equals(config.get(STREAMING_CHANGELOG_MODE))) {
+        // fail early without the primary key
+        TiDBSourceBuilder.getUpsertKey(context.getCatalogTable());
+        changelogMode = ChangelogMode.upsert();
+      }
+    }
+    return new TiDBDynamicTableSource(context.getCatalogTable(), changelogMode,
         new JdbcLookupOptions(
             config.get(LOOKUP_CACHE_MAX_ROWS),
             config.get(LOOKUP_CACHE_TTL).toMillis(),
-            config.get(LOOKUP_MAX_RETRIES)));
+            config.get(LOOKUP_MAX_RETRIES)),
+        lookupCacheMode,
+        config.get(LOOKUP_CACHE_RELOAD_INTERVAL),
+        config.get(LOOKUP_ASYNC),
+        config.get(LOOKUP_BATCH_SIZE),
+        context.getConfiguration().get(PipelineOptions.OBJECT_REUSE));
   }
 
   @Override
@@ -116,7 +185,10 @@ public class TiDBDynamicTableFactory implements DynamicTableSourceFactory, Dynam
     return TiDBOptions.withMoreOptionalOptions(
         SINK_BUFFER_FLUSH_INTERVAL,
         SINK_BUFFER_FLUSH_MAX_ROWS,
-        SINK_MAX_RETRIES);
+        SINK_MAX_RETRIES,
+        SINK_SEMANTIC,
+        SINK_TRANSACTION_TABLE,
+        SINK_TRANSACTION_MAX_SIZE);
   }
 
   @Override
@@ -126,23 +198,16 @@ public class TiDBDynamicTableFactory implements DynamicTableSourceFactory, Dynam
     ReadableConfig config = helper.getOptions();
     TableSchema schema = context.getCatalogTable().getSchema();
     String databaseName = config.get(DATABASE_NAME);
-    // jdbc options
-    JdbcOptions jdbcOptions = JdbcUtils.getJdbcOptions(context.getCatalogTable().toProperties());
-    // execution options
-    JdbcExecutionOptions jdbcExecutionOptions = JdbcExecutionOptions.builder()
-        .withBatchSize(config.get(SINK_BUFFER_FLUSH_MAX_ROWS))
-        .withBatchIntervalMs(config.get(SINK_BUFFER_FLUSH_INTERVAL).toMillis())
-        .withMaxRetries(config.get(SINK_MAX_RETRIES))
-        .build();
-    // dml options
-    JdbcDmlOptions jdbcDmlOptions = JdbcDmlOptions.builder()
-        .withTableName(jdbcOptions.getTableName())
-        .withDialect(jdbcOptions.getDialect())
-        .withFieldNames(schema.getFieldNames())
-        .withKeyFields(getKeyFields(context, config, databaseName, jdbcOptions.getTableName()))
-        .build();
-
-    return new JdbcDynamicTableSink(jdbcOptions, jdbcExecutionOptions, jdbcDmlOptions, schema);
+    Map<String, String> properties = new HashMap<>(context.getCatalogTable().toProperties());
+    String tableName = JdbcUtils.getJdbcOptions(properties).getTableName();
+    return new TiDBDynamicTableSink(properties, databaseName, tableName, schema,
+        getKeyFields(context, config, databaseName, tableName),
+        config.get(SINK_BUFFER_FLUSH_MAX_ROWS),
+        config.get(SINK_BUFFER_FLUSH_INTERVAL).toMillis(),
+        config.get(SINK_MAX_RETRIES),
+        isExactlyOnce(config),
+        config.get(SINK_TRANSACTION_TABLE),
+        config.get(SINK_TRANSACTION_MAX_SIZE).getBytes());
   }
 
   private String[] getKeyFields(Context context, ReadableConfig config, String databaseName,
@@ -153,11 +218,10 @@ public class TiDBDynamicTableFactory implements DynamicTableSourceFactory, Dynam
     if (writeMode == TiDBWriteMode.UPSERT) {
       try (ClientSession clientSession = ClientSession.createWithSingleConnection(
           new ClientConfig(context.getCatalogTable().toProperties()))) {
-        Set<String> set = ImmutableSet.<String>builder()
-            .addAll(clientSession.getUniqueKeyColumns(databaseName, tableName))
-            .addAll(clientSession.getPrimaryKeyColumns(databaseName, tableName))
-            .build();
-        keyFields = set.size() == 0 ? null : set.toArray(new String[0]);
+        // a single key, so the changes buffered by the sink could be folded by it, see
+        // UpsertSinkBuffer
+        List<String> columns = clientSession.getRowKeyColumns(databaseName, tableName);
+        keyFields = columns.isEmpty() ? null : columns.toArray(new String[0]);
       } catch (Exception e) {
         throw new IllegalStateException(e);
       }
@@ -17,37 +17,69 @@
 package io.tidb.bigdata.flink.connector.table;
 
 import io.tidb.bigdata.flink.connector.source.TiDBSourceBuilder;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
+import org.apache.flink.api.connector.source.Boundedness;
+import org.apache.flink.api.connector.source.Source;
 import org.apache.flink.connector.jdbc.internal.options.JdbcLookupOptions;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.table.catalog.ResolvedCatalogTable;
 import org.apache.flink.table.connector.ChangelogMode;
+import org.apache.flink.table.connector.source.DataStreamScanProvider;
 import org.apache.flink.table.connector.source.DynamicTableSource;
 import org.apache.flink.table.connector.source.LookupTableSource;
 import org.apache.flink.table.connector.source.ScanTableSource;
 import org.apache.flink.table.connector.source.SourceProvider;
 import org.apache.flink.table.connector.source.abilities.SupportsFilterPushDown;
 import org.apache.flink.table.connector.source.abilities.SupportsProjectionPushDown;
+import org.apache.flink.table.connector.source.abilities.SupportsWatermarkPushDown;
+import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.expressions.ResolvedExpression;
 
 public class TiDBDynamicTableSource implements ScanTableSource, LookupTableSource,
-    SupportsProjectionPushDown, SupportsFilterPushDown {
+    SupportsProjectionPushDown, SupportsFilterPushDown, SupportsWatermarkPushDown {
   private final ResolvedCatalogTable table;
   private final ChangelogMode changelogMode;
   private final LookupTableSourceHelper lookupTableSourceHelper;
+  private final boolean objectReuse;
   private FilterPushDownHelper filterPushDownHelper;
   private int[] projectedFields;
+  private WatermarkStrategy<RowData> watermarkStrategy;
 
   public TiDBDynamicTableSource(ResolvedCatalogTable table,
       ChangelogMode changelogMode, JdbcLookupOptions lookupOptions) {
-    this(table, changelogMode, new LookupTableSourceHelper(lookupOptions));
+    this(table, changelogMode, new LookupTableSourceHelper(lookupOptions), false);
+  }
+
+  public TiDBDynamicTableSource(ResolvedCatalogTable table,
+      ChangelogMode changelogMode, JdbcLookupOptions lookupOptions,
+      String lookupCacheMode, Duration lookupCacheReloadInterval, boolean asyncLookup,
+      int lookupBatchSize) {
+    this(table, changelogMode, lookupOptions, lookupCacheMode, lookupCacheReloadInterval,
+        asyncLookup, lookupBatchSize, false);
+  }
+
+  /**
+   * @param objectReuse whether object reuse is enabled for the job, i.e. 'pipeline.object-reuse'
+   */
+  public TiDBDynamicTableSource(ResolvedCatalogTable table,
+      ChangelogMode changelogMode, JdbcLookupOptions lookupOptions,
+      String lookupCacheMode, Duration lookupCacheReloadInterval, boolean asyncLookup,
+      int lookupBatchSize, boolean objectReuse) {
+    this(table, changelogMode, new LookupTableSourceHelper(lookupOptions, lookupCacheMode,
+        lookupCacheReloadInterval, asyncLookup, lookupBatchSize), objectReuse);
   }
 
   private TiDBDynamicTableSource(ResolvedCatalogTable table,
-      ChangelogMode changelogMode, LookupTableSourceHelper lookupTableSourceHelper) {
+      ChangelogMode changelogMode, LookupTableSourceHelper lookupTableSourceHelper,
+      boolean objectReuse) {
     this.table = table;
     this.changelogMode = changelogMode;
     this.lookupTableSourceHelper = lookupTableSourceHelper;
+    this.objectReuse = objectReuse;
     this.filterPushDownHelper = new FilterPushDownHelper(table);
   }
 
@@ -59,17 +91,33 @@ public class TiDBDynamicTableSource implements ScanTableSource, LookupTableSourc
   @Override
   public ScanRuntimeProvider getScanRuntimeProvider(ScanContext scanContext) {
     /* Disable metadata as it doesn't work with projection push down at this time */
-    return SourceProvider.of(
-        new TiDBSourceBuilder(table, scanContext::createTypeInformation, null, projectedFields)
-            .build());
+    Source<RowData, ?, ?> source =
+        new TiDBSourceBuilder(table, scanContext::createTypeInformation, null, projectedFields,
+            filterPushDownHelper.getPushedDownExpression()).objectReuse(objectReuse).build();
+    if (watermarkStrategy == null) {
+      return SourceProvider.of(source);
+    }
+    /* SourceProvider always reads without watermarks at this time */
+    return new DataStreamScanProvider() {
+      @Override
+      public DataStream<RowData> produceDataStream(StreamExecutionEnvironment env) {
+        return env.fromSource(source, watermarkStrategy, "TiDBSource");
+      }
+
+      @Override
+      public boolean isBounded() {
+        return source.getBoundedness() == Boundedness.BOUNDED;
+      }
+    };
   }
 
   @Override
   public DynamicTableSource copy() {
     TiDBDynamicTableSource otherSource =
-        new TiDBDynamicTableSource(table, changelogMode, lookupTableSourceHelper);
+        new TiDBDynamicTableSource(table, changelogMode, lookupTableSourceHelper, objectReuse);
     otherSource.projectedFields = this.projectedFields;
-    otherSource.filterPushDownHelper = this.filterPushDownHelper;
+    otherSource.filterPushDownHelper = this.filterPushDownHelper.copy();
+    otherSource.watermarkStrategy = this.watermarkStrategy;
     return otherSource;
   }
 
@@ -93,6 +141,11 @@ public class TiDBDynamicTableSource implements ScanTableSource, LookupTableSourc
     this.projectedFields = Arrays.stream(projectedFields).mapToInt(f -> f[0]).toArray();
   }
 
+  @Override
+  public void applyWatermark(WatermarkStrategy<RowData> watermarkStrategy) {
+    this.watermarkStrategy = watermarkStrategy;
+  }
+
   @Override
   public Result applyFilters(List<ResolvedExpression> filters) {
     return filterPushDownHelper.applyFilters(filters);
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.table.data.RowData;
+
+/**
+ * Lookup cache whose entries expire a fixed time after they are written.
+ */
+final class TtlLookupCache implements LookupCache {
+
+  private final Cache<RowData, List<RowData>> cache;
+
+  TtlLookupCache(long maxSize, long expireMs) {
+    this.cache = CacheBuilder.newBuilder()
+        .expireAfterWrite(expireMs, TimeUnit.MILLISECONDS)
+        .maximumSize(maxSize)
+        .build();
+  }
+
+  @Override
+  public List<RowData> getIfPresent(RowData key) {
+    return cache.getIfPresent(key);
+  }
+
+  @Override
+  public void put(RowData key, List<RowData> rows, long version) {
+    cache.put(key, rows);
+  }
+
+  @Override
+  public void close() {
+    cache.invalidateAll();
+  }
+}
@@ -19,11 +19,13 @@ package io.tidb.bigdata.flink.format.cdc;
 import io.tidb.bigdata.cdc.Codec;
 import io.tidb.bigdata.cdc.Event;
 import io.tidb.bigdata.cdc.Key.Type;
+import io.tidb.bigdata.cdc.KeyFilter;
 import io.tidb.bigdata.cdc.RowChangedValue;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.java.typeutils.ResultTypeQueryable;
@@ -36,71 +38,53 @@ public abstract class CDCDeserializationSchema
   private static final long serialVersionUID = 1L;
 
   /**
-   * Only read changelogs of some specific types.
+   * Only read changelogs of some specific types, from the specific schemas and tables, with commit
+   * ts equals or greater than the start ts. Values of the other changelogs are skipped by the codec
+   * without being decoded.
    */
-  @Nullable
-  private final Set<Type> eventTypes;
+  private final KeyFilter filter;
 
   /**
-   * Only read changelogs from the specific schemas.
+   * Flag indicating whether to ignore invalid fields/rows (default: throw an exception).
    */
-  @Nullable
-  private final Set<String> schemas;
+  private final boolean ignoreParseErrors;
 
   /**
-   * Only read changelogs from the specific tables.
+   * Adapter for CDC data model and Flink Schema
    */
-  @Nullable
-  private final Set<String> tables;
+  private final CDCSchemaAdapter schema;
 
-  /**
-   * Only read changelogs with commit ts equals or greater than this
-   */
-  private final long startTs;
+  private final Codec codec;
 
   /**
-   * Flag indicating whether to ignore invalid fields/rows (default: throw an exception).
+   * Number of workers converting the events of a message, 1 to convert them inline.
    */
-  private final boolean ignoreParseErrors;
+  private final int decodeParallelism;
 
   /**
-   * Adapter for CDC data model and Flink Schema
+   * Whether to emit resolved events as {@link ResolvedTsRowData} markers, which are turned into
+   * watermarks by the source, instead of rows of metadata.
    */
-  private final CDCSchemaAdapter schema;
+  private final boolean resolvedTsMarkers;
 
-  private final Codec codec;
+  private transient ParallelEventCollector parallelCollector;
 
   protected CDCDeserializationSchema(
-      final Codec codec,
+      final Function<KeyFilter, Codec> codecFactory,
       final CDCSchemaAdapter schema,
       @Nullable final Set<Type> eventTypes,
       @Nullable final Set<String> schemas,
       @Nullable final Set<String> tables,
       final long startTs,
-      final boolean ignoreParseErrors) {
+      final boolean ignoreParseErrors,
+      final int decodeParallelism,
+      final boolean resolvedTsMarkers) {
     this.schema = schema;
-    this.codec = codec;
-    this.eventTypes = eventTypes;
-    this.schemas = schemas;
-    this.tables = tables;
-    this.startTs = startTs;
+    this.filter = new KeyFilter(eventTypes, schemas, tables, startTs);
+    this.codec = codecFactory.apply(filter);
     this.ignoreParseErrors = ignoreParseErrors;
-  }
-
-  private boolean acceptEvent(Event event) {
-    if (event.getTs() < startTs) {
-      // skip not events that have ts older than specific
-      return false;
-    }
-    // skip not interested types
-    return eventTypes == null || eventTypes.contains(event.getType());
-  }
-
-  private boolean acceptSchemaAndTable(String schema, String table) {
-    if (schemas != null && !schemas.contains(schema)) {
-      return false;
-    }
-    return tables == null || tables.contains(table);
+    this.decodeParallelism = decodeParallelism;
+    this.resolvedTsMarkers = resolvedTsMarkers;
   }
 
   private void collectRowChanged(final Event event, final Collector<RowData> out) {
@@ -123,8 +107,15 @@ public abstract class CDCDeserializationSchema
           // All selected data remain the same, skip this event
           return;
         }
-        row = builder.updateBefore();
-        row2 = builder2.updateAfter();
+        if (!schema.isUpsert()) {
+          row = builder.updateBefore();
+          row2 = builder2.updateAfter();
+        } else if (schema.isKeyChanged(value.getOldValue(), value.getNewValue())) {
+          row = builder.delete();
+          row2 = builder2.updateAfter();
+        } else {
+          row = builder2.updateAfter();
+        }
         break;
       default:
         if (!ignoreParseErrors) {
@@ -142,24 +133,20 @@ public abstract class CDCDeserializationSchema
   }
 
   private void collectResolved(final Event event, final Collector<RowData> out) {
+    if (resolvedTsMarkers) {
+      out.collect(new ResolvedTsRowData(event.getTs()));
+      return;
+    }
     out.collect(schema.convert(event).insert());
   }
 
   // ------------------------------------------------------------------------------------------
+  // events are already filtered by the codec
   private void collectEvent(final Event event, final Collector<RowData> out) {
-    if (!acceptEvent(event)) {
-      return;
-    }
-    Type type = event.getType();
-    if (type == Type.RESOLVED) {
-      // Resolved event is always eligible even though they don't have schema and table specified
-      collectResolved(event, out);
-      return;
-    }
-    if (!acceptSchemaAndTable(event.getSchema(), event.getTable())) {
-      return;
-    }
-    switch (type) {
+    switch (event.getType()) {
+      case RESOLVED:
+        collectResolved(event, out);
+        break;
       case ROW_CHANGED:
         collectRowChanged(event, out);
         break;
@@ -173,7 +160,28 @@ public abstract class CDCDeserializationSchema
 
   public void deserialize(
       final byte[] key, final byte[] value, final Collector<RowData> out) throws IOException {
+    deserialize(key, value, null, out);
+  }
+
+  /**
+   * @param compactor compacts the row changed events until the next event which can't be
+   *     compacted with them, i.e. a resolved event, a DDL or an update without its old value, null
+   *     to emit every event right away. While compacting, resolved events are only emitted as
+   *     markers.
+   */
+  public void deserialize(final byte[] key, final byte[] value,
+      @Nullable final ChangeCompactor compactor, final Collector<RowData> out) throws IOException {
     try {
+      if (compactor != null) {
+        for (final Event event : codec.decode(key, value)) {
+          compactEvent(event, compactor, out);
+        }
+        return;
+      }
+      if (decodeParallelism > 1) {
+        getParallelCollector().collect(codec.decode(key, value), out);
+        return;
+      }
       for (final Event event : codec.decode(key, value)) {
         collectEvent(event, out);
       }
@@ -184,6 +192,42 @@ public abstract class CDCDeserializationSchema
     }
   }
 
+  private void compactEvent(
+      final Event event, final ChangeCompactor compactor, final Collector<RowData> out) {
+    if (event.getType() == Type.ROW_CHANGED && compactor.apply(event)) {
+      return;
+    }
+    // the net changes go before anything which can't be compacted with them
+    flush(compactor, out);
+    if (event.getType() != Type.RESOLVED || resolvedTsMarkers) {
+      collectEvent(event, out);
+    }
+  }
+
+  /**
+   * Emit the net changes compacted so far.
+   */
+  public void flush(final ChangeCompactor compactor, final Collector<RowData> out) {
+    compactor.collect(schema, out::collect);
+  }
+
+  private ParallelEventCollector getParallelCollector() {
+    if (parallelCollector == null) {
+      parallelCollector = new ParallelEventCollector(decodeParallelism, this::collectEvent);
+    }
+    return parallelCollector;
+  }
+
+  /**
+   * Stop the workers converting events, if any. Deserializing after closing starts them again.
+   */
+  public void close() {
+    if (parallelCollector != null) {
+      parallelCollector.close();
+      parallelCollector = null;
+    }
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -194,16 +238,16 @@ public abstract class CDCDeserializationSchema
     }
     CDCDeserializationSchema that = (CDCDeserializationSchema) o;
     return Objects.equals(schema, that.schema)
-        && Objects.equals(eventTypes, that.eventTypes)
-        && Objects.equals(schemas, that.schemas)
-        && Objects.equals(tables, that.tables)
-        && (startTs == that.startTs)
-        && (ignoreParseErrors == that.ignoreParseErrors);
+        && Objects.equals(filter, that.filter)
+        && (ignoreParseErrors == that.ignoreParseErrors)
+        && (decodeParallelism == that.decodeParallelism)
+        && (resolvedTsMarkers == that.resolvedTsMarkers);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, eventTypes, schemas, tables, startTs, ignoreParseErrors);
+    return Objects.hash(schema, filter, ignoreParseErrors, decodeParallelism,
+        resolvedTsMarkers);
   }
 
   public boolean isEndOfStream(final RowData nextElement) {
@@ -17,6 +17,8 @@
 package io.tidb.bigdata.flink.format.cdc;
 
 import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.avro.SchemaRegistry;
+import java.util.Collection;
 import java.util.Set;
 import java.util.function.Function;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
@@ -39,7 +41,9 @@ public class CDCDeserializationSchemaBuilder {
   private Set<String> tables;
   private long startTs;
   private boolean ignoreParseErrors;
-
+  private int decodeParallelism = 1;
+  private boolean resolvedTsMarkers;
+  private Collection<String> upsertKey;
 
   public CDCDeserializationSchemaBuilder metadata(final CDCMetadata[] metadata) {
     this.metadata = metadata;
@@ -71,15 +75,62 @@ public class CDCDeserializationSchemaBuilder {
     return this;
   }
 
+  public CDCDeserializationSchemaBuilder decodeParallelism(int parallelism) {
+    Preconditions.checkArgument(parallelism > 0,
+        "Decode parallelism must be positive: %s", parallelism);
+    this.decodeParallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Emit resolved events as {@link ResolvedTsRowData} markers instead of metadata rows, for
+   * sources turning them into watermarks.
+   */
+  public CDCDeserializationSchemaBuilder resolvedTsMarkers(boolean markers) {
+    this.resolvedTsMarkers = markers;
+    return this;
+  }
+
+  /**
+   * Emit updates as upserts by the key columns, i.e. only the rows after them, instead of
+   * retractions. The row before an update is deleted if the update changes the key.
+   *
+   * @param key names of the key columns, empty to take the columns flagged as primary key by TiCDC
+   */
+  public CDCDeserializationSchemaBuilder upsertKey(final Collection<String> key) {
+    this.upsertKey = Preconditions.checkNotNull(key);
+    return this;
+  }
+
+  private CDCSchemaAdapter createSchemaAdapter() {
+    return new CDCSchemaAdapter(physicalDataType, typeInfoFactory, metadata, upsertKey);
+  }
+
   public CraftDeserializationSchema craft() {
     return new CraftDeserializationSchema(
-        new CDCSchemaAdapter(physicalDataType, typeInfoFactory, metadata),
-        eventTypes, schemas, tables, startTs, ignoreParseErrors);
+        createSchemaAdapter(),
+        eventTypes, schemas, tables, startTs, ignoreParseErrors, decodeParallelism,
+        resolvedTsMarkers);
   }
 
   public JsonDeserializationSchema json() {
     return new JsonDeserializationSchema(
-        new CDCSchemaAdapter(physicalDataType, typeInfoFactory, metadata),
-        eventTypes, schemas, tables, startTs, ignoreParseErrors);
+        createSchemaAdapter(),
+        eventTypes, schemas, tables, startTs, ignoreParseErrors, decodeParallelism,
+        resolvedTsMarkers);
+  }
+
+  public AvroDeserializationSchema avro(final SchemaRegistry registry) {
+    return new AvroDeserializationSchema(Preconditions.checkNotNull(registry),
+        createSchemaAdapter(),
+        eventTypes, schemas, tables, startTs, ignoreParseErrors, decodeParallelism,
+        resolvedTsMarkers);
+  }
+
+  public CanalJsonDeserializationSchema canalJson() {
+    return new CanalJsonDeserializationSchema(
+        createSchemaAdapter(),
+        eventTypes, schemas, tables, startTs, ignoreParseErrors, decodeParallelism,
+        resolvedTsMarkers);
   }
-}
\ No newline at end of file
+}
@@ -55,6 +55,11 @@ public class CDCOptions {
       ConfigOptions.key("earliest.timestamp").longType().defaultValue(0L)
           .withDescription("Only read events older than given timestamp in milliseconds");
 
+  public static final ConfigOption<Integer> DECODE_PARALLELISM =
+      ConfigOptions.key("decode.parallelism").intType().defaultValue(1)
+          .withDescription("Number of workers converting the events of a message in parallel,"
+              + " the events are still emitted in order; 1 by default to convert them inline");
+
   /**
    * Validator for craft decoding format.
    */
@@ -21,9 +21,12 @@ import io.tidb.bigdata.cdc.RowColumn;
 import io.tidb.bigdata.flink.format.cdc.RowColumnConverters.Converter;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -102,8 +105,63 @@ public class CDCSchemaAdapter implements Serializable {
     }
   }
 
+  /*
+   * Mapping from the positions of the incoming columns to the physical fields, which stays the
+   * same for all the row changes of a table until a DDL changes its columns
+   */
+  private static final class ColumnLayout {
+    private final String[] names;
+    // null for the columns which are not physical fields
+    private final ColumnContext[] contexts;
+
+    private ColumnLayout(final String[] names, final ColumnContext[] contexts) {
+      this.names = names;
+      this.contexts = contexts;
+    }
+
+    private static String[] namesOf(final RowColumn[] columns) {
+      final String[] names = new String[columns.length];
+      for (int idx = 0; idx < columns.length; idx++) {
+        names[idx] = columns[idx].getName();
+      }
+      return names;
+    }
+
+    /*
+     * Null if the columns don't match the layout. Otherwise the layout itself, or a copy of it
+     * holding the name instances of the columns if they are only equal, so that the following
+     * rows decoded from the same message are matched by identity.
+     */
+    private ColumnLayout match(final RowColumn[] columns) {
+      if (columns.length != names.length) {
+        return null;
+      }
+      boolean identical = true;
+      for (int idx = 0; idx < names.length; idx++) {
+        final String name = columns[idx].getName();
+        if (name != names[idx]) {
+          if (!name.equals(names[idx])) {
+            return null;
+          }
+          identical = false;
+        }
+      }
+      return identical ? this : new ColumnLayout(namesOf(columns), contexts);
+    }
+  }
+
   private final Map<String, ColumnContext> physicalFields;
 
+  /**
+   * Names of the key columns of upsert changelogs, empty to take the columns flagged as primary
+   * key by TiCDC, null to emit updates as retractions.
+   */
+  @Nullable
+  private final Set<String> upsertKey;
+
+  // shared by the threads converting events in parallel, so it is never modified in place
+  private transient volatile ColumnLayout layout;
+
   /**
    * Number of physical fields.
    */
@@ -117,7 +175,18 @@ public class CDCSchemaAdapter implements Serializable {
   public CDCSchemaAdapter(final DataType physicalDataType,
       final Function<DataType, TypeInformation<RowData>> typeInfoFactory,
       @Nullable final CDCMetadata[] metadata) {
+    this(physicalDataType, typeInfoFactory, metadata, null);
+  }
+
+  /**
+   * @param upsertKey names of the key columns to emit updates as upserts by, empty to take the
+   *     columns flagged as primary key by TiCDC, null to emit updates as retractions
+   */
+  public CDCSchemaAdapter(final DataType physicalDataType,
+      final Function<DataType, TypeInformation<RowData>> typeInfoFactory,
+      @Nullable final CDCMetadata[] metadata, @Nullable final Collection<String> upsertKey) {
     this.metadata = CDCMetadata.notNull(metadata);
+    this.upsertKey = upsertKey == null ? null : new HashSet<>(upsertKey);
     final RowType physicalRowType = (RowType) physicalDataType.getLogicalType();
     final DataType producedDataType;
     this.physicalFieldCount = physicalRowType.getFieldCount();
@@ -143,16 +212,73 @@ public class CDCSchemaAdapter implements Serializable {
 
   public RowBuilder convert(final Event event, final RowColumn[] columns) {
     final Object[] objects = makeRow(event);
-    for (final RowColumn column : columns) {
-      final ColumnContext ctx = physicalFields.get(column.getName());
-      if (ctx == null) {
-        continue;
+    final ColumnContext[] contexts = getLayout(columns).contexts;
+    for (int idx = 0; idx < columns.length; idx++) {
+      final ColumnContext ctx = contexts[idx];
+      if (ctx != null) {
+        objects[ctx.index] = ctx.converter.convert(columns[idx]);
       }
-      objects[ctx.index] = ctx.converter.convert(column);
     }
     return new RowBuilder(objects);
   }
 
+  private ColumnLayout getLayout(final RowColumn[] columns) {
+    final ColumnLayout current = layout;
+    ColumnLayout matched = current == null ? null : current.match(columns);
+    if (matched == null) {
+      final String[] names = ColumnLayout.namesOf(columns);
+      final ColumnContext[] contexts = new ColumnContext[names.length];
+      for (int idx = 0; idx < names.length; idx++) {
+        contexts[idx] = physicalFields.get(names[idx]);
+      }
+      matched = new ColumnLayout(names, contexts);
+    }
+    if (matched != current) {
+      layout = matched;
+    }
+    return matched;
+  }
+
+  /**
+   * @return whether an update is emitted as the row after it only, as an upsert by the key, instead
+   *     of a retraction of the row before it and the row after it
+   */
+  public boolean isUpsert() {
+    return upsertKey != null;
+  }
+
+  /**
+   * @return whether an update changes the upsert key, so that the row before it has to be deleted
+   */
+  public boolean isKeyChanged(final RowColumn[] before, final RowColumn[] after) {
+    for (int idx = 0; idx < after.length; idx++) {
+      final RowColumn column = after[idx];
+      if (!isKeyColumn(column)) {
+        continue;
+      }
+      final RowColumn old = idx < before.length && before[idx].getName().equals(column.getName())
+          ? before[idx] : findColumn(before, column.getName());
+      if (old == null || !Objects.deepEquals(old.getValue(), column.getValue())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isKeyColumn(final RowColumn column) {
+    return upsertKey.isEmpty()
+        ? RowColumn.isPrimaryKey(column.getFlags()) : upsertKey.contains(column.getName());
+  }
+
+  private static RowColumn findColumn(final RowColumn[] columns, final String name) {
+    for (final RowColumn column : columns) {
+      if (column.getName().equals(name)) {
+        return column;
+      }
+    }
+    return null;
+  }
+
   private Object[] makeRow(final Event event) {
     int metaIndex = physicalFieldCount;
     Object[] objects = new Object[producedFieldCount];
@@ -164,6 +290,13 @@ public class CDCSchemaAdapter implements Serializable {
     return objects;
   }
 
+  /**
+   * @return names of the physical fields, the columns of row changed events which are converted
+   */
+  public Set<String> getPhysicalFieldNames() {
+    return physicalFields.keySet();
+  }
+
   public TypeInformation<RowData> getProducedType() {
     return typeInfo;
   }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.RowChangedValue;
+import io.tidb.bigdata.cdc.RowColumn;
+import io.tidb.bigdata.flink.format.cdc.CDCSchemaAdapter.RowBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import org.apache.flink.table.data.RowData;
+
+/**
+ * Compacts row changed events into the net change of every row, identified by its table and its
+ * handle columns.
+ * Inserting and then updating a row is an insertion, inserting and then deleting a row is nothing.
+ * Changes of rows without handle columns are kept as they are.
+ */
+public final class ChangeCompactor {
+
+  private static final class HandleKey {
+
+    // a partition may carry the changes of many tables
+    private final String schema;
+    private final String table;
+    private final Object[] values;
+    private final int hashCode;
+
+    private HandleKey(String schema, String table, Object[] values) {
+      this.schema = schema;
+      this.table = table;
+      this.values = values;
+      this.hashCode = 31 * Objects.hash(schema, table) + Arrays.deepHashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof HandleKey)) {
+        return false;
+      }
+      HandleKey that = (HandleKey) o;
+      return Objects.equals(schema, that.schema) && Objects.equals(table, that.table)
+          && Arrays.deepEquals(values, that.values);
+    }
+  }
+
+  /**
+   * The row before the first change and after the last change, which are enough to derive the net
+   * change of the row.
+   */
+  private static final class Change {
+
+    private final Event first;
+    // null if the row doesn't exist before the first change
+    private final RowColumn[] before;
+    private Event last;
+    // null if the row doesn't exist after the last change
+    private RowColumn[] after;
+
+    private Change(Event first, RowColumn[] before) {
+      this.first = first;
+      this.before = before;
+    }
+  }
+
+  private final Map<Object, Change> changes = new LinkedHashMap<>();
+
+  /**
+   * @return false if the change can not be compacted, i.e. it is an update without the old value
+   *     of the row, in which case it is not applied
+   */
+  public boolean apply(Event event) {
+    RowChangedValue value = event.asRowChanged();
+    switch (value.getType()) {
+      case INSERT:
+        applyInsert(event, getHandleKey(event, value.getNewValue()), value.getNewValue());
+        return true;
+      case DELETE:
+        applyDelete(event, getHandleKey(event, value.getOldValue()), value.getOldValue());
+        return true;
+      case UPDATE:
+        if (value.getOldValue() == null) {
+          return false;
+        }
+        Object oldKey = getHandleKey(event, value.getOldValue());
+        Object newKey = getHandleKey(event, value.getNewValue());
+        if (oldKey.equals(newKey)) {
+          getChange(event, newKey, value.getOldValue()).after = value.getNewValue();
+        } else {
+          // the row moves to another handle, which is a deletion and an insertion
+          applyDelete(event, oldKey, value.getOldValue());
+          applyInsert(event, newKey, value.getNewValue());
+        }
+        return true;
+      default:
+        throw new IllegalStateException("Unknown row changed event " + value.getType());
+    }
+  }
+
+  private void applyInsert(Event event, Object key, RowColumn[] columns) {
+    getChange(event, key, null).after = columns;
+  }
+
+  private void applyDelete(Event event, Object key, RowColumn[] columns) {
+    getChange(event, key, columns).after = null;
+  }
+
+  private Change getChange(Event event, Object key, RowColumn[] before) {
+    Change change = changes.get(key);
+    if (change == null) {
+      change = new Change(event, before);
+      changes.put(key, change);
+    }
+    change.last = event;
+    return change;
+  }
+
+  private static Object getHandleKey(Event event, RowColumn[] columns) {
+    List<Object> values = new ArrayList<>();
+    for (RowColumn column : columns) {
+      // craft only flags the handle columns, while json marks them as where handle
+      if (column.isWhereHandle() || RowColumn.isHandleKey(column.getFlags())) {
+        values.add(column.getOriginalValue());
+      }
+    }
+    // changes of rows without handle columns can not be compacted, keep every one of them
+    return values.isEmpty()
+        ? new Object() : new HandleKey(event.getSchema(), event.getTable(), values.toArray());
+  }
+
+  /**
+   * @return the number of rows changed
+   */
+  public int size() {
+    return changes.size();
+  }
+
+  public void clear() {
+    changes.clear();
+  }
+
+  /**
+   * Emit the net changes of the rows in the order they were first changed, and clear them.
+   */
+  public void collect(CDCSchemaAdapter schema, Consumer<RowData> out) {
+    for (Change change : changes.values()) {
+      collect(schema, change, out);
+    }
+    changes.clear();
+  }
+
+  private static void collect(CDCSchemaAdapter schema, Change change, Consumer<RowData> out) {
+    if (change.before == null && change.after == null) {
+      return;
+    }
+    if (change.before == null) {
+      out.accept(schema.convert(change.last, change.after).insert());
+    } else if (change.after == null) {
+      out.accept(schema.convert(change.first, change.before).delete());
+    } else {
+      RowBuilder beforeRow = schema.convert(change.first, change.before);
+      RowBuilder afterRow = schema.convert(change.last, change.after);
+      if (Objects.equals(beforeRow, afterRow)) {
+        return;
+      }
+      if (!schema.isUpsert()) {
+        out.accept(beforeRow.updateBefore());
+      } else if (schema.isKeyChanged(change.before, change.after)) {
+        out.accept(beforeRow.delete());
+      }
+      out.accept(afterRow.updateAfter());
+    }
+  }
+}
@@ -35,8 +35,11 @@ public class CraftDeserializationSchema extends CDCDeserializationSchema
       @Nullable final Set<String> schemas,
       @Nullable final Set<String> tables,
       final long startTs,
-      final boolean ignoreParseErrors) {
-    super(Codec.craft(), schema, eventTypes, schemas, tables, startTs, ignoreParseErrors);
+      final boolean ignoreParseErrors,
+      final int decodeParallelism,
+      final boolean resolvedTsMarkers) {
+    super(filter -> Codec.craft(schema.getPhysicalFieldNames(), filter), schema, eventTypes,
+        schemas, tables, startTs, ignoreParseErrors, decodeParallelism, resolvedTsMarkers);
   }
 
   @Override
@@ -16,6 +16,7 @@
 
 package io.tidb.bigdata.flink.format.cdc;
 
+import static io.tidb.bigdata.flink.format.cdc.CDCOptions.DECODE_PARALLELISM;
 import static io.tidb.bigdata.flink.format.cdc.CDCOptions.EARLIEST_TIMESTAMP;
 import static io.tidb.bigdata.flink.format.cdc.CDCOptions.EARLIEST_VERSION;
 import static io.tidb.bigdata.flink.format.cdc.CDCOptions.IGNORE_PARSE_ERRORS;
@@ -65,6 +66,7 @@ public class CraftFormatFactory
     final Set<String> schemas = getOptionalSet(formatOptions, SCHEMA_INCLUDE);
     final Set<String> tables = getOptionalSet(formatOptions, TABLE_INCLUDE);
     final long earliestTs = getEarliestTs(formatOptions);
+    final int decodeParallelism = formatOptions.get(DECODE_PARALLELISM);
 
     return new DecodingFormat<DeserializationSchema<RowData>>() {
       private List<String> metadataKeys = Collections.emptyList();
@@ -79,7 +81,8 @@ public class CraftFormatFactory
             .types(types)
             .schemas(schemas)
             .tables(tables)
-            .ignoreParseErrors(ignoreParseErrors).craft();
+            .ignoreParseErrors(ignoreParseErrors)
+            .decodeParallelism(decodeParallelism).craft();
       }
 
       @Override
@@ -133,6 +136,7 @@ public class CraftFormatFactory
     options.add(TYPE_INCLUDE);
     options.add(EARLIEST_VERSION);
     options.add(EARLIEST_TIMESTAMP);
+    options.add(DECODE_PARALLELISM);
     return options;
   }
 }
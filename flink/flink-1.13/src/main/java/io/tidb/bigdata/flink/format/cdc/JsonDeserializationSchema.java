@@ -35,8 +35,11 @@ public class JsonDeserializationSchema extends CDCDeserializationSchema
       @Nullable final Set<String> schemas,
       @Nullable final Set<String> tables,
       final long startTs,
-      final boolean ignoreParseErrors) {
-    super(Codec.json(), schema, eventTypes, schemas, tables, startTs, ignoreParseErrors);
+      final boolean ignoreParseErrors,
+      final int decodeParallelism,
+      final boolean resolvedTsMarkers) {
+    super(Codec::json, schema, eventTypes, schemas, tables, startTs, ignoreParseErrors,
+        decodeParallelism, resolvedTsMarkers);
   }
 
   @Override
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import io.tidb.bigdata.cdc.Event;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.Collector;
+
+/**
+ * Converts the events of a message on a pool of workers, in batches of consecutive events, and
+ * emits the converted rows in the order of the events.
+ *
+ * <p>Only the conversion of events into rows is fanned out, and only within a message. The
+ * events are still split out of the message and filtered by their keys on the source thread while
+ * they are iterated, and a message is always emitted completely before {@link #collect} returns:
+ * the source advances the offset of a kafka partition right after a record is deserialized, so
+ * rows held back across records would be lost by a checkpoint taken in between. Messages of fewer
+ * than {@link #BATCH_SIZE} events are converted inline.
+ *
+ * <p>At most twice as many batches as workers are in flight, the caller emits the oldest batch
+ * before it submits another one. The first failure of a batch is thrown to the caller, and the
+ * batches after it are cancelled.
+ *
+ * <p>The workers are stopped by {@link #close}. Formats used outside of the TiDB source are never
+ * closed, their idle workers time out instead.
+ */
+final class ParallelEventCollector {
+
+  static final int BATCH_SIZE = 256;
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+  private final BiConsumer<Event, Collector<RowData>> converter;
+
+  private final ThreadPoolExecutor executor;
+
+  private final int maxInFlight;
+
+  private final ArrayDeque<Future<List<RowData>>> inFlight;
+
+  ParallelEventCollector(final int parallelism,
+      final BiConsumer<Event, Collector<RowData>> converter) {
+    this.converter = converter;
+    this.executor = new ThreadPoolExecutor(parallelism, parallelism,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        ParallelEventCollector::newWorker);
+    this.executor.allowCoreThreadTimeOut(true);
+    this.maxInFlight = parallelism * 2;
+    this.inFlight = new ArrayDeque<>(maxInFlight);
+  }
+
+  private static Thread newWorker(final Runnable runnable) {
+    final Thread thread =
+        new Thread(runnable, "tidb-cdc-decoder-" + THREAD_ID.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  void collect(final Iterable<Event> events, final Collector<RowData> out) throws IOException {
+    Event[] batch = new Event[BATCH_SIZE];
+    int size = 0;
+    try {
+      for (final Event event : events) {
+        batch[size++] = event;
+        if (size == BATCH_SIZE) {
+          submit(batch, size, out);
+          batch = new Event[BATCH_SIZE];
+          size = 0;
+        }
+      }
+      if (inFlight.isEmpty()) {
+        // small messages are not worth a round trip to the workers
+        for (int i = 0; i < size; i++) {
+          converter.accept(batch[i], out);
+        }
+        return;
+      }
+      if (size > 0) {
+        submit(batch, size, out);
+      }
+      while (!inFlight.isEmpty()) {
+        emitOldest(out);
+      }
+    } finally {
+      for (final Future<List<RowData>> future : inFlight) {
+        future.cancel(true);
+      }
+      inFlight.clear();
+    }
+  }
+
+  void close() {
+    executor.shutdownNow();
+  }
+
+  private void submit(final Event[] batch, final int size, final Collector<RowData> out)
+      throws IOException {
+    if (inFlight.size() >= maxInFlight) {
+      emitOldest(out);
+    }
+    inFlight.add(executor.submit(() -> {
+      final List<RowData> rows = new ArrayList<>(size);
+      final Collector<RowData> collector = new ListCollector<>(rows);
+      for (int i = 0; i < size; i++) {
+        converter.accept(batch[i], collector);
+      }
+      return rows;
+    }));
+  }
+
+  private void emitOldest(final Collector<RowData> out) throws IOException {
+    final List<RowData> rows;
+    try {
+      rows = inFlight.poll().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while decoding TiCDC messages");
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+    for (final RowData row : rows) {
+      out.collect(row);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import org.apache.flink.table.data.ArrayData;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.MapData;
+import org.apache.flink.table.data.RawValueData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.types.RowKind;
+
+/**
+ * Marker of a resolved ts of TiCDC among the rows of a partition, which is turned into a watermark
+ * of the partition by the source reader and never emitted as a row.
+ */
+public final class ResolvedTsRowData implements RowData {
+
+  private final long ts;
+
+  public ResolvedTsRowData(long ts) {
+    this.ts = ts;
+  }
+
+  /**
+   * @return the resolved ts, all the changes committed at or before it have been received
+   */
+  public long getTs() {
+    return ts;
+  }
+
+  @Override
+  public int getArity() {
+    return 0;
+  }
+
+  @Override
+  public RowKind getRowKind() {
+    return RowKind.INSERT;
+  }
+
+  @Override
+  public void setRowKind(RowKind kind) {
+    throw new UnsupportedOperationException("Resolved ts markers are immutable");
+  }
+
+  @Override
+  public boolean isNullAt(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public boolean getBoolean(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public byte getByte(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public short getShort(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public int getInt(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public long getLong(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public float getFloat(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public double getDouble(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public StringData getString(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public DecimalData getDecimal(int pos, int precision, int scale) {
+    throw noField(pos);
+  }
+
+  @Override
+  public TimestampData getTimestamp(int pos, int precision) {
+    throw noField(pos);
+  }
+
+  @Override
+  public <T> RawValueData<T> getRawValue(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public byte[] getBinary(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public ArrayData getArray(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public MapData getMap(int pos) {
+    throw noField(pos);
+  }
+
+  @Override
+  public RowData getRow(int pos, int numFields) {
+    throw noField(pos);
+  }
+
+  private static IndexOutOfBoundsException noField(int pos) {
+    return new IndexOutOfBoundsException("Resolved ts markers don't have field " + pos);
+  }
+
+  @Override
+  public String toString() {
+    return "ResolvedTsRowData{ts=" + ts + "}";
+  }
+}
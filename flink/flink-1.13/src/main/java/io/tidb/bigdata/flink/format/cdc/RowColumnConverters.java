@@ -18,13 +18,6 @@ package io.tidb.bigdata.flink.format.cdc;
 
 import io.tidb.bigdata.cdc.RowColumn;
 import java.io.Serializable;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneOffset;
-import java.time.temporal.ChronoField;
-import java.time.temporal.TemporalAccessor;
-import java.time.temporal.TemporalQueries;
 import org.apache.flink.table.data.DecimalData;
 import org.apache.flink.table.data.StringData;
 import org.apache.flink.table.data.TimestampData;
@@ -33,46 +26,53 @@ import org.apache.flink.table.types.logical.LogicalType;
 
 public final class RowColumnConverters {
 
+  private static final long MICROS_PER_MILLI = 1000L;
+  private static final long NANOS_PER_MICRO = 1000L;
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int idx = 1; idx < POWERS_OF_TEN.length; idx++) {
+      POWERS_OF_TEN[idx] = POWERS_OF_TEN[idx - 1] * 10;
+    }
+  }
+
   private static Converter createConverterUnsafe(final LogicalType type) {
     switch (type.getTypeRoot()) {
       case NULL:
         return RowColumn::asNull;
       case BOOLEAN:
-        return RowColumn::asBoolean;
+        return RowColumn::getBoolean;
       case TINYINT:
-        return RowColumn::asTinyInt;
+        return column -> (byte) column.getLong();
       case SMALLINT:
-        return RowColumn::asSmallInt;
+        return column -> (short) column.getLong();
       case INTEGER:
         // FALL THROUGH
       case INTERVAL_YEAR_MONTH:
-        return RowColumn::asInt;
+        return RowColumn::getInt;
       case BIGINT:
       case INTERVAL_DAY_TIME:
-        return RowColumn::asBigInt;
+        return RowColumn::getLong;
       case DATE:
-        return column -> (int) column.asDate().toEpochDay();
+        return RowColumn::getEpochDay;
       case TIME_WITHOUT_TIME_ZONE:
-        return column -> column.asTime().get(ChronoField.MILLI_OF_DAY);
+        return column -> (int) (column.getNanoOfDay() / NANOS_PER_MILLI);
       case TIMESTAMP_WITHOUT_TIME_ZONE:
-        return column -> {
-          final TemporalAccessor parsedTimestamp = column.asDateTime();
-          final LocalTime localTime = parsedTimestamp.query(TemporalQueries.localTime());
-          final LocalDate localDate = parsedTimestamp.query(TemporalQueries.localDate());
-          return TimestampData.fromLocalDateTime(LocalDateTime.of(localDate, localTime));
-        };
+        // FALL THROUGH
       case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+        // datetime values are taken as in UTC, so both are the same instant since epoch
         return column -> {
-          final TemporalAccessor parsedTimestamp = column.asDateTime();
-          final LocalTime localTime = parsedTimestamp.query(TemporalQueries.localTime());
-          final LocalDate localDate = parsedTimestamp.query(TemporalQueries.localDate());
-          return TimestampData.fromInstant(LocalDateTime.of(localDate, localTime)
-              .toInstant(ZoneOffset.UTC));
+          final long micros = column.getEpochMicros();
+          return TimestampData.fromEpochMillis(Math.floorDiv(micros, MICROS_PER_MILLI),
+              (int) (Math.floorMod(micros, MICROS_PER_MILLI) * NANOS_PER_MICRO));
         };
       case FLOAT:
-        return RowColumn::asFloat;
+        return RowColumn::getFloat;
       case DOUBLE:
-        return RowColumn::asDouble;
+        return RowColumn::getDouble;
       case CHAR:
         return column -> StringData.fromString(column.asChar());
       case VARCHAR:
@@ -91,7 +91,7 @@ public final class RowColumnConverters {
   public static Converter createConverter(final LogicalType type) {
     final Converter converter = createConverterUnsafe(type);
     return column -> {
-      if (column == null) {
+      if (column == null || column.isNullValue()) {
         return null;
       }
       try {
@@ -106,7 +106,24 @@ public final class RowColumnConverters {
   private static Converter createDecimalConverter(final DecimalType decimalType) {
     final int precision = decimalType.getPrecision();
     final int scale = decimalType.getScale();
-    return column -> DecimalData.fromBigDecimal(column.asDecimal(), precision, scale);
+    if (!DecimalData.isCompact(precision)) {
+      return column -> DecimalData.fromBigDecimal(column.asDecimal(), precision, scale);
+    }
+    final long bound = POWERS_OF_TEN[precision];
+    return column -> {
+      final int columnScale = column.getDecimalScale();
+      if (columnScale < 0 || columnScale > scale) {
+        // rounding is left to BigDecimal
+        return DecimalData.fromBigDecimal(column.asDecimal(), precision, scale);
+      }
+      final long unscaled = column.getUnscaledLong();
+      final long factor = POWERS_OF_TEN[scale - columnScale];
+      if (Math.abs(unscaled) >= bound / factor) {
+        // overflows the precision, as DecimalData.fromBigDecimal does
+        return null;
+      }
+      return DecimalData.fromUnscaledLong(unscaled * factor, precision, scale);
+    };
   }
 
   @FunctionalInterface
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.source.reader;
+
+import io.tidb.bigdata.flink.format.cdc.ResolvedTsRowData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.flink.api.common.eventtime.Watermark;
+import org.apache.flink.api.connector.source.ReaderOutput;
+import org.apache.flink.api.connector.source.SourceOutput;
+import org.apache.flink.api.connector.source.SourceReader;
+import org.apache.flink.api.connector.source.SourceSplit;
+import org.apache.flink.core.io.InputStatus;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tikv.common.meta.TiTimestamp;
+
+public class ResolvedTsWatermarkReaderTest {
+
+  private static final long TIMEOUT_MS = 1000;
+
+  // ahead of the clock, so that the idle checks of pollNext never run in between
+  private static final long NOW = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * Hands the output of the watermark reader to the test, which emits into it directly.
+   */
+  private static class CapturingReader implements SourceReader<RowData, SourceSplit> {
+
+    private final CompletableFuture<Void> available = new CompletableFuture<>();
+    private ReaderOutput<RowData> output;
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public InputStatus pollNext(ReaderOutput<RowData> output) {
+      this.output = output;
+      return InputStatus.NOTHING_AVAILABLE;
+    }
+
+    @Override
+    public List<SourceSplit> snapshotState(long checkpointId) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public CompletableFuture<Void> isAvailable() {
+      return available;
+    }
+
+    @Override
+    public void addSplits(List<SourceSplit> splits) {
+    }
+
+    @Override
+    public void notifyNoMoreSplits() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * Records what is emitted into every split as "split:row", "split:watermark" or "split:idle".
+   */
+  private static class RecordingOutput implements ReaderOutput<RowData> {
+
+    private final List<String> events = new ArrayList<>();
+
+    private List<String> poll() {
+      List<String> polled = new ArrayList<>(events);
+      events.clear();
+      return polled;
+    }
+
+    @Override
+    public void collect(RowData record) {
+      events.add("row");
+    }
+
+    @Override
+    public void collect(RowData record, long timestamp) {
+      events.add("row");
+    }
+
+    @Override
+    public void emitWatermark(Watermark watermark) {
+      events.add(String.valueOf(watermark.getTimestamp()));
+    }
+
+    @Override
+    public void markIdle() {
+      events.add("idle");
+    }
+
+    @Override
+    public SourceOutput<RowData> createOutputForSplit(String splitId) {
+      return new SourceOutput<RowData>() {
+        @Override
+        public void collect(RowData record) {
+          events.add(splitId + ":row");
+        }
+
+        @Override
+        public void collect(RowData record, long timestamp) {
+          events.add(splitId + ":row");
+        }
+
+        @Override
+        public void emitWatermark(Watermark watermark) {
+          events.add(splitId + ":" + watermark.getTimestamp());
+        }
+
+        @Override
+        public void markIdle() {
+          events.add(splitId + ":idle");
+        }
+      };
+    }
+
+    @Override
+    public void releaseOutputForSplit(String splitId) {
+    }
+  }
+
+  private final CapturingReader wrapped = new CapturingReader();
+  private final RecordingOutput output = new RecordingOutput();
+
+  private ResolvedTsWatermarkReader<SourceSplit> createReader(long idleTimeoutMs)
+      throws Exception {
+    ResolvedTsWatermarkReader<SourceSplit> reader =
+        new ResolvedTsWatermarkReader<>(wrapped, idleTimeoutMs);
+    reader.pollNext(output);
+    return reader;
+  }
+
+  private static RowData resolved(long physicalMs) {
+    return new ResolvedTsRowData(new TiTimestamp(physicalMs, 0).getVersion());
+  }
+
+  private static RowData row() {
+    return GenericRowData.of(1L);
+  }
+
+  @Test
+  public void testResolvedTsToWatermark() throws Exception {
+    createReader(TIMEOUT_MS);
+    SourceOutput<RowData> split = wrapped.output.createOutputForSplit("a");
+    split.collect(resolved(1000));
+    split.collect(row());
+    // resolved ts which do not advance the watermark are dropped as well
+    split.collect(resolved(1000));
+    split.collect(resolved(500));
+    split.collect(resolved(2000));
+    Assert.assertEquals(Arrays.asList("a:999", "a:row", "a:1999"), output.poll());
+  }
+
+  @Test
+  public void testIdleAndReactivatedByRow() throws Exception {
+    ResolvedTsWatermarkReader<SourceSplit> reader = createReader(TIMEOUT_MS);
+    SourceOutput<RowData> split = wrapped.output.createOutputForSplit("a");
+    split.collect(resolved(1000));
+    reader.checkIdle(NOW);
+    // checks closer than the timeout are skipped
+    reader.checkIdle(NOW + TIMEOUT_MS / 2);
+    Assert.assertEquals(Collections.singletonList("a:999"), output.poll());
+    reader.checkIdle(NOW + TIMEOUT_MS);
+    reader.checkIdle(NOW + TIMEOUT_MS * 2);
+    Assert.assertEquals(Collections.singletonList("a:idle"), output.poll());
+    // the split holds the watermark back again from where it has been
+    split.collect(row());
+    split.collect(row());
+    Assert.assertEquals(Arrays.asList("a:999", "a:row", "a:row"), output.poll());
+  }
+
+  @Test
+  public void testIdleAndReactivatedByResolvedTs() throws Exception {
+    ResolvedTsWatermarkReader<SourceSplit> reader = createReader(TIMEOUT_MS);
+    SourceOutput<RowData> split = wrapped.output.createOutputForSplit("a");
+    split.collect(resolved(1000));
+    reader.checkIdle(NOW);
+    reader.checkIdle(NOW + TIMEOUT_MS);
+    Assert.assertEquals(Arrays.asList("a:999", "a:idle"), output.poll());
+    // even a resolved ts which does not advance the watermark reactivates the split
+    split.collect(resolved(1000));
+    split.collect(resolved(1000));
+    Assert.assertEquals(Collections.singletonList("a:999"), output.poll());
+    // and it is marked idle again after another timeout
+    reader.checkIdle(NOW + TIMEOUT_MS * 2);
+    reader.checkIdle(NOW + TIMEOUT_MS * 3);
+    Assert.assertEquals(Collections.singletonList("a:idle"), output.poll());
+  }
+
+  @Test
+  public void testIdlePerSplit() throws Exception {
+    ResolvedTsWatermarkReader<SourceSplit> reader = createReader(TIMEOUT_MS);
+    SourceOutput<RowData> active = wrapped.output.createOutputForSplit("a");
+    SourceOutput<RowData> quiet = wrapped.output.createOutputForSplit("b");
+    for (int i = 0; i < 3; i++) {
+      active.collect(resolved(1000 + i));
+      reader.checkIdle(NOW + TIMEOUT_MS * i);
+    }
+    Assert.assertEquals(Arrays.asList("a:999", "a:1000", "b:idle", "a:1001"), output.poll());
+    quiet.collect(row());
+    Assert.assertEquals(Arrays.asList("b:" + Long.MIN_VALUE, "b:row"), output.poll());
+  }
+
+  @Test
+  public void testNeverIdleWithoutTimeout() throws Exception {
+    ResolvedTsWatermarkReader<SourceSplit> reader = createReader(0);
+    wrapped.output.createOutputForSplit("a").collect(resolved(1000));
+    for (int i = 0; i < 3; i++) {
+      reader.pollNext(output);
+    }
+    Assert.assertEquals(Collections.singletonList("a:999"), output.poll());
+    Assert.assertSame(wrapped.available, reader.isAvailable());
+  }
+
+  @Test
+  public void testWakeUpForIdleCheck() throws Exception {
+    ResolvedTsWatermarkReader<SourceSplit> reader =
+        new ResolvedTsWatermarkReader<>(wrapped, TIMEOUT_MS);
+    // nothing to wait for without splits
+    Assert.assertSame(wrapped.available, reader.isAvailable());
+    reader.pollNext(output);
+    wrapped.output.createOutputForSplit("a");
+    // the wrapped reader never becomes available, but the idle check is due
+    reader.isAvailable().get(TIMEOUT_MS * 10, TimeUnit.MILLISECONDS);
+    reader.close();
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import com.google.common.collect.ImmutableMap;
+import io.tidb.bigdata.flink.connector.source.TiDBOptions;
+import io.tidb.bigdata.tidb.ClientConfig;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.api.Schema;
+import org.apache.flink.table.catalog.CatalogTable;
+import org.apache.flink.table.catalog.Column;
+import org.apache.flink.table.catalog.ResolvedCatalogTable;
+import org.apache.flink.table.catalog.ResolvedSchema;
+import org.apache.flink.table.connector.source.abilities.SupportsFilterPushDown.Result;
+import org.apache.flink.table.expressions.CallExpression;
+import org.apache.flink.table.expressions.FieldReferenceExpression;
+import org.apache.flink.table.expressions.ResolvedExpression;
+import org.apache.flink.table.expressions.ValueLiteralExpression;
+import org.apache.flink.table.functions.BuiltInFunctionDefinition;
+import org.apache.flink.table.functions.BuiltInFunctionDefinitions;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tikv.common.types.IntegerType;
+import org.tikv.common.types.StringType;
+
+public class FilterPushDownHelperTest {
+
+  private static final ResolvedExpression ID =
+      new FieldReferenceExpression("id", DataTypes.BIGINT(), 0, 0);
+
+  private static final ResolvedExpression NAME =
+      new FieldReferenceExpression("name", DataTypes.STRING(), 0, 1);
+
+  private static FilterPushDownHelper createHelper(boolean streaming) {
+    ResolvedSchema schema = ResolvedSchema.of(
+        Column.physical("id", DataTypes.BIGINT()),
+        Column.physical("name", DataTypes.STRING()));
+    Map<String, String> options = new HashMap<>();
+    options.put(TiDBOptions.DATABASE_NAME.key(), "test");
+    options.put(TiDBOptions.TABLE_NAME.key(), "t");
+    options.put(ClientConfig.TIDB_FILTER_PUSH_DOWN, "true");
+    if (streaming) {
+      options.put(TiDBOptions.STREAMING_SOURCE.key(), TiDBOptions.STREAMING_SOURCE_KAFKA);
+    }
+    CatalogTable table = CatalogTable.of(Schema.newBuilder().fromResolvedSchema(schema).build(),
+        null, Collections.emptyList(), options);
+    return new FilterPushDownHelper(new ResolvedCatalogTable(table, schema),
+        ImmutableMap.of("id", IntegerType.BIGINT, "name", StringType.VARCHAR));
+  }
+
+  private static ResolvedExpression call(BuiltInFunctionDefinition function,
+      ResolvedExpression... children) {
+    return new CallExpression(function, Arrays.asList(children), DataTypes.BOOLEAN());
+  }
+
+  private static void assertFilters(Result result, List<ResolvedExpression> accepted,
+      List<ResolvedExpression> remaining) {
+    Assert.assertEquals(accepted, result.getAcceptedFilters());
+    Assert.assertEquals(remaining, result.getRemainingFilters());
+  }
+
+  @Test
+  public void testNumericComparisonIsExact() {
+    FilterPushDownHelper helper = createHelper(false);
+    ResolvedExpression filter =
+        call(BuiltInFunctionDefinitions.GREATER_THAN, ID, new ValueLiteralExpression(1L));
+    assertFilters(helper.applyFilters(Collections.singletonList(filter)),
+        Collections.singletonList(filter), Collections.emptyList());
+    Assert.assertNotNull(helper.getPushedDownExpression());
+  }
+
+  @Test
+  public void testStringComparisonRemains() {
+    FilterPushDownHelper helper = createHelper(false);
+    ResolvedExpression filter =
+        call(BuiltInFunctionDefinitions.EQUALS, NAME, new ValueLiteralExpression("a"));
+    // pushed down, but TiDB may compare by another collation
+    assertFilters(helper.applyFilters(Collections.singletonList(filter)),
+        Collections.emptyList(), Collections.singletonList(filter));
+    Assert.assertNotNull(helper.getPushedDownExpression());
+  }
+
+  @Test
+  public void testUnsupportedFilterRemains() {
+    FilterPushDownHelper helper = createHelper(false);
+    ResolvedExpression filter = call(BuiltInFunctionDefinitions.EQUALS,
+        call(BuiltInFunctionDefinitions.UPPER, NAME), new ValueLiteralExpression("A"));
+    assertFilters(helper.applyFilters(Collections.singletonList(filter)),
+        Collections.emptyList(), Collections.singletonList(filter));
+    Assert.assertNull(helper.getPushedDownExpression());
+  }
+
+  @Test
+  public void testMixedFilters() {
+    FilterPushDownHelper exactHelper = createHelper(false);
+    ResolvedExpression exact =
+        call(BuiltInFunctionDefinitions.LESS_THAN, ID, new ValueLiteralExpression(10L));
+    exactHelper.applyFilters(Collections.singletonList(exact));
+
+    FilterPushDownHelper helper = createHelper(false);
+    ResolvedExpression unsupported = call(BuiltInFunctionDefinitions.EQUALS,
+        call(BuiltInFunctionDefinitions.UPPER, NAME), new ValueLiteralExpression("A"));
+    assertFilters(helper.applyFilters(Arrays.asList(exact, unsupported)),
+        Collections.singletonList(exact), Collections.singletonList(unsupported));
+    Assert.assertEquals(exactHelper.getPushedDownExpression().toString(),
+        helper.getPushedDownExpression().toString());
+  }
+
+  @Test
+  public void testNotOfInexactFilterIsNotPushedDown() {
+    FilterPushDownHelper helper = createHelper(false);
+    ResolvedExpression filter = call(BuiltInFunctionDefinitions.NOT,
+        call(BuiltInFunctionDefinitions.LIKE, NAME, new ValueLiteralExpression("a%")));
+    // negating a superset of the rows would drop matching rows
+    assertFilters(helper.applyFilters(Collections.singletonList(filter)),
+        Collections.emptyList(), Collections.singletonList(filter));
+    Assert.assertNull(helper.getPushedDownExpression());
+  }
+
+  @Test
+  public void testStreamingKeepsAllFilters() {
+    FilterPushDownHelper helper = createHelper(true);
+    ResolvedExpression filter =
+        call(BuiltInFunctionDefinitions.GREATER_THAN, ID, new ValueLiteralExpression(1L));
+    // changelogs are not filtered by TiDB
+    assertFilters(helper.applyFilters(Collections.singletonList(filter)),
+        Collections.emptyList(), Collections.singletonList(filter));
+    Assert.assertNotNull(helper.getPushedDownExpression());
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    FilterPushDownHelper helper = createHelper(false);
+    helper.applyFilters(Collections.singletonList(
+        call(BuiltInFunctionDefinitions.GREATER_THAN, ID, new ValueLiteralExpression(1L))));
+    FilterPushDownHelper copy = helper.copy();
+    Assert.assertSame(helper.getPushedDownExpression(), copy.getPushedDownExpression());
+
+    copy.applyFilters(Collections.singletonList(
+        call(BuiltInFunctionDefinitions.LESS_THAN, ID, new ValueLiteralExpression(10L))));
+    Assert.assertNotEquals(helper.getPushedDownExpression().toString(),
+        copy.getPushedDownExpression().toString());
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.connector.table;
+
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.StringData;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyCollationTest {
+
+  @Test
+  public void testCollations() {
+    Assert.assertEquals(KeyCollation.BINARY, KeyCollation.of("binary"));
+    Assert.assertEquals(KeyCollation.PAD_SPACE, KeyCollation.of("utf8mb4_bin"));
+    Assert.assertEquals(KeyCollation.PAD_SPACE, KeyCollation.of("latin1_bin"));
+    Assert.assertEquals(KeyCollation.OTHER, KeyCollation.of("utf8mb4_general_ci"));
+    Assert.assertEquals(KeyCollation.OTHER, KeyCollation.of("utf8mb4_unicode_ci"));
+    Assert.assertEquals(KeyCollation.OTHER, KeyCollation.of(null));
+    Assert.assertTrue(KeyCollation.isComparable(
+        new KeyCollation[]{KeyCollation.BINARY, KeyCollation.PAD_SPACE}));
+    Assert.assertFalse(KeyCollation.isComparable(
+        new KeyCollation[]{KeyCollation.BINARY, KeyCollation.OTHER}));
+  }
+
+  @Test
+  public void testTrimTrailingSpaces() {
+    StringData value = StringData.fromString("a b");
+    Assert.assertSame(value, KeyCollation.trimTrailingSpaces(value));
+    Assert.assertEquals(value, KeyCollation.trimTrailingSpaces(StringData.fromString("a b  ")));
+    // PAD SPACE pads with spaces only
+    Assert.assertEquals(StringData.fromString(" a\t"),
+        KeyCollation.trimTrailingSpaces(StringData.fromString(" a\t ")));
+    Assert.assertEquals(StringData.fromString(""),
+        KeyCollation.trimTrailingSpaces(StringData.fromString("   ")));
+  }
+
+  @Test
+  public void testNormalize() {
+    KeyCollation[] collations = {KeyCollation.BINARY, KeyCollation.PAD_SPACE};
+    Assert.assertEquals(
+        GenericRowData.of(StringData.fromString("a "), StringData.fromString("b")),
+        KeyCollation.normalize(collations,
+            GenericRowData.of(StringData.fromString("a "), StringData.fromString("b  "))));
+    Assert.assertEquals(GenericRowData.of(1L, null),
+        KeyCollation.normalize(collations, GenericRowData.of(1L, null)));
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PointGetLookupTest {
+
+  @Test
+  public void testMatchesByPosition() {
+    // Keys are matched to rows by position, even where the key column of the row differs
+    List<GenericRowData> keys = Arrays.asList(
+        GenericRowData.of(StringData.fromString("abc")),
+        GenericRowData.of(StringData.fromString("missing")),
+        GenericRowData.of(StringData.fromString("DEF")),
+        GenericRowData.of(StringData.fromString("deleted")));
+    RowData abc = GenericRowData.of(1L, StringData.fromString("ABC"));
+    RowData def = GenericRowData.of(2L, StringData.fromString("def"));
+    Map<RowData, List<RowData>> result = PointGetLookup.matchByPosition(keys,
+        Arrays.asList(1L, null, 2L, 3L), handles -> {
+          Assert.assertEquals(Arrays.asList(1L, 2L, 3L), handles);
+          return Arrays.asList(abc, def, null);
+        });
+    Assert.assertEquals(2, result.size());
+    Assert.assertEquals(Collections.singletonList(abc), result.get(keys.get(0)));
+    Assert.assertEquals(Collections.singletonList(def), result.get(keys.get(2)));
+  }
+
+  @Test
+  public void testNoHandles() {
+    List<GenericRowData> keys = Collections.singletonList(GenericRowData.of(1L));
+    Map<RowData, List<RowData>> result = PointGetLookup.matchByPosition(keys,
+        Collections.singletonList(null), handles -> {
+          Assert.assertTrue(handles.isEmpty());
+          return Collections.emptyList();
+        });
+    Assert.assertTrue(result.isEmpty());
+  }
+}
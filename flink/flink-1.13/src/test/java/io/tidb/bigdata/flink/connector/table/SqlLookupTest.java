@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.connector.table;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.flink.connector.jdbc.dialect.MySQLDialect;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.RowType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlLookupTest {
+
+  private static final String[] FIELD_NAMES = {"id", "name", "value"};
+
+  private static final RowType ROW_TYPE = RowType.of(
+      new LogicalType[]{new BigIntType(), new VarCharType(), new VarCharType()}, FIELD_NAMES);
+
+  private static SqlLookup createLookup(KeyCollation[] collations, int... keyIndexes) {
+    return new SqlLookup(null, new MySQLDialect(), "test", "t", FIELD_NAMES, ROW_TYPE,
+        keyIndexes, collations);
+  }
+
+  private static GenericRowData key(Object... fields) {
+    return GenericRowData.of(fields);
+  }
+
+  private static GenericRowData row(long id, String name) {
+    return GenericRowData.of(id, StringData.fromString(name), null);
+  }
+
+  @Test
+  public void testSqlMatchingOnClient() {
+    Assert.assertEquals("SELECT `id`, `name`, `value` FROM `test`.`t` WHERE `name` IN (?, ?)",
+        createLookup(new KeyCollation[]{KeyCollation.PAD_SPACE}, 1).getSql(2));
+    Assert.assertEquals("SELECT `id`, `name`, `value` FROM `test`.`t`"
+            + " WHERE (`id`, `name`) IN ((?, ?))",
+        createLookup(new KeyCollation[]{KeyCollation.BINARY, KeyCollation.BINARY}, 0, 1)
+            .getSql(1));
+  }
+
+  @Test
+  public void testSqlMatchingOnTiDB() {
+    Assert.assertEquals("SELECT `id`, `name`, `value`, CONCAT_WS(','"
+            + ", IF(`name` = ?, 0, NULL), IF(`name` = ?, 1, NULL))"
+            + " FROM `test`.`t` WHERE `name` IN (?, ?)",
+        createLookup(new KeyCollation[]{KeyCollation.OTHER}, 1).getSql(2));
+    Assert.assertEquals("SELECT `id`, `name`, `value`, CONCAT_WS(','"
+            + ", IF((`id`, `name`) = (?, ?), 0, NULL))"
+            + " FROM `test`.`t` WHERE (`id`, `name`) IN ((?, ?))",
+        createLookup(new KeyCollation[]{KeyCollation.BINARY, KeyCollation.OTHER}, 0, 1)
+            .getSql(1));
+  }
+
+  @Test
+  public void testMaxBatchSize() {
+    Assert.assertEquals(65535,
+        createLookup(new KeyCollation[]{KeyCollation.BINARY}, 0).getMaxBatchSize());
+    Assert.assertEquals(65535 / 2,
+        createLookup(new KeyCollation[]{KeyCollation.BINARY, KeyCollation.BINARY}, 0, 1)
+            .getMaxBatchSize());
+    // keys are bound twice when TiDB matches them
+    Assert.assertEquals(65535 / 4,
+        createLookup(new KeyCollation[]{KeyCollation.BINARY, KeyCollation.OTHER}, 0, 1)
+            .getMaxBatchSize());
+  }
+
+  @Test
+  public void testMatchesOnClientByPadSpace() {
+    SqlLookup lookup = createLookup(new KeyCollation[]{KeyCollation.PAD_SPACE}, 1);
+    // 'a' and 'a ' are the same key under a PAD SPACE collation, 'A' is not
+    List<GenericRowData> keys = Arrays.asList(
+        key(StringData.fromString("a")), key(StringData.fromString("a ")),
+        key(StringData.fromString("A")));
+    Map<GenericRowData, List<GenericRowData>> keysByNormalized = lookup.groupByNormalized(keys);
+    RowData first = row(1, "a");
+    RowData second = row(2, "a  ");
+    Map<RowData, List<RowData>> result = new HashMap<>();
+    lookup.addMatches(keysByNormalized, first, result);
+    lookup.addMatches(keysByNormalized, second, result);
+    lookup.addMatches(keysByNormalized, row(3, "b"), result);
+    Assert.assertEquals(2, result.size());
+    Assert.assertEquals(Arrays.asList(first, second), result.get(keys.get(0)));
+    Assert.assertEquals(Arrays.asList(first, second), result.get(keys.get(1)));
+    Assert.assertNull(result.get(keys.get(2)));
+  }
+
+  @Test
+  public void testMatchesOnClientByBinary() {
+    SqlLookup lookup = createLookup(new KeyCollation[]{KeyCollation.BINARY}, 1);
+    List<GenericRowData> keys = Arrays.asList(
+        key(StringData.fromString("a")), key(StringData.fromString("a ")));
+    RowData row = row(1, "a");
+    Map<RowData, List<RowData>> result = new HashMap<>();
+    lookup.addMatches(lookup.groupByNormalized(keys), row, result);
+    Assert.assertEquals(Collections.singletonMap(keys.get(0), Collections.singletonList(row)),
+        result);
+  }
+
+  @Test
+  public void testMatchesOnTiDBByPosition() {
+    // Under a case insensitive collation, both keys match the row although neither equals it
+    List<GenericRowData> keys = Arrays.asList(
+        key(StringData.fromString("abc")), key(StringData.fromString("ABC")),
+        key(StringData.fromString("def")));
+    RowData row = row(1, "Abc");
+    Map<RowData, List<RowData>> result = new HashMap<>();
+    SqlLookup.addMatches(keys, row, "0,1", result);
+    Assert.assertEquals(2, result.size());
+    Assert.assertEquals(Collections.singletonList(row), result.get(keys.get(0)));
+    Assert.assertEquals(Collections.singletonList(row), result.get(keys.get(1)));
+    Assert.assertNull(result.get(keys.get(2)));
+  }
+
+  @Test
+  public void testNoMatchesOnTiDB() {
+    List<GenericRowData> keys = Collections.singletonList(key(StringData.fromString("a")));
+    RowData row = row(1, "b");
+    Map<RowData, List<RowData>> result = new HashMap<>();
+    SqlLookup.addMatches(keys, row, "", result);
+    SqlLookup.addMatches(keys, row, null, result);
+    Assert.assertTrue(result.isEmpty());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import static io.tidb.bigdata.flink.format.cdc.CraftMessageBuilder.TYPE_BIGINT;
+import static io.tidb.bigdata.flink.format.cdc.CraftMessageBuilder.TYPE_VARCHAR;
+
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.ResolvedValue;
+import io.tidb.bigdata.cdc.RowColumn;
+import java.util.Collections;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CDCSchemaAdapterTest {
+
+  // no metadata is read from the event
+  private static final Event EVENT = new Event(
+      new Key("test", "t", 0, Key.Type.RESOLVED.code(), 1), ResolvedValue.getInstance());
+
+  private static CDCSchemaAdapter createAdapter() {
+    return new CDCSchemaAdapter(
+        DataTypes.ROW(DataTypes.FIELD("id", DataTypes.BIGINT()),
+            DataTypes.FIELD("name", DataTypes.STRING()),
+            DataTypes.FIELD("note", DataTypes.STRING())),
+        dataType -> InternalTypeInfo.of(dataType.getLogicalType()), null);
+  }
+
+  // every decoded message carries its own instances of the column names
+  private static RowColumn id(long value) {
+    return new RowColumn(new String("id".toCharArray()), value, false, TYPE_BIGINT,
+        RowColumn.FLAG_PRIMARY_KEY);
+  }
+
+  private static RowColumn varchar(String name, String value) {
+    return new RowColumn(new String(name.toCharArray()), value, false, TYPE_VARCHAR, 0);
+  }
+
+  private static GenericRowData convert(CDCSchemaAdapter adapter, RowColumn... columns) {
+    return adapter.convert(EVENT, columns).insert();
+  }
+
+  private static GenericRowData expected(long id, String name, String note) {
+    return GenericRowData.of(id, StringData.fromString(name),
+        note == null ? null : StringData.fromString(note));
+  }
+
+  @Test
+  public void testColumnsMappedByName() {
+    CDCSchemaAdapter adapter = createAdapter();
+    // columns in another order than the fields, a column which is not a field, a missing field
+    Assert.assertEquals(expected(1, "a", null),
+        convert(adapter, varchar("name", "a"), varchar("extra", "x"), id(1)));
+  }
+
+  @Test
+  public void testLayoutRekeyedByEqualNames() {
+    CDCSchemaAdapter adapter = createAdapter();
+    RowColumn[] columns = {id(1), varchar("name", "a"), varchar("note", "n")};
+    Assert.assertEquals(expected(1, "a", "n"), convert(adapter, columns));
+    // the same name instances, as the following rows of a message
+    Assert.assertEquals(expected(1, "a", "n"), convert(adapter, columns));
+    // equal names of another message
+    for (long i = 2; i < 5; i++) {
+      Assert.assertEquals(expected(i, "b" + i, "n"),
+          convert(adapter, id(i), varchar("name", "b" + i), varchar("note", "n")));
+    }
+  }
+
+  @Test
+  public void testLayoutChangedByDDL() {
+    CDCSchemaAdapter adapter = createAdapter();
+    Assert.assertEquals(expected(1, "a", null), convert(adapter, id(1), varchar("name", "a")));
+    // ALTER TABLE t ADD COLUMN note ... FIRST
+    Assert.assertEquals(expected(2, "b", "n"),
+        convert(adapter, varchar("note", "n"), id(2), varchar("name", "b")));
+    // ALTER TABLE t RENAME COLUMN name TO title
+    Assert.assertEquals(expected(3, null, "n"),
+        convert(adapter, varchar("note", "n"), id(3), varchar("title", "c")));
+    // ALTER TABLE t DROP COLUMN note, with changes of the old layout still in flight
+    Assert.assertEquals(expected(4, "d", null), convert(adapter, id(4), varchar("name", "d")));
+    Assert.assertEquals(expected(5, null, "n"),
+        convert(adapter, varchar("note", "n"), id(5), varchar("title", "e")));
+  }
+
+  @Test
+  public void testKeyChanged() {
+    CDCSchemaAdapter adapter = new CDCSchemaAdapter(
+        DataTypes.ROW(DataTypes.FIELD("id", DataTypes.BIGINT())),
+        dataType -> InternalTypeInfo.of(dataType.getLogicalType()), null,
+        Collections.emptyList());
+    Assert.assertTrue(adapter.isUpsert());
+    Assert.assertFalse(adapter.isKeyChanged(new RowColumn[]{id(1), varchar("name", "a")},
+        new RowColumn[]{id(1), varchar("name", "b")}));
+    Assert.assertTrue(adapter.isKeyChanged(new RowColumn[]{id(1), varchar("name", "a")},
+        new RowColumn[]{id(2), varchar("name", "a")}));
+    // a DDL between the images moves the key column
+    Assert.assertFalse(adapter.isKeyChanged(new RowColumn[]{varchar("name", "a"), id(1)},
+        new RowColumn[]{id(1), varchar("name", "a")}));
+  }
+}
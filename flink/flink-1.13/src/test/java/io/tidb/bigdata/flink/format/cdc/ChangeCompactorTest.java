@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import static io.tidb.bigdata.flink.format.cdc.CraftMessageBuilder.TYPE_BIGINT;
+import static io.tidb.bigdata.flink.format.cdc.CraftMessageBuilder.TYPE_VARCHAR;
+import static io.tidb.bigdata.flink.format.cdc.CraftMessageBuilder.column;
+
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.RowColumn;
+import io.tidb.bigdata.flink.format.cdc.CraftMessageBuilder.Column;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.flink.table.api.DataTypes;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.runtime.typeutils.InternalTypeInfo;
+import org.apache.flink.types.RowKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChangeCompactorTest {
+
+  private static final long HANDLE_FLAGS = RowColumn.FLAG_HANDLE_KEY | RowColumn.FLAG_PRIMARY_KEY;
+
+  private static final CDCSchemaAdapter SCHEMA = new CDCSchemaAdapter(
+      DataTypes.ROW(DataTypes.FIELD("id", DataTypes.BIGINT()),
+          DataTypes.FIELD("name", DataTypes.STRING())),
+      dataType -> InternalTypeInfo.of(dataType.getLogicalType()), null);
+
+  static Column[] row(long id, String name) {
+    return new Column[]{
+        column("id", TYPE_BIGINT, HANDLE_FLAGS, id),
+        column("name", TYPE_VARCHAR, 0, name)};
+  }
+
+  private static GenericRowData expected(RowKind kind, long id, String name) {
+    return GenericRowData.ofKind(kind, id, StringData.fromString(name));
+  }
+
+  private static List<RowData> compact(CraftMessageBuilder builder) {
+    ChangeCompactor compactor = new ChangeCompactor();
+    for (Event event : CraftMessageBuilder.decode(builder.build())) {
+      for (RowColumn column : event.asRowChanged().getNewValue() == null
+          ? event.asRowChanged().getOldValue() : event.asRowChanged().getNewValue()) {
+        // craft carries the handle in the flags only
+        Assert.assertFalse(column.isWhereHandle());
+      }
+      Assert.assertTrue(compactor.apply(event));
+    }
+    List<RowData> rows = new ArrayList<>();
+    compactor.collect(SCHEMA, rows::add);
+    Assert.assertEquals(0, compactor.size());
+    return rows;
+  }
+
+  @Test
+  public void testInsertAndUpdate() {
+    List<RowData> rows = compact(new CraftMessageBuilder()
+        .insert(1, "test", "t", row(1, "a"))
+        .update(2, "test", "t", row(1, "a"), row(1, "b"))
+        .update(3, "test", "t", row(1, "b"), row(1, "c")));
+    Assert.assertEquals(Collections.singletonList(expected(RowKind.INSERT, 1, "c")), rows);
+  }
+
+  @Test
+  public void testInsertAndDelete() {
+    List<RowData> rows = compact(new CraftMessageBuilder()
+        .insert(1, "test", "t", row(1, "a"))
+        .update(2, "test", "t", row(1, "a"), row(1, "b"))
+        .delete(3, "test", "t", row(1, "b")));
+    Assert.assertEquals(Collections.emptyList(), rows);
+  }
+
+  @Test
+  public void testHandleMove() {
+    List<RowData> rows = compact(new CraftMessageBuilder()
+        .update(1, "test", "t", row(1, "a"), row(2, "a"))
+        .update(2, "test", "t", row(2, "a"), row(2, "b"))
+        .insert(3, "test", "t", row(3, "c")));
+    Assert.assertEquals(Arrays.asList(
+        expected(RowKind.DELETE, 1, "a"),
+        expected(RowKind.INSERT, 2, "b"),
+        expected(RowKind.INSERT, 3, "c")), rows);
+  }
+
+  @Test
+  public void testUpdatesOfDifferentRows() {
+    List<RowData> rows = compact(new CraftMessageBuilder()
+        .update(1, "test", "t", row(1, "a"), row(1, "b"))
+        .update(2, "test", "t", row(2, "x"), row(2, "y"))
+        .update(3, "test", "t", row(1, "b"), row(1, "c")));
+    Assert.assertEquals(Arrays.asList(
+        expected(RowKind.UPDATE_BEFORE, 1, "a"),
+        expected(RowKind.UPDATE_AFTER, 1, "c"),
+        expected(RowKind.UPDATE_BEFORE, 2, "x"),
+        expected(RowKind.UPDATE_AFTER, 2, "y")), rows);
+  }
+
+  @Test
+  public void testTablesSharingHandles() {
+    // a partition carries the changes of every table the key filter accepts
+    List<RowData> rows = compact(new CraftMessageBuilder()
+        .insert(1, "test", "t1", row(1, "a"))
+        .insert(2, "test", "t2", row(1, "x"))
+        .delete(3, "test", "t1", row(1, "a"))
+        .update(4, "test", "t2", row(1, "x"), row(1, "y"))
+        .insert(5, "other", "t1", row(1, "b")));
+    Assert.assertEquals(Arrays.asList(
+        expected(RowKind.INSERT, 1, "y"),
+        expected(RowKind.INSERT, 1, "b")), rows);
+  }
+}
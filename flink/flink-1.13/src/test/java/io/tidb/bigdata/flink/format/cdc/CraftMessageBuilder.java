@@ -0,0 +1,253 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import io.tidb.bigdata.cdc.Codec;
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.Key;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes row changes into a craft message the way TiCDC does, so tests could work on events
+ * decoded by the craft codec.
+ */
+final class CraftMessageBuilder {
+
+  static final int TYPE_BIGINT = 8;
+  static final int TYPE_VARCHAR = 15;
+
+  private static final int VERSION = 1;
+  private static final int COLUMN_GROUP_TYPE_NEW = 1;
+  private static final int COLUMN_GROUP_TYPE_OLD = 2;
+
+  static final class Column {
+
+    private final String name;
+    private final int type;
+    private final long flags;
+    // Long for integer columns, String for the others, null for null
+    private final Object value;
+
+    private Column(String name, int type, long flags, Object value) {
+      this.name = name;
+      this.type = type;
+      this.flags = flags;
+      this.value = value;
+    }
+  }
+
+  private final List<String> terms = new ArrayList<>();
+  private final Map<String, Integer> termIds = new HashMap<>();
+  private final List<long[]> keys = new ArrayList<>();
+  private final List<byte[]> values = new ArrayList<>();
+  private final List<long[]> columnGroupSizes = new ArrayList<>();
+
+  static Column column(String name, int type, long flags, Object value) {
+    return new Column(name, type, flags, value);
+  }
+
+  static List<Event> decode(byte[] message) {
+    List<Event> events = new ArrayList<>();
+    Codec.craft().decode(message).forEach(events::add);
+    return events;
+  }
+
+  CraftMessageBuilder insert(long ts, String schema, String table, Column... after) {
+    return rowChanged(ts, schema, table, null, after);
+  }
+
+  CraftMessageBuilder update(long ts, String schema, String table, Column[] before,
+      Column[] after) {
+    return rowChanged(ts, schema, table, before, after);
+  }
+
+  CraftMessageBuilder delete(long ts, String schema, String table, Column... before) {
+    return rowChanged(ts, schema, table, before, null);
+  }
+
+  CraftMessageBuilder resolved(long ts) {
+    keys.add(new long[]{ts, Key.Type.RESOLVED.code(), -1, -1});
+    values.add(new byte[0]);
+    columnGroupSizes.add(new long[0]);
+    return this;
+  }
+
+  byte[] build() {
+    // keys are encoded column by column: ts, type, partition, schema and table
+    long[][] columns = new long[4][keys.size()];
+    for (int idx = 0; idx < keys.size(); idx++) {
+      for (int column = 0; column < columns.length; column++) {
+        columns[column][idx] = keys.get(idx)[column];
+      }
+    }
+    ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+    writeDeltaChunk(keyBytes, columns[0], false);
+    writeChunk(keyBytes, columns[1], false);
+    writeDeltaChunk(keyBytes, new long[keys.size()], true);
+    writeDeltaChunk(keyBytes, columns[2], true);
+    writeDeltaChunk(keyBytes, columns[3], true);
+
+    ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+    if (!terms.isEmpty()) {
+      writeUvarint(termBytes, terms.size());
+      for (String term : terms) {
+        writeUvarint(termBytes, term.getBytes(StandardCharsets.UTF_8).length);
+      }
+      for (String term : terms) {
+        write(termBytes, term.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    ByteArrayOutputStream sizeTables = new ByteArrayOutputStream();
+    writeSizeTable(sizeTables, new long[]{keyBytes.size(), termBytes.size()});
+    long[] valueSizes = new long[values.size()];
+    for (int idx = 0; idx < valueSizes.length; idx++) {
+      valueSizes[idx] = values.get(idx).length;
+    }
+    writeSizeTable(sizeTables, valueSizes);
+    for (long[] sizes : columnGroupSizes) {
+      writeSizeTable(sizeTables, sizes);
+    }
+
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    writeUvarint(message, VERSION);
+    write(message, keyBytes.toByteArray());
+    for (byte[] value : values) {
+      write(message, value);
+    }
+    write(message, termBytes.toByteArray());
+    write(message, sizeTables.toByteArray());
+    // the size of the size tables is encoded backwards from the end of the message
+    ByteArrayOutputStream size = new ByteArrayOutputStream();
+    writeUvarint(size, sizeTables.size());
+    byte[] sizeBytes = size.toByteArray();
+    for (int idx = sizeBytes.length - 1; idx >= 0; idx--) {
+      message.write(sizeBytes[idx]);
+    }
+    return message.toByteArray();
+  }
+
+  private CraftMessageBuilder rowChanged(long ts, String schema, String table, Column[] before,
+      Column[] after) {
+    keys.add(new long[]{ts, Key.Type.ROW_CHANGED.code(), termId(schema), termId(table)});
+    ByteArrayOutputStream value = new ByteArrayOutputStream();
+    List<Long> sizes = new ArrayList<>();
+    if (after != null) {
+      sizes.add((long) writeColumnGroup(value, COLUMN_GROUP_TYPE_NEW, after));
+    }
+    if (before != null) {
+      sizes.add((long) writeColumnGroup(value, COLUMN_GROUP_TYPE_OLD, before));
+    }
+    values.add(value.toByteArray());
+    columnGroupSizes.add(sizes.stream().mapToLong(Long::longValue).toArray());
+    return this;
+  }
+
+  private int writeColumnGroup(ByteArrayOutputStream out, int type, Column[] columns) {
+    ByteArrayOutputStream group = new ByteArrayOutputStream();
+    group.write(type);
+    writeUvarint(group, columns.length);
+    long[] names = new long[columns.length];
+    long[] types = new long[columns.length];
+    long[] flags = new long[columns.length];
+    long[] lengths = new long[columns.length];
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    for (int idx = 0; idx < columns.length; idx++) {
+      Column column = columns[idx];
+      names[idx] = termId(column.name);
+      types[idx] = column.type;
+      flags[idx] = column.flags;
+      if (column.value == null) {
+        lengths[idx] = -1;
+        continue;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      if (column.value instanceof Long) {
+        writeVarint(bytes, (Long) column.value);
+      } else {
+        write(bytes, column.value.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      lengths[idx] = bytes.size();
+      write(data, bytes.toByteArray());
+    }
+    writeDeltaChunk(group, names, true);
+    writeChunk(group, types, false);
+    writeChunk(group, flags, false);
+    writeChunk(group, lengths, true);
+    write(group, data.toByteArray());
+    write(out, group.toByteArray());
+    return group.size();
+  }
+
+  private long termId(String term) {
+    if (term == null) {
+      return -1;
+    }
+    return termIds.computeIfAbsent(term, t -> {
+      terms.add(t);
+      return terms.size() - 1;
+    });
+  }
+
+  private static void writeSizeTable(ByteArrayOutputStream out, long[] sizes) {
+    writeUvarint(out, sizes.length);
+    writeDeltaChunk(out, sizes, true);
+  }
+
+  private static void writeChunk(ByteArrayOutputStream out, long[] values, boolean signed) {
+    for (long value : values) {
+      if (signed) {
+        writeVarint(out, value);
+      } else {
+        writeUvarint(out, value);
+      }
+    }
+  }
+
+  private static void writeDeltaChunk(ByteArrayOutputStream out, long[] values, boolean signed) {
+    long last = 0;
+    for (long value : values) {
+      if (signed) {
+        writeVarint(out, value - last);
+      } else {
+        writeUvarint(out, value - last);
+      }
+      last = value;
+    }
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, long value) {
+    writeUvarint(out, (value << 1) ^ (value >> 63));
+  }
+
+  private static void writeUvarint(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static void write(ByteArrayOutputStream out, byte[] bytes) {
+    out.write(bytes, 0, bytes.length);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.format.cdc;
+
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.ResolvedValue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.util.Collector;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelEventCollectorTest {
+
+  private static List<Event> events(int count) {
+    List<Event> events = new ArrayList<>(count);
+    for (int ts = 0; ts < count; ts++) {
+      events.add(new Event(new Key(null, null, 0, Key.Type.RESOLVED.code(), ts),
+          ResolvedValue.getInstance()));
+    }
+    return events;
+  }
+
+  // emits no row for every third event and two rows for every other one, after a random delay
+  private static void convert(Event event, Collector<RowData> out) {
+    LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(20000));
+    if (event.getTs() % 3 == 0) {
+      return;
+    }
+    out.collect(GenericRowData.of(event.getTs()));
+    out.collect(GenericRowData.of(-event.getTs()));
+  }
+
+  private static List<RowData> expected(List<Event> events) {
+    List<RowData> rows = new ArrayList<>();
+    for (Event event : events) {
+      convert(event, new ListCollector<>(rows));
+    }
+    return rows;
+  }
+
+  private static List<RowData> collect(ParallelEventCollector collector, List<Event> events)
+      throws IOException {
+    List<RowData> rows = new ArrayList<>();
+    collector.collect(events, new ListCollector<>(rows));
+    return rows;
+  }
+
+  @Test
+  public void testOrder() throws IOException {
+    ParallelEventCollector collector =
+        new ParallelEventCollector(4, ParallelEventCollectorTest::convert);
+    // many more batches than in flight, and a partial batch at the end
+    List<Event> events = events(ParallelEventCollector.BATCH_SIZE * 20 + 17);
+    List<RowData> expected = expected(events);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(expected, collect(collector, events));
+    }
+  }
+
+  @Test
+  public void testSmallMessageIsConvertedInline() throws IOException {
+    Thread caller = Thread.currentThread();
+    ParallelEventCollector collector = new ParallelEventCollector(4, (event, out) -> {
+      Assert.assertSame(caller, Thread.currentThread());
+      convert(event, out);
+    });
+    List<Event> events = events(ParallelEventCollector.BATCH_SIZE - 1);
+    Assert.assertEquals(expected(events), collect(collector, events));
+  }
+
+  @Test
+  public void testFailure() throws IOException {
+    int failure = ParallelEventCollector.BATCH_SIZE * 5 + 3;
+    BiConsumer<Event, Collector<RowData>> converter = (event, out) -> {
+      if (event.getTs() == failure) {
+        throw new IllegalStateException("failed to convert " + event.getTs());
+      }
+      convert(event, out);
+    };
+    ParallelEventCollector collector = new ParallelEventCollector(4, converter);
+    List<Event> events = events(ParallelEventCollector.BATCH_SIZE * 20);
+    List<RowData> rows = new ArrayList<>();
+    try {
+      collector.collect(events, new ListCollector<>(rows));
+      Assert.fail("the failure of a worker must be thrown");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("failed to convert " + failure, e.getMessage());
+    }
+    // only the batches before the failing one are emitted, in order
+    List<RowData> emitted = expected(events.subList(0, ParallelEventCollector.BATCH_SIZE * 5));
+    Assert.assertEquals(emitted, rows);
+
+    // nothing of the failed message is left in flight
+    List<Event> next = events(ParallelEventCollector.BATCH_SIZE * 3);
+    Assert.assertEquals(expected(next), collect(collector, next));
+  }
+
+  @Test
+  public void testError() throws IOException {
+    ParallelEventCollector collector = new ParallelEventCollector(2, (event, out) -> {
+      throw new AssertionError("error");
+    });
+    try {
+      collect(collector, events(ParallelEventCollector.BATCH_SIZE * 2));
+      Assert.fail("the error of a worker must be thrown");
+    } catch (AssertionError e) {
+      Assert.assertEquals("error", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    ParallelEventCollector collector = new ParallelEventCollector(4, (event, out) -> {
+      workers.add(Thread.currentThread());
+      convert(event, out);
+    });
+    List<Event> events = events(ParallelEventCollector.BATCH_SIZE * 8);
+    Assert.assertEquals(expected(events), collect(collector, events));
+    Assert.assertFalse(workers.isEmpty());
+
+    collector.close();
+    for (Thread worker : workers) {
+      worker.join(10000);
+      Assert.assertFalse(worker.isAlive());
+    }
+  }
+}
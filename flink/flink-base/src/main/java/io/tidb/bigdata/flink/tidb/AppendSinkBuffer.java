@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.types.RowKind;
+
+/**
+ * Buffers inserted rows of a sink without key fields.
+ */
+final class AppendSinkBuffer extends TiDBSinkBuffer {
+
+  private final List<Change> changes = new ArrayList<>();
+
+  AppendSinkBuffer(LogicalType[] fieldTypes) {
+    super(fieldTypes);
+  }
+
+  @Override
+  void add(RowData row) {
+    RowKind kind = row.getRowKind();
+    if (kind != RowKind.INSERT && kind != RowKind.UPDATE_AFTER) {
+      throw new IllegalStateException(
+          "Sink without key fields only accepts inserts, but received " + kind);
+    }
+    changes.add(Change.write(toJdbcObjects(row)));
+  }
+
+  @Override
+  int size() {
+    return changes.size();
+  }
+
+  @Override
+  List<Change> getChanges() {
+    return changes;
+  }
+
+  @Override
+  void clear() {
+    changes.clear();
+  }
+}
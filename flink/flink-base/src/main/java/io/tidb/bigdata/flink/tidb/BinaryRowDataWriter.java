@@ -0,0 +1,272 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.tidb;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.data.writer.BinaryRowWriter;
+import org.apache.flink.table.data.writer.BinaryWriter;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.DistinctType;
+import org.apache.flink.table.types.logical.LocalZonedTimestampType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.TimestampType;
+import org.apache.flink.types.RowKind;
+
+/**
+ * Writes rows read from TiDB directly into a {@link BinaryRowData}, skipping the
+ * intermediate {@code GenericRowData}, {@code Object[]} and the {@code StringData},
+ * {@code DecimalData} and {@code TimestampData} wrappers.
+ *
+ * <p>The writer always targets the same {@link BinaryRowData}. When object reuse is enabled,
+ * {@link #complete()} hands out that row, otherwise it returns a compact copy of it.
+ */
+public class BinaryRowDataWriter {
+
+  private static final long MILLIS_PER_DAY = 86400000L;
+
+  private static final int NANOS_PER_MILLI = 1000000;
+
+  private final LogicalType[] fieldTypes;
+
+  private final InternalSetter[] internalSetters;
+
+  private final boolean objectReuse;
+
+  private final BinaryRowData row;
+
+  private final BinaryRowWriter writer;
+
+  public BinaryRowDataWriter(LogicalType[] fieldTypes, boolean objectReuse) {
+    this.fieldTypes = fieldTypes;
+    this.internalSetters = new InternalSetter[fieldTypes.length];
+    for (int i = 0; i < fieldTypes.length; i++) {
+      internalSetters[i] = createInternalSetter(fieldTypes[i]);
+    }
+    this.objectReuse = objectReuse;
+    this.row = new BinaryRowData(fieldTypes.length);
+    this.writer = new BinaryRowWriter(row);
+  }
+
+  public int getArity() {
+    return fieldTypes.length;
+  }
+
+  public void reset(RowKind kind) {
+    writer.reset();
+    writer.writeRowKind(kind);
+  }
+
+  /**
+   * Write a value produced by {@link TypeUtils#getObjectWithDataType}, i.e. an instance of the
+   * conversion class of the field's data type.
+   */
+  public void write(int pos, Object object) {
+    final LogicalType type = fieldTypes[pos];
+    if (object == null) {
+      writeNull(pos, type);
+      return;
+    }
+    switch (type.getTypeRoot()) {
+      case BOOLEAN:
+        writer.writeBoolean(pos, (Boolean) object);
+        break;
+      case TINYINT:
+        writer.writeByte(pos, ((Number) object).byteValue());
+        break;
+      case SMALLINT:
+        writer.writeShort(pos, ((Number) object).shortValue());
+        break;
+      case INTEGER:
+        writer.writeInt(pos, ((Number) object).intValue());
+        break;
+      case BIGINT:
+        writer.writeLong(pos, ((Number) object).longValue());
+        break;
+      case FLOAT:
+        writer.writeFloat(pos, ((Number) object).floatValue());
+        break;
+      case DOUBLE:
+        writer.writeDouble(pos, ((Number) object).doubleValue());
+        break;
+      case DATE:
+        writer.writeInt(pos, (int) ((LocalDate) object).toEpochDay());
+        break;
+      case TIME_WITHOUT_TIME_ZONE:
+        writer.writeInt(pos, (int) (((LocalTime) object).toNanoOfDay() / NANOS_PER_MILLI));
+        break;
+      case CHAR:
+      case VARCHAR:
+        // BinaryStringData shares the layout of binary data, so we can write the encoded bytes
+        // straight away instead of wrapping them into a StringData first
+        writer.writeBinary(pos, object.toString().getBytes(UTF_8));
+        break;
+      case BINARY:
+      case VARBINARY:
+        writer.writeBinary(pos, (byte[]) object);
+        break;
+      case DECIMAL:
+        writeDecimal(pos, (BigDecimal) object, (DecimalType) type);
+        break;
+      case TIMESTAMP_WITHOUT_TIME_ZONE:
+        writeTimestamp(pos, (LocalDateTime) object, ((TimestampType) type).getPrecision());
+        break;
+      default:
+        writeInternal(pos, TypeUtils.toRowDataType(object));
+    }
+  }
+
+  /**
+   * Write a value which is already in flink's internal data format.
+   */
+  public void writeInternal(int pos, Object object) {
+    final LogicalType type = fieldTypes[pos];
+    if (object == null) {
+      writeNull(pos, type);
+      return;
+    }
+    internalSetters[pos].set(writer, pos, object);
+  }
+
+  public BinaryRowData complete() {
+    writer.complete();
+    return objectReuse ? row : row.copy();
+  }
+
+  private void writeNull(int pos, LogicalType type) {
+    switch (type.getTypeRoot()) {
+      case DECIMAL:
+        int precision = ((DecimalType) type).getPrecision();
+        if (!DecimalData.isCompact(precision)) {
+          // keep the variable length part reserved, as flink does for nullable decimals
+          writer.writeDecimal(pos, null, precision);
+          return;
+        }
+        break;
+      case TIMESTAMP_WITHOUT_TIME_ZONE:
+        if (!TimestampData.isCompact(((TimestampType) type).getPrecision())) {
+          writer.writeTimestamp(pos, null, ((TimestampType) type).getPrecision());
+          return;
+        }
+        break;
+      case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+        if (!TimestampData.isCompact(((LocalZonedTimestampType) type).getPrecision())) {
+          writer.writeTimestamp(pos, null, ((LocalZonedTimestampType) type).getPrecision());
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    writer.setNullAt(pos);
+  }
+
+  private void writeDecimal(int pos, BigDecimal decimal, DecimalType type) {
+    final int precision = type.getPrecision();
+    if (!DecimalData.isCompact(precision)) {
+      writer.writeDecimal(pos,
+          DecimalData.fromBigDecimal(decimal, precision, type.getScale()), precision);
+      return;
+    }
+    // same as DecimalData.fromBigDecimal, but keeps the compact value unwrapped
+    BigDecimal scaled = decimal.setScale(type.getScale(), RoundingMode.HALF_UP);
+    if (scaled.precision() > precision) {
+      writer.setNullAt(pos);
+      return;
+    }
+    writer.writeLong(pos, scaled.unscaledValue().longValue());
+  }
+
+  private void writeTimestamp(int pos, LocalDateTime dateTime, int precision) {
+    if (!TimestampData.isCompact(precision)) {
+      writer.writeTimestamp(pos, TimestampData.fromLocalDateTime(dateTime), precision);
+      return;
+    }
+    long nanoOfDay = dateTime.toLocalTime().toNanoOfDay();
+    writer.writeLong(pos,
+        dateTime.toLocalDate().toEpochDay() * MILLIS_PER_DAY + nanoOfDay / NANOS_PER_MILLI);
+  }
+
+  /**
+   * Writes a value in flink's internal data format into a field. Flink's own
+   * {@link BinaryWriter#createValueSetter} only writes into arrays in the flink versions we
+   * support, and {@code BinaryWriter.write} is deprecated and dispatches on the type of every
+   * value, so the setters are created once per field instead.
+   */
+  @FunctionalInterface
+  private interface InternalSetter {
+
+    void set(BinaryWriter writer, int pos, Object value);
+  }
+
+  private static InternalSetter createInternalSetter(LogicalType type) {
+    switch (type.getTypeRoot()) {
+      case BOOLEAN:
+        return (writer, pos, value) -> writer.writeBoolean(pos, (Boolean) value);
+      case TINYINT:
+        return (writer, pos, value) -> writer.writeByte(pos, (Byte) value);
+      case SMALLINT:
+        return (writer, pos, value) -> writer.writeShort(pos, (Short) value);
+      case INTEGER:
+      case DATE:
+      case TIME_WITHOUT_TIME_ZONE:
+      case INTERVAL_YEAR_MONTH:
+        return (writer, pos, value) -> writer.writeInt(pos, (Integer) value);
+      case BIGINT:
+      case INTERVAL_DAY_TIME:
+        return (writer, pos, value) -> writer.writeLong(pos, (Long) value);
+      case FLOAT:
+        return (writer, pos, value) -> writer.writeFloat(pos, (Float) value);
+      case DOUBLE:
+        return (writer, pos, value) -> writer.writeDouble(pos, (Double) value);
+      case CHAR:
+      case VARCHAR:
+        return (writer, pos, value) -> writer.writeString(pos, (StringData) value);
+      case BINARY:
+      case VARBINARY:
+        return (writer, pos, value) -> writer.writeBinary(pos, (byte[]) value);
+      case DECIMAL:
+        final int decimalPrecision = ((DecimalType) type).getPrecision();
+        return (writer, pos, value) ->
+            writer.writeDecimal(pos, (DecimalData) value, decimalPrecision);
+      case TIMESTAMP_WITHOUT_TIME_ZONE:
+        final int timestampPrecision = ((TimestampType) type).getPrecision();
+        return (writer, pos, value) ->
+            writer.writeTimestamp(pos, (TimestampData) value, timestampPrecision);
+      case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+        final int localPrecision = ((LocalZonedTimestampType) type).getPrecision();
+        return (writer, pos, value) ->
+            writer.writeTimestamp(pos, (TimestampData) value, localPrecision);
+      case DISTINCT_TYPE:
+        return createInternalSetter(((DistinctType) type).getSourceType());
+      default:
+        // TiDB has no nested or raw types, only fail when such a field is not null
+        return (writer, pos, value) -> {
+          throw new UnsupportedOperationException("Unsupported type: " + type);
+        };
+    }
+  }
+}
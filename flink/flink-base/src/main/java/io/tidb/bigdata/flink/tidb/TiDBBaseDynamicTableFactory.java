@@ -21,20 +21,21 @@ import io.tidb.bigdata.tidb.ClientConfig;
 import io.tidb.bigdata.tidb.ClientSession;
 import io.tidb.bigdata.tidb.TiDBWriteMode;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.flink.configuration.ConfigOption;
 import org.apache.flink.configuration.ConfigOptions;
+import org.apache.flink.configuration.MemorySize;
 import org.apache.flink.configuration.ReadableConfig;
-import org.apache.flink.connector.jdbc.JdbcExecutionOptions;
-import org.apache.flink.connector.jdbc.internal.options.JdbcDmlOptions;
 import org.apache.flink.connector.jdbc.internal.options.JdbcLookupOptions;
-import org.apache.flink.connector.jdbc.internal.options.JdbcOptions;
-import org.apache.flink.connector.jdbc.table.JdbcDynamicTableSink;
 import org.apache.flink.table.api.TableSchema;
 import org.apache.flink.table.connector.sink.DynamicTableSink;
 import org.apache.flink.table.factories.DynamicTableSinkFactory;
 import org.apache.flink.table.factories.DynamicTableSourceFactory;
 import org.apache.flink.table.factories.FactoryUtil;
+import org.apache.flink.util.Preconditions;
 
 public abstract class TiDBBaseDynamicTableFactory implements DynamicTableSourceFactory,
     DynamicTableSinkFactory {
@@ -88,6 +89,30 @@ public abstract class TiDBBaseDynamicTableFactory implements DynamicTableSourceF
       .intType()
       .defaultValue(3)
       .withDescription("the max retry times if writing records to database failed.");
+  public static final String SINK_SEMANTIC_AT_LEAST_ONCE = "at-least-once";
+  public static final String SINK_SEMANTIC_EXACTLY_ONCE = "exactly-once";
+  public static final Set<String> VALID_SINK_SEMANTICS =
+      ImmutableSet.of(SINK_SEMANTIC_AT_LEAST_ONCE, SINK_SEMANTIC_EXACTLY_ONCE);
+  public static final ConfigOption<String> SINK_SEMANTIC = ConfigOptions
+      .key("sink.semantic")
+      .stringType()
+      .defaultValue(SINK_SEMANTIC_AT_LEAST_ONCE)
+      .withDescription("the delivery guarantee of the sink, at-least-once or exactly-once. "
+          + "exactly-once sinks write the rows of a checkpoint in one transaction once the "
+          + "checkpoint completes.");
+  public static final ConfigOption<String> SINK_TRANSACTION_TABLE = ConfigOptions
+      .key("sink.transaction.table")
+      .stringType()
+      .defaultValue("flink_tidb_sink_transactions")
+      .withDescription("the table in the sink database which stages the changes of exactly-once "
+          + "sinks until their checkpoints complete, it is created if it does not exist.");
+  public static final ConfigOption<MemorySize> SINK_TRANSACTION_MAX_SIZE = ConfigOptions
+      .key("sink.transaction.max-size")
+      .memoryType()
+      .defaultValue(MemorySize.parse("64mb"))
+      .withDescription("the max size of the changes of a checkpoint of exactly-once sinks, "
+          + "which are committed in one TiDB transaction. It has to stay below the "
+          + "txn-total-size-limit of TiDB.");
 
   // look up config options
   public static final ConfigOption<Long> LOOKUP_CACHE_MAX_ROWS = ConfigOptions
@@ -133,14 +158,14 @@ public abstract class TiDBBaseDynamicTableFactory implements DynamicTableSourceF
         SINK_BUFFER_FLUSH_INTERVAL,
         SINK_BUFFER_FLUSH_MAX_ROWS,
         SINK_MAX_RETRIES,
+        SINK_SEMANTIC,
+        SINK_TRANSACTION_TABLE,
+        SINK_TRANSACTION_MAX_SIZE,
         WRITE_MODE)
         .add(options)
         .build();
   }
 
-  /**
-   * see ${@link org.apache.flink.connector.jdbc.table.JdbcDynamicTableFactory}
-   */
   @Override
   public DynamicTableSink createDynamicTableSink(Context context) {
     FactoryUtil.TableFactoryHelper helper = FactoryUtil
@@ -148,23 +173,23 @@ public abstract class TiDBBaseDynamicTableFactory implements DynamicTableSourceF
     ReadableConfig config = helper.getOptions();
     TableSchema schema = context.getCatalogTable().getSchema();
     String databaseName = config.get(DATABASE_NAME);
-    // jdbc options
-    JdbcOptions jdbcOptions = JdbcUtils.getJdbcOptions(context.getCatalogTable().toProperties());
-    // execution options
-    JdbcExecutionOptions jdbcExecutionOptions = JdbcExecutionOptions.builder()
-        .withBatchSize(config.get(SINK_BUFFER_FLUSH_MAX_ROWS))
-        .withBatchIntervalMs(config.get(SINK_BUFFER_FLUSH_INTERVAL).toMillis())
-        .withMaxRetries(config.get(SINK_MAX_RETRIES))
-        .build();
-    // dml options
-    JdbcDmlOptions jdbcDmlOptions = JdbcDmlOptions.builder()
-        .withTableName(jdbcOptions.getTableName())
-        .withDialect(jdbcOptions.getDialect())
-        .withFieldNames(schema.getFieldNames())
-        .withKeyFields(getKeyFields(context, config, databaseName, jdbcOptions.getTableName()))
-        .build();
+    Map<String, String> properties = new HashMap<>(context.getCatalogTable().toProperties());
+    String tableName = JdbcUtils.getJdbcOptions(properties).getTableName();
+    return new TiDBDynamicTableSink(properties, databaseName, tableName, schema,
+        getKeyFields(context, config, databaseName, tableName),
+        config.get(SINK_BUFFER_FLUSH_MAX_ROWS),
+        config.get(SINK_BUFFER_FLUSH_INTERVAL).toMillis(),
+        config.get(SINK_MAX_RETRIES),
+        isExactlyOnce(config),
+        config.get(SINK_TRANSACTION_TABLE),
+        config.get(SINK_TRANSACTION_MAX_SIZE).getBytes());
+  }
 
-    return new JdbcDynamicTableSink(jdbcOptions, jdbcExecutionOptions, jdbcDmlOptions, schema);
+  public static boolean isExactlyOnce(ReadableConfig config) {
+    String semantic = config.get(SINK_SEMANTIC);
+    Preconditions.checkArgument(VALID_SINK_SEMANTICS.contains(semantic),
+        "Unsupported sink semantic: " + semantic + ", valid values are " + VALID_SINK_SEMANTICS);
+    return semantic.equals(SINK_SEMANTIC_EXACTLY_ONCE);
   }
 
   private String[] getKeyFields(Context context, ReadableConfig config, String databaseName,
@@ -175,11 +200,10 @@ public abstract class TiDBBaseDynamicTableFactory implements DynamicTableSourceF
     if (writeMode == TiDBWriteMode.UPSERT) {
       try (ClientSession clientSession = ClientSession.createWithSingleConnection(
           new ClientConfig(context.getCatalogTable().toProperties()))) {
-        Set<String> set = ImmutableSet.<String>builder()
-            .addAll(clientSession.getUniqueKeyColumns(databaseName, tableName))
-            .addAll(clientSession.getPrimaryKeyColumns(databaseName, tableName))
-            .build();
-        keyFields = set.size() == 0 ? null : set.toArray(new String[0]);
+        // a single key, so the changes buffered by the sink could be folded by it, see
+        // UpsertSinkBuffer
+        List<String> columns = clientSession.getRowKeyColumns(databaseName, tableName);
+        keyFields = columns.isEmpty() ? null : columns.toArray(new String[0]);
       } catch (Exception e) {
         throw new IllegalStateException(e);
       }
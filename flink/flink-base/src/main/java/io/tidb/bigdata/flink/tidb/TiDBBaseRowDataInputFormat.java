@@ -19,7 +19,6 @@ package io.tidb.bigdata.flink.tidb;
 import static io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory.DATABASE_NAME;
 import static io.tidb.bigdata.flink.tidb.TiDBBaseDynamicTableFactory.TABLE_NAME;
 import static io.tidb.bigdata.flink.tidb.TypeUtils.getObjectWithDataType;
-import static io.tidb.bigdata.flink.tidb.TypeUtils.toRowDataType;
 import static java.lang.String.format;
 
 import io.tidb.bigdata.tidb.ClientConfig;
@@ -40,9 +39,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.api.common.io.DefaultInputSplitAssigner;
 import org.apache.flink.api.common.io.RichInputFormat;
@@ -53,9 +52,10 @@ import org.apache.flink.configuration.Configuration;
 import org.apache.flink.core.io.GenericInputSplit;
 import org.apache.flink.core.io.InputSplit;
 import org.apache.flink.core.io.InputSplitAssigner;
-import org.apache.flink.table.data.GenericRowData;
 import org.apache.flink.table.data.RowData;
 import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.types.RowKind;
 import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -95,12 +95,19 @@ public abstract class TiDBBaseRowDataInputFormat extends
 
   protected Expression expression;
 
+  // metadata columns appended to every row, in flink's internal data format
+  protected LogicalType[] metadataTypes = new LogicalType[0];
+
+  protected Object[] metadataValues = new Object[0];
+
   protected transient DateTimeFormatter[] formatters;
 
   protected transient RecordCursorInternal cursor;
 
   protected transient ClientSession clientSession;
 
+  protected transient BinaryRowDataWriter rowWriter;
+
   public TiDBBaseRowDataInputFormat(Map<String, String> properties, String[] fieldNames,
       DataType[] fieldTypes, TypeInformation<RowData> typeInformation) {
     this.properties = Preconditions.checkNotNull(properties, "properties can not be null");
@@ -188,6 +195,10 @@ public abstract class TiDBBaseRowDataInputFormat extends
   public void openInputFormat() throws IOException {
     formatters = TypeUtils.extractDateTimeFormatter(fieldNames, properties, true);
     clientSession = ClientSession.createWithSingleConnection(new ClientConfig(properties));
+    rowWriter = new BinaryRowDataWriter(Stream.concat(Arrays.stream(projectedFieldIndexes)
+            .mapToObj(i -> fieldTypes[i].getLogicalType()), Arrays.stream(metadataTypes))
+        .toArray(LogicalType[]::new),
+        getRuntimeContext().getExecutionConfig().isObjectReuseEnabled());
   }
 
   @Override
@@ -229,26 +240,22 @@ public abstract class TiDBBaseRowDataInputFormat extends
     return recordCount >= limit || !cursor.advanceNextPosition();
   }
 
-  public GenericRowData nextRecordWithFactory(Function<Integer, GenericRowData> rowDataFactory)
-      throws IOException {
-    GenericRowData row = rowDataFactory.apply(projectedFieldIndexes.length);
+  @Override
+  public RowData nextRecord(RowData rowData) throws IOException {
+    rowWriter.reset(RowKind.INSERT);
     for (int i = 0; i < projectedFieldIndexes.length; i++) {
       int projectedFieldIndex = projectedFieldIndexes[i];
-      DataType fieldType = fieldTypes[projectedFieldIndex];
-      Object object = cursor.getObject(i);
       // data can be null here
-      row.setField(i, toRowDataType(
-          getObjectWithDataType(object, fieldType,
-              columnHandleInternals.get(projectedFieldIndex).getType(),
-              formatters[projectedFieldIndex]).orElse(null)));
+      rowWriter.write(i, getObjectWithDataType(cursor.getObject(i),
+          fieldTypes[projectedFieldIndex],
+          columnHandleInternals.get(projectedFieldIndex).getType(),
+          formatters[projectedFieldIndex]).orElse(null));
+    }
+    for (int i = 0; i < metadataValues.length; i++) {
+      rowWriter.writeInternal(projectedFieldIndexes.length + i, metadataValues[i]);
     }
     recordCount++;
-    return row;
-  }
-
-  @Override
-  public RowData nextRecord(RowData rowData) throws IOException {
-    return nextRecordWithFactory(GenericRowData::new);
+    return rowWriter.complete();
   }
 
   @Override
@@ -278,4 +285,17 @@ public abstract class TiDBBaseRowDataInputFormat extends
   public void setExpression(Expression expression) {
     this.expression = expression;
   }
+
+  /**
+   * Append metadata columns to every row, before the input format is opened.
+   *
+   * @param metadataTypes types of the metadata columns
+   * @param metadataValues values of the metadata columns in flink's internal data format
+   */
+  public void setMetadata(LogicalType[] metadataTypes, Object[] metadataValues) {
+    Preconditions.checkArgument(metadataTypes.length == metadataValues.length,
+        "metadata types and values do not match");
+    this.metadataTypes = metadataTypes;
+    this.metadataValues = metadataValues;
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.apache.flink.table.api.TableSchema;
+import org.apache.flink.table.connector.ChangelogMode;
+import org.apache.flink.table.connector.sink.DynamicTableSink;
+import org.apache.flink.table.connector.sink.SinkFunctionProvider;
+import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.types.RowKind;
+import org.apache.flink.util.Preconditions;
+
+/**
+ * A TiDB sink which compacts changes by the key fields before writing them, either at least once
+ * with {@link TiDBSinkFunction}, or exactly once with {@link TiDBTwoPhaseCommitSinkFunction}.
+ */
+public class TiDBDynamicTableSink implements DynamicTableSink {
+
+  private final Map<String, String> properties;
+  private final String databaseName;
+  private final String tableName;
+  private final TableSchema schema;
+  @Nullable
+  private final String[] keyFields;
+  private final int maxRows;
+  private final long flushIntervalMs;
+  private final int maxRetries;
+  private final boolean exactlyOnce;
+  private final String transactionTable;
+  private final long maxTransactionBytes;
+
+  public TiDBDynamicTableSink(Map<String, String> properties, String databaseName,
+      String tableName, TableSchema schema, @Nullable String[] keyFields, int maxRows,
+      long flushIntervalMs, int maxRetries, boolean exactlyOnce, String transactionTable,
+      long maxTransactionBytes) {
+    this.properties = properties;
+    this.databaseName = databaseName;
+    this.tableName = tableName;
+    this.schema = schema;
+    this.keyFields = keyFields;
+    this.maxRows = maxRows;
+    this.flushIntervalMs = flushIntervalMs;
+    this.maxRetries = maxRetries;
+    this.exactlyOnce = exactlyOnce;
+    this.transactionTable = transactionTable;
+    this.maxTransactionBytes = maxTransactionBytes;
+  }
+
+  @Override
+  public ChangelogMode getChangelogMode(ChangelogMode requestedMode) {
+    Preconditions.checkState(
+        requestedMode.equals(ChangelogMode.insertOnly()) || keyFields != null,
+        "please declare primary key or unique key for sink table when query contains update/delete"
+            + " record, and set tidb.write_mode to upsert.");
+    return ChangelogMode.newBuilder()
+        .addContainedKind(RowKind.INSERT)
+        .addContainedKind(RowKind.DELETE)
+        .addContainedKind(RowKind.UPDATE_AFTER)
+        .build();
+  }
+
+  @Override
+  public SinkRuntimeProvider getSinkRuntimeProvider(Context context) {
+    LogicalType[] fieldTypes = Arrays.stream(schema.getFieldDataTypes())
+        .map(DataType::getLogicalType)
+        .toArray(LogicalType[]::new);
+    if (exactlyOnce) {
+      return SinkFunctionProvider.of(new TiDBTwoPhaseCommitSinkFunction(properties, databaseName,
+          tableName, schema.getFieldNames(), fieldTypes, keyFields, transactionTable, maxRows,
+          maxTransactionBytes, maxRetries));
+    }
+    return SinkFunctionProvider.of(new TiDBSinkFunction(properties, databaseName, tableName,
+        schema.getFieldNames(), fieldTypes, keyFields, maxRows, flushIntervalMs, maxRetries));
+  }
+
+  @Override
+  public DynamicTableSink copy() {
+    return new TiDBDynamicTableSink(properties, databaseName, tableName, schema, keyFields,
+        maxRows, flushIntervalMs, maxRetries, exactlyOnce, transactionTable, maxTransactionBytes);
+  }
+
+  @Override
+  public String asSummaryString() {
+    return "TiDB";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TiDBDynamicTableSink)) {
+      return false;
+    }
+    TiDBDynamicTableSink that = (TiDBDynamicTableSink) o;
+    return maxRows == that.maxRows
+        && flushIntervalMs == that.flushIntervalMs
+        && maxRetries == that.maxRetries
+        && exactlyOnce == that.exactlyOnce
+        && maxTransactionBytes == that.maxTransactionBytes
+        && Objects.equals(properties, that.properties)
+        && Objects.equals(databaseName, that.databaseName)
+        && Objects.equals(tableName, that.tableName)
+        && Objects.equals(schema, that.schema)
+        && Objects.equals(transactionTable, that.transactionTable)
+        && Arrays.equals(keyFields, that.keyFields);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hash(properties, databaseName, tableName, schema, maxRows,
+        flushIntervalMs, maxRetries, exactlyOnce, transactionTable, maxTransactionBytes);
+    return 31 * result + Arrays.hashCode(keyFields);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import java.io.Serializable;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.data.RowData.FieldGetter;
+import org.apache.flink.table.types.logical.LogicalType;
+
+/**
+ * Buffers the changes received by a TiDB sink between two flushes, the buffered changes are
+ * written by {@link TiDBSinkWriter}.
+ */
+abstract class TiDBSinkBuffer {
+
+  /**
+   * Either the key values of a deleted row, or the values of an inserted or updated row.
+   */
+  static final class Change implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean delete;
+    private final Object[] values;
+
+    private Change(boolean delete, Object[] values) {
+      this.delete = delete;
+      this.values = values;
+    }
+
+    static Change delete(Object[] keyValues) {
+      return new Change(true, keyValues);
+    }
+
+    static Change write(Object[] values) {
+      return new Change(false, values);
+    }
+
+    boolean isDelete() {
+      return delete;
+    }
+
+    Object[] getValues() {
+      return values;
+    }
+  }
+
+  private final LogicalType[] fieldTypes;
+  private final FieldGetter[] fieldGetters;
+
+  protected TiDBSinkBuffer(LogicalType[] fieldTypes) {
+    this.fieldTypes = fieldTypes;
+    this.fieldGetters = new FieldGetter[fieldTypes.length];
+    for (int i = 0; i < fieldTypes.length; i++) {
+      fieldGetters[i] = RowData.createFieldGetter(fieldTypes[i], i);
+    }
+  }
+
+  static TiDBSinkBuffer create(String[] fieldNames, LogicalType[] fieldTypes,
+      @Nullable String[] keyFields) {
+    return keyFields == null
+        ? new AppendSinkBuffer(fieldTypes)
+        : new UpsertSinkBuffer(fieldNames, fieldTypes, keyFields);
+  }
+
+  abstract void add(RowData row);
+
+  /**
+   * @return number of rows which will be written by the next flush
+   */
+  abstract int size();
+
+  /**
+   * @return buffered changes in the order they have to be written
+   */
+  abstract List<Change> getChanges();
+
+  abstract void clear();
+
+  /**
+   * Copy a row out of flink, which might reuse it, into the values bound to statements.
+   */
+  protected Object[] toJdbcObjects(RowData row) {
+    Object[] values = new Object[fieldGetters.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = TypeUtils.toJdbcObject(fieldGetters[i].getFieldOrNull(row), fieldTypes[i]);
+    }
+    return values;
+  }
+}
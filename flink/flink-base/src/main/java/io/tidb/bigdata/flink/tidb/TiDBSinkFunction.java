@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import io.tidb.bigdata.tidb.ClientConfig;
+import io.tidb.bigdata.tidb.ClientSession;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes rows into TiDB in batches. With key fields, only the latest change of every key in a
+ * batch is written, see {@link UpsertSinkBuffer}; without, rows are appended with multi-row
+ * inserts. Every batch is written in one transaction, and the buffer is flushed on checkpoints.
+ */
+public class TiDBSinkFunction extends RichSinkFunction<RowData> implements CheckpointedFunction {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TiDBSinkFunction.class);
+
+  private final Map<String, String> properties;
+  private final String databaseName;
+  private final String tableName;
+  private final String[] fieldNames;
+  private final LogicalType[] fieldTypes;
+  @Nullable
+  private final String[] keyFields;
+  private final int maxRows;
+  private final long flushIntervalMs;
+  private final int maxRetries;
+
+  private transient ClientSession session;
+  private transient TiDBSinkBuffer buffer;
+  private transient TiDBSinkWriter writer;
+  private transient ScheduledExecutorService scheduler;
+  private transient volatile Exception flushException;
+  private transient volatile boolean closed;
+
+  public TiDBSinkFunction(Map<String, String> properties, String databaseName, String tableName,
+      String[] fieldNames, LogicalType[] fieldTypes, @Nullable String[] keyFields, int maxRows,
+      long flushIntervalMs, int maxRetries) {
+    this.properties = properties;
+    this.databaseName = databaseName;
+    this.tableName = tableName;
+    this.fieldNames = fieldNames;
+    this.fieldTypes = fieldTypes;
+    this.keyFields = keyFields;
+    this.maxRows = maxRows;
+    this.flushIntervalMs = flushIntervalMs;
+    this.maxRetries = maxRetries;
+  }
+
+  @Override
+  public void open(Configuration parameters) throws Exception {
+    super.open(parameters);
+    session = ClientSession.createWithSingleConnection(new ClientConfig(properties));
+    buffer = TiDBSinkBuffer.create(fieldNames, fieldTypes, keyFields);
+    writer = new TiDBSinkWriter(databaseName, tableName, fieldNames, keyFields);
+    if (flushIntervalMs > 0 && maxRows != 1) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tidb-sink-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(() -> {
+        synchronized (TiDBSinkFunction.this) {
+          if (closed || flushException != null) {
+            return;
+          }
+          try {
+            flush();
+          } catch (Exception e) {
+            flushException = e;
+          }
+        }
+      }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public synchronized void invoke(RowData value, Context context) throws Exception {
+    checkFlushException();
+    buffer.add(value);
+    if (maxRows > 0 && buffer.size() >= maxRows) {
+      flush();
+    }
+  }
+
+  @Override
+  public synchronized void snapshotState(FunctionSnapshotContext context) throws Exception {
+    checkFlushException();
+    flush();
+  }
+
+  @Override
+  public void initializeState(FunctionInitializationContext context) {
+    // buffered rows are flushed on every checkpoint, nothing to restore
+  }
+
+  private void checkFlushException() throws IOException {
+    if (flushException != null) {
+      throw new IOException("Writing records to TiDB failed.", flushException);
+    }
+  }
+
+  private void flush() throws IOException, InterruptedException {
+    if (buffer.size() == 0) {
+      return;
+    }
+    for (int retry = 0; ; retry++) {
+      try {
+        write();
+        buffer.clear();
+        return;
+      } catch (SQLException e) {
+        LOG.error("TiDB sink error, retry times = {}", retry, e);
+        if (retry >= maxRetries) {
+          throw new IOException(e);
+        }
+        Thread.sleep(1000L * (retry + 1));
+      }
+    }
+  }
+
+  private void write() throws SQLException {
+    try (Connection connection = session.getJdbcConnection()) {
+      connection.setAutoCommit(false);
+      try {
+        writer.write(connection, buffer.getChanges());
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws Exception {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    try {
+      if (buffer != null && flushException == null) {
+        flush();
+      }
+    } finally {
+      if (session != null) {
+        session.close();
+      }
+      super.close();
+    }
+  }
+}
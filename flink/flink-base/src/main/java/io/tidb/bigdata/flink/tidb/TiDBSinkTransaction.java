@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import io.tidb.bigdata.flink.tidb.TiDBSinkBuffer.Change;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.apache.flink.util.InstantiationUtil;
+
+/**
+ * A transaction of a TiDB sink between two checkpoints. Only its id is kept in the checkpointed
+ * state, its changes are staged in TiDB as chunks under the id until they are committed.
+ */
+final class TiDBSinkTransaction implements Serializable {
+
+  private static final long serialVersionUID = 2L;
+
+  private final String id;
+  // what has been staged by this process, transactions are never staged again after a restore
+  private transient int stagedChunks;
+  private transient long stagedBytes;
+
+  TiDBSinkTransaction() {
+    this.id = UUID.randomUUID().toString();
+  }
+
+  String getId() {
+    return id;
+  }
+
+  int getStagedChunks() {
+    return stagedChunks;
+  }
+
+  long getStagedBytes() {
+    return stagedBytes;
+  }
+
+  void staged(int chunks, long bytes) {
+    stagedChunks += chunks;
+    stagedBytes += bytes;
+  }
+
+  /**
+   * Serialize changes into chunks, a chunk is closed once it has reached the given size.
+   */
+  static List<byte[]> toChunks(List<Change> changes, int chunkBytes) throws IOException {
+    List<byte[]> chunks = new ArrayList<>();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = null;
+    for (Change change : changes) {
+      if (output == null) {
+        bytes.reset();
+        output = new ObjectOutputStream(bytes);
+      }
+      output.writeObject(change);
+      output.flush();
+      if (bytes.size() >= chunkBytes) {
+        chunks.add(closeChunk(output, bytes));
+        output = null;
+      }
+    }
+    if (output != null) {
+      chunks.add(closeChunk(output, bytes));
+    }
+    return chunks;
+  }
+
+  private static byte[] closeChunk(ObjectOutputStream output, ByteArrayOutputStream bytes)
+      throws IOException {
+    output.writeObject(null);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  static List<Change> fromChunk(byte[] chunk) throws IOException {
+    List<Change> changes = new ArrayList<>();
+    try (ObjectInputStream input = new InstantiationUtil.ClassLoaderObjectInputStream(
+        new ByteArrayInputStream(chunk), Change.class.getClassLoader())) {
+      for (Object change = input.readObject(); change != null; change = input.readObject()) {
+        changes.add((Change) change);
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    return changes;
+  }
+
+  @Override
+  public String toString() {
+    return "TiDBSinkTransaction{id=" + id + ", stagedChunks=" + stagedChunks + "}";
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import io.tidb.bigdata.flink.tidb.TiDBSinkBuffer.Change;
+import io.tidb.bigdata.tidb.SqlUtils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * Writes buffered changes into a TiDB table in order. Consecutive deletes are written with batched
+ * {@code DELETE ... WHERE key IN (...)}, consecutive rows with multi-row
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE} if the sink has key fields, or plain multi-row
+ * inserts otherwise.
+ */
+final class TiDBSinkWriter {
+
+  // max number of parameters of a prepared statement in the mysql protocol
+  private static final int MAX_PARAMETERS = 65535;
+
+  private final String databaseName;
+  private final String tableName;
+  private final List<String> fieldNames;
+  @Nullable
+  private final List<String> keyFields;
+
+  TiDBSinkWriter(String databaseName, String tableName, String[] fieldNames,
+      @Nullable String[] keyFields) {
+    this.databaseName = databaseName;
+    this.tableName = tableName;
+    this.fieldNames = Arrays.asList(fieldNames);
+    this.keyFields = keyFields == null ? null : Arrays.asList(keyFields);
+  }
+
+  void write(Connection connection, List<Change> changes) throws SQLException {
+    int from = 0;
+    while (from < changes.size()) {
+      boolean delete = changes.get(from).isDelete();
+      List<Object[]> run = new ArrayList<>();
+      for (; from < changes.size() && changes.get(from).isDelete() == delete; from++) {
+        run.add(changes.get(from).getValues());
+      }
+      if (delete) {
+        executeBatches(connection, run, keyFields.size(),
+            count -> SqlUtils.getBatchDeleteSql(databaseName, tableName, keyFields, count));
+      } else if (keyFields == null) {
+        executeBatches(connection, run, fieldNames.size(),
+            count -> SqlUtils.getBatchInsertSql(databaseName, tableName, fieldNames, count));
+      } else {
+        executeBatches(connection, run, fieldNames.size(),
+            count -> SqlUtils.getBatchUpsertSql(databaseName, tableName, fieldNames, count));
+      }
+    }
+  }
+
+  /**
+   * Execute multi-row statements, as few as the parameter limit allows.
+   *
+   * @param rows parameters of every row
+   * @param sql creates the statement for the given number of rows
+   */
+  private static void executeBatches(Connection connection, List<Object[]> rows,
+      int parametersPerRow, IntFunction<String> sql) throws SQLException {
+    final int maxRows = Math.max(1, MAX_PARAMETERS / Math.max(1, parametersPerRow));
+    for (int from = 0; from < rows.size(); from += maxRows) {
+      List<Object[]> batch = rows.subList(from, Math.min(rows.size(), from + maxRows));
+      try (PreparedStatement statement = connection.prepareStatement(sql.apply(batch.size()))) {
+        int index = 1;
+        for (Object[] row : batch) {
+          for (Object value : row) {
+            statement.setObject(index++, value);
+          }
+        }
+        statement.executeUpdate();
+      }
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import io.tidb.bigdata.tidb.ClientConfig;
+import io.tidb.bigdata.tidb.ClientSession;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
+import org.apache.flink.api.java.typeutils.runtime.kryo.JavaSerializer;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.sink.TwoPhaseCommitSinkFunction;
+import org.apache.flink.streaming.api.operators.StreamingRuntimeContext;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An exactly-once TiDB sink. The changes between two checkpoints are staged in a transaction
+ * table of TiDB, and moved into the sink table in one TiDB transaction once the checkpoint
+ * completes.
+ *
+ * <p>TiDB can not resume an open transaction after the client is gone, so the changes are staged
+ * under the id of their transaction, which is all that is kept in flink's state. The commit
+ * deletes the staged changes in the same TiDB transaction that writes them, so a transaction has
+ * been committed exactly when nothing is staged for it any more, and replaying it after a
+ * failover is a no-op. Nothing but the changes of pending transactions accumulates in the
+ * transaction table.
+ *
+ * <p>Changes are staged whenever {@code maxRows} of them are buffered, and the sink fails as soon
+ * as the changes of a checkpoint exceed {@code maxTransactionBytes}, before TiDB rejects the
+ * commit for exceeding its txn-total-size-limit.
+ */
+public class TiDBTwoPhaseCommitSinkFunction extends
+    TwoPhaseCommitSinkFunction<RowData, TiDBSinkTransaction, Void> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TiDBTwoPhaseCommitSinkFunction.class);
+
+  // well below the default txn-entry-size-limit of TiDB, which is 6MB
+  private static final int CHUNK_BYTES = 1 << 20;
+
+  private final Map<String, String> properties;
+  private final String databaseName;
+  private final String tableName;
+  private final String[] fieldNames;
+  private final LogicalType[] fieldTypes;
+  @Nullable
+  private final String[] keyFields;
+  private final String transactionTable;
+  private final int maxRows;
+  private final long maxTransactionBytes;
+  private final int maxRetries;
+
+  private transient ClientSession session;
+  private transient TiDBSinkBuffer buffer;
+  private transient TiDBSinkWriter writer;
+
+  public TiDBTwoPhaseCommitSinkFunction(Map<String, String> properties, String databaseName,
+      String tableName, String[] fieldNames, LogicalType[] fieldTypes,
+      @Nullable String[] keyFields, String transactionTable, int maxRows,
+      long maxTransactionBytes, int maxRetries) {
+    super(createTransactionSerializer(), VoidSerializer.INSTANCE);
+    this.properties = properties;
+    this.databaseName = databaseName;
+    this.tableName = tableName;
+    this.fieldNames = fieldNames;
+    this.fieldTypes = fieldTypes;
+    this.keyFields = keyFields;
+    this.transactionTable = transactionTable;
+    this.maxRows = maxRows;
+    this.maxTransactionBytes = maxTransactionBytes;
+    this.maxRetries = maxRetries;
+  }
+
+  static KryoSerializer<TiDBSinkTransaction> createTransactionSerializer() {
+    // kryo can not instantiate the package private transaction, whose state is just its id
+    ExecutionConfig config = new ExecutionConfig();
+    config.registerTypeWithKryoSerializer(TiDBSinkTransaction.class, JavaSerializer.class);
+    return new KryoSerializer<>(TiDBSinkTransaction.class, config);
+  }
+
+  @Override
+  public void open(Configuration parameters) throws Exception {
+    super.open(parameters);
+    Preconditions.checkState(
+        ((StreamingRuntimeContext) getRuntimeContext()).isCheckpointingEnabled(),
+        "exactly-once TiDB sink requires checkpointing to be enabled");
+    buffer = TiDBSinkBuffer.create(fieldNames, fieldTypes, keyFields);
+    initializeSession();
+  }
+
+  /**
+   * Pending transactions are recovered and committed before the function is opened, so the
+   * session is created by whichever comes first.
+   */
+  private void initializeSession() throws SQLException {
+    if (session != null) {
+      return;
+    }
+    writer = new TiDBSinkWriter(databaseName, tableName, fieldNames, keyFields);
+    session = ClientSession.createWithSingleConnection(new ClientConfig(properties));
+    try (Connection connection = session.getJdbcConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(String.format(
+          "CREATE TABLE IF NOT EXISTS `%s`.`%s` (`transaction_id` VARCHAR(64), `chunk` INT, "
+              + "`changes` LONGBLOB NOT NULL, `stage_time` TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+              + "PRIMARY KEY (`transaction_id`, `chunk`))", databaseName, transactionTable));
+    }
+  }
+
+  @Override
+  protected TiDBSinkTransaction beginTransaction() {
+    return new TiDBSinkTransaction();
+  }
+
+  @Override
+  protected void invoke(TiDBSinkTransaction transaction, RowData value, Context context)
+      throws Exception {
+    buffer.add(value);
+    if (maxRows > 0 && buffer.size() >= maxRows) {
+      stage(transaction);
+    }
+  }
+
+  @Override
+  protected void preCommit(TiDBSinkTransaction transaction) throws Exception {
+    stage(transaction);
+  }
+
+  /**
+   * Move the buffered changes into the transaction table, in a TiDB transaction of their own.
+   */
+  private void stage(TiDBSinkTransaction transaction) throws IOException, SQLException {
+    if (buffer.size() == 0) {
+      return;
+    }
+    List<byte[]> chunks = TiDBSinkTransaction.toChunks(buffer.getChanges(), CHUNK_BYTES);
+    long bytes = chunks.stream().mapToLong(chunk -> chunk.length).sum();
+    if (transaction.getStagedBytes() + bytes > maxTransactionBytes) {
+      throw new FlinkRuntimeException(String.format("%s has grown to %d bytes, which exceeds "
+              + "'sink.transaction.max-size' = %d bytes. The changes of a checkpoint are committed "
+              + "in one TiDB transaction, either checkpoint more often, or raise the option "
+              + "together with the txn-total-size-limit of TiDB.", transaction,
+          transaction.getStagedBytes() + bytes, maxTransactionBytes));
+    }
+    initializeSession();
+    try (Connection connection = session.getJdbcConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement(String.format(
+          "INSERT INTO `%s`.`%s` (`transaction_id`, `chunk`, `changes`) VALUES (?, ?, ?)",
+          databaseName, transactionTable))) {
+        for (int i = 0; i < chunks.size(); i++) {
+          statement.setString(1, transaction.getId());
+          statement.setInt(2, transaction.getStagedChunks() + i);
+          statement.setBytes(3, chunks.get(i));
+          statement.executeUpdate();
+        }
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    }
+    transaction.staged(chunks.size(), bytes);
+    buffer.clear();
+  }
+
+  @Override
+  protected void commit(TiDBSinkTransaction transaction) {
+    for (int retry = 0; ; retry++) {
+      try {
+        write(transaction);
+        return;
+      } catch (SQLException e) {
+        LOG.error("Commit {} error, retry times = {}", transaction, retry, e);
+        if (retry >= maxRetries) {
+          throw new FlinkRuntimeException("Committing " + transaction + " to TiDB failed", e);
+        }
+        try {
+          Thread.sleep(1000L * (retry + 1));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw new FlinkRuntimeException(ie);
+        }
+      }
+    }
+  }
+
+  private void write(TiDBSinkTransaction transaction) throws SQLException {
+    initializeSession();
+    try (Connection connection = session.getJdbcConnection()) {
+      connection.setAutoCommit(false);
+      try {
+        int chunks = 0;
+        try (PreparedStatement statement = connection.prepareStatement(String.format(
+            "SELECT `changes` FROM `%s`.`%s` WHERE `transaction_id` = ? ORDER BY `chunk`",
+            databaseName, transactionTable))) {
+          statement.setString(1, transaction.getId());
+          try (ResultSet resultSet = statement.executeQuery()) {
+            for (; resultSet.next(); chunks++) {
+              writer.write(connection, TiDBSinkTransaction.fromChunk(resultSet.getBytes(1)));
+            }
+          } catch (IOException e) {
+            throw new FlinkRuntimeException("Staged changes of " + transaction + " are corrupted",
+                e);
+          }
+        }
+        if (chunks == 0) {
+          LOG.info("{} has been committed already or has no changes", transaction);
+          connection.rollback();
+          return;
+        }
+        deleteStaged(connection, transaction);
+        connection.commit();
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(true);
+      }
+    }
+  }
+
+  private void deleteStaged(Connection connection, TiDBSinkTransaction transaction)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(String.format(
+        "DELETE FROM `%s`.`%s` WHERE `transaction_id` = ?", databaseName, transactionTable))) {
+      statement.setString(1, transaction.getId());
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  protected void abort(TiDBSinkTransaction transaction) {
+    if (buffer != null) {
+      buffer.clear();
+    }
+    // the staged changes of transactions recovered from the state are unknown to this process
+    try {
+      initializeSession();
+      try (Connection connection = session.getJdbcConnection()) {
+        deleteStaged(connection, transaction);
+      }
+    } catch (SQLException e) {
+      LOG.warn("Deleting the staged changes of aborted {} failed", transaction, e);
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    try {
+      super.close();
+    } finally {
+      if (session != null) {
+        session.close();
+      }
+    }
+  }
+}
@@ -23,6 +23,7 @@ import static org.tikv.common.types.MySQLType.TypeTimestamp;
 
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.sql.Time;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -41,6 +42,7 @@ import org.apache.flink.table.data.GenericRowData;
 import org.apache.flink.table.data.StringData;
 import org.apache.flink.table.data.TimestampData;
 import org.apache.flink.table.types.DataType;
+import org.apache.flink.table.types.logical.LogicalType;
 import org.apache.flink.types.Row;
 import org.tikv.common.types.MySQLType;
 import org.tikv.common.types.StringType;
@@ -238,7 +240,42 @@ public class TypeUtils {
     }
     return result;
   }
-  
+
+  /**
+   * transform flink internal data to the java object bound to a jdbc statement
+   */
+  public static Object toJdbcObject(@Nullable Object object, LogicalType type) {
+    if (object == null) {
+      return null;
+    }
+    switch (type.getTypeRoot()) {
+      case CHAR:
+      case VARCHAR:
+        return object.toString();
+      case DECIMAL:
+        return ((DecimalData) object).toBigDecimal();
+      case DATE:
+        return Date.valueOf(LocalDate.ofEpochDay((int) object));
+      case TIME_WITHOUT_TIME_ZONE:
+        return Time.valueOf(LocalTime.ofNanoOfDay((int) object * 1000L * 1000L));
+      case TIMESTAMP_WITHOUT_TIME_ZONE:
+      case TIMESTAMP_WITH_LOCAL_TIME_ZONE:
+        return ((TimestampData) object).toTimestamp();
+      case BOOLEAN:
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+      case FLOAT:
+      case DOUBLE:
+      case BINARY:
+      case VARBINARY:
+        return object;
+      default:
+        throw new UnsupportedOperationException("Unsupported type: " + type);
+    }
+  }
+
   /**
    * extracts the DateTimeFormatter of table field name according to
    * the configuration in properties, which will used in conversion of
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.flink.tidb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.flink.table.data.RowData;
+import org.apache.flink.table.types.logical.LogicalType;
+
+/**
+ * Buffers changes by key, so only the latest change of every key is written. The key must
+ * identify a row on its own, e.g. the primary key, so that the change of a row never depends on
+ * the changes of other keys. Keys are written in the order of their latest changes.
+ */
+final class UpsertSinkBuffer extends TiDBSinkBuffer {
+
+  private static final class Key {
+
+    private final Object[] values;
+    private final int hashCode;
+
+    private Key(Object[] values) {
+      this.values = values;
+      this.hashCode = Arrays.deepHashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      return o instanceof Key && Arrays.deepEquals(values, ((Key) o).values);
+    }
+  }
+
+  private final int[] keyIndexes;
+  // latest change of every key, in the order of the latest changes
+  private final Map<Key, Change> changes = new LinkedHashMap<>();
+
+  UpsertSinkBuffer(String[] fieldNames, LogicalType[] fieldTypes, String[] keyNames) {
+    super(fieldTypes);
+    List<String> names = Arrays.asList(fieldNames);
+    this.keyIndexes = new int[keyNames.length];
+    for (int i = 0; i < keyNames.length; i++) {
+      keyIndexes[i] = names.indexOf(keyNames[i]);
+      if (keyIndexes[i] < 0) {
+        throw new IllegalArgumentException(
+            "Key field " + keyNames[i] + " is not in the fields " + names);
+      }
+    }
+  }
+
+  @Override
+  void add(RowData row) {
+    Object[] values = toJdbcObjects(row);
+    Change change;
+    switch (row.getRowKind()) {
+      case INSERT:
+      case UPDATE_AFTER:
+        change = Change.write(values);
+        break;
+      case DELETE:
+        change = Change.delete(getKeyValues(values));
+        break;
+      case UPDATE_BEFORE:
+        // the sink consumes upserts by key, the following update after has the same key
+        return;
+      default:
+        throw new IllegalArgumentException("Unknown row kind " + row.getRowKind());
+    }
+    Key key = new Key(getKeyValues(values));
+    // moved to the end, so the change is written after the changes received before it
+    changes.remove(key);
+    changes.put(key, change);
+  }
+
+  private Object[] getKeyValues(Object[] values) {
+    Object[] key = new Object[keyIndexes.length];
+    for (int i = 0; i < keyIndexes.length; i++) {
+      key[i] = values[keyIndexes[i]];
+    }
+    return key;
+  }
+
+  @Override
+  int size() {
+    return changes.size();
+  }
+
+  @Override
+  List<Change> getChanges() {
+    return new ArrayList<>(changes.values());
+  }
+
+  @Override
+  void clear() {
+    changes.clear();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.tidb;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import org.apache.flink.table.data.DecimalData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.data.TimestampData;
+import org.apache.flink.table.data.binary.BinaryRowData;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.BooleanType;
+import org.apache.flink.table.types.logical.DecimalType;
+import org.apache.flink.table.types.logical.IntType;
+import org.apache.flink.table.types.logical.LocalZonedTimestampType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.TimestampType;
+import org.apache.flink.table.types.logical.VarBinaryType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.apache.flink.types.RowKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryRowDataWriterTest {
+
+  private static final LogicalType[] TYPES = new LogicalType[]{
+      new BooleanType(), new IntType(), new BigIntType(), new VarCharType(10),
+      new VarBinaryType(10), new DecimalType(10, 2), new DecimalType(30, 2),
+      new TimestampType(3), new LocalZonedTimestampType(9)};
+
+  private static final TimestampData TIMESTAMP =
+      TimestampData.fromLocalDateTime(LocalDateTime.of(2021, 1, 2, 3, 4, 5, 123456789));
+
+  private static BinaryRowData writeInternal(BinaryRowDataWriter writer, Object... values) {
+    writer.reset(RowKind.UPDATE_AFTER);
+    for (int i = 0; i < values.length; i++) {
+      writer.writeInternal(i, values[i]);
+    }
+    return writer.complete();
+  }
+
+  @Test
+  public void testWriteInternal() {
+    BinaryRowDataWriter writer = new BinaryRowDataWriter(TYPES, false);
+    DecimalData compact = DecimalData.fromBigDecimal(new BigDecimal("12.34"), 10, 2);
+    DecimalData large = DecimalData.fromBigDecimal(new BigDecimal("1234567890.12"), 30, 2);
+    BinaryRowData row = writeInternal(writer, true, 1, 2L, StringData.fromString("a"),
+        new byte[]{3}, compact, large, TIMESTAMP, TIMESTAMP);
+    Assert.assertEquals(RowKind.UPDATE_AFTER, row.getRowKind());
+    Assert.assertTrue(row.getBoolean(0));
+    Assert.assertEquals(1, row.getInt(1));
+    Assert.assertEquals(2L, row.getLong(2));
+    Assert.assertEquals(StringData.fromString("a"), row.getString(3));
+    Assert.assertArrayEquals(new byte[]{3}, row.getBinary(4));
+    Assert.assertEquals(compact, row.getDecimal(5, 10, 2));
+    Assert.assertEquals(large, row.getDecimal(6, 30, 2));
+    Assert.assertEquals(
+        TimestampData.fromEpochMillis(TIMESTAMP.getMillisecond()), row.getTimestamp(7, 3));
+    Assert.assertEquals(TIMESTAMP, row.getTimestamp(8, 9));
+
+    row = writeInternal(writer, null, null, null, null, null, null, null, null, null);
+    for (int i = 0; i < TYPES.length; i++) {
+      Assert.assertTrue(row.isNullAt(i));
+    }
+  }
+
+  @Test
+  public void testObjectReuse() {
+    BinaryRowDataWriter reusing = new BinaryRowDataWriter(new LogicalType[]{new IntType()}, true);
+    BinaryRowData first = writeInternal(reusing, 1);
+    Assert.assertSame(first, writeInternal(reusing, 2));
+    Assert.assertEquals(2, first.getInt(0));
+
+    BinaryRowDataWriter copying = new BinaryRowDataWriter(new LogicalType[]{new IntType()}, false);
+    first = writeInternal(copying, 1);
+    BinaryRowData second = writeInternal(copying, 2);
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(1, first.getInt(0));
+    Assert.assertEquals(2, second.getInt(0));
+  }
+}
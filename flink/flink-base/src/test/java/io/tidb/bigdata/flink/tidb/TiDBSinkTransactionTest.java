@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.tidb;
+
+import io.tidb.bigdata.flink.tidb.TiDBSinkBuffer.Change;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TiDBSinkTransactionTest {
+
+  private static void assertChangesEqual(List<Change> expected, List<Change> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).isDelete(), actual.get(i).isDelete());
+      Assert.assertArrayEquals(expected.get(i).getValues(), actual.get(i).getValues());
+    }
+  }
+
+  @Test
+  public void testChunks() throws Exception {
+    List<Change> changes = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      changes.add(i % 10 == 0
+          ? Change.delete(new Object[]{(long) i})
+          : Change.write(new Object[]{(long) i, "name-" + i, new BigDecimal("1.5"),
+              new Timestamp(i)}));
+    }
+    List<byte[]> chunks = TiDBSinkTransaction.toChunks(changes, 4096);
+    Assert.assertTrue(chunks.size() > 1);
+    List<Change> restored = new ArrayList<>();
+    for (byte[] chunk : chunks) {
+      // a chunk is closed by the first change which reaches the size
+      Assert.assertTrue(chunk.length < 4096 * 2);
+      restored.addAll(TiDBSinkTransaction.fromChunk(chunk));
+    }
+    assertChangesEqual(changes, restored);
+  }
+
+  @Test
+  public void testSingleChunk() throws Exception {
+    List<Change> changes = Arrays.asList(Change.write(new Object[]{1L, "a"}),
+        Change.delete(new Object[]{1L}));
+    List<byte[]> chunks = TiDBSinkTransaction.toChunks(changes, 1 << 20);
+    Assert.assertEquals(1, chunks.size());
+    assertChangesEqual(changes, TiDBSinkTransaction.fromChunk(chunks.get(0)));
+    Assert.assertTrue(TiDBSinkTransaction.toChunks(new ArrayList<>(), 1 << 20).isEmpty());
+  }
+
+  @Test
+  public void testStateKeepsOnlyTheId() throws Exception {
+    TiDBSinkTransaction transaction = new TiDBSinkTransaction();
+    transaction.staged(3, 1 << 20);
+    TypeSerializer<TiDBSinkTransaction> serializer =
+        TiDBTwoPhaseCommitSinkFunction.createTransactionSerializer();
+    DataOutputSerializer output = new DataOutputSerializer(256);
+    serializer.serialize(transaction, output);
+    Assert.assertTrue(output.length() < 256);
+    TiDBSinkTransaction restored =
+        serializer.deserialize(new DataInputDeserializer(output.getCopyOfBuffer()));
+    Assert.assertEquals(transaction.getId(), restored.getId());
+    Assert.assertEquals(0, restored.getStagedChunks());
+    Assert.assertEquals(0, restored.getStagedBytes());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.flink.tidb;
+
+import io.tidb.bigdata.flink.tidb.TiDBSinkBuffer.Change;
+import java.util.List;
+import org.apache.flink.table.data.GenericRowData;
+import org.apache.flink.table.data.StringData;
+import org.apache.flink.table.types.logical.BigIntType;
+import org.apache.flink.table.types.logical.LogicalType;
+import org.apache.flink.table.types.logical.VarCharType;
+import org.apache.flink.types.RowKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpsertSinkBufferTest {
+
+  private static UpsertSinkBuffer createBuffer() {
+    return new UpsertSinkBuffer(new String[]{"id", "name"},
+        new LogicalType[]{new BigIntType(), new VarCharType(10)}, new String[]{"id"});
+  }
+
+  private static GenericRowData row(RowKind kind, long id, String name) {
+    return GenericRowData.ofKind(kind, id, StringData.fromString(name));
+  }
+
+  private static void assertChanges(UpsertSinkBuffer buffer, Object[]... expected) {
+    List<Change> changes = buffer.getChanges();
+    Assert.assertEquals(expected.length, changes.size());
+    Assert.assertEquals(expected.length, buffer.size());
+    for (int i = 0; i < expected.length; i++) {
+      Change change = changes.get(i);
+      // deletes only carry the key values
+      Assert.assertEquals(expected[i].length == 1, change.isDelete());
+      Assert.assertArrayEquals(expected[i], change.getValues());
+    }
+  }
+
+  @Test
+  public void testDeleteAfterUpdates() {
+    UpsertSinkBuffer buffer = createBuffer();
+    buffer.add(row(RowKind.INSERT, 1, "a"));
+    buffer.add(row(RowKind.UPDATE_BEFORE, 1, "a"));
+    buffer.add(row(RowKind.UPDATE_AFTER, 1, "b"));
+    buffer.add(row(RowKind.DELETE, 1, "b"));
+    assertChanges(buffer, new Object[]{1L});
+  }
+
+  @Test
+  public void testLatestValueWins() {
+    UpsertSinkBuffer buffer = createBuffer();
+    buffer.add(row(RowKind.INSERT, 1, "a"));
+    buffer.add(row(RowKind.UPDATE_AFTER, 1, "b"));
+    buffer.add(row(RowKind.UPDATE_AFTER, 1, "a"));
+    assertChanges(buffer, new Object[]{1L, "a"});
+  }
+
+  @Test
+  public void testInsertAfterDelete() {
+    UpsertSinkBuffer buffer = createBuffer();
+    buffer.add(row(RowKind.DELETE, 1, "a"));
+    buffer.add(row(RowKind.INSERT, 1, "b"));
+    assertChanges(buffer, new Object[]{1L, "b"});
+  }
+
+  @Test
+  public void testArrivalOrder() {
+    UpsertSinkBuffer buffer = createBuffer();
+    buffer.add(row(RowKind.INSERT, 1, "a"));
+    buffer.add(row(RowKind.DELETE, 2, "b"));
+    buffer.add(row(RowKind.INSERT, 3, "c"));
+    // the latest change of a key is written after the changes received before it
+    buffer.add(row(RowKind.UPDATE_AFTER, 1, "d"));
+    assertChanges(buffer,
+        new Object[]{2L},
+        new Object[]{3L, "c"},
+        new Object[]{1L, "d"});
+    buffer.clear();
+    assertChanges(buffer);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownKeyField() {
+    new UpsertSinkBuffer(new String[]{"id"}, new LogicalType[]{new BigIntType()},
+        new String[]{"name"});
+  }
+}
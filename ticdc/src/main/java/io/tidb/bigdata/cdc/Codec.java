@@ -16,25 +16,90 @@
 
 package io.tidb.bigdata.cdc;
 
+import io.tidb.bigdata.cdc.avro.AvroCodec;
+import io.tidb.bigdata.cdc.avro.SchemaRegistry;
+import io.tidb.bigdata.cdc.canal.CanalJsonCodec;
 import io.tidb.bigdata.cdc.craft.CraftCodec;
 import io.tidb.bigdata.cdc.json.JsonCodec;
+import java.util.Set;
 
 public interface Codec {
   enum Type {
     CRAFT,
-    JSON
+    JSON,
+    AVRO,
+    CANAL_JSON
   }
 
   static Codec craft() {
     return new CraftCodec();
   }
 
+  /**
+   * Craft codec which only decodes the projected columns of row changed events
+   * @param projection names of the columns to decode
+   * @return Codec
+   */
+  static Codec craft(Set<String> projection) {
+    return new CraftCodec(projection);
+  }
+
+  /**
+   * Craft codec which only decodes the projected columns of events accepted by the filter
+   * @param projection names of the columns to decode
+   * @param filter filter of events, values of the rejected events are skipped
+   * @return Codec
+   */
+  static Codec craft(Set<String> projection, KeyFilter filter) {
+    return new CraftCodec(projection, filter);
+  }
+
   static Codec json() {
     return new JsonCodec();
   }
 
+  /**
+   * Json codec which only decodes events accepted by the filter
+   * @param filter filter of events, values of the rejected events are skipped
+   * @return Codec
+   */
+  static Codec json(KeyFilter filter) {
+    return new JsonCodec(filter);
+  }
+
+  /**
+   * @deprecated json codec doesn't depend on jackson to decode anymore, use {@link #json()}
+   */
+  @Deprecated
   static Codec json(String shadePrefix) {
-    return new JsonCodec(shadePrefix);
+    return new JsonCodec();
+  }
+
+  static Codec avro(SchemaRegistry registry) {
+    return new AvroCodec(registry);
+  }
+
+  /**
+   * Avro codec which only decodes events accepted by the filter
+   * @param registry registry of the schemas referenced by the messages
+   * @param filter filter of events, values of the rejected events are skipped
+   * @return Codec
+   */
+  static Codec avro(SchemaRegistry registry, KeyFilter filter) {
+    return new AvroCodec(registry, filter);
+  }
+
+  static Codec canalJson() {
+    return new CanalJsonCodec();
+  }
+
+  /**
+   * Canal-json codec which only decodes events accepted by the filter
+   * @param filter filter of events, rows of the rejected events are skipped
+   * @return Codec
+   */
+  static Codec canalJson(KeyFilter filter) {
+    return new CanalJsonCodec(filter);
   }
 
   Type type();
@@ -16,6 +16,9 @@
 
 package io.tidb.bigdata.cdc;
 
+import io.tidb.bigdata.cdc.avro.AvroEventChunkDecoder;
+import io.tidb.bigdata.cdc.avro.SchemaRegistry;
+import io.tidb.bigdata.cdc.canal.CanalJsonEventChunkDecoder;
 import io.tidb.bigdata.cdc.craft.CraftEventChunkDecoder;
 import io.tidb.bigdata.cdc.craft.CraftParser;
 import io.tidb.bigdata.cdc.craft.CraftParserState;
@@ -25,12 +28,36 @@ import java.util.Iterator;
 
 public interface EventChunkDecoder extends Iterable<Event[]>, Iterator<Event[]> {
 
+  static EventChunkDecoder create(final byte[] key, final byte[] value) {
+    return new JsonEventChunkDecoder(key, value);
+  }
+
+  /**
+   * Only decode events accepted by the filter, values of the other events are skipped
+   */
+  static EventChunkDecoder create(final byte[] key, final byte[] value, final KeyFilter filter) {
+    return new JsonEventChunkDecoder(key, value, filter);
+  }
+
+  /**
+   * @deprecated json events are decoded by a streaming reader, use {@link #create(byte[], byte[])}
+   */
+  @Deprecated
   static EventChunkDecoder create(final byte[] key, final byte[] value, final JsonParser parser) {
-    return new JsonEventChunkDecoder(key, value, parser);
+    return create(key, value);
   }
 
   static EventChunkDecoder create(final byte[] value,
       final ParserFactory<CraftParser, CraftParserState> parserFactory) {
     return new CraftEventChunkDecoder(value, parserFactory.createParser());
   }
+
+  static EventChunkDecoder avro(final byte[] key, final byte[] value,
+      final SchemaRegistry registry, final KeyFilter filter) {
+    return new AvroEventChunkDecoder(key, value, registry, filter);
+  }
+
+  static EventChunkDecoder canalJson(final byte[] value, final KeyFilter filter) {
+    return new CanalJsonEventChunkDecoder(value, filter);
+  }
 }
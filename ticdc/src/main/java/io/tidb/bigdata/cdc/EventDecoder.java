@@ -16,6 +16,9 @@
 
 package io.tidb.bigdata.cdc;
 
+import io.tidb.bigdata.cdc.avro.AvroEventDecoder;
+import io.tidb.bigdata.cdc.avro.SchemaRegistry;
+import io.tidb.bigdata.cdc.canal.CanalJsonEventDecoder;
 import io.tidb.bigdata.cdc.craft.CraftEventDecoder;
 import io.tidb.bigdata.cdc.craft.CraftParser;
 import io.tidb.bigdata.cdc.craft.CraftParserState;
@@ -26,13 +29,37 @@ import java.util.Iterator;
 
 public interface EventDecoder extends Iterable<Event>, Iterator<Event> {
 
+  static EventDecoder json(final byte[] key, final byte[] value) {
+    return new JsonEventDecoder(key, value);
+  }
+
+  /**
+   * Only decode events accepted by the filter, values of the other events are skipped
+   */
+  static EventDecoder json(final byte[] key, final byte[] value, final KeyFilter filter) {
+    return new JsonEventDecoder(key, value, filter);
+  }
+
+  /**
+   * @deprecated json events are decoded by a streaming reader, use {@link #json(byte[], byte[])}
+   */
+  @Deprecated
   static EventDecoder json(final byte[] key, final byte[] value,
       final ParserFactory<JsonParser, JsonNode> parserFactory) {
-    return new JsonEventDecoder(key, value, parserFactory.createParser());
+    return json(key, value);
   }
 
   static EventDecoder craft(final byte[] value,
       final ParserFactory<CraftParser, CraftParserState> parserFactory) {
     return new CraftEventDecoder(value, parserFactory.createParser());
   }
+
+  static EventDecoder avro(final byte[] key, final byte[] value, final SchemaRegistry registry,
+      final KeyFilter filter) {
+    return new AvroEventDecoder(key, value, registry, filter);
+  }
+
+  static EventDecoder canalJson(final byte[] value, final KeyFilter filter) {
+    return new CanalJsonEventDecoder(value, filter);
+  }
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Compact binary form of events, used to spill events out of heap.
+ * Columns keep their original values, so events read back are equal to the events written.
+ */
+final class EventSerializer {
+
+  private static final byte ROW_INSERTED = 1;
+  private static final byte ROW_UPDATED = 2;
+  private static final byte ROW_DELETED = 3;
+
+  private static final byte NULL = 0;
+  private static final byte LONG = 1;
+  private static final byte INTEGER = 2;
+  private static final byte SHORT = 3;
+  private static final byte BYTE = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte FLOAT = 6;
+  private static final byte BOOLEAN = 7;
+  private static final byte STRING = 8;
+  private static final byte BYTES = 9;
+  private static final byte BIG_INTEGER = 10;
+  private static final byte BIG_DECIMAL = 11;
+
+  private static final class Output extends ByteArrayOutputStream {
+
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+
+  private final Output output = new Output();
+  private final DataOutputStream data = new DataOutputStream(output);
+
+  /*
+   * Serialize event into a buffer owned by this serializer, which is only valid until next call,
+   * the serialized size is returned by size()
+   */
+  public byte[] serialize(final Event event) {
+    output.reset();
+    try {
+      writeKey(event.getKey());
+      switch (event.getType()) {
+        case ROW_CHANGED:
+          writeRowChanged(event.asRowChanged());
+          break;
+        case DDL:
+          writeString(event.asDDL().getQuery());
+          data.writeInt(event.asDDL().getType().code());
+          break;
+        default:
+          break;
+      }
+    } catch (IOException e) {
+      // never happens, we are writing to memory
+      throw new IllegalStateException(e);
+    }
+    return output.buffer();
+  }
+
+  public int size() {
+    return output.size();
+  }
+
+  public static Event deserialize(final ByteBuffer buffer) {
+    final Key key = readKey(buffer);
+    final Value value;
+    switch (key.getType()) {
+      case ROW_CHANGED:
+        value = readRowChanged(buffer);
+        break;
+      case DDL:
+        final String query = readString(buffer);
+        value = new DDLValue(query, buffer.getInt());
+        break;
+      default:
+        value = ResolvedValue.getInstance();
+        break;
+    }
+    return new Event(key, value);
+  }
+
+  private void writeKey(final Key key) throws IOException {
+    data.writeByte(key.getType().code());
+    data.writeLong(key.getTs());
+    writeString(key.getSchema());
+    writeString(key.getTable());
+    data.writeLong(key.getPartition());
+  }
+
+  private static Key readKey(final ByteBuffer buffer) {
+    final int type = buffer.get();
+    final long ts = buffer.getLong();
+    final String schema = readString(buffer);
+    final String table = readString(buffer);
+    return new Key(schema, table, buffer.getLong(), type, ts);
+  }
+
+  private void writeRowChanged(final RowChangedValue value) throws IOException {
+    switch (value.getType()) {
+      case INSERT:
+        data.writeByte(ROW_INSERTED);
+        writeColumns(value.getNewValue());
+        break;
+      case UPDATE:
+        data.writeByte(ROW_UPDATED);
+        writeColumns(value.getOldValue());
+        writeColumns(value.getNewValue());
+        break;
+      case DELETE:
+        data.writeByte(ROW_DELETED);
+        writeColumns(value.getOldValue());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown row changed type: " + value.getType());
+    }
+  }
+
+  private static RowChangedValue readRowChanged(final ByteBuffer buffer) {
+    final byte type = buffer.get();
+    switch (type) {
+      case ROW_INSERTED:
+        return new RowInsertedValue(readColumns(buffer));
+      case ROW_UPDATED:
+        final RowColumn[] oldValue = readColumns(buffer);
+        return new RowUpdatedValue(oldValue, readColumns(buffer));
+      case ROW_DELETED:
+        return new RowDeletedValue(readColumns(buffer));
+      default:
+        throw new IllegalArgumentException("Unknown row changed type: " + type);
+    }
+  }
+
+  private void writeColumns(final RowColumn[] columns) throws IOException {
+    data.writeInt(columns.length);
+    for (RowColumn column : columns) {
+      writeString(column.getName());
+      data.writeShort(column.getType().code());
+      data.writeLong(column.getFlags());
+      data.writeBoolean(column.isWhereHandle());
+      writeObject(column.getOriginalValue());
+    }
+  }
+
+  private static RowColumn[] readColumns(final ByteBuffer buffer) {
+    final RowColumn[] columns = new RowColumn[buffer.getInt()];
+    for (int idx = 0; idx < columns.length; ++idx) {
+      final String name = readString(buffer);
+      final int type = buffer.getShort();
+      final long flags = buffer.getLong();
+      final boolean whereHandle = buffer.get() != 0;
+      columns[idx] = new RowColumn(name, readObject(buffer), whereHandle, type, flags);
+    }
+    return columns;
+  }
+
+  private void writeObject(final Object value) throws IOException {
+    if (value == null) {
+      data.writeByte(NULL);
+    } else if (value instanceof Long) {
+      data.writeByte(LONG);
+      data.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      data.writeByte(INTEGER);
+      data.writeInt((Integer) value);
+    } else if (value instanceof Short) {
+      data.writeByte(SHORT);
+      data.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      data.writeByte(BYTE);
+      data.writeByte((Byte) value);
+    } else if (value instanceof Double) {
+      data.writeByte(DOUBLE);
+      data.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      data.writeByte(FLOAT);
+      data.writeFloat((Float) value);
+    } else if (value instanceof Boolean) {
+      data.writeByte(BOOLEAN);
+      data.writeBoolean((Boolean) value);
+    } else if (value instanceof String) {
+      data.writeByte(STRING);
+      writeString((String) value);
+    } else if (value instanceof byte[]) {
+      data.writeByte(BYTES);
+      writeBytes((byte[]) value);
+    } else if (value instanceof BigInteger) {
+      data.writeByte(BIG_INTEGER);
+      writeBytes(((BigInteger) value).toByteArray());
+    } else if (value instanceof BigDecimal) {
+      data.writeByte(BIG_DECIMAL);
+      writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+      data.writeInt(((BigDecimal) value).scale());
+    } else {
+      throw new IllegalArgumentException("Unsupported column value: " + value.getClass());
+    }
+  }
+
+  private static Object readObject(final ByteBuffer buffer) {
+    final byte tag = buffer.get();
+    switch (tag) {
+      case NULL:
+        return null;
+      case LONG:
+        return buffer.getLong();
+      case INTEGER:
+        return buffer.getInt();
+      case SHORT:
+        return buffer.getShort();
+      case BYTE:
+        return buffer.get();
+      case DOUBLE:
+        return buffer.getDouble();
+      case FLOAT:
+        return buffer.getFloat();
+      case BOOLEAN:
+        return buffer.get() != 0;
+      case STRING:
+        return readString(buffer);
+      case BYTES:
+        return readBytes(buffer);
+      case BIG_INTEGER:
+        return new BigInteger(readBytes(buffer));
+      case BIG_DECIMAL:
+        final BigInteger unscaled = new BigInteger(readBytes(buffer));
+        return new BigDecimal(unscaled, buffer.getInt());
+      default:
+        throw new IllegalArgumentException("Unknown column value tag: " + tag);
+    }
+  }
+
+  private void writeString(final String value) throws IOException {
+    writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    final byte[] bytes = readBytes(buffer);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void writeBytes(final byte[] value) throws IOException {
+    if (value == null) {
+      data.writeInt(-1);
+      return;
+    }
+    data.writeInt(value.length);
+    data.write(value);
+  }
+
+  private static byte[] readBytes(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
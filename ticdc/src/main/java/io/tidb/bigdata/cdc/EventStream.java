@@ -16,23 +16,45 @@
 
 package io.tidb.bigdata.cdc;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 /*
  * Stateful TiCDC event stream that handles messages deduplication for user
+ *
+ * Every partition is a lock free queue, which supports one thread putting events
+ * and another thread taking events at the same time
  */
-public final class EventStream {
+public final class EventStream implements Closeable {
 
   private final PartitionedStream[] partitionedStreams;
 
-  public EventStream(final int partitions, final int capacity) {
+  /*
+   * With a spill directory, every partition keeps at most capacity events in memory and appends
+   * the overflow to memory mapped segment files under the directory, instead of blocking put
+   */
+  public EventStream(final int partitions, final int capacity,
+      final WaitStrategy waitStrategy, final File spillDirectory) {
     this.partitionedStreams = IntStream
         .range(0, partitions)
-        .mapToObj(p -> new PartitionedStream(capacity))
+        .mapToObj(p -> new PartitionedStream(capacity, waitStrategy,
+            spillDirectory == null ? null : new SpillLog(
+                new File(spillDirectory, "partition-" + p), SpillLog.DEFAULT_SEGMENT_SIZE)))
         .toArray(PartitionedStream[]::new);
   }
 
+  public EventStream(final int partitions, final int capacity,
+      final WaitStrategy waitStrategy) {
+    this(partitions, capacity, waitStrategy, null);
+  }
+
+  public EventStream(final int partitions, final int capacity) {
+    this(partitions, capacity, WaitStrategy.BLOCK);
+  }
+
   public EventStream() {
     this(1, Integer.MAX_VALUE);
   }
@@ -61,4 +83,22 @@ public final class EventStream {
       throws InterruptedException {
     return stream(partition).poll(timeout, unit);
   }
+
+  /*
+   * Move the events available in a partition into buffer without waiting,
+   * returns the number of events moved
+   */
+  public int drainTo(final int partition, final Event[] buffer) {
+    return stream(partition).drainTo(buffer);
+  }
+
+  /*
+   * Delete the spilled events which are not read yet
+   */
+  @Override
+  public void close() throws IOException {
+    for (PartitionedStream stream : partitionedStreams) {
+      stream.close();
+    }
+  }
 }
@@ -29,9 +29,17 @@ import java.util.Iterator;
  */
 public interface KeyDecoder extends Iterator<Key> {
 
+  static KeyDecoder json(final byte[] key) {
+    return new JsonKeyDecoder(key);
+  }
+
+  /**
+   * @deprecated json keys are decoded by a streaming reader, use {@link #json(byte[])}
+   */
+  @Deprecated
   static KeyDecoder json(final byte[] key,
       final ParserFactory<JsonParser, JsonNode> parserFactory) {
-    return new JsonKeyDecoder(key, parserFactory.createParser());
+    return json(key);
   }
 
   static KeyDecoder craft(final byte[] payload,
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+ * Filter of TiCDC events by their keys, decoders skip the values of rejected events without
+ * decoding them
+ */
+public final class KeyFilter implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // accepted types, schemas and tables, any of them is accepted if null
+  private final Set<Key.Type> types;
+  private final Set<String> schemas;
+  private final Set<String> tables;
+  // events with commit ts older than this are rejected
+  private final long startTs;
+
+  public KeyFilter(final Set<Key.Type> types, final Set<String> schemas,
+      final Set<String> tables, final long startTs) {
+    this.types = types == null ? null
+        : types.isEmpty() ? EnumSet.noneOf(Key.Type.class) : EnumSet.copyOf(types);
+    this.schemas = schemas == null ? null : new HashSet<>(schemas);
+    this.tables = tables == null ? null : new HashSet<>(tables);
+    this.startTs = startTs;
+  }
+
+  public boolean accept(final Key key) {
+    // keys without a commit ts, like avro tombstones, can't be told apart by their ts
+    if (key.getTs() >= 0 && key.getTs() < startTs) {
+      return false;
+    }
+    return accept(key.getType(), key.getSchema(), key.getTable());
+  }
+
+  /*
+   * Whether events of the type from the table are accepted regardless of their commit ts, for
+   * decoders which know the commit ts only after decoding the value
+   */
+  public boolean accept(final Key.Type type, final String schema, final String table) {
+    if (types != null && !types.contains(type)) {
+      return false;
+    }
+    if (type == Key.Type.RESOLVED) {
+      // resolved events don't have schema and table specified
+      return true;
+    }
+    if (schemas != null && !schemas.contains(schema)) {
+      return false;
+    }
+    return tables == null || tables.contains(table);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof KeyFilter)) {
+      return false;
+    }
+    final KeyFilter other = (KeyFilter) o;
+    return startTs == other.startTs
+        && Objects.equals(types, other.types)
+        && Objects.equals(schemas, other.schemas)
+        && Objects.equals(tables, other.tables);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(types, schemas, tables, startTs);
+  }
+}
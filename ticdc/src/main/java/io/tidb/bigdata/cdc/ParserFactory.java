@@ -22,6 +22,8 @@ import io.tidb.bigdata.cdc.json.JsonNode;
 import io.tidb.bigdata.cdc.json.JsonParser;
 import io.tidb.bigdata.cdc.json.jackson.JacksonFactory;
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
 
 /*
  * Parser factory interface
@@ -40,5 +42,22 @@ public interface ParserFactory<P extends Parser<T>, T> extends Serializable {
     return CraftParser::getInstance;
   }
 
+  /*
+   * Craft parsers which only decode columns with the given names
+   */
+  static ParserFactory<CraftParser, CraftParserState> craft(final Set<String> projection) {
+    final HashSet<String> columns = new HashSet<>(projection);
+    return () -> CraftParser.withProjection(columns);
+  }
+
+  /*
+   * Craft parsers which only decode columns with the given names of events accepted by the filter
+   */
+  static ParserFactory<CraftParser, CraftParserState> craft(final Set<String> projection,
+      final KeyFilter filter) {
+    final HashSet<String> columns = projection == null ? null : new HashSet<>(projection);
+    return () -> CraftParser.withProjection(columns).withFilter(filter);
+  }
+
   P createParser();
 }
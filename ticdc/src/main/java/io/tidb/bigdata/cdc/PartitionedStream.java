@@ -16,29 +16,92 @@
 
 package io.tidb.bigdata.cdc;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
 
 /*
  * PartitionedStream is not thread safe and suppose to be
  * used only within a single dispatching thread for a partition
  */
-final class PartitionedStream {
+final class PartitionedStream implements AutoCloseable {
 
-  private final StringBuilder idBuilder = new StringBuilder();
-  private final Map<String, Long> objectMaxTs = new HashMap<>();
-  private final BlockingQueue<Event> queue;
-  private long maxTs = -1;
+  private static final long NO_TS = -1;
 
-  protected PartitionedStream(final int capacity) {
-    this.queue = capacity == Integer.MAX_VALUE ? new LinkedBlockingQueue<>()
-        : new ArrayBlockingQueue<>(capacity);
+  /*
+   * Max ts of the events seen by every partition of a table, keyed by partition id.
+   * Open addressing with linear probing, so lookups neither allocate nor box.
+   */
+  private static final class PartitionMaxTs {
+
+    private long[] partitions = new long[4];
+    private long[] maxTs = new long[4];
+    private boolean[] used = new boolean[4];
+    private int size;
+
+    private int slot(final long partition) {
+      final int mask = partitions.length - 1;
+      int idx = Long.hashCode(partition * 0x9E3779B97F4A7C15L) & mask;
+      while (used[idx] && partitions[idx] != partition) {
+        idx = (idx + 1) & mask;
+      }
+      return idx;
+    }
+
+    long get(final long partition) {
+      final int idx = slot(partition);
+      return used[idx] ? maxTs[idx] : NO_TS;
+    }
+
+    void put(final long partition, final long ts) {
+      int idx = slot(partition);
+      if (!used[idx]) {
+        if ((size + 1) * 2 > partitions.length) {
+          grow();
+          idx = slot(partition);
+        }
+        used[idx] = true;
+        partitions[idx] = partition;
+        size++;
+      }
+      maxTs[idx] = ts;
+    }
+
+    private void grow() {
+      final long[] oldPartitions = partitions;
+      final long[] oldMaxTs = maxTs;
+      final boolean[] oldUsed = used;
+      partitions = new long[oldPartitions.length * 2];
+      maxTs = new long[oldPartitions.length * 2];
+      used = new boolean[oldPartitions.length * 2];
+      for (int i = 0; i < oldPartitions.length; i++) {
+        if (oldUsed[i]) {
+          final int idx = slot(oldPartitions[i]);
+          used[idx] = true;
+          partitions[idx] = oldPartitions[i];
+          maxTs[idx] = oldMaxTs[i];
+        }
+      }
+    }
+  }
+
+  // schema -> table -> partition -> max ts of the events seen
+  private final Map<String, Map<String, PartitionMaxTs>> objectMaxTs = new HashMap<>();
+  private final SpscEventQueue queue;
+  private final WaitStrategy waitStrategy;
+  // overflow of the queue, null if events are never spilled
+  private final SpillLog spill;
+  // whether events are appended to the spill log instead of the queue, only accessed by producer
+  private boolean spilling;
+  // resolved ts, every object has seen all of its events up to this ts
+  private long maxTs = NO_TS;
+
+  protected PartitionedStream(final int capacity, final WaitStrategy waitStrategy,
+      final SpillLog spill) {
+    this.queue = new SpscEventQueue(capacity, waitStrategy);
+    this.waitStrategy = waitStrategy;
+    this.spill = spill;
   }
 
   public int put(final Event[] events) throws InterruptedException {
@@ -52,48 +115,125 @@ final class PartitionedStream {
   public int put(final Event event) throws InterruptedException {
     final long ts = event.getTs();
     if (event.getType() == Key.Type.RESOLVED) {
+      // the resolved ts is a watermark for all objects, which is compared along with the max ts
+      // of every object, instead of raising them one by one
       if (maxTs < ts) {
         maxTs = ts;
       }
-      for (Map.Entry<String, Long> entry : objectMaxTs.entrySet()) {
-        if (entry.getValue() < ts) {
-          objectMaxTs.put(entry.getKey(), ts);
-        }
-      }
       return 0;
     }
 
-    final Predicate<Long> test = max -> max != null && ts <= max;
-    final String id = objectId(event);
-    if (test.test(maxTs) || test.test(objectMaxTs.get(id))) {
+    if (ts <= maxTs) {
       return 0;
     }
-    objectMaxTs.put(id, ts);
-    queue.put(event);
+    final PartitionMaxTs partitions = partitions(event);
+    final long partition = event.getPartition();
+    if (ts <= partitions.get(partition)) {
+      return 0;
+    }
+    partitions.put(partition, ts);
+    enqueue(event);
     return 1;
   }
 
-  private String objectId(final Event event) {
-    idBuilder
-        .append(Optional.ofNullable(event.getSchema()).orElse(""))
-        .append('.')
-        .append(Optional.ofNullable(event.getTable()).orElse(""))
-        .append('.')
-        .append(event.getPartition());
-    String id = idBuilder.toString();
-    idBuilder.setLength(0);
-    return id;
+  private void enqueue(final Event event) throws InterruptedException {
+    if (spill == null) {
+      queue.put(event);
+      return;
+    }
+    // keep spilling until the consumer catches up, events in queue are always older than
+    // events in the spill log, so the consumer could read them in order
+    if (spilling && spill.isEmpty()) {
+      spilling = false;
+    }
+    if (!spilling && queue.offer(event)) {
+      return;
+    }
+    spilling = true;
+    spill.append(event);
+    if (waitStrategy.signals()) {
+      queue.notEmpty.signal();
+    }
+  }
+
+  private PartitionMaxTs partitions(final Event event) {
+    final String schema = event.getSchema() == null ? "" : event.getSchema();
+    final String table = event.getTable() == null ? "" : event.getTable();
+    Map<String, PartitionMaxTs> tables = objectMaxTs.get(schema);
+    if (tables == null) {
+      tables = new HashMap<>();
+      objectMaxTs.put(schema, tables);
+    }
+    PartitionMaxTs partitions = tables.get(table);
+    if (partitions == null) {
+      partitions = new PartitionMaxTs();
+      tables.put(table, partitions);
+    }
+    return partitions;
   }
 
   public Event take() throws InterruptedException {
-    return queue.take();
+    if (spill == null) {
+      return queue.take();
+    }
+    int round = 0;
+    Event event;
+    while ((event = poll()) == null) {
+      round = waitStrategy.await(round, queue.notEmpty);
+    }
+    queue.notEmpty.disarm();
+    return event;
   }
 
   public Event poll() {
-    return queue.poll();
+    if (spill == null) {
+      return queue.poll();
+    }
+    // the spill log is checked before the queue: once it is seen not empty, the producer keeps
+    // spilling until it is drained, so an empty queue afterwards means every event older than
+    // the spilled ones is consumed. Checking it after the queue might take a spilled event
+    // ahead of the events queued in between.
+    final boolean spilled = !spill.isEmpty();
+    final Event event = queue.poll();
+    if (event != null || !spilled) {
+      return event;
+    }
+    return spill.poll();
   }
 
   public Event poll(final long timeout, final TimeUnit unit) throws InterruptedException {
-    return queue.poll(timeout, unit);
+    if (spill == null) {
+      return queue.poll(timeout, unit);
+    }
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int round = 0;
+    Event event;
+    while ((event = poll()) == null) {
+      if (deadline - System.nanoTime() <= 0) {
+        queue.notEmpty.disarm();
+        return null;
+      }
+      round = waitStrategy.await(round, queue.notEmpty, deadline);
+    }
+    queue.notEmpty.disarm();
+    return event;
+  }
+
+  public int drainTo(final Event[] buffer) {
+    int count = queue.drainTo(buffer, 0, buffer.length);
+    if (spill != null) {
+      Event event;
+      while (count < buffer.length && (event = poll()) != null) {
+        buffer[count++] = event;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (spill != null) {
+      spill.close();
+    }
   }
 }
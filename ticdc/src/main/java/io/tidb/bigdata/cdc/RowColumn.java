@@ -28,9 +28,9 @@ import java.time.temporal.ChronoField;
 import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalQueries;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -86,20 +86,21 @@ public class RowColumn {
   private static final short MYSQL_TYPE_VARSTRING = 0xfd;
   private static final short MYSQL_TYPE_STRING = 0xfe;
   private static final short MYSQL_TYPE_GEOMETRY = 0xff;
-  private static final long FLAG_BINARY = 1 << 0;
-  private static final long FLAG_HANDLE_KEY = 1 << 1;
-  private static final long FLAG_GENERATED_COLUMN = 1 << 2;
-  private static final long FLAG_PRIMARY_KEY = 1 << 3;
-  private static final long FLAG_UNIQUE_KEY = 1 << 4;
-  private static final long FLAG_MULTIPLE_KEY = 1 << 5;
-  private static final long FLAG_NULLABLE = 1 << 6;
-  private static final long FLAG_UNSIGNED = 1 << 7;
+  public static final long FLAG_BINARY = 1 << 0;
+  public static final long FLAG_HANDLE_KEY = 1 << 1;
+  public static final long FLAG_GENERATED_COLUMN = 1 << 2;
+  public static final long FLAG_PRIMARY_KEY = 1 << 3;
+  public static final long FLAG_UNIQUE_KEY = 1 << 4;
+  public static final long FLAG_MULTIPLE_KEY = 1 << 5;
+  public static final long FLAG_NULLABLE = 1 << 6;
+  public static final long FLAG_UNSIGNED = 1 << 7;
   private final String name; // Column name
-  private final Object value; // Value
+  private Object value; // Value, might be a LazyValue which is not materialized yet
   private final boolean whereHandle; // Where Handle
   private final Type type;
   private final long flags;
-  private Optional<Object> coerced; // Coerced value according to it's type
+  private Object coerced; // Coerced value according to it's type
+  private boolean isCoerced;
 
   public RowColumn(final String name, final Object value, final boolean whereHandle, final int type,
       final long flags) {
@@ -108,7 +109,15 @@ public class RowColumn {
     this.type = Type.findByCode(type);
     this.value = value;
     this.flags = flags;
-    this.coerced = Optional.empty();
+  }
+
+  /*
+   * Value materialized only when it is accessed, so decoders could defer copying and decoding
+   * values that consumers never ask for
+   */
+  public interface LazyValue {
+
+    Object materialize();
   }
 
   private static LocalDate parseDate(final String str) {
@@ -175,15 +184,150 @@ public class RowColumn {
     return whereHandle;
   }
 
-  public Object getOriginalValue() {
+  private Object value() {
+    if (value instanceof LazyValue) {
+      value = ((LazyValue) value).materialize();
+    }
     return value;
   }
 
+  public Object getOriginalValue() {
+    return value();
+  }
+
   public Object getValue() {
-    if (!coerced.isPresent()) {
-      coerced = Optional.ofNullable(type.coerce(value));
+    if (!isCoerced) {
+      coerced = type.coerce(value());
+      isCoerced = true;
+    }
+    return coerced;
+  }
+
+  /*
+   * Text of the value without materializing it if it is still in the message, null if the value
+   * is not text. Values which are not materialized yet are never numbers, booleans or temporals.
+   */
+  private CharSequence text() {
+    if (value instanceof CharSequence) {
+      return (CharSequence) value;
+    }
+    final Object materialized = value();
+    if (materialized instanceof byte[]) {
+      return new String((byte[]) materialized, StandardCharsets.UTF_8);
+    }
+    return materialized instanceof CharSequence ? (CharSequence) materialized : null;
+  }
+
+  /*
+   * Whether the value is NULL, the primitive accessors below must not be called if it is
+   */
+  public boolean isNullValue() {
+    // lazy values are never null
+    return value == null;
+  }
+
+  public boolean getBoolean() {
+    final Object raw = value;
+    if (raw instanceof Boolean) {
+      return (Boolean) raw;
+    }
+    if (raw instanceof Number) {
+      return ((Number) raw).longValue() != 0;
+    }
+    final String text = text().toString();
+    return text.equals("1") || Boolean.parseBoolean(text);
+  }
+
+  public long getLong() {
+    final Object raw = value;
+    if (raw instanceof Number) {
+      return ((Number) raw).longValue();
+    }
+    if (raw instanceof Boolean) {
+      return (Boolean) raw ? 1 : 0;
+    }
+    return SqlText.parseLong(text());
+  }
+
+  public int getInt() {
+    return (int) getLong();
+  }
+
+  public double getDouble() {
+    final Object raw = value;
+    if (raw instanceof Number) {
+      return ((Number) raw).doubleValue();
     }
-    return coerced.get();
+    return Double.parseDouble(text().toString());
+  }
+
+  public float getFloat() {
+    final Object raw = value;
+    if (raw instanceof Number) {
+      return ((Number) raw).floatValue();
+    }
+    return Float.parseFloat(text().toString());
+  }
+
+  /*
+   * Days since 1970-01-01 of a date value
+   */
+  public int getEpochDay() {
+    final Object raw = value;
+    if (raw instanceof TemporalAccessor) {
+      return (int) ((TemporalAccessor) raw).query(TemporalQueries.localDate()).toEpochDay();
+    }
+    return (int) SqlText.parseEpochDay(text());
+  }
+
+  /*
+   * Signed nanoseconds of a time value, which might be out of a day for mysql durations
+   */
+  public long getNanoOfDay() {
+    final Object raw = value;
+    if (raw instanceof TemporalAccessor) {
+      return ((TemporalAccessor) raw).query(TemporalQueries.localTime()).toNanoOfDay();
+    }
+    return SqlText.parseNanoOfDay(text());
+  }
+
+  /*
+   * Microseconds since 1970-01-01T00:00:00 of a datetime or timestamp value, as if it were in UTC
+   */
+  public long getEpochMicros() {
+    final Object raw = value;
+    if (raw instanceof TemporalAccessor) {
+      final TemporalAccessor temporal = (TemporalAccessor) raw;
+      return temporal.query(TemporalQueries.localDate()).toEpochDay()
+          * SqlText.SECONDS_PER_DAY * SqlText.MICROS_PER_SECOND
+          + temporal.query(TemporalQueries.localTime()).toNanoOfDay() / SqlText.NANOS_PER_MICRO;
+    }
+    return SqlText.parseEpochMicros(text());
+  }
+
+  /*
+   * Scale of a decimal value, or -1 if its unscaled value might not fit in a long, in which case
+   * it has to be read by asDecimal
+   */
+  public int getDecimalScale() {
+    final Object raw = value;
+    if (raw instanceof BigDecimal) {
+      final BigDecimal decimal = (BigDecimal) raw;
+      return decimal.scale() >= 0 && decimal.unscaledValue().bitLength() < Long.SIZE
+          ? decimal.scale() : -1;
+    }
+    return SqlText.decimalScale(text());
+  }
+
+  /*
+   * Unscaled value of a decimal value whose scale is not -1
+   */
+  public long getUnscaledLong() {
+    final Object raw = value;
+    if (raw instanceof BigDecimal) {
+      return ((BigDecimal) raw).unscaledValue().longValueExact();
+    }
+    return SqlText.unscaledLong(text());
   }
 
   public Class getJavaType() {
@@ -197,12 +341,12 @@ public class RowColumn {
       }
       return (String) getValue();
     } else {
-      return value.toString();
+      return value().toString();
     }
   }
 
   private String asStringNullable() {
-    if (value == null) {
+    if (value() == null) {
       return null;
     }
     return asStringInternal();
@@ -217,7 +361,7 @@ public class RowColumn {
   }
 
   private byte[] asBinaryNullable() {
-    if (value == null) {
+    if (value() == null) {
       return null;
     }
     return asBinaryInternal();
@@ -232,7 +376,7 @@ public class RowColumn {
   }
 
   private Integer asIntegerNullable() {
-    if (value == null) {
+    if (value() == null) {
       return null;
     }
     return asIntegerInternal();
@@ -240,7 +384,7 @@ public class RowColumn {
 
   @SuppressWarnings("unchecked")
   private <T> T safeAsType(Supplier<Boolean> test, Function<String, T> converter) {
-    if (value == null) {
+    if (value() == null) {
       return null;
     }
     if (test.get()) {
@@ -514,7 +658,7 @@ public class RowColumn {
     final RowColumn other = (RowColumn) o;
     return Objects.equals(type, other.type)
         && Objects.equals(name, other.name)
-        && Objects.equals(value, other.value)
+        && Objects.equals(value(), other.value())
         && Objects.equals(whereHandle, other.whereHandle)
         && Objects.equals(flags, other.flags);
   }
@@ -583,6 +727,33 @@ public class RowColumn {
       this(code, javaType, null);
     }
 
+    /*
+     * Type of a mysql type name as given by canal-json and avro schemas, like "int unsigned" or
+     * "varchar(255)", the length and the attributes of the type are ignored
+     */
+    public static Type ofName(final String name) {
+      String base = name.trim().toUpperCase(Locale.ROOT);
+      for (int idx = 0; idx < base.length(); idx++) {
+        final char c = base.charAt(idx);
+        if (c == '(' || c == ' ') {
+          base = base.substring(0, idx);
+          break;
+        }
+      }
+      switch (base) {
+        case "INTEGER":
+          return INT;
+        case "BOOLEAN":
+          return BOOL;
+        case "NUMERIC":
+          return DECIMAL;
+        case "REAL":
+          return DOUBLE;
+        default:
+          return valueOf(base);
+      }
+    }
+
     static Type findByCode(final int code) {
       Type type = byId.get(code);
       if (type == null) {
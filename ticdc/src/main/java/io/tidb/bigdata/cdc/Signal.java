@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.cdc;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The thread parked by WaitStrategy.BLOCK on one side of a single producer single consumer queue,
+ * which is unparked by the other side once it has made progress.
+ *
+ * The waiter registers itself and checks its condition once more before it parks, and the other
+ * side publishes its progress before it looks for a waiter, both with volatile writes and reads,
+ * so at least one of them sees the other and a wake up is never lost.
+ */
+final class Signal {
+
+  private volatile Thread waiter;
+
+  boolean isArmed() {
+    return waiter != null;
+  }
+
+  void arm() {
+    waiter = Thread.currentThread();
+  }
+
+  void disarm() {
+    if (waiter != null) {
+      waiter = null;
+    }
+  }
+
+  void signal() {
+    final Thread thread = waiter;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Append only log of events in segment files, which is written by a single producer and read
+ * in order by a single consumer. A segment file is deleted once it is fully read.
+ *
+ * Segments are written and read with plain file channel calls rather than mapped, so deleting
+ * a segment releases it right away instead of whenever its mapping is garbage collected.
+ */
+final class SpillLog implements Closeable {
+
+  static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+  private static final int LENGTH_SIZE = Integer.BYTES;
+
+  private static final int READ_BUFFER_SIZE = 64 << 10;
+
+  private static final class Segment {
+
+    private final File file;
+    private final FileChannel channel;
+    // bytes written by the producer
+    private int size;
+    // bytes published to the consumer
+    private volatile int limit;
+    // no more events will be appended once sealed
+    private volatile boolean sealed;
+    // offset of the next event to read, only accessed by the consumer
+    private int readOffset;
+
+    private Segment(final File file) throws IOException {
+      this.file = file;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void delete() throws IOException {
+      channel.close();
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  private final File directory;
+  private final int segmentSize;
+  private final Queue<Segment> segments = new ConcurrentLinkedQueue<>();
+  private final EventSerializer serializer = new EventSerializer();
+
+  // only accessed by the producer
+  private final ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_SIZE);
+  private Segment writing;
+  private long segmentId;
+  private volatile long appended;
+
+  // only accessed by the consumer, holds the bytes of the reading segment from its read offset
+  private ByteBuffer readBuffer = empty(ByteBuffer.allocate(READ_BUFFER_SIZE));
+  private volatile long consumed;
+
+  SpillLog(final File directory, final int segmentSize) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Can not create spill directory: " + directory);
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /* Buffer casts keep the calls binary compatible with java 8 */
+  private static ByteBuffer empty(final ByteBuffer buffer) {
+    ((Buffer) buffer).clear().flip();
+    return buffer;
+  }
+
+  public boolean isEmpty() {
+    return consumed == appended;
+  }
+
+  public void append(final Event event) {
+    final byte[] bytes = serializer.serialize(event);
+    final int size = serializer.size();
+    try {
+      if (writing == null
+          || (writing.size > 0 && writing.size + LENGTH_SIZE + size > segmentSize)) {
+        final Segment segment = new Segment(new File(directory, "segment-" + segmentId++));
+        if (writing != null) {
+          writing.sealed = true;
+        }
+        segments.add(segment);
+        writing = segment;
+      }
+      lengthBuffer.putInt(0, size);
+      ((Buffer) lengthBuffer).rewind();
+      final ByteBuffer[] buffers = {lengthBuffer, ByteBuffer.wrap(bytes, 0, size)};
+      while (buffers[1].hasRemaining()) {
+        writing.channel.write(buffers);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write spill segment in " + directory, e);
+    }
+    writing.size += LENGTH_SIZE + size;
+    // publish the event to the consumer
+    writing.limit = writing.size;
+    appended++;
+  }
+
+  public Event poll() {
+    Segment segment;
+    while ((segment = segments.peek()) != null) {
+      // read sealed before limit, so a sealed segment has its final limit
+      final boolean sealed = segment.sealed;
+      final int limit = segment.limit;
+      try {
+        if (segment.readOffset < limit) {
+          return read(segment, limit);
+        }
+        if (!sealed) {
+          return null;
+        }
+        segments.poll();
+        empty(readBuffer);
+        segment.delete();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read spill segment " + segment.file, e);
+      }
+    }
+    return null;
+  }
+
+  private Event read(final Segment segment, final int limit) throws IOException {
+    final int size = fill(segment, limit, LENGTH_SIZE).getInt();
+    segment.readOffset += LENGTH_SIZE;
+    final ByteBuffer buffer = fill(segment, limit, size);
+    final int end = buffer.position() + size;
+    final Event event = EventSerializer.deserialize(buffer);
+    ((Buffer) buffer).position(end);
+    segment.readOffset += size;
+    consumed++;
+    return event;
+  }
+
+  /*
+   * Make sure the read buffer holds at least the given number of bytes, which are published
+   * already, reading as many of the published bytes as fit.
+   */
+  private ByteBuffer fill(final Segment segment, final int limit, final int bytes)
+      throws IOException {
+    if (readBuffer.remaining() >= bytes) {
+      return readBuffer;
+    }
+    if (readBuffer.capacity() < bytes) {
+      readBuffer = ByteBuffer.allocate(bytes).put(readBuffer);
+    } else {
+      readBuffer.compact();
+    }
+    ((Buffer) readBuffer).limit(Math.min(readBuffer.capacity(), limit - segment.readOffset));
+    while (readBuffer.position() < bytes) {
+      if (segment.channel.read(readBuffer, segment.readOffset + readBuffer.position()) < 0) {
+        throw new EOFException("Unexpected end of spill segment " + segment.file);
+      }
+    }
+    ((Buffer) readBuffer).flip();
+    return readBuffer;
+  }
+
+  @Override
+  public void close() throws IOException {
+    Segment segment;
+    while ((segment = segments.poll()) != null) {
+      segment.delete();
+    }
+  }
+}
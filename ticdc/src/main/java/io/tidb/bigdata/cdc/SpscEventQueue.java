@@ -0,0 +1,178 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Lock free single producer single consumer queue of events.
+ *
+ * Events are stored in chunks of slots, a null slot is free and a non-null slot holds an event
+ * which is not consumed yet, so producer and consumer never touch each other's cursors. A bounded
+ * queue is a single chunk used as a ring, an unbounded queue links a new chunk whenever the
+ * current one is full.
+ *
+ * With a signalling wait strategy, events are published and slots are freed with full fences, so
+ * that the other side is sure to see a thread parked on the queue and unpark it.
+ */
+final class SpscEventQueue {
+
+  private static final int UNBOUNDED_CHUNK_SIZE = 1024;
+
+  private static final class Chunk {
+
+    private final AtomicReferenceArray<Event> slots;
+    private volatile Chunk next;
+
+    private Chunk(final int size) {
+      this.slots = new AtomicReferenceArray<>(size);
+    }
+  }
+
+  private final boolean bounded;
+  private final WaitStrategy waitStrategy;
+  private final boolean signalling;
+
+  // the consumer waiting for an event, signalled by the producer
+  final Signal notEmpty = new Signal();
+  // the producer waiting for a free slot, signalled by the consumer
+  final Signal notFull = new Signal();
+
+  // only accessed by the producer
+  private Chunk producerChunk;
+  private int producerIndex;
+
+  // only accessed by the consumer
+  private Chunk consumerChunk;
+  private int consumerIndex;
+
+  SpscEventQueue(final int capacity, final WaitStrategy waitStrategy) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.bounded = capacity != Integer.MAX_VALUE;
+    this.waitStrategy = waitStrategy;
+    this.signalling = waitStrategy.signals();
+    this.producerChunk = new Chunk(bounded ? capacity : UNBOUNDED_CHUNK_SIZE);
+    this.consumerChunk = producerChunk;
+  }
+
+  public boolean offer(final Event event) {
+    Chunk chunk = producerChunk;
+    int idx = producerIndex;
+    if (idx == chunk.slots.length()) {
+      idx = 0;
+      if (!bounded) {
+        final Chunk next = new Chunk(UNBOUNDED_CHUNK_SIZE);
+        chunk.next = next;
+        chunk = next;
+        producerChunk = next;
+      }
+    }
+    if (chunk.slots.get(idx) != null) {
+      // the consumer has not freed this slot yet
+      producerIndex = idx;
+      return false;
+    }
+    producerIndex = idx + 1;
+    if (signalling) {
+      chunk.slots.set(idx, event);
+      notEmpty.signal();
+    } else {
+      chunk.slots.lazySet(idx, event);
+    }
+    return true;
+  }
+
+  public void put(final Event event) throws InterruptedException {
+    int round = 0;
+    while (!offer(event)) {
+      round = waitStrategy.await(round, notFull);
+    }
+    notFull.disarm();
+  }
+
+  public Event poll() {
+    Chunk chunk = consumerChunk;
+    int idx = consumerIndex;
+    if (idx == chunk.slots.length()) {
+      if (bounded) {
+        idx = 0;
+      } else {
+        final Chunk next = chunk.next;
+        if (next == null) {
+          return null;
+        }
+        chunk = next;
+        idx = 0;
+        consumerChunk = next;
+      }
+      consumerIndex = idx;
+    }
+    final Event event = chunk.slots.get(idx);
+    if (event == null) {
+      return null;
+    }
+    consumerIndex = idx + 1;
+    if (signalling && bounded) {
+      chunk.slots.set(idx, null);
+      notFull.signal();
+    } else {
+      chunk.slots.lazySet(idx, null);
+    }
+    return event;
+  }
+
+  public Event poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int round = 0;
+    Event event;
+    while ((event = poll()) == null) {
+      if (deadline - System.nanoTime() <= 0) {
+        notEmpty.disarm();
+        return null;
+      }
+      round = waitStrategy.await(round, notEmpty, deadline);
+    }
+    notEmpty.disarm();
+    return event;
+  }
+
+  public Event take() throws InterruptedException {
+    int round = 0;
+    Event event;
+    while ((event = poll()) == null) {
+      round = waitStrategy.await(round, notEmpty);
+    }
+    notEmpty.disarm();
+    return event;
+  }
+
+  /*
+   * Move the available events into buffer without waiting, returns the number of events moved
+   */
+  public int drainTo(final Event[] buffer, final int offset, final int length) {
+    int count = 0;
+    Event event;
+    while (count < length && (event = poll()) != null) {
+      buffer[offset + count++] = event;
+    }
+    return count;
+  }
+}
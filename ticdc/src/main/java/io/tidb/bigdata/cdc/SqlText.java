@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+/*
+ * Hand written parsers of the SQL text of temporal, decimal and integer values, which read the
+ * characters in place instead of going through DateTimeFormatter, BigDecimal or substrings
+ */
+final class SqlText {
+
+  static final long NANOS_PER_MICRO = 1000L;
+  static final long MICROS_PER_SECOND = 1000000L;
+  static final long NANOS_PER_SECOND = 1000000000L;
+  static final long SECONDS_PER_DAY = 86400L;
+
+  // the unscaled value of decimals with more digits might not fit in a long
+  private static final int MAX_COMPACT_DIGITS = 18;
+
+  private SqlText() {
+  }
+
+  private static IllegalArgumentException malformed(final String type, final CharSequence text) {
+    return new IllegalArgumentException("Malformed " + type + ": " + text);
+  }
+
+  private static int digit(final CharSequence text, final int pos, final String type) {
+    if (pos >= text.length()) {
+      throw malformed(type, text);
+    }
+    final int digit = text.charAt(pos) - '0';
+    if (digit < 0 || digit > 9) {
+      throw malformed(type, text);
+    }
+    return digit;
+  }
+
+  private static int digits(final CharSequence text, final int pos, final int count,
+      final String type) {
+    int value = 0;
+    for (int idx = 0; idx < count; idx++) {
+      value = value * 10 + digit(text, pos + idx, type);
+    }
+    return value;
+  }
+
+  private static void expect(final CharSequence text, final int pos, final char c,
+      final String type) {
+    if (pos >= text.length() || text.charAt(pos) != c) {
+      throw malformed(type, text);
+    }
+  }
+
+  private static boolean isLeapYear(final long year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int lengthOfMonth(final long year, final int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+        // FALLTHROUGH
+      case 6:
+        // FALLTHROUGH
+      case 9:
+        // FALLTHROUGH
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /*
+   * Days since 1970-01-01 of a proleptic gregorian date, see
+   * http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+   */
+  static long toEpochDay(long year, final int month, final int day) {
+    year -= month <= 2 ? 1 : 0;
+    final long era = Math.floorDiv(year, 400);
+    final long yearOfEra = year - era * 400;
+    final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /*
+   * Days since epoch of "yyyy-MM-dd"
+   */
+  static long parseEpochDay(final CharSequence text) {
+    return parseDate(text, "date");
+  }
+
+  private static long parseDate(final CharSequence text, final String type) {
+    final int year = digits(text, 0, 4, type);
+    expect(text, 4, '-', type);
+    final int month = digits(text, 5, 2, type);
+    expect(text, 7, '-', type);
+    final int day = digits(text, 8, 2, type);
+    if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+      throw malformed(type, text);
+    }
+    return toEpochDay(year, month, day);
+  }
+
+  /*
+   * Nanoseconds of "HH:mm:ss[.fffffffff]" starting at the position, the hours might have more
+   * than two digits since durations of mysql range from -838:59:59 to 838:59:59
+   */
+  private static long parseTime(final CharSequence text, int pos, final boolean duration,
+      final String type) {
+    final int length = text.length();
+    long hours = 0;
+    final int hoursStart = pos;
+    while (pos < length && text.charAt(pos) != ':') {
+      hours = hours * 10 + digit(text, pos++, type);
+    }
+    if (pos == hoursStart || (!duration && (pos - hoursStart != 2 || hours > 23))) {
+      throw malformed(type, text);
+    }
+    expect(text, pos, ':', type);
+    final int minutes = digits(text, pos + 1, 2, type);
+    expect(text, pos + 3, ':', type);
+    final int seconds = digits(text, pos + 4, 2, type);
+    if (minutes > 59 || seconds > 59) {
+      throw malformed(type, text);
+    }
+    pos += 6;
+    long nanos = 0;
+    if (pos < length) {
+      expect(text, pos++, '.', type);
+      int fractionDigits = 0;
+      while (pos < length) {
+        if (fractionDigits == 9) {
+          throw malformed(type, text);
+        }
+        nanos = nanos * 10 + digit(text, pos++, type);
+        fractionDigits++;
+      }
+      for (; fractionDigits < 9; fractionDigits++) {
+        nanos *= 10;
+      }
+    }
+    return ((hours * 60 + minutes) * 60 + seconds) * NANOS_PER_SECOND + nanos;
+  }
+
+  /*
+   * Signed nanoseconds of "[-]HH:mm:ss[.fffffffff]"
+   */
+  static long parseNanoOfDay(final CharSequence text) {
+    final boolean negative = text.length() > 0 && text.charAt(0) == '-';
+    final long nanos = parseTime(text, negative ? 1 : 0, true, "time");
+    return negative ? -nanos : nanos;
+  }
+
+  /*
+   * Microseconds since epoch of "yyyy-MM-dd HH:mm:ss[.ffffff]" in UTC, digits of the fraction
+   * beyond microseconds are truncated
+   */
+  static long parseEpochMicros(final CharSequence text) {
+    final long epochDay = parseDate(text, "datetime");
+    if (text.length() == 10) {
+      return epochDay * SECONDS_PER_DAY * MICROS_PER_SECOND;
+    }
+    if (text.length() < 11 || (text.charAt(10) != ' ' && text.charAt(10) != 'T')) {
+      throw malformed("datetime", text);
+    }
+    final long nanoOfDay = parseTime(text, 11, false, "datetime");
+    return epochDay * SECONDS_PER_DAY * MICROS_PER_SECOND + nanoOfDay / NANOS_PER_MICRO;
+  }
+
+  /*
+   * Scale of "[-]ddd[.ddd]", or -1 if the unscaled value might not fit in a long
+   */
+  static int decimalScale(final CharSequence text) {
+    final int length = text.length();
+    int pos = length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+    int digits = 0;
+    int scale = -1;
+    for (; pos < length; pos++) {
+      final char c = text.charAt(pos);
+      if (c == '.' && scale < 0) {
+        scale = 0;
+      } else if (c >= '0' && c <= '9') {
+        // leading zeros don't count
+        if (digits > 0 || c != '0') {
+          digits++;
+        }
+        if (scale >= 0) {
+          scale++;
+        }
+      } else {
+        // exponents and anything else are left to BigDecimal
+        return -1;
+      }
+    }
+    if (digits > MAX_COMPACT_DIGITS) {
+      return -1;
+    }
+    return Math.max(scale, 0);
+  }
+
+  /*
+   * Unscaled value of "[-]ddd[.ddd]", whose scale is given by decimalScale
+   */
+  static long unscaledLong(final CharSequence text) {
+    final int length = text.length();
+    final boolean negative = length > 0 && text.charAt(0) == '-';
+    int pos = length > 0 && (negative || text.charAt(0) == '+') ? 1 : 0;
+    long unscaled = 0;
+    for (; pos < length; pos++) {
+      final char c = text.charAt(pos);
+      if (c != '.') {
+        unscaled = unscaled * 10 + digit(text, pos, "decimal");
+      }
+    }
+    return negative ? -unscaled : unscaled;
+  }
+
+  /*
+   * Long.parseLong without converting the text to a string first
+   */
+  static long parseLong(final CharSequence text) {
+    final int length = text.length();
+    if (length == 0) {
+      throw malformed("integer", text);
+    }
+    final boolean negative = text.charAt(0) == '-';
+    int pos = negative || text.charAt(0) == '+' ? 1 : 0;
+    if (pos == length) {
+      throw malformed("integer", text);
+    }
+    // accumulated negatively, so that Long.MIN_VALUE is parsed as well
+    long value = 0;
+    for (; pos < length; pos++) {
+      final int digit = digit(text, pos, "integer");
+      if (value < (Long.MIN_VALUE + digit) / 10) {
+        throw malformed("integer", text);
+      }
+      value = value * 10 - digit;
+    }
+    if (!negative) {
+      if (value == Long.MIN_VALUE) {
+        throw malformed("integer", text);
+      }
+      return -value;
+    }
+    return value;
+  }
+}
@@ -29,9 +29,17 @@ import java.util.Iterator;
  */
 public interface ValueDecoder extends Iterator<Value> {
 
+  static ValueDecoder json(final byte[] value) {
+    return new JsonValueDecoder(value);
+  }
+
+  /**
+   * @deprecated json values are decoded by a streaming reader, use {@link #json(byte[])}
+   */
+  @Deprecated
   static ValueDecoder json(final byte[] value,
       final ParserFactory<JsonParser, JsonNode> parserFactory) {
-    return new JsonValueDecoder(value, parserFactory.createParser());
+    return json(value);
   }
 
   static ValueDecoder craft(final byte[] payload,
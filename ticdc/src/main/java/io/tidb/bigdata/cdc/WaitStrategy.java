@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * How a thread waits for an EventStream partition to become non-empty or non-full
+ */
+public enum WaitStrategy {
+  /*
+   * Spin on the partition, lowest latency at the cost of a whole core per waiting thread
+   */
+  BUSY_SPIN {
+    @Override
+    int idle(final int round, final Signal signal, final boolean timed, final long deadline) {
+      return round + 1;
+    }
+  },
+  /*
+   * Spin for a while, then yield the core to other threads between checks
+   */
+  YIELD {
+    @Override
+    int idle(final int round, final Signal signal, final boolean timed, final long deadline) {
+      if (round >= SPIN_ROUNDS) {
+        Thread.yield();
+      }
+      return round + 1;
+    }
+  },
+  /*
+   * Spin and yield for a while, then park between checks with an exponential backoff, an idle
+   * thread still wakes up about every millisecond
+   */
+  PARK {
+    @Override
+    int idle(final int round, final Signal signal, final boolean timed, final long deadline) {
+      if (round < SPIN_ROUNDS) {
+        return round + 1;
+      }
+      if (round < SPIN_ROUNDS + YIELD_ROUNDS) {
+        Thread.yield();
+        return round + 1;
+      }
+      final int backoff = Math.min(round - SPIN_ROUNDS - YIELD_ROUNDS, MAX_PARK_SHIFT);
+      LockSupport.parkNanos(MIN_PARK_NANOS << backoff);
+      return round + 1;
+    }
+  },
+  /*
+   * Spin and yield for a while, then park until the other side of the partition signals
+   * progress, an idle thread doesn't wake up at all. Every put and take pays a full fence and a
+   * check for a parked thread in return.
+   */
+  BLOCK {
+    @Override
+    boolean signals() {
+      return true;
+    }
+
+    @Override
+    int idle(final int round, final Signal signal, final boolean timed, final long deadline) {
+      if (round < SPIN_ROUNDS) {
+        return round + 1;
+      }
+      if (round < SPIN_ROUNDS + YIELD_ROUNDS) {
+        Thread.yield();
+        return round + 1;
+      }
+      if (!signal.isArmed()) {
+        // the caller checks once more before the next call parks
+        signal.arm();
+        return round + 1;
+      }
+      if (timed) {
+        LockSupport.parkNanos(signal, deadline - System.nanoTime());
+      } else {
+        LockSupport.park(signal);
+      }
+      return round + 1;
+    }
+  };
+
+  private static final int SPIN_ROUNDS = 100;
+  private static final int YIELD_ROUNDS = 100;
+  private static final long MIN_PARK_NANOS = 1000;
+  // parks at most ~1ms
+  private static final int MAX_PARK_SHIFT = 10;
+
+  /*
+   * Whether the waiting thread has to be signalled by the other side of the partition
+   */
+  boolean signals() {
+    return false;
+  }
+
+  /*
+   * Wait a little, round is the number of times the caller has waited so far
+   * and the returned value is the round for the next call
+   */
+  abstract int idle(final int round, final Signal signal, final boolean timed,
+      final long deadline);
+
+  final int await(final int round, final Signal signal) throws InterruptedException {
+    return await(round, signal, false, 0);
+  }
+
+  /*
+   * Wait a little, but not past the deadline of System.nanoTime()
+   */
+  final int await(final int round, final Signal signal, final long deadline)
+      throws InterruptedException {
+    return await(round, signal, true, deadline);
+  }
+
+  private int await(final int round, final Signal signal, final boolean timed,
+      final long deadline) throws InterruptedException {
+    if (Thread.interrupted()) {
+      signal.disarm();
+      throw new InterruptedException();
+    }
+    return idle(round, signal, timed, deadline);
+  }
+}
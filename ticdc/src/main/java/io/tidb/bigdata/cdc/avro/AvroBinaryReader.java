@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Reader of avro binary encoded data, see https://avro.apache.org/docs/current/spec.html
+ */
+final class AvroBinaryReader {
+
+  private final byte[] buffer;
+  private final int limit;
+  private int pos;
+
+  AvroBinaryReader(final byte[] buffer, final int offset) {
+    this.buffer = buffer;
+    this.pos = offset;
+    this.limit = buffer.length;
+  }
+
+  /*
+   * Variable length zig-zag encoded long
+   */
+  long readLong() {
+    long value = 0;
+    int shift = 0;
+    while (true) {
+      checkRemaining(1);
+      final int b = buffer[pos++] & 0xff;
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+      shift += 7;
+      if (shift > 63) {
+        throw new IllegalStateException("Invalid avro varint at " + pos);
+      }
+    }
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  int readInt() {
+    return (int) readLong();
+  }
+
+  boolean readBoolean() {
+    checkRemaining(1);
+    return buffer[pos++] != 0;
+  }
+
+  float readFloat() {
+    return Float.intBitsToFloat((int) readLittleEndian(4));
+  }
+
+  double readDouble() {
+    return Double.longBitsToDouble(readLittleEndian(8));
+  }
+
+  byte[] readBytes() {
+    return readFixed(readLength());
+  }
+
+  byte[] readFixed(final int size) {
+    checkRemaining(size);
+    final byte[] bytes = Arrays.copyOfRange(buffer, pos, pos + size);
+    pos += size;
+    return bytes;
+  }
+
+  String readString() {
+    final int length = readLength();
+    checkRemaining(length);
+    final String str = new String(buffer, pos, length, StandardCharsets.UTF_8);
+    pos += length;
+    return str;
+  }
+
+  /*
+   * Read a datum of the schema, records are read into maps from field names to values, decimals
+   * into big decimals and enums into their symbols
+   */
+  Object read(final AvroSchema schema) {
+    switch (schema.getKind()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return readBoolean();
+      case INT:
+        return readInt();
+      case LONG:
+        return readLong();
+      case FLOAT:
+        return readFloat();
+      case DOUBLE:
+        return readDouble();
+      case BYTES:
+        return toDecimal(schema, readBytes());
+      case FIXED:
+        return toDecimal(schema, readFixed(schema.getSize()));
+      case STRING:
+        return readString();
+      case ENUM:
+        return schema.getSymbols().get(readInt());
+      case UNION:
+        return read(schema.getTypes().get(readInt()));
+      case ARRAY:
+        final List<Object> items = new ArrayList<>();
+        for (long count = readBlockCount(); count != 0; count = readBlockCount()) {
+          for (long idx = 0; idx < count; idx++) {
+            items.add(read(schema.getElements()));
+          }
+        }
+        return items;
+      case MAP:
+        final Map<String, Object> entries = new LinkedHashMap<>();
+        for (long count = readBlockCount(); count != 0; count = readBlockCount()) {
+          for (long idx = 0; idx < count; idx++) {
+            entries.put(readString(), read(schema.getElements()));
+          }
+        }
+        return entries;
+      case RECORD:
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        for (final AvroSchema.Field field : schema.getFields()) {
+          fields.put(field.getName(), read(field.getSchema()));
+        }
+        return fields;
+      default:
+        throw new IllegalStateException("Unknown avro type: " + schema.getKind());
+    }
+  }
+
+  private static Object toDecimal(final AvroSchema schema, final byte[] bytes) {
+    if (!schema.isDecimal()) {
+      return bytes;
+    }
+    // the unscaled value is a two's-complement big-endian integer
+    return new BigDecimal(new BigInteger(bytes), schema.getScale());
+  }
+
+  private long readBlockCount() {
+    final long count = readLong();
+    if (count < 0) {
+      // negative counts are followed by the size of the block in bytes
+      readLong();
+      return -count;
+    }
+    return count;
+  }
+
+  private int readLength() {
+    final long length = readLong();
+    if (length < 0 || length > limit - pos) {
+      throw new IllegalStateException("Invalid avro length " + length + " at " + pos);
+    }
+    return (int) length;
+  }
+
+  private long readLittleEndian(final int size) {
+    checkRemaining(size);
+    long value = 0;
+    for (int idx = 0; idx < size; idx++) {
+      value |= (long) (buffer[pos++] & 0xff) << (idx * 8);
+    }
+    return value;
+  }
+
+  private void checkRemaining(final int size) {
+    if (size > limit - pos) {
+      throw new IllegalStateException("Unexpected end of avro data at " + pos);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import io.tidb.bigdata.cdc.Codec;
+import io.tidb.bigdata.cdc.EventDecoder;
+import io.tidb.bigdata.cdc.KeyDecoder;
+import io.tidb.bigdata.cdc.KeyFilter;
+import io.tidb.bigdata.cdc.ValueDecoder;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Codec of TiCDC avro messages, whose schemas are resolved by the schema registry.
+ */
+public class AvroCodec implements Codec, Serializable {
+
+  private final SchemaRegistry registry;
+  // values of events rejected by the filter are skipped, all events are decoded if null
+  private final KeyFilter filter;
+
+  public AvroCodec(SchemaRegistry registry) {
+    this(registry, null);
+  }
+
+  public AvroCodec(SchemaRegistry registry, KeyFilter filter) {
+    this.registry = Objects.requireNonNull(registry, "schema registry can not be null");
+    this.filter = filter;
+  }
+
+  @Override
+  public Type type() {
+    return Type.AVRO;
+  }
+
+  @Override
+  public EventDecoder decode(byte[] data) {
+    return decode(null, data);
+  }
+
+  @Override
+  public EventDecoder decode(byte[] key, byte[] value) {
+    return new AvroEventDecoder(key, value, registry, filter);
+  }
+
+  @Override
+  public KeyDecoder key(byte[] key) {
+    throw new IllegalArgumentException("avro codec decodes keys together with values");
+  }
+
+  @Override
+  public ValueDecoder value(byte[] value) {
+    throw new IllegalArgumentException("avro codec decodes values together with keys");
+  }
+}
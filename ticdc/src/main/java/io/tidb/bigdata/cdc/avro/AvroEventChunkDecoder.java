@@ -0,0 +1,331 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import io.tidb.bigdata.cdc.DDLValue;
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.EventChunkDecoder;
+import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.KeyFilter;
+import io.tidb.bigdata.cdc.ResolvedValue;
+import io.tidb.bigdata.cdc.RowColumn;
+import io.tidb.bigdata.cdc.RowDeletedValue;
+import io.tidb.bigdata.cdc.RowInsertedValue;
+import io.tidb.bigdata.cdc.json.JsonTokenReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TiCDC avro event decoder, parse a kafka message into chunk of event instances.
+ *
+ * <p>Keys and values of row changes are avro records in the confluent wire format: a zero magic
+ * byte and the big-endian id of the schema in the registry precede the avro binary data. The key
+ * carries the handle columns, the value the whole row, or nothing if the row is deleted. The
+ * record name is the table and the last segment of the namespace is the schema.
+ *
+ * <p>TiCDC doesn't send the old values of updated rows, so both inserted and updated rows are
+ * decoded into {@link RowInsertedValue}, which should be handled as upserts. The commit ts is only
+ * known if the TiDB extension of TiCDC is enabled, with which DDL and checkpoint events are sent
+ * as well, otherwise it is -1.
+ */
+public class AvroEventChunkDecoder implements EventChunkDecoder {
+
+  static final byte MAGIC_BYTE = 0;
+  static final byte DDL_BYTE = 1;
+  static final byte CHECKPOINT_BYTE = 2;
+  static final int HEADER_LENGTH = 5;
+
+  static final String OPERATION_FIELD = "_tidb_op";
+  static final String COMMIT_TS_FIELD = "_tidb_commit_ts";
+  static final String PHYSICAL_TIME_FIELD = "_tidb_commit_physical_time";
+
+  private static final String QUERY_TOKEN = "query";
+  private static final String TYPE_TOKEN = "type";
+  private static final String SCHEMA_TOKEN = "schema";
+  private static final String TABLE_TOKEN = "table";
+  private static final String COMMIT_TS_TOKEN = "commitTs";
+
+  private final Event[] events;
+  private final Iterator<Event[]> iterator;
+
+  public AvroEventChunkDecoder(final byte[] key, final byte[] value,
+      final SchemaRegistry registry) {
+    this(key, value, registry, null);
+  }
+
+  /**
+   * Only decode events accepted by the filter, values of the other events are skipped.
+   */
+  public AvroEventChunkDecoder(final byte[] key, final byte[] value,
+      final SchemaRegistry registry, final KeyFilter filter) {
+    final Event event = decode(key, value, registry, filter);
+    events = event == null ? new Event[0] : new Event[] {event};
+    iterator = iterator();
+  }
+
+  private static Event decode(final byte[] key, final byte[] value,
+      final SchemaRegistry registry, final KeyFilter filter) {
+    final Event event;
+    if (value != null && value.length > 0) {
+      switch (value[0]) {
+        case MAGIC_BYTE:
+          event = decodeRow(key, value, registry, filter);
+          break;
+        case DDL_BYTE:
+          event = decodeDDL(value);
+          break;
+        case CHECKPOINT_BYTE:
+          event = decodeCheckpoint(value);
+          break;
+        default:
+          throw new IllegalStateException("Unknown avro message type: " + value[0]);
+      }
+    } else if (key != null && key.length > 0) {
+      // tombstone of a deleted row
+      event = decodeDeleted(key, registry, filter);
+    } else {
+      event = null;
+    }
+    if (event == null || (filter != null && !filter.accept(event.getKey()))) {
+      return null;
+    }
+    return event;
+  }
+
+  private static Event decodeRow(final byte[] key, final byte[] value,
+      final SchemaRegistry registry, final KeyFilter filter) {
+    final AvroSchema schema = registry.getSchema(getSchemaId(value));
+    final String schemaName = getSchemaName(schema);
+    if (filter != null && !filter.accept(Key.Type.ROW_CHANGED, schemaName, schema.getName())) {
+      return null;
+    }
+    final Set<String> handles = key == null || key.length == 0 ? Collections.emptySet()
+        : getFieldNames(registry.getSchema(getSchemaId(key)));
+    final AvroBinaryReader reader = new AvroBinaryReader(value, HEADER_LENGTH);
+    final List<RowColumn> columns = new ArrayList<>(schema.getFields().size());
+    long ts = -1;
+    for (final AvroSchema.Field field : schema.getFields()) {
+      final Object datum = reader.read(field.getSchema());
+      switch (field.getName()) {
+        case COMMIT_TS_FIELD:
+          ts = ((Number) datum).longValue();
+          break;
+        case OPERATION_FIELD:
+          // FALLTHROUGH
+        case PHYSICAL_TIME_FIELD:
+          break;
+        default:
+          columns.add(toColumn(field, datum, handles.contains(field.getName())));
+          break;
+      }
+    }
+    return new Event(
+        new Key(schemaName, schema.getName(), 0, Key.Type.ROW_CHANGED.code(), ts),
+        new RowInsertedValue(columns.toArray(new RowColumn[0])));
+  }
+
+  private static Event decodeDeleted(final byte[] key, final SchemaRegistry registry,
+      final KeyFilter filter) {
+    if (key[0] != MAGIC_BYTE) {
+      throw new IllegalStateException("Unknown avro message type: " + key[0]);
+    }
+    final AvroSchema schema = registry.getSchema(getSchemaId(key));
+    final String schemaName = getSchemaName(schema);
+    if (filter != null && !filter.accept(Key.Type.ROW_CHANGED, schemaName, schema.getName())) {
+      return null;
+    }
+    final AvroBinaryReader reader = new AvroBinaryReader(key, HEADER_LENGTH);
+    final RowColumn[] columns = new RowColumn[schema.getFields().size()];
+    int idx = 0;
+    for (final AvroSchema.Field field : schema.getFields()) {
+      columns[idx++] = toColumn(field, reader.read(field.getSchema()), true);
+    }
+    return new Event(
+        new Key(schemaName, schema.getName(), 0, Key.Type.ROW_CHANGED.code(), -1),
+        new RowDeletedValue(columns));
+  }
+
+  private static Event decodeDDL(final byte[] value) {
+    final JsonTokenReader reader = new JsonTokenReader(value, 1, value.length - 1);
+    String query = null;
+    int type = 0;
+    String schema = null;
+    String table = null;
+    long ts = -1;
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      switch (reader.nextName()) {
+        case QUERY_TOKEN:
+          query = reader.nextString();
+          break;
+        case TYPE_TOKEN:
+          type = reader.nextInt();
+          break;
+        case SCHEMA_TOKEN:
+          schema = emptyToNull(reader.nextString());
+          break;
+        case TABLE_TOKEN:
+          table = emptyToNull(reader.nextString());
+          break;
+        case COMMIT_TS_TOKEN:
+          ts = reader.nextLong();
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    return new Event(new Key(schema, table, 0, Key.Type.DDL.code(), ts),
+        new DDLValue(query, type));
+  }
+
+  private static Event decodeCheckpoint(final byte[] value) {
+    if (value.length < 9) {
+      throw new IllegalStateException("Invalid avro checkpoint message");
+    }
+    long ts = 0;
+    for (int idx = 1; idx < 9; idx++) {
+      ts = (ts << 8) | (value[idx] & 0xff);
+    }
+    return new Event(new Key(null, null, 0, Key.Type.RESOLVED.code(), ts),
+        ResolvedValue.getInstance());
+  }
+
+  static int getSchemaId(final byte[] data) {
+    if (data.length < HEADER_LENGTH || data[0] != MAGIC_BYTE) {
+      throw new IllegalStateException("Invalid avro message, magic byte not found");
+    }
+    return ((data[1] & 0xff) << 24) | ((data[2] & 0xff) << 16)
+        | ((data[3] & 0xff) << 8) | (data[4] & 0xff);
+  }
+
+  private static String getSchemaName(final AvroSchema schema) {
+    final String namespace = schema.getNamespace();
+    if (namespace == null || namespace.isEmpty()) {
+      return null;
+    }
+    return namespace.substring(namespace.lastIndexOf('.') + 1);
+  }
+
+  private static Set<String> getFieldNames(final AvroSchema schema) {
+    final Set<String> names = new HashSet<>();
+    for (final AvroSchema.Field field : schema.getFields()) {
+      names.add(field.getName());
+    }
+    return names;
+  }
+
+  private static RowColumn toColumn(final AvroSchema.Field field, final Object datum,
+      final boolean handle) {
+    final AvroSchema schema = field.getSchema().nonNull();
+    final String tidbType = schema.getTiDBType();
+    RowColumn.Type type = tidbType == null ? getType(schema) : RowColumn.Type.ofName(tidbType);
+    if (type == RowColumn.Type.ENUM || type == RowColumn.Type.SET) {
+      // values of enum and set columns are given by their names
+      type = RowColumn.Type.VARCHAR;
+    }
+    long flags = 0;
+    if (tidbType != null && tidbType.toUpperCase(Locale.ROOT).contains("UNSIGNED")) {
+      flags |= RowColumn.FLAG_UNSIGNED;
+    }
+    if (type.getJavaType() == byte[].class) {
+      flags |= RowColumn.FLAG_BINARY;
+    }
+    if (handle) {
+      flags |= RowColumn.FLAG_PRIMARY_KEY | RowColumn.FLAG_HANDLE_KEY;
+    }
+    return new RowColumn(field.getName(), toValue(type, RowColumn.isUnsigned(flags), datum),
+        handle, type.code(), flags);
+  }
+
+  /*
+   * Type of the columns without the TiDB type, which are not sent by TiCDC
+   */
+  private static RowColumn.Type getType(final AvroSchema schema) {
+    switch (schema.getKind()) {
+      case BOOLEAN:
+        return RowColumn.Type.TINYINT;
+      case INT:
+        return RowColumn.Type.INT;
+      case LONG:
+        return RowColumn.Type.BIGINT;
+      case FLOAT:
+        return RowColumn.Type.FLOAT;
+      case DOUBLE:
+        return RowColumn.Type.DOUBLE;
+      case BYTES:
+        // FALLTHROUGH
+      case FIXED:
+        return schema.isDecimal() ? RowColumn.Type.DECIMAL : RowColumn.Type.VARBINARY;
+      default:
+        return RowColumn.Type.VARCHAR;
+    }
+  }
+
+  /*
+   * Convert avro values to what the other TiCDC protocols give
+   */
+  private static Object toValue(final RowColumn.Type type, final boolean unsigned,
+      final Object datum) {
+    if (datum instanceof Boolean) {
+      return (Boolean) datum ? 1L : 0L;
+    }
+    if (type == RowColumn.Type.BIT && datum instanceof byte[]) {
+      // bits are sent as big-endian bytes
+      long bits = 0;
+      for (final byte b : (byte[]) datum) {
+        bits = (bits << 8) | (b & 0xff);
+      }
+      return bits;
+    }
+    final Class<?> javaType = type.getJavaType();
+    if (datum instanceof String && (javaType == Long.class || javaType == Integer.class
+        || javaType == Short.class || javaType == Byte.class)) {
+      // unsigned bigints are sent as strings unless they are told to be sent as longs
+      return unsigned && type == RowColumn.Type.BIGINT
+          ? new BigInteger((String) datum) : Long.parseLong((String) datum);
+    }
+    return datum;
+  }
+
+  private static String emptyToNull(final String str) {
+    return str.isEmpty() ? null : str;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return iterator.hasNext();
+  }
+
+  @Override
+  public Event[] next() {
+    return iterator.next();
+  }
+
+  @Override
+  public Iterator<Event[]> iterator() {
+    return Collections.singletonList(events).iterator();
+  }
+}
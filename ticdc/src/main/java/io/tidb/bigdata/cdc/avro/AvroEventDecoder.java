@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.EventDecoder;
+import io.tidb.bigdata.cdc.KeyFilter;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * TiCDC avro event decoder, parse a kafka message into event instances.
+ */
+public class AvroEventDecoder implements EventDecoder {
+
+  private final Event[] events;
+  private final Iterator<Event> iterator;
+
+  public AvroEventDecoder(final byte[] key, final byte[] value, final SchemaRegistry registry) {
+    this(key, value, registry, null);
+  }
+
+  /**
+   * Only decode events accepted by the filter, values of the other events are skipped.
+   */
+  public AvroEventDecoder(final byte[] key, final byte[] value, final SchemaRegistry registry,
+      final KeyFilter filter) {
+    this.events = new AvroEventChunkDecoder(key, value, registry, filter).next();
+    this.iterator = iterator();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return iterator.hasNext();
+  }
+
+  @Override
+  public Event next() {
+    return iterator.next();
+  }
+
+  @Override
+  public Iterator<Event> iterator() {
+    return Arrays.stream(events).iterator();
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import io.tidb.bigdata.cdc.json.JsonTokenReader;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Avro schema, parsed from its json definition as much as needed for decoding TiCDC avro
+ * messages: named types, unions, the decimal logical type and the TiDB type of columns which
+ * TiCDC puts into "connect.parameters"
+ */
+public final class AvroSchema implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String TYPE_TOKEN = "type";
+  private static final String NAME_TOKEN = "name";
+  private static final String NAMESPACE_TOKEN = "namespace";
+  private static final String FIELDS_TOKEN = "fields";
+  private static final String SYMBOLS_TOKEN = "symbols";
+  private static final String ITEMS_TOKEN = "items";
+  private static final String VALUES_TOKEN = "values";
+  private static final String SIZE_TOKEN = "size";
+  private static final String LOGICAL_TYPE_TOKEN = "logicalType";
+  private static final String SCALE_TOKEN = "scale";
+  private static final String CONNECT_PARAMETERS_TOKEN = "connect.parameters";
+  private static final String TIDB_TYPE_TOKEN = "tidb_type";
+  private static final String DECIMAL_LOGICAL_TYPE = "decimal";
+
+  public enum Kind {
+    NULL,
+    BOOLEAN,
+    INT,
+    LONG,
+    FLOAT,
+    DOUBLE,
+    BYTES,
+    STRING,
+    RECORD,
+    ENUM,
+    ARRAY,
+    MAP,
+    UNION,
+    FIXED
+  }
+
+  public static final class Field implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final AvroSchema schema;
+
+    private Field(final String name, final AvroSchema schema) {
+      this.name = name;
+      this.schema = schema;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public AvroSchema getSchema() {
+      return schema;
+    }
+  }
+
+  private final Kind kind;
+  private String name;
+  private String namespace;
+  private List<Field> fields = Collections.emptyList();
+  // branches of unions
+  private List<AvroSchema> types = Collections.emptyList();
+  // items of arrays or values of maps
+  private AvroSchema elements;
+  private List<String> symbols = Collections.emptyList();
+  private int size;
+  private String logicalType;
+  private int scale;
+  private String tidbType;
+
+  private AvroSchema(final Kind kind) {
+    this.kind = kind;
+  }
+
+  public static AvroSchema parse(final String json) {
+    final JsonTokenReader reader =
+        new JsonTokenReader(json.getBytes(StandardCharsets.UTF_8));
+    return build(readTree(reader), null, new HashMap<>());
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public List<Field> getFields() {
+    return fields;
+  }
+
+  public List<AvroSchema> getTypes() {
+    return types;
+  }
+
+  public AvroSchema getElements() {
+    return elements;
+  }
+
+  public List<String> getSymbols() {
+    return symbols;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean isDecimal() {
+    return DECIMAL_LOGICAL_TYPE.equals(logicalType);
+  }
+
+  public int getScale() {
+    return scale;
+  }
+
+  /*
+   * TiDB type of the column, like "INT UNSIGNED", null if the schema is not from TiCDC
+   */
+  public String getTiDBType() {
+    return tidbType;
+  }
+
+  /*
+   * The schema itself, or the only branch which is not null of a nullable union
+   */
+  public AvroSchema nonNull() {
+    if (kind != Kind.UNION) {
+      return this;
+    }
+    AvroSchema found = null;
+    for (final AvroSchema type : types) {
+      if (type.kind != Kind.NULL) {
+        if (found != null) {
+          return this;
+        }
+        found = type;
+      }
+    }
+    return found == null ? this : found;
+  }
+
+  private static Object readTree(final JsonTokenReader reader) {
+    switch (reader.peek()) {
+      case OBJECT:
+        final Map<String, Object> object = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNextField()) {
+          object.put(reader.nextName(), readTree(reader));
+        }
+        return object;
+      case ARRAY:
+        final List<Object> array = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNextElement()) {
+          array.add(readTree(reader));
+        }
+        return array;
+      default:
+        return reader.nextScalar();
+    }
+  }
+
+  private static Kind primitive(final String type) {
+    switch (type) {
+      case "null":
+        return Kind.NULL;
+      case "boolean":
+        return Kind.BOOLEAN;
+      case "int":
+        return Kind.INT;
+      case "long":
+        return Kind.LONG;
+      case "float":
+        return Kind.FLOAT;
+      case "double":
+        return Kind.DOUBLE;
+      case "bytes":
+        return Kind.BYTES;
+      case "string":
+        return Kind.STRING;
+      default:
+        return null;
+    }
+  }
+
+  private static String fullName(final String name, final String namespace) {
+    if (name.indexOf('.') >= 0 || namespace == null || namespace.isEmpty()) {
+      return name;
+    }
+    return namespace + "." + name;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AvroSchema build(final Object tree, final String namespace,
+      final Map<String, AvroSchema> names) {
+    if (tree instanceof String) {
+      final String type = (String) tree;
+      final Kind kind = primitive(type);
+      if (kind != null) {
+        return new AvroSchema(kind);
+      }
+      AvroSchema named = names.get(fullName(type, namespace));
+      if (named == null) {
+        named = names.get(type);
+      }
+      if (named == null) {
+        throw new IllegalArgumentException("Unknown avro type: " + type);
+      }
+      return named;
+    }
+    if (tree instanceof List) {
+      final AvroSchema union = new AvroSchema(Kind.UNION);
+      union.types = new ArrayList<>();
+      for (final Object branch : (List<Object>) tree) {
+        union.types.add(build(branch, namespace, names));
+      }
+      return union;
+    }
+    if (!(tree instanceof Map)) {
+      throw new IllegalArgumentException("Invalid avro schema: " + tree);
+    }
+    final Map<String, Object> object = (Map<String, Object>) tree;
+    final Object type = object.get(TYPE_TOKEN);
+    if (!(type instanceof String)) {
+      // nested type definition
+      return build(type, namespace, names);
+    }
+    final AvroSchema schema;
+    switch ((String) type) {
+      case "record":
+        // FALLTHROUGH
+      case "error":
+        schema = named(Kind.RECORD, object, namespace, names);
+        schema.fields = new ArrayList<>();
+        for (final Object field : (List<Object>) object.get(FIELDS_TOKEN)) {
+          final Map<String, Object> fieldObject = (Map<String, Object>) field;
+          schema.fields.add(new Field((String) fieldObject.get(NAME_TOKEN),
+              build(fieldObject.get(TYPE_TOKEN), schema.namespace, names)));
+        }
+        break;
+      case "enum":
+        schema = named(Kind.ENUM, object, namespace, names);
+        schema.symbols = new ArrayList<>();
+        for (final Object symbol : (List<Object>) object.get(SYMBOLS_TOKEN)) {
+          schema.symbols.add((String) symbol);
+        }
+        break;
+      case "fixed":
+        schema = named(Kind.FIXED, object, namespace, names);
+        schema.size = ((Number) object.get(SIZE_TOKEN)).intValue();
+        break;
+      case "array":
+        schema = new AvroSchema(Kind.ARRAY);
+        schema.elements = build(object.get(ITEMS_TOKEN), namespace, names);
+        break;
+      case "map":
+        schema = new AvroSchema(Kind.MAP);
+        schema.elements = build(object.get(VALUES_TOKEN), namespace, names);
+        break;
+      default:
+        final Kind kind = primitive((String) type);
+        if (kind == null) {
+          // a reference to a named type with attributes
+          return build(type, namespace, names);
+        }
+        schema = new AvroSchema(kind);
+        break;
+    }
+    final Object logicalType = object.get(LOGICAL_TYPE_TOKEN);
+    if (logicalType instanceof String) {
+      schema.logicalType = (String) logicalType;
+      final Object scale = object.get(SCALE_TOKEN);
+      schema.scale = scale instanceof Number ? ((Number) scale).intValue() : 0;
+    }
+    final Object parameters = object.get(CONNECT_PARAMETERS_TOKEN);
+    if (parameters instanceof Map) {
+      final Object tidbType = ((Map<String, Object>) parameters).get(TIDB_TYPE_TOKEN);
+      if (tidbType instanceof String) {
+        schema.tidbType = (String) tidbType;
+      }
+    }
+    return schema;
+  }
+
+  private static AvroSchema named(final Kind kind, final Map<String, Object> object,
+      final String enclosingNamespace, final Map<String, AvroSchema> names) {
+    final AvroSchema schema = new AvroSchema(kind);
+    final String name = (String) object.get(NAME_TOKEN);
+    final Object namespace = object.get(NAMESPACE_TOKEN);
+    final int dot = name.lastIndexOf('.');
+    if (dot >= 0) {
+      schema.namespace = name.substring(0, dot);
+      schema.name = name.substring(dot + 1);
+    } else {
+      schema.namespace = namespace instanceof String ? (String) namespace : enclosingNamespace;
+      schema.name = name;
+    }
+    // registered before the fields are built, so that they could refer to the type itself
+    names.put(fullName(schema.name, schema.namespace), schema);
+    return schema;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import io.tidb.bigdata.cdc.json.JsonTokenReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client of the confluent schema registry, schemas are immutable once registered so every schema
+ * is fetched at most once.
+ */
+public class CachedSchemaRegistryClient implements SchemaRegistry {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String SCHEMA_TOKEN = "schema";
+  private static final String CONTENT_TYPE = "application/vnd.schemaregistry.v1+json";
+  private static final int TIMEOUT_MS = 30000;
+
+  private final String url;
+  private transient Map<Integer, AvroSchema> cache;
+
+  public CachedSchemaRegistryClient(final String url) {
+    Objects.requireNonNull(url, "url of schema registry can not be null");
+    this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  @Override
+  public AvroSchema getSchema(final int id) {
+    if (cache == null) {
+      // the cache is not serialized, it is rebuilt once the client is deserialized
+      synchronized (this) {
+        if (cache == null) {
+          cache = new ConcurrentHashMap<>();
+        }
+      }
+    }
+    return cache.computeIfAbsent(id, this::fetch);
+  }
+
+  private AvroSchema fetch(final int id) {
+    try {
+      final HttpURLConnection connection =
+          (HttpURLConnection) new URL(url + "/schemas/ids/" + id).openConnection();
+      try {
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", CONTENT_TYPE);
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        final int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+          throw new IllegalStateException(
+              "Failed to fetch avro schema " + id + " from " + url + ", status: " + status);
+        }
+        try (InputStream input = connection.getInputStream()) {
+          return AvroSchema.parse(parseResponse(readFully(input)));
+        }
+      } finally {
+        connection.disconnect();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to fetch avro schema " + id + " from " + url, e);
+    }
+  }
+
+  private static String parseResponse(final byte[] response) {
+    final JsonTokenReader reader = new JsonTokenReader(response);
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      if (SCHEMA_TOKEN.equals(reader.nextName())) {
+        return reader.nextString();
+      }
+      reader.skipValue();
+    }
+    throw new IllegalStateException("No schema in the response of schema registry");
+  }
+
+  private static byte[] readFully(final InputStream input) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int read;
+    while ((read = input.read(buffer)) >= 0) {
+      output.write(buffer, 0, read);
+    }
+    return output.toByteArray();
+  }
+}
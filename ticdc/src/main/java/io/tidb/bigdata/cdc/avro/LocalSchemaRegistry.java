@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In memory schema registry, stands in for the confluent schema registry in tests.
+ */
+public class LocalSchemaRegistry implements SchemaRegistry {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Map<Integer, AvroSchema> schemas = new ConcurrentHashMap<>();
+  private final AtomicInteger nextId = new AtomicInteger(1);
+
+  /**
+   * @param schema json definition of the schema
+   * @return id of the registered schema
+   */
+  public int register(final String schema) {
+    final int id = nextId.getAndIncrement();
+    register(id, schema);
+    return id;
+  }
+
+  public void register(final int id, final String schema) {
+    schemas.put(id, AvroSchema.parse(schema));
+  }
+
+  @Override
+  public AvroSchema getSchema(final int id) {
+    final AvroSchema schema = schemas.get(id);
+    if (schema == null) {
+      throw new IllegalArgumentException("Unknown avro schema id: " + id);
+    }
+    return schema;
+  }
+}
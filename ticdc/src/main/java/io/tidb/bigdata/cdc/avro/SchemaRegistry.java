@@ -0,0 +1,32 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.avro;
+
+import java.io.Serializable;
+
+/**
+ * Registry of the avro schemas, which are referenced by their ids in the confluent wire format.
+ */
+public interface SchemaRegistry extends Serializable {
+
+  /**
+   * @param id id of the schema in the registry
+   * @return the schema, never null
+   */
+  AvroSchema getSchema(int id);
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.canal;
+
+import io.tidb.bigdata.cdc.Codec;
+import io.tidb.bigdata.cdc.EventDecoder;
+import io.tidb.bigdata.cdc.KeyDecoder;
+import io.tidb.bigdata.cdc.KeyFilter;
+import io.tidb.bigdata.cdc.ValueDecoder;
+import java.io.Serializable;
+
+/**
+ * Codec of TiCDC canal-json messages, whose keys and values are both in the kafka value.
+ */
+public class CanalJsonCodec implements Codec, Serializable {
+
+  // events rejected by the filter are skipped, all events are decoded if null
+  private final KeyFilter filter;
+
+  public CanalJsonCodec() {
+    this(null);
+  }
+
+  public CanalJsonCodec(KeyFilter filter) {
+    this.filter = filter;
+  }
+
+  @Override
+  public Type type() {
+    return Type.CANAL_JSON;
+  }
+
+  @Override
+  public EventDecoder decode(byte[] data) {
+    return new CanalJsonEventDecoder(data, filter);
+  }
+
+  @Override
+  public EventDecoder decode(byte[] ignored, byte[] value) {
+    return decode(value);
+  }
+
+  @Override
+  public KeyDecoder key(byte[] data) {
+    return new CanalJsonKeyDecoder(data);
+  }
+
+  @Override
+  public ValueDecoder value(byte[] data) {
+    return new CanalJsonValueDecoder(data);
+  }
+}
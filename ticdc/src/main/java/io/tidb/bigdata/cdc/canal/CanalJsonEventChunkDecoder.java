@@ -0,0 +1,410 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.canal;
+
+import io.tidb.bigdata.cdc.DDLValue;
+import io.tidb.bigdata.cdc.Event;
+import io.tidb.bigdata.cdc.EventChunkDecoder;
+import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.KeyFilter;
+import io.tidb.bigdata.cdc.ResolvedValue;
+import io.tidb.bigdata.cdc.RowColumn;
+import io.tidb.bigdata.cdc.RowDeletedValue;
+import io.tidb.bigdata.cdc.RowInsertedValue;
+import io.tidb.bigdata.cdc.RowUpdatedValue;
+import io.tidb.bigdata.cdc.Value;
+import io.tidb.bigdata.cdc.json.JsonTokenReader;
+import io.tidb.bigdata.cdc.json.JsonTokenReader.Token;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TiCDC canal-json event decoder, parse a message into chunk of event instances.
+ *
+ * <p>Each canal-json object carries the rows changed by a statement, which become one event per
+ * row. The commit ts comes from the "_tidb" extension if TiCDC is told to add it, otherwise from
+ * the execution time of the statement.
+ */
+public class CanalJsonEventChunkDecoder implements EventChunkDecoder {
+
+  private static final String DATABASE_TOKEN = "database";
+  private static final String TABLE_TOKEN = "table";
+  private static final String PK_NAMES_TOKEN = "pkNames";
+  private static final String IS_DDL_TOKEN = "isDdl";
+  private static final String TYPE_TOKEN = "type";
+  private static final String EXECUTION_TIME_TOKEN = "es";
+  private static final String SQL_TOKEN = "sql";
+  private static final String MYSQL_TYPE_TOKEN = "mysqlType";
+  private static final String DATA_TOKEN = "data";
+  private static final String OLD_TOKEN = "old";
+  private static final String TIDB_EXTENSION_TOKEN = "_tidb";
+  private static final String COMMIT_TS_TOKEN = "commitTs";
+  private static final String WATERMARK_TS_TOKEN = "watermarkTs";
+
+  private static final String TYPE_INSERT = "INSERT";
+  private static final String TYPE_UPDATE = "UPDATE";
+  private static final String TYPE_DELETE = "DELETE";
+  private static final String TYPE_WATERMARK = "TIDB_WATERMARK";
+
+  private final Event[] events;
+  private final Iterator<Event[]> iterator;
+
+  public CanalJsonEventChunkDecoder(final byte[] value) {
+    this(value, null);
+  }
+
+  /**
+   * Only decode events accepted by the filter, rows of the other events are skipped.
+   */
+  public CanalJsonEventChunkDecoder(final byte[] value, final KeyFilter filter) {
+    events = decode(value, filter);
+    iterator = iterator();
+  }
+
+  private static Event[] decode(final byte[] value, final KeyFilter filter) {
+    final JsonTokenReader reader = new JsonTokenReader(value);
+    final ArrayList<Event> events = new ArrayList<>();
+    // a message might carry several objects separated by whitespaces
+    while (!reader.isEnd()) {
+      new Message().parse(reader, filter).collect(events, filter);
+    }
+    return events.toArray(new Event[0]);
+  }
+
+  @Override
+  public boolean hasNext() {
+    return iterator.hasNext();
+  }
+
+  @Override
+  public Event[] next() {
+    return iterator.next();
+  }
+
+  @Override
+  public Iterator<Event[]> iterator() {
+    return Collections.singletonList(events).iterator();
+  }
+
+  /*
+   * A canal-json object, fields might come in any order, so rows are converted to events only
+   * after the mysql types and the primary key are known
+   */
+  private static final class Message {
+
+    private String database;
+    private String table;
+    private Set<String> pkNames = Collections.emptySet();
+    private boolean ddl;
+    private String type;
+    private long executionTime;
+    private String sql;
+    private Map<String, String> mysqlTypes = Collections.emptyMap();
+    private List<Map<String, Object>> data;
+    private List<Map<String, Object>> old;
+    private long commitTs = -1;
+    private long watermarkTs = -1;
+    // the rows are skipped if the filter rejects the message before they are parsed
+    private boolean rejected;
+
+    private Message parse(final JsonTokenReader reader, final KeyFilter filter) {
+      reader.beginObject();
+      while (reader.hasNextField()) {
+        final String name = reader.nextName();
+        if (reader.peek() == Token.NULL) {
+          reader.nextNull();
+          continue;
+        }
+        switch (name) {
+          case DATABASE_TOKEN:
+            database = emptyToNull(reader.nextString());
+            break;
+          case TABLE_TOKEN:
+            table = emptyToNull(reader.nextString());
+            break;
+          case PK_NAMES_TOKEN:
+            pkNames = parseNames(reader);
+            break;
+          case IS_DDL_TOKEN:
+            ddl = reader.nextBoolean();
+            break;
+          case TYPE_TOKEN:
+            type = reader.nextString();
+            break;
+          case EXECUTION_TIME_TOKEN:
+            executionTime = reader.nextLong();
+            break;
+          case SQL_TOKEN:
+            sql = reader.nextString();
+            break;
+          case MYSQL_TYPE_TOKEN:
+            mysqlTypes = parseTypes(reader);
+            break;
+          case DATA_TOKEN:
+            // FALLTHROUGH
+          case OLD_TOKEN:
+            if (rejected || isRejected(filter)) {
+              rejected = true;
+              reader.skipValue();
+            } else if (DATA_TOKEN.equals(name)) {
+              data = parseRows(reader);
+            } else {
+              old = parseRows(reader);
+            }
+            break;
+          case TIDB_EXTENSION_TOKEN:
+            parseExtension(reader);
+            break;
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+      return this;
+    }
+
+    private boolean isRejected(final KeyFilter filter) {
+      return filter != null && type != null && !filter.accept(getType(), database, table);
+    }
+
+    private void parseExtension(final JsonTokenReader reader) {
+      reader.beginObject();
+      while (reader.hasNextField()) {
+        switch (reader.nextName()) {
+          case COMMIT_TS_TOKEN:
+            commitTs = reader.nextLong();
+            break;
+          case WATERMARK_TS_TOKEN:
+            watermarkTs = reader.nextLong();
+            break;
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+    }
+
+    private Key.Type getType() {
+      if (ddl) {
+        return Key.Type.DDL;
+      }
+      return TYPE_WATERMARK.equals(type) ? Key.Type.RESOLVED : Key.Type.ROW_CHANGED;
+    }
+
+    private void collect(final List<Event> events, final KeyFilter filter) {
+      if (rejected) {
+        return;
+      }
+      final Key.Type keyType = getType();
+      if (keyType == Key.Type.RESOLVED) {
+        add(events, filter, new Key(null, null, 0, keyType.code(), watermarkTs),
+            ResolvedValue.getInstance());
+        return;
+      }
+      final long ts = commitTs >= 0 ? commitTs : Key.fromTimestamp(executionTime);
+      final Key key = new Key(database, table, 0, keyType.code(), ts);
+      if (keyType == Key.Type.DDL) {
+        add(events, filter, key, new DDLValue(sql, getDDLType(type, sql).code()));
+        return;
+      }
+      if (data == null) {
+        return;
+      }
+      for (int idx = 0; idx < data.size(); idx++) {
+        final Map<String, Object> row = data.get(idx);
+        final Value value;
+        switch (type) {
+          case TYPE_INSERT:
+            value = new RowInsertedValue(toColumns(row));
+            break;
+          case TYPE_DELETE:
+            value = new RowDeletedValue(toColumns(row));
+            break;
+          case TYPE_UPDATE:
+            // old rows might only carry the updated columns
+            final Map<String, Object> oldRow = new LinkedHashMap<>(row);
+            if (old != null && idx < old.size()) {
+              oldRow.putAll(old.get(idx));
+            }
+            value = new RowUpdatedValue(toColumns(oldRow), toColumns(row));
+            break;
+          default:
+            throw new IllegalStateException("Unknown canal-json event type: " + type);
+        }
+        add(events, filter, key, value);
+      }
+    }
+
+    private static void add(final List<Event> events, final KeyFilter filter, final Key key,
+        final Value value) {
+      if (filter == null || filter.accept(key)) {
+        events.add(new Event(key, value));
+      }
+    }
+
+    private RowColumn[] toColumns(final Map<String, Object> row) {
+      final RowColumn[] columns = new RowColumn[row.size()];
+      int idx = 0;
+      for (final Map.Entry<String, Object> entry : row.entrySet()) {
+        final String name = entry.getKey();
+        final String mysqlType = mysqlTypes.get(name);
+        RowColumn.Type columnType = mysqlType == null ? RowColumn.Type.VARCHAR
+            : RowColumn.Type.ofName(mysqlType);
+        if (columnType == RowColumn.Type.ENUM || columnType == RowColumn.Type.SET) {
+          // values of enum and set columns are given by their names
+          columnType = RowColumn.Type.VARCHAR;
+        }
+        long flags = 0;
+        if (mysqlType != null && mysqlType.toLowerCase(Locale.ROOT).contains("unsigned")) {
+          flags |= RowColumn.FLAG_UNSIGNED;
+        }
+        if (columnType.getJavaType() == byte[].class) {
+          flags |= RowColumn.FLAG_BINARY;
+        }
+        final boolean key = pkNames.contains(name);
+        if (key) {
+          flags |= RowColumn.FLAG_PRIMARY_KEY | RowColumn.FLAG_HANDLE_KEY;
+        }
+        final Object value = entry.getValue() == null ? null
+            : toValue(columnType, RowColumn.isUnsigned(flags), entry.getValue().toString());
+        columns[idx++] = new RowColumn(name, value, key, columnType.code(), flags);
+      }
+      return columns;
+    }
+  }
+
+  private static String emptyToNull(final String str) {
+    return str.isEmpty() ? null : str;
+  }
+
+  /*
+   * Values are strings in canal-json, convert them to what the other TiCDC protocols give
+   */
+  private static Object toValue(final RowColumn.Type type, final boolean unsigned,
+      final String value) {
+    switch (type) {
+      case TINYINT:
+        // FALLTHROUGH
+      case BOOL:
+        // FALLTHROUGH
+      case SMALLINT:
+        // FALLTHROUGH
+      case MEDIUMINT:
+        // FALLTHROUGH
+      case INT:
+        // FALLTHROUGH
+      case YEAR:
+        // FALLTHROUGH
+      case BIT:
+        return Long.parseLong(value);
+      case BIGINT:
+        return unsigned ? new BigInteger(value) : Long.parseLong(value);
+      case FLOAT:
+        // FALLTHROUGH
+      case DOUBLE:
+        return Double.parseDouble(value);
+      case TINYBLOB:
+        // FALLTHROUGH
+      case MEDIUMBLOB:
+        // FALLTHROUGH
+      case LONGBLOB:
+        // FALLTHROUGH
+      case BLOB:
+        // FALLTHROUGH
+      case VARBINARY:
+        // FALLTHROUGH
+      case BINARY:
+        // binary values are encoded as iso-8859-1 strings
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+      default:
+        return value;
+    }
+  }
+
+  private static DDLValue.Type getDDLType(final String type, final String sql) {
+    switch (type) {
+      case "CREATE":
+        return DDLValue.Type.CREATE_TABLE;
+      case "ERASE":
+        return DDLValue.Type.DROP_TABLE;
+      case "TRUNCATE":
+        return DDLValue.Type.TRUNCATE_TABLE;
+      case "RENAME":
+        return DDLValue.Type.RENAME_TABLE;
+      case "CINDEX":
+        return DDLValue.Type.ADD_INDEX;
+      case "DINDEX":
+        return DDLValue.Type.DROP_INDEX;
+      case "ALTER":
+        return DDLValue.Type.MODIFY_COLUMN;
+      default:
+        break;
+    }
+    // schema changes are all sent as queries
+    final String query = sql == null ? "" : sql.trim().toUpperCase(Locale.ROOT);
+    if (query.startsWith("CREATE DATABASE") || query.startsWith("CREATE SCHEMA")) {
+      return DDLValue.Type.CREATE_SCHEMA;
+    }
+    if (query.startsWith("DROP DATABASE") || query.startsWith("DROP SCHEMA")) {
+      return DDLValue.Type.DROP_SCHEMA;
+    }
+    return DDLValue.Type.MODIFY_SCHEMA_CHARSET_AND_COLLATE;
+  }
+
+  private static Set<String> parseNames(final JsonTokenReader reader) {
+    final Set<String> names = new HashSet<>();
+    reader.beginArray();
+    while (reader.hasNextElement()) {
+      names.add(reader.nextString());
+    }
+    return names;
+  }
+
+  private static Map<String, String> parseTypes(final JsonTokenReader reader) {
+    final Map<String, String> types = new HashMap<>();
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      types.put(reader.nextName(), reader.nextString());
+    }
+    return types;
+  }
+
+  private static List<Map<String, Object>> parseRows(final JsonTokenReader reader) {
+    final List<Map<String, Object>> rows = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNextElement()) {
+      final Map<String, Object> row = new LinkedHashMap<>();
+      reader.beginObject();
+      while (reader.hasNextField()) {
+        row.put(reader.nextName(), reader.nextScalar());
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+}
@@ -71,6 +71,30 @@ public class Codec {
     return bufferLimit - bufferPos;
   }
 
+  // Views over the underlying buffer, used to read values in place
+  byte[] array() {
+    return buffer;
+  }
+
+  int position() {
+    return bufferPos;
+  }
+
+  /*
+   * Point this codec to another range of the same buffer, so a single codec could read
+   * many values without allocating
+   */
+  Codec reset(int offset, int length) {
+    this.bufferPos = offset;
+    this.bufferLimit = offset + length;
+    return this;
+  }
+
+  public void skip(int length) {
+    checkAvailableBytes(length);
+    bufferPos += length;
+  }
+
   // Primitive type decoders
   public int decodeUvarintLength() {
     return checkedCast(decodeUvarint());
@@ -217,6 +241,25 @@ public class Codec {
     return strings;
   }
 
+  /*
+   * Decode a chunk of strings through the interner, the bytes are read in place so no string is
+   * allocated for terms already known by the interner
+   */
+  String[] decodeStringChunk(int size, CraftTermInterner interner) {
+    final int[] lengthArray = new int[size];
+    for (int idx = 0; idx < size; ++idx) {
+      lengthArray[idx] = decodeUvarintLength();
+    }
+    final String[] strings = new String[size];
+    for (int idx = 0; idx < size; ++idx) {
+      final int length = lengthArray[idx];
+      checkAvailableBytes(length);
+      strings[idx] = interner.intern(buffer, bufferPos, length);
+      bufferPos += length;
+    }
+    return strings;
+  }
+
   public String[] decodeNullableStringChunk(int size) {
     final byte[][] bytesChunk = decodeNullableBytesChunk(size);
     final String[] strings = new String[size];
@@ -259,42 +302,82 @@ public class Codec {
     });
   }
 
+  /*
+   * Chunk decoders either allocate the result or write into a caller provided buffer, which could
+   * be reused from chunk to chunk: the first size elements of the buffer are overwritten and the
+   * buffer is returned
+   */
   public long[] decodeVarintChunk(int size) {
-    long[] result = new long[size];
+    return decodeVarintChunk(size, new long[size]);
+  }
+
+  public long[] decodeVarintChunk(int size, long[] result) {
+    decodeRawVarintChunk(size, result);
     for (int idx = 0; idx < size; ++idx) {
-      result[idx] = decodeVarint();
+      result[idx] = decodeZigZag64(result[idx]);
     }
     return result;
   }
 
   public long[] decodeUvarintChunk(int size) {
-    long[] result = new long[size];
+    return decodeUvarintChunk(size, new long[size]);
+  }
+
+  public long[] decodeUvarintChunk(int size, long[] result) {
+    decodeRawVarintChunk(size, result);
+    return result;
+  }
+
+  public long[] decodeDeltaVarintChunk(int size) {
+    return decodeDeltaVarintChunk(size, new long[size]);
+  }
+
+  public long[] decodeDeltaVarintChunk(int size, long[] result) {
+    decodeRawVarintChunk(size, result);
+    long last = 0;
     for (int idx = 0; idx < size; ++idx) {
-      result[idx] = decodeUvarint();
+      last += decodeZigZag64(result[idx]);
+      result[idx] = last;
     }
     return result;
   }
 
-  public long[] decodeDeltaVarintChunk(int size) {
-    long[] result = new long[size];
-    result[0] = decodeVarint();
-    for (int idx = 1; idx < size; ++idx) {
-      result[idx] = decodeVarint();
-      result[idx] = result[idx - 1] + result[idx];
+  /*
+   * Same as decodeDeltaVarintChunk, with every value narrowed to int, e.g. for size tables
+   */
+  public int[] decodeDeltaVarintChunk(int size, int[] result) {
+    int last = 0;
+    for (int idx = 0; idx < size; ++idx) {
+      last += (int) decodeVarint();
+      result[idx] = last;
     }
     return result;
   }
 
   public long[] decodeDeltaUvarintChunk(int size) {
-    long[] result = new long[size];
-    result[0] = decodeUvarint();
-    for (int idx = 1; idx < size; ++idx) {
-      result[idx] = decodeUvarint();
-      result[idx] = result[idx - 1] + result[idx];
+    return decodeDeltaUvarintChunk(size, new long[size]);
+  }
+
+  public long[] decodeDeltaUvarintChunk(int size, long[] result) {
+    decodeRawVarintChunk(size, result);
+    long last = 0;
+    for (int idx = 0; idx < size; ++idx) {
+      last += result[idx];
+      result[idx] = last;
     }
     return result;
   }
 
+  /*
+   * Decode size varints without zigzag decoding them. Decoding the varints one by one beats
+   * unpacking the single byte varints of 8 bytes loaded at once, see CodecBenchmark.
+   */
+  private void decodeRawVarintChunk(final int size, final long[] result) {
+    for (int idx = 0; idx < size; ++idx) {
+      result[idx] = readRawVarint64();
+    }
+  }
+
   private int checkAvailableBytes(final int expecting) {
     final int available = bufferLimit - bufferPos;
     if (available < expecting) {
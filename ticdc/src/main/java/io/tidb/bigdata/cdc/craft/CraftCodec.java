@@ -19,9 +19,11 @@ package io.tidb.bigdata.cdc.craft;
 import io.tidb.bigdata.cdc.Codec;
 import io.tidb.bigdata.cdc.EventDecoder;
 import io.tidb.bigdata.cdc.KeyDecoder;
+import io.tidb.bigdata.cdc.KeyFilter;
 import io.tidb.bigdata.cdc.ParserFactory;
 import io.tidb.bigdata.cdc.ValueDecoder;
 import java.io.Serializable;
+import java.util.Set;
 
 public class CraftCodec implements Codec, Serializable {
   private final ParserFactory<CraftParser, CraftParserState> parserFactory;
@@ -30,6 +32,14 @@ public class CraftCodec implements Codec, Serializable {
     parserFactory = ParserFactory.craft();
   }
 
+  public CraftCodec(Set<String> projection) {
+    parserFactory = ParserFactory.craft(projection);
+  }
+
+  public CraftCodec(Set<String> projection, KeyFilter filter) {
+    parserFactory = ParserFactory.craft(projection, filter);
+  }
+
   @Override
   public Type type() {
     return Type.CRAFT;
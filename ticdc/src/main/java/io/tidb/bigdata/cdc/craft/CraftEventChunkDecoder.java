@@ -21,6 +21,7 @@ import io.tidb.bigdata.cdc.EventChunkDecoder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
 
 public class CraftEventChunkDecoder implements EventChunkDecoder {
 
@@ -37,6 +38,13 @@ public class CraftEventChunkDecoder implements EventChunkDecoder {
     this.iterator = iterator();
   }
 
+  /*
+   * Only decode columns with the given names, the other columns are absent from the events
+   */
+  public CraftEventChunkDecoder(final byte[] value, final Set<String> projection) {
+    this(value, CraftParser.withProjection(projection));
+  }
+
   @Override
   public boolean hasNext() {
     return iterator.hasNext();
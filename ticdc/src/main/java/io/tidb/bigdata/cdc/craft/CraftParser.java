@@ -17,9 +17,11 @@
 package io.tidb.bigdata.cdc.craft;
 
 import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.KeyFilter;
 import io.tidb.bigdata.cdc.Parser;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Set;
 
 public class CraftParser implements Parser<CraftParserState> {
 
@@ -31,16 +33,43 @@ public class CraftParser implements Parser<CraftParserState> {
   static final int TERM_DICTIONARY_SIZE_INDEX = 1;
 
   private static final int CURRENT_VERSION = 1;
-  private static final CraftParser INSTANCE = new CraftParser();
+  private static final CraftParser INSTANCE =
+      new CraftParser(null, null, new CraftTermInterner());
 
-  private CraftParser() {
+  // names of the columns to decode, all columns are decoded if null
+  private final Set<String> projection;
+  // values of events rejected by the filter are skipped, all events are decoded if null
+  private final KeyFilter filter;
+  // canonical strings of the terms seen by this parser, shared by the parsers derived from it
+  private final CraftTermInterner interner;
+
+  private CraftParser(Set<String> projection, KeyFilter filter, CraftTermInterner interner) {
+    this.projection = projection;
+    this.filter = filter;
+    this.interner = interner;
   }
 
   public static CraftParser getInstance() {
     return INSTANCE;
   }
 
-  private static CraftParserState doParse(Codec codec) {
+  /*
+   * Parser which only decodes columns with the given names, the other columns are skipped
+   * and absent from the row changed values
+   */
+  public static CraftParser withProjection(Set<String> projection) {
+    return new CraftParser(projection, null, new CraftTermInterner());
+  }
+
+  /*
+   * Parser which skips the values of events rejected by the filter, these events are absent
+   * from the parsed state
+   */
+  public CraftParser withFilter(KeyFilter filter) {
+    return new CraftParser(projection, filter, interner);
+  }
+
+  private CraftParserState doParse(Codec codec) {
     if (codec.decodeUvarint() != CURRENT_VERSION) {
       throw new RuntimeException("Illegal version, should be " + CURRENT_VERSION);
     }
@@ -53,9 +82,11 @@ public class CraftParser implements Parser<CraftParserState> {
     Codec headerAndBodyCodec = codec.truncateHeading(keyAndValueBytes);
     int termDictionarySize = metaSizeTable[TERM_DICTIONARY_SIZE_INDEX];
     CraftTermDictionary termDictionary = termDictionarySize == 0 ? CraftTermDictionary.empty()
-        : new CraftTermDictionary(codec.truncateHeading(metaSizeTable[TERM_DICTIONARY_SIZE_INDEX]));
+        : new CraftTermDictionary(
+            codec.truncateHeading(metaSizeTable[TERM_DICTIONARY_SIZE_INDEX]), interner);
     Key[] keys = parseKeys(headerAndBodyCodec, numOfPairs, keyBytes, termDictionary);
-    return new CraftParserState(headerAndBodyCodec, keys, sizeTables, termDictionary);
+    return new CraftParserState(headerAndBodyCodec, keys, sizeTables, termDictionary,
+        projection, filter);
   }
 
   private static Key[] parseKeys(Codec codec, int numOfKeys, int keyBytes,
@@ -79,8 +110,7 @@ public class CraftParser implements Parser<CraftParserState> {
     ArrayList<int[]> tables = new ArrayList<>();
     while (slice.available() > 0) {
       int elements = slice.decodeUvarintLength();
-      tables.add(
-          Arrays.stream(slice.decodeDeltaVarintChunk(elements)).mapToInt(l -> (int) l).toArray());
+      tables.add(slice.decodeDeltaVarintChunk(elements, new int[elements]));
     }
     return tables.toArray(new int[0][]);
   }
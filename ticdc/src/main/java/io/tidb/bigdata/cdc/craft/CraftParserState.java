@@ -19,6 +19,7 @@ package io.tidb.bigdata.cdc.craft;
 import io.tidb.bigdata.cdc.DDLValue;
 import io.tidb.bigdata.cdc.Event;
 import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.KeyFilter;
 import io.tidb.bigdata.cdc.ResolvedValue;
 import io.tidb.bigdata.cdc.RowChangedValue;
 import io.tidb.bigdata.cdc.RowColumn;
@@ -26,9 +27,10 @@ import io.tidb.bigdata.cdc.RowDeletedValue;
 import io.tidb.bigdata.cdc.RowInsertedValue;
 import io.tidb.bigdata.cdc.RowUpdatedValue;
 import io.tidb.bigdata.cdc.Value;
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 public class CraftParserState implements Iterator<Event> {
 
@@ -41,42 +43,69 @@ public class CraftParserState implements Iterator<Event> {
   private final int[] valueSizeTable;
   private final Event[] events;
   private int index;
+  // number of values consumed from the codec, either decoded or skipped
+  private int consumed;
   private final CraftTermDictionary termDictionary;
+  // names of the columns to decode, all columns are decoded if null
+  private final Set<String> projection;
+  // values of events rejected by the filter are skipped, all events are decoded if null
+  private final KeyFilter filter;
+  // buffers of the column group headers, reused by the column groups of all events
+  private long[] typeBuffer = new long[0];
+  private long[] flagBuffer = new long[0];
+  private long[] lengthBuffer = new long[0];
 
   CraftParserState(Codec codec, Key[] keys, int[][] sizeTables,
-      CraftTermDictionary termDictionary) {
-    this(codec, keys, sizeTables, new Event[keys.length], termDictionary);
+      CraftTermDictionary termDictionary, Set<String> projection, KeyFilter filter) {
+    this(codec, keys, sizeTables, new Event[keys.length], 0, termDictionary, projection, filter);
   }
 
-  private CraftParserState(Codec codec, Key[] keys, int[][] sizeTables,
-      Event[] events, CraftTermDictionary termDictionary) {
+  private CraftParserState(Codec codec, Key[] keys, int[][] sizeTables, Event[] events,
+      int consumed, CraftTermDictionary termDictionary, Set<String> projection,
+      KeyFilter filter) {
     this.codec = codec;
     this.keys = keys;
     this.index = 0;
+    this.consumed = consumed;
     this.events = events;
     this.sizeTables = sizeTables;
     this.valueSizeTable = sizeTables[CraftParser.VALUE_SIZE_TABLE_INDEX];
     this.termDictionary = termDictionary;
+    this.projection = projection;
+    this.filter = filter;
   }
 
   @Override
   public CraftParserState clone() {
     return new CraftParserState(codec.clone(), keys, sizeTables,
-        Arrays.copyOf(events, events.length), termDictionary);
+        Arrays.copyOf(events, events.length), consumed, termDictionary, projection, filter);
   }
 
   @Override
   public boolean hasNext() {
+    if (filter != null) {
+      // values of rejected events are skipped through the value size table
+      while (index < keys.length && !filter.accept(keys[index])) {
+        if (index == consumed) {
+          skipValue();
+          consumed++;
+        }
+        index++;
+      }
+    }
     return index < keys.length;
   }
 
   @Override
   public Event next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
     Event event = events[index];
-    if (event != null) {
-      return event;
+    if (event == null) {
+      event = events[index] = new Event(keys[index], this.decodeValue());
+      consumed++;
     }
-    event = events[index] = new Event(keys[index], this.decodeValue());
     index++;
     return event;
   }
@@ -87,10 +116,7 @@ public class CraftParserState implements Iterator<Event> {
     return new DDLValue(query, (int) type);
   }
 
-  private Object decodeTiDBType(long type, long flags, byte[] value) {
-    if (value == null) {
-      return null;
-    }
+  private Object decodeTiDBType(long type, long flags, Codec value) {
     switch (RowColumn.getType((int) type)) {
       case DATE:
         // FALLTHROUGH
@@ -106,7 +132,7 @@ public class CraftParserState implements Iterator<Event> {
         // FALLTHROUGH
       case JSON:
         // value type for these mysql types is string
-        return new String(value, StandardCharsets.UTF_8);
+        return new CraftValueSlice(value.array(), value.position(), value.available(), true);
       case CHAR:
         // FALLTHROUGH
       case BINARY:
@@ -131,18 +157,18 @@ public class CraftParserState implements Iterator<Event> {
         // FALLTHROUGH
       case BLOB:
         // raw value type for these mysql types is []byte
-        return value;
+        return new CraftValueSlice(value.array(), value.position(), value.available(), false);
       case ENUM:
         // FALLTHROUGH
       case SET:
         // FALLTHROUGH
       case BIT:
         // value type for these mysql types is uint64
-        return new Codec(value).decodeUvarint();
+        return value.decodeUvarint();
       case FLOAT:
       case DOUBLE:
         // value type for these mysql types is float64
-        return new Codec(value).decodeFloat64();
+        return value.decodeFloat64();
       case TINYINT:
       case BOOL:
       case SMALLINT:
@@ -150,14 +176,13 @@ public class CraftParserState implements Iterator<Event> {
       case BIGINT:
       case MEDIUMINT:
         // value types for these mysql types are int64 or uint64 depends on flags
-        Codec codec = new Codec(value);
         if (RowColumn.isUnsigned(flags)) {
-          return codec.decodeUvarint();
+          return value.decodeUvarint();
         } else {
-          return codec.decodeVarint();
+          return value.decodeVarint();
         }
       case YEAR:
-        return new Codec(value).decodeVarint();
+        return value.decodeVarint();
       case NULL:
         // FALLTHROUGH
       case GEOMETRY:
@@ -170,15 +195,44 @@ public class CraftParserState implements Iterator<Event> {
   private RowColumn[] decodeColumnGroup(Codec codec) {
     int numOfColumns = (int) codec.decodeUvarint();
     String[] names = termDictionary.decodeChunk(codec, numOfColumns);
-    long[] types = codec.decodeUvarintChunk(numOfColumns);
-    long[] flags = codec.decodeUvarintChunk(numOfColumns);
-    byte[][] values = codec.decodeNullableBytesChunk(numOfColumns);
+    if (typeBuffer.length < numOfColumns) {
+      typeBuffer = new long[numOfColumns];
+      flagBuffer = new long[numOfColumns];
+      lengthBuffer = new long[numOfColumns];
+    }
+    final long[] types = codec.decodeUvarintChunk(numOfColumns, typeBuffer);
+    final long[] flags = codec.decodeUvarintChunk(numOfColumns, flagBuffer);
+    // lengths of the nullable values, -1 for null
+    final long[] lengths = codec.decodeVarintChunk(numOfColumns, lengthBuffer);
 
-    RowColumn[] columns = new RowColumn[numOfColumns];
+    boolean[] projected = null;
+    int numOfProjected = numOfColumns;
+    if (projection != null) {
+      projected = new boolean[numOfColumns];
+      numOfProjected = 0;
+      for (int idx = 0; idx < numOfColumns; idx++) {
+        if (projection.contains(names[idx])) {
+          projected[idx] = true;
+          numOfProjected++;
+        }
+      }
+    }
+
+    // values are decoded in place, values of the columns not projected are skipped
+    RowColumn[] columns = new RowColumn[numOfProjected];
+    Codec value = codec.sliceHeading(0);
+    int column = 0;
     for (int idx = 0; idx < numOfColumns; idx++) {
-      columns[idx] = new RowColumn(names[idx],
-          decodeTiDBType(types[idx], flags[idx], values[idx]),
-          false, (int) types[idx], flags[idx]);
+      int length = (int) lengths[idx];
+      if (projected == null || projected[idx]) {
+        columns[column++] = new RowColumn(names[idx],
+            length < 0 ? null
+                : decodeTiDBType(types[idx], flags[idx], value.reset(codec.position(), length)),
+            false, (int) types[idx], flags[idx]);
+      }
+      if (length > 0) {
+        codec.skip(length);
+      }
     }
 
     return columns;
@@ -216,6 +270,13 @@ public class CraftParserState implements Iterator<Event> {
     }
   }
 
+  private void skipValue() {
+    // resolved values are never consumed, see decodeValue
+    if (keys[index].getType() != Key.Type.RESOLVED) {
+      codec.skip(valueSizeTable[index]);
+    }
+  }
+
   private Value decodeValue() {
     int size = valueSizeTable[index];
     Key.Type type = keys[index].getType();
@@ -10,8 +10,8 @@ public class CraftTermDictionary {
     terms = new String[0];
   }
 
-  CraftTermDictionary(Codec codec) {
-    this.terms = codec.decodeStringChunk((int) codec.decodeUvarint());
+  CraftTermDictionary(Codec codec, CraftTermInterner interner) {
+    this.terms = codec.decodeStringChunk((int) codec.decodeUvarint(), interner);
   }
 
   public static CraftTermDictionary empty() {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.cdc.craft;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Bounded intern table of the terms of craft term dictionaries, keyed on their raw UTF-8 bytes.
+ *
+ * Schema, table and column names repeat in every message, interning them lets the parser decode
+ * a term dictionary without allocating any string once the vocabulary is known, and hands out
+ * the same string instance for the same name, so it could be compared by identity downstream.
+ *
+ * The table is a fixed size open addressing hash table whose entries are immutable, it is safe to
+ * be shared by parsers of different threads without locking: a racing insertion could at most
+ * drop an entry, which is decoded again next time.
+ */
+final class CraftTermInterner {
+
+  private static final int DEFAULT_CAPACITY = 4096;
+  private static final int MAX_PROBES = 4;
+  // longer terms are rare and not worth being interned
+  private static final int MAX_TERM_LENGTH = 256;
+
+  private final Entry[] entries;
+  private final int mask;
+
+  CraftTermInterner() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  CraftTermInterner(final int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+    }
+    this.entries = new Entry[capacity];
+    this.mask = capacity - 1;
+  }
+
+  private static int hash(final byte[] buffer, final int offset, final int length) {
+    int hash = 1;
+    for (int idx = offset; idx < offset + length; ++idx) {
+      hash = 31 * hash + buffer[idx];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /*
+   * Canonical string of the UTF-8 bytes in the given range of the buffer
+   */
+  String intern(final byte[] buffer, final int offset, final int length) {
+    if (length > MAX_TERM_LENGTH) {
+      return new String(buffer, offset, length, StandardCharsets.UTF_8);
+    }
+    final int hash = hash(buffer, offset, length);
+    final Entry[] entries = this.entries;
+    int slot = hash & mask;
+    for (int probe = 0; probe < MAX_PROBES; ++probe) {
+      final Entry entry = entries[(slot + probe) & mask];
+      if (entry == null) {
+        slot = (slot + probe) & mask;
+        break;
+      }
+      if (entry.matches(hash, buffer, offset, length)) {
+        return entry.term;
+      }
+    }
+    // either a free slot is found or the home slot is evicted, so the table stays bounded
+    final Entry entry = new Entry(hash, buffer, offset, length);
+    entries[slot] = entry;
+    return entry.term;
+  }
+
+  private static final class Entry {
+    private final int hash;
+    private final byte[] bytes;
+    private final String term;
+
+    private Entry(final int hash, final byte[] buffer, final int offset, final int length) {
+      this.hash = hash;
+      this.bytes = new byte[length];
+      System.arraycopy(buffer, offset, bytes, 0, length);
+      this.term = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(final int hash, final byte[] buffer, final int offset,
+        final int length) {
+      if (this.hash != hash || bytes.length != length) {
+        return false;
+      }
+      for (int idx = 0; idx < length; ++idx) {
+        if (bytes[idx] != buffer[offset + idx]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.craft;
+
+import io.tidb.bigdata.cdc.RowColumn;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Value of a column which still lives in the craft message, it is only copied out
+ * when a consumer accesses it. The text of temporal and decimal values is ascii, so it could be
+ * parsed in place through the char sequence view of the slice.
+ */
+final class CraftValueSlice implements RowColumn.LazyValue, CharSequence {
+
+  private final byte[] buffer;
+  private final int offset;
+  private final int length;
+  private final boolean string;
+
+  CraftValueSlice(byte[] buffer, int offset, int length, boolean string) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+    this.string = string;
+  }
+
+  @Override
+  public Object materialize() {
+    if (string) {
+      return new String(buffer, offset, length, StandardCharsets.UTF_8);
+    }
+    return Arrays.copyOfRange(buffer, offset, offset + length);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+    }
+    return (char) (buffer[offset + index] & 0xff);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, offset, length, StandardCharsets.UTF_8);
+  }
+}
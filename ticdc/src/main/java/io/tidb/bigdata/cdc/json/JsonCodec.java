@@ -19,19 +19,30 @@ package io.tidb.bigdata.cdc.json;
 import io.tidb.bigdata.cdc.Codec;
 import io.tidb.bigdata.cdc.EventDecoder;
 import io.tidb.bigdata.cdc.KeyDecoder;
-import io.tidb.bigdata.cdc.ParserFactory;
+import io.tidb.bigdata.cdc.KeyFilter;
 import io.tidb.bigdata.cdc.ValueDecoder;
 import java.io.Serializable;
 
 public class JsonCodec implements Codec, Serializable {
-  private final ParserFactory<JsonParser, JsonNode> parserFactory;
+
+  // values of events rejected by the filter are skipped, all events are decoded if null
+  private final KeyFilter filter;
 
   public JsonCodec() {
-    parserFactory = ParserFactory.json();
+    this((KeyFilter) null);
+  }
+
+  public JsonCodec(KeyFilter filter) {
+    this.filter = filter;
   }
 
+  /**
+   * @deprecated events are decoded by a streaming reader which doesn't depend on jackson,
+   *     so the shade prefix of jackson is not needed anymore
+   */
+  @Deprecated
   public JsonCodec(String shadePrefix) {
-    parserFactory = ParserFactory.json(shadePrefix);
+    this();
   }
 
   @Override
@@ -46,16 +57,16 @@ public class JsonCodec implements Codec, Serializable {
 
   @Override
   public EventDecoder decode(byte[] key, byte[] value) {
-    return EventDecoder.json(key, value, parserFactory);
+    return EventDecoder.json(key, value, filter);
   }
 
   @Override
   public KeyDecoder key(byte[] key) {
-    return KeyDecoder.json(key, parserFactory);
+    return KeyDecoder.json(key);
   }
 
   @Override
   public ValueDecoder value(byte[] value) {
-    return ValueDecoder.json(value, parserFactory);
+    return ValueDecoder.json(value);
   }
 }
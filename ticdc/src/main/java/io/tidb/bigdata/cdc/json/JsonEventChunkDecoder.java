@@ -19,6 +19,7 @@ package io.tidb.bigdata.cdc.json;
 import io.tidb.bigdata.cdc.Event;
 import io.tidb.bigdata.cdc.EventChunkDecoder;
 import io.tidb.bigdata.cdc.Key;
+import io.tidb.bigdata.cdc.KeyFilter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -33,18 +34,37 @@ public class JsonEventChunkDecoder implements EventChunkDecoder {
   private final Event[] events;
   private final Iterator<Event[]> iterator;
 
-  public JsonEventChunkDecoder(final byte[] key, final byte[] value, final JsonParser parser) {
-    events = decode(key, value, parser);
+  public JsonEventChunkDecoder(final byte[] key, final byte[] value) {
+    this(key, value, (KeyFilter) null);
+  }
+
+  /**
+   * Only decode events accepted by the filter, values of the other events are skipped.
+   */
+  public JsonEventChunkDecoder(final byte[] key, final byte[] value, final KeyFilter filter) {
+    events = decode(key, value, filter);
     iterator = iterator();
   }
 
+  /**
+   * @deprecated events are decoded by a streaming reader, the parser is not used anymore
+   */
+  @Deprecated
+  public JsonEventChunkDecoder(final byte[] key, final byte[] value, final JsonParser parser) {
+    this(key, value);
+  }
+
   private static Event[] decode(final byte[] keyBits, final byte[] valueBits,
-      final JsonParser parser) {
-    final JsonKeyDecoder keys = new JsonKeyDecoder(keyBits, parser);
-    final JsonValueDecoder values = new JsonValueDecoder(valueBits, parser);
+      final KeyFilter filter) {
+    final JsonKeyDecoder keys = new JsonKeyDecoder(keyBits);
+    final JsonValueDecoder values = new JsonValueDecoder(valueBits);
     final ArrayList<Event> buffer = tlsEventBuffer.get();
     while (keys.hasNext()) {
       final Key key = keys.next();
+      if (filter != null && !filter.accept(key)) {
+        values.skip();
+        continue;
+      }
       buffer.add(new Event(key, values.next(key)));
     }
     final Event[] events = buffer.toArray(new Event[0]);
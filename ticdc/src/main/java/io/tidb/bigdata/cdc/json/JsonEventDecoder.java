@@ -18,6 +18,7 @@ package io.tidb.bigdata.cdc.json;
 
 import io.tidb.bigdata.cdc.Event;
 import io.tidb.bigdata.cdc.EventDecoder;
+import io.tidb.bigdata.cdc.KeyFilter;
 import java.util.Arrays;
 import java.util.Iterator;
 
@@ -29,11 +30,26 @@ public class JsonEventDecoder implements EventDecoder {
   private final Event[] events;
   private final Iterator<Event> iterator;
 
-  public JsonEventDecoder(final byte[] key, final byte[] value, final JsonParser parser) {
-    this.events = new JsonEventChunkDecoder(key, value, parser).next();
+  public JsonEventDecoder(final byte[] key, final byte[] value) {
+    this(key, value, (KeyFilter) null);
+  }
+
+  /**
+   * Only decode events accepted by the filter, values of the other events are skipped.
+   */
+  public JsonEventDecoder(final byte[] key, final byte[] value, final KeyFilter filter) {
+    this.events = new JsonEventChunkDecoder(key, value, filter).next();
     this.iterator = iterator();
   }
 
+  /**
+   * @deprecated events are decoded by a streaming reader, the parser is not used anymore
+   */
+  @Deprecated
+  public JsonEventDecoder(final byte[] key, final byte[] value, final JsonParser parser) {
+    this(key, value);
+  }
+
   @Override
   public boolean hasNext() {
     return iterator.hasNext();
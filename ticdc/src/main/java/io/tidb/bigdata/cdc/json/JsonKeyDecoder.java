@@ -16,11 +16,8 @@
 
 package io.tidb.bigdata.cdc.json;
 
-import static io.tidb.bigdata.cdc.Misc.uncheckedRun;
-
 import io.tidb.bigdata.cdc.Key;
 import io.tidb.bigdata.cdc.KeyDecoder;
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 
 /**
@@ -29,33 +26,86 @@ import java.io.DataInputStream;
 public class JsonKeyDecoder implements KeyDecoder {
 
   private static final long CURRENT_VERSION = 1;
-  private final JsonDecoder decoder;
+  private final JsonRecords records;
 
-  public JsonKeyDecoder(final DataInputStream input, final JsonParser parser) {
-    if (uncheckedRun(() -> input.readLong() != CURRENT_VERSION)) {
+  public JsonKeyDecoder(final byte[] input) {
+    records = new JsonRecords(input, 0);
+    if (records.readLong() != CURRENT_VERSION) {
       throw new RuntimeException("Illegal version, should be 1");
     }
-    // we know there is only one json parser at this time
-    decoder = new JsonDecoder(input, parser);
   }
 
+  public JsonKeyDecoder(final DataInputStream input) {
+    this(JsonRecords.readFully(input));
+  }
+
+  /**
+   * @deprecated keys are decoded by a streaming reader, the parser is not used anymore
+   */
+  @Deprecated
+  public JsonKeyDecoder(final DataInputStream input, final JsonParser parser) {
+    this(input);
+  }
+
+  /**
+   * @deprecated keys are decoded by a streaming reader, the parser is not used anymore
+   */
+  @Deprecated
   public JsonKeyDecoder(final byte[] input, final JsonParser parser) {
-    this(new DataInputStream(new ByteArrayInputStream(input)), parser);
+    this(input);
   }
 
   @Override
   public boolean hasNext() {
-    return decoder.hasNext();
+    return records.hasNext();
   }
 
   @Override
   public Key next() {
-    final JsonNode node = decoder.next();
-    return new Key(
-        node.getText("scm", null),
-        node.getText("tbl", null),
-        node.getInt("ptn", 0),
-        node.mustGetInt("t"),
-        node.mustGetLong("ts"));
+    final JsonTokenReader reader = records.next();
+    String schema = null;
+    String table = null;
+    long partition = 0;
+    int type = -1;
+    long ts = -1;
+    boolean hasType = false;
+    boolean hasTs = false;
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      switch (reader.nextName()) {
+        case "scm":
+          schema = nullableString(reader);
+          break;
+        case "tbl":
+          table = nullableString(reader);
+          break;
+        case "ptn":
+          partition = reader.nextInt();
+          break;
+        case "t":
+          type = reader.nextInt();
+          hasType = true;
+          break;
+        case "ts":
+          ts = reader.nextLong();
+          hasTs = true;
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    if (!hasType || !hasTs) {
+      throw new IllegalStateException("Missing field " + (hasType ? "ts" : "t") + " in key");
+    }
+    return new Key(schema, table, partition, type, ts);
+  }
+
+  private static String nullableString(final JsonTokenReader reader) {
+    if (reader.peek() == JsonTokenReader.Token.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextString();
   }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/*
+ * Length prefixed json records of TiCDC open protocol, each record is read by a streaming
+ * token reader over the original bytes
+ */
+final class JsonRecords {
+
+  private final byte[] input;
+  private int pos;
+
+  JsonRecords(final byte[] input, final int offset) {
+    this.input = input;
+    this.pos = offset;
+  }
+
+  static byte[] readFully(final InputStream input) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    try {
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        output.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toByteArray();
+  }
+
+  long readLong() {
+    if (pos + Long.BYTES > input.length) {
+      throw new IllegalStateException("Buffer underflow: expecting " + Long.BYTES
+          + " byte(s) when only " + (input.length - pos) + " byte(s) are available");
+    }
+    long value = 0;
+    for (int idx = 0; idx < Long.BYTES; idx++) {
+      value = (value << 8) | (input[pos++] & 0xff);
+    }
+    return value;
+  }
+
+  boolean hasNext() {
+    return pos < input.length;
+  }
+
+  /*
+   * Skip the next record without tokenizing it
+   */
+  void skip() {
+    final int length = nextLength();
+    pos += length;
+  }
+
+  /*
+   * Reader of the next record, the reader is at its end if the record is empty
+   */
+  JsonTokenReader next() {
+    final int length = nextLength();
+    final JsonTokenReader reader = new JsonTokenReader(input, pos, length);
+    pos += length;
+    return reader;
+  }
+
+  private int nextLength() {
+    final long length = readLong();
+    if (length < 0 || length > input.length - pos) {
+      throw new IllegalStateException("Invalid json record length: " + length);
+    }
+    return (int) length;
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc.json;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Streaming reader of json tokens over a byte array, which lets decoders build events straight
+ * from the bytes instead of going through a tree of nodes
+ */
+public final class JsonTokenReader {
+
+  public enum Token {
+    OBJECT,
+    ARRAY,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL
+  }
+
+  // long values with at most 18 digits never overflow
+  private static final int MAX_SAFE_LONG_DIGITS = 18;
+
+  private final byte[] buffer;
+  private int pos;
+  private final int limit;
+  private StringBuilder builder;
+
+  public JsonTokenReader(final byte[] buffer) {
+    this(buffer, 0, buffer.length);
+  }
+
+  public JsonTokenReader(final byte[] buffer, final int offset, final int length) {
+    this.buffer = buffer;
+    this.pos = offset;
+    this.limit = offset + length;
+  }
+
+  private IllegalStateException malformed(final String expecting) {
+    return new IllegalStateException(
+        "Malformed json: expecting " + expecting + " at offset " + pos);
+  }
+
+  private void skipWhitespaces() {
+    while (pos < limit) {
+      final byte b = buffer[pos];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private byte peekByte() {
+    skipWhitespaces();
+    if (pos >= limit) {
+      throw malformed("more input");
+    }
+    return buffer[pos];
+  }
+
+  private void expect(final char c) {
+    if (peekByte() != c) {
+      throw malformed("'" + c + "'");
+    }
+    pos++;
+  }
+
+  private void expectLiteral(final String literal) {
+    for (int idx = 0; idx < literal.length(); idx++) {
+      if (pos >= limit || buffer[pos] != literal.charAt(idx)) {
+        throw malformed(literal);
+      }
+      pos++;
+    }
+  }
+
+  public boolean isEnd() {
+    skipWhitespaces();
+    return pos >= limit;
+  }
+
+  public Token peek() {
+    switch (peekByte()) {
+      case '{':
+        return Token.OBJECT;
+      case '[':
+        return Token.ARRAY;
+      case '"':
+        return Token.STRING;
+      case 't':
+      case 'f':
+        return Token.BOOLEAN;
+      case 'n':
+        return Token.NULL;
+      default:
+        return Token.NUMBER;
+    }
+  }
+
+  public void beginObject() {
+    expect('{');
+  }
+
+  /*
+   * Whether the current object has more fields, consumes the separator or the closing brace
+   */
+  public boolean hasNextField() {
+    final byte b = peekByte();
+    if (b == '}') {
+      pos++;
+      return false;
+    }
+    if (b == ',') {
+      pos++;
+    }
+    return true;
+  }
+
+  public void beginArray() {
+    expect('[');
+  }
+
+  /*
+   * Whether the current array has more elements, consumes the separator or the closing bracket
+   */
+  public boolean hasNextElement() {
+    final byte b = peekByte();
+    if (b == ']') {
+      pos++;
+      return false;
+    }
+    if (b == ',') {
+      pos++;
+    }
+    return true;
+  }
+
+  public String nextName() {
+    final String name = nextString();
+    expect(':');
+    return name;
+  }
+
+  public String nextString() {
+    expect('"');
+    final int start = pos;
+    while (pos < limit) {
+      final byte b = buffer[pos];
+      if (b == '"') {
+        return new String(buffer, start, pos++ - start, StandardCharsets.UTF_8);
+      }
+      if (b == '\\') {
+        return nextEscapedString(start);
+      }
+      pos++;
+    }
+    throw malformed("'\"'");
+  }
+
+  private String nextEscapedString(final int start) {
+    if (builder == null) {
+      builder = new StringBuilder();
+    }
+    builder.setLength(0);
+    int segment = start;
+    while (pos < limit) {
+      final byte b = buffer[pos];
+      if (b == '"') {
+        builder.append(new String(buffer, segment, pos++ - segment, StandardCharsets.UTF_8));
+        return builder.toString();
+      }
+      if (b != '\\') {
+        pos++;
+        continue;
+      }
+      builder.append(new String(buffer, segment, pos - segment, StandardCharsets.UTF_8));
+      if (pos + 1 >= limit) {
+        throw malformed("escaped character");
+      }
+      final byte escaped = buffer[pos + 1];
+      pos += 2;
+      switch (escaped) {
+        case '"':
+        case '\\':
+        case '/':
+          builder.append((char) escaped);
+          break;
+        case 'b':
+          builder.append('\b');
+          break;
+        case 'f':
+          builder.append('\f');
+          break;
+        case 'n':
+          builder.append('\n');
+          break;
+        case 'r':
+          builder.append('\r');
+          break;
+        case 't':
+          builder.append('\t');
+          break;
+        case 'u':
+          if (pos + 4 > limit) {
+            throw malformed("unicode escape");
+          }
+          builder.append((char) Integer.parseInt(
+              new String(buffer, pos, 4, StandardCharsets.US_ASCII), 16));
+          pos += 4;
+          break;
+        default:
+          throw malformed("escaped character");
+      }
+      segment = pos;
+    }
+    throw malformed("'\"'");
+  }
+
+  /*
+   * Number with the same type Jackson gives: Integer, Long or BigInteger for integral numbers
+   * depending on their magnitude, and Double for the others
+   */
+  public Number nextNumber() {
+    skipWhitespaces();
+    final int start = pos;
+    boolean integral = true;
+    while (pos < limit) {
+      final byte b = buffer[pos];
+      if (b >= '0' && b <= '9' || b == '-' || b == '+') {
+        pos++;
+      } else if (b == '.' || b == 'e' || b == 'E') {
+        integral = false;
+        pos++;
+      } else {
+        break;
+      }
+    }
+    if (start == pos) {
+      throw malformed("number");
+    }
+    if (!integral) {
+      return Double.parseDouble(new String(buffer, start, pos - start, StandardCharsets.US_ASCII));
+    }
+    final boolean negative = buffer[start] == '-';
+    final int digits = pos - start - (negative ? 1 : 0);
+    if (digits > MAX_SAFE_LONG_DIGITS) {
+      final BigInteger value =
+          new BigInteger(new String(buffer, start, pos - start, StandardCharsets.US_ASCII));
+      return value.bitLength() < Long.SIZE ? (Number) value.longValue() : value;
+    }
+    long value = 0;
+    for (int idx = negative ? start + 1 : start; idx < pos; idx++) {
+      value = value * 10 + (buffer[idx] - '0');
+    }
+    value = negative ? -value : value;
+    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+      return (int) value;
+    }
+    return value;
+  }
+
+  public long nextLong() {
+    return nextNumber().longValue();
+  }
+
+  public int nextInt() {
+    return nextNumber().intValue();
+  }
+
+  public boolean nextBoolean() {
+    if (peekByte() == 't') {
+      expectLiteral("true");
+      return true;
+    }
+    expectLiteral("false");
+    return false;
+  }
+
+  public void nextNull() {
+    skipWhitespaces();
+    expectLiteral("null");
+  }
+
+  /*
+   * Value of a scalar token as Jackson's JsonNode would give
+   */
+  public Object nextScalar() {
+    switch (peek()) {
+      case STRING:
+        return nextString();
+      case NUMBER:
+        return nextNumber();
+      case BOOLEAN:
+        return nextBoolean();
+      case NULL:
+        nextNull();
+        return null;
+      default:
+        throw malformed("scalar value");
+    }
+  }
+
+  public void skipValue() {
+    switch (peek()) {
+      case OBJECT:
+        beginObject();
+        while (hasNextField()) {
+          nextName();
+          skipValue();
+        }
+        break;
+      case ARRAY:
+        beginArray();
+        while (hasNextElement()) {
+          skipValue();
+        }
+        break;
+      default:
+        nextScalar();
+        break;
+    }
+  }
+}
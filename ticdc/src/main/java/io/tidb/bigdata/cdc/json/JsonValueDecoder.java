@@ -26,13 +26,9 @@ import io.tidb.bigdata.cdc.RowInsertedValue;
 import io.tidb.bigdata.cdc.RowUpdatedValue;
 import io.tidb.bigdata.cdc.Value;
 import io.tidb.bigdata.cdc.ValueDecoder;
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Optional;
 
 /**
  * TiCDC open protocol json format event value decoder, parse bits into event value instances.
@@ -50,19 +46,30 @@ public class JsonValueDecoder implements ValueDecoder {
   private static final String UPDATE_NEW_VALUE_TOKEN = "u";
   private static final String UPDATE_OLD_VALUE_TOKEN = "p";
   private static final String UPDATE_DELETE_VALUE_TOKEN = "d";
-  private final JsonDecoder decoder;
+  private final JsonRecords records;
 
-  public JsonValueDecoder(final DataInputStream input, final JsonParser parser) {
-    // we know there is only one json parser at this time
-    decoder = new JsonDecoder(input, parser);
+  public JsonValueDecoder(final byte[] input) {
+    records = new JsonRecords(input, 0);
   }
 
-  public JsonValueDecoder(final byte[] input, final JsonParser parser) {
-    this(new DataInputStream(new ByteArrayInputStream(input)), parser);
+  public JsonValueDecoder(final DataInputStream input) {
+    this(JsonRecords.readFully(input));
+  }
+
+  /**
+   * @deprecated values are decoded by a streaming reader, the parser is not used anymore
+   */
+  @Deprecated
+  public JsonValueDecoder(final DataInputStream input, final JsonParser parser) {
+    this(input);
   }
 
-  private static DDLValue parseDDLValue(final JsonNode node) {
-    return new DDLValue(node.mustGetText(DDL_QUERY_TOKEN), node.mustGetInt(TYPE_TOKEN));
+  /**
+   * @deprecated values are decoded by a streaming reader, the parser is not used anymore
+   */
+  @Deprecated
+  public JsonValueDecoder(final byte[] input, final JsonParser parser) {
+    this(input);
   }
 
   private static Object checkAndConvertFromString(int type, long flags, String value) {
@@ -83,93 +90,143 @@ public class JsonValueDecoder implements ValueDecoder {
     return value;
   }
 
-  private static RowColumn[] parseColumns(final JsonNode row) {
-    final ArrayList<RowColumn> buffer = tlsRowColumnBuffer.get();
-    for (final Iterator<Map.Entry<String, JsonNode>> it = row.fields(); it.hasNext(); ) {
-      final Map.Entry<String, JsonNode> entry = it.next();
-      final JsonNode node = entry.getValue();
-      final JsonNode valueNode = node.mustGet(COLUMN_VALUE_TOKEN);
-      final Object value;
-      final int type = node.mustGetInt(TYPE_TOKEN);
-      final long flags = node.getLong(COLUMN_FLAG_TOKEN, 0);
-
-      switch (valueNode.getType()) {
-        case BOOLEAN:
-          value = valueNode.booleanValue();
+  private static RowColumn parseColumn(final String name, final JsonTokenReader reader) {
+    Object value = null;
+    boolean hasValue = false;
+    int type = 0;
+    boolean hasType = false;
+    long flags = 0;
+    boolean whereHandle = false;
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      switch (reader.nextName()) {
+        case TYPE_TOKEN:
+          type = reader.nextInt();
+          hasType = true;
           break;
-        case NUMBER:
-          value = valueNode.numberValue();
+        case COLUMN_FLAG_TOKEN:
+          flags = reader.nextLong();
           break;
-        case STRING:
-          value = checkAndConvertFromString(type, flags, valueNode.textValue());
+        case COLUMN_WHERE_HANDLE_TOKEN:
+          whereHandle = reader.nextBoolean();
           break;
-        case NULL:
-          value = null;
+        case COLUMN_VALUE_TOKEN:
+          value = reader.nextScalar();
+          hasValue = true;
           break;
         default:
-          throw new RuntimeException("Invalid column value type: " + valueNode.getType());
+          reader.skipValue();
+          break;
       }
-      buffer.add(new RowColumn(
-          entry.getKey(),
-          value,
-          node.getBoolean(COLUMN_WHERE_HANDLE_TOKEN, false),
-          type, flags));
+    }
+    if (!hasType || !hasValue) {
+      throw new IllegalStateException("Missing field "
+          + (hasType ? COLUMN_VALUE_TOKEN : TYPE_TOKEN) + " in column " + name);
+    }
+    if (value instanceof String) {
+      // flags might come after the value, so strings are converted at last
+      value = checkAndConvertFromString(type, flags, (String) value);
+    }
+    return new RowColumn(name, value, whereHandle, type, flags);
+  }
+
+  private static RowColumn[] parseColumns(final JsonTokenReader reader) {
+    final ArrayList<RowColumn> buffer = tlsRowColumnBuffer.get();
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      buffer.add(parseColumn(reader.nextName(), reader));
     }
     final RowColumn[] columns = buffer.toArray(new RowColumn[0]);
     buffer.clear();
     return columns;
   }
 
-  private static RowChangedValue parseRowChangedDeleteValue(final JsonNode object) {
-    return new RowDeletedValue(parseColumns(object));
-  }
-
-  private static RowChangedValue parseRowChangedUpdateValue(final Optional<JsonNode> oldValue,
-      final JsonNode newValue) {
-    return oldValue
-        .map(o -> (RowChangedValue) (new RowUpdatedValue(parseColumns(o), parseColumns(newValue))))
-        .orElseGet(() -> new RowInsertedValue(parseColumns(newValue)));
-  }
-
-  private static RowChangedValue parseRowChangedValue(final JsonNode node) {
-    if (node.has(UPDATE_NEW_VALUE_TOKEN)) {
-      return parseRowChangedUpdateValue(node.get(UPDATE_OLD_VALUE_TOKEN),
-          node.mustGet(UPDATE_NEW_VALUE_TOKEN));
-    } else if (node.has(UPDATE_DELETE_VALUE_TOKEN)) {
-      return parseRowChangedDeleteValue(node.mustGet(UPDATE_DELETE_VALUE_TOKEN));
+  /*
+   * Parse a DDL or row changed value, whichever the fields indicate
+   */
+  private static Value parseValue(final JsonTokenReader reader) {
+    String query = null;
+    int type = 0;
+    boolean hasType = false;
+    RowColumn[] newValue = null;
+    RowColumn[] oldValue = null;
+    RowColumn[] deleteValue = null;
+    reader.beginObject();
+    while (reader.hasNextField()) {
+      switch (reader.nextName()) {
+        case DDL_QUERY_TOKEN:
+          query = reader.nextString();
+          break;
+        case TYPE_TOKEN:
+          type = reader.nextInt();
+          hasType = true;
+          break;
+        case UPDATE_NEW_VALUE_TOKEN:
+          newValue = parseColumns(reader);
+          break;
+        case UPDATE_OLD_VALUE_TOKEN:
+          oldValue = parseColumns(reader);
+          break;
+        case UPDATE_DELETE_VALUE_TOKEN:
+          deleteValue = parseColumns(reader);
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    if (query != null) {
+      if (!hasType) {
+        throw new IllegalStateException("Missing field " + TYPE_TOKEN + " in DDL value");
+      }
+      return new DDLValue(query, type);
+    }
+    if (newValue != null) {
+      return oldValue == null ? new RowInsertedValue(newValue)
+          : new RowUpdatedValue(oldValue, newValue);
+    } else if (deleteValue != null) {
+      return new RowDeletedValue(deleteValue);
     } else {
-      throw new RuntimeException("Can not parse Value:" + node);
+      throw new RuntimeException("Can not parse Value");
     }
   }
 
   @Override
   public boolean hasNext() {
-    return decoder.hasNext();
+    return records.hasNext();
   }
 
   @Override
   public Value next() {
-    final JsonNode node = decoder.next();
-    if (node.getType() == JsonNode.Type.MISSING) {
+    final JsonTokenReader reader = records.next();
+    if (reader.isEnd()) {
       return ResolvedValue.getInstance();
-    } else if (node.has(DDL_QUERY_TOKEN)) {
-      return parseDDLValue(node);
-    } else {
-      return parseRowChangedValue(node);
     }
+    return parseValue(reader);
   }
 
   public Value next(final Key key) {
-    final JsonNode node = decoder.next();
+    final JsonTokenReader reader = records.next();
     switch (key.getType()) {
       case ROW_CHANGED:
-        return parseRowChangedValue(node);
+        // FALLTHROUGH
       case DDL:
-        return parseDDLValue(node);
+        final Value value = parseValue(reader);
+        if ((key.getType() == Key.Type.DDL) != (value instanceof DDLValue)) {
+          throw new IllegalStateException("Value does not match key type " + key.getType());
+        }
+        return value;
       case RESOLVED:
         return ResolvedValue.getInstance();
       default:
         throw new RuntimeException("Invalid key type");
     }
   }
+
+  /*
+   * Skip the next value without parsing it
+   */
+  public void skip() {
+    records.skip();
+  }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import io.tidb.bigdata.cdc.Key.Type;
+import io.tidb.bigdata.cdc.avro.AvroSchema;
+import io.tidb.bigdata.cdc.avro.LocalSchemaRegistry;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AvroDecoderTest {
+
+  private static final String KEY_SCHEMA = "{\"type\":\"record\",\"name\":\"t\","
+      + "\"namespace\":\"default.test\",\"fields\":[{\"name\":\"id\",\"type\":{\"type\":\"int\","
+      + "\"connect.parameters\":{\"tidb_type\":\"INT\"}}}]}";
+
+  private static final String VALUE_SCHEMA = "{\"type\":\"record\",\"name\":\"t\","
+      + "\"namespace\":\"default.test\",\"fields\":["
+      + "{\"name\":\"id\",\"type\":{\"type\":\"int\","
+      + "\"connect.parameters\":{\"tidb_type\":\"INT\"}}},"
+      + "{\"name\":\"name\",\"type\":[\"null\",{\"type\":\"string\","
+      + "\"connect.parameters\":{\"tidb_type\":\"VARCHAR\"}}],\"default\":null},"
+      + "{\"name\":\"price\",\"type\":{\"type\":\"bytes\",\"logicalType\":\"decimal\","
+      + "\"precision\":10,\"scale\":2,\"connect.parameters\":{\"tidb_type\":\"DECIMAL\"}}},"
+      + "{\"name\":\"big\",\"type\":{\"type\":\"string\","
+      + "\"connect.parameters\":{\"tidb_type\":\"BIGINT UNSIGNED\"}}},"
+      + "{\"name\":\"flags\",\"type\":{\"type\":\"bytes\","
+      + "\"connect.parameters\":{\"tidb_type\":\"BIT\"}}},"
+      + "{\"name\":\"_tidb_op\",\"type\":\"string\"},"
+      + "{\"name\":\"_tidb_commit_ts\",\"type\":\"long\"},"
+      + "{\"name\":\"_tidb_commit_physical_time\",\"type\":\"long\"}]}";
+
+  private static final String OTHER_SCHEMA = "{\"type\":\"record\",\"name\":\"u\","
+      + "\"namespace\":\"default.test\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},"
+      + "{\"name\":\"_tidb_op\",\"type\":\"string\"},"
+      + "{\"name\":\"_tidb_commit_ts\",\"type\":\"long\"}]}";
+
+  private LocalSchemaRegistry registry;
+  private int keySchema;
+  private int valueSchema;
+  private int otherSchema;
+
+  /*
+   * Writer of avro binary data in the confluent wire format
+   */
+  private static final class Writer {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private Writer(final int schemaId) {
+      out.write(0);
+      out.write(ByteBuffer.allocate(Integer.BYTES).putInt(schemaId).array(), 0, Integer.BYTES);
+    }
+
+    private Writer writeLong(final long value) {
+      long encoded = (value << 1) ^ (value >> 63);
+      while ((encoded & ~0x7fL) != 0) {
+        out.write((int) ((encoded & 0x7f) | 0x80));
+        encoded >>>= 7;
+      }
+      out.write((int) encoded);
+      return this;
+    }
+
+    private Writer writeBytes(final byte[] bytes) {
+      writeLong(bytes.length);
+      out.write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    private Writer writeString(final String str) {
+      return writeBytes(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] toByteArray() {
+      return out.toByteArray();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    registry = new LocalSchemaRegistry();
+    keySchema = registry.register(KEY_SCHEMA);
+    valueSchema = registry.register(VALUE_SCHEMA);
+    otherSchema = registry.register(OTHER_SCHEMA);
+  }
+
+  private byte[] key(final int id) {
+    return new Writer(keySchema).writeLong(id).toByteArray();
+  }
+
+  private byte[] row(final int id, final String name, final long ts) {
+    final Writer writer = new Writer(valueSchema).writeLong(id);
+    if (name == null) {
+      writer.writeLong(0);
+    } else {
+      writer.writeLong(1).writeString(name);
+    }
+    return writer.writeBytes(BigInteger.valueOf(-150).toByteArray())
+        .writeString("18446744073709551615")
+        .writeBytes(new byte[]{0x01, 0x02})
+        .writeString("c")
+        .writeLong(ts)
+        .writeLong(ts >> 18)
+        .toByteArray();
+  }
+
+  private static byte[] ddl(final String json) {
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    return ByteBuffer.allocate(bytes.length + 1).put((byte) 1).put(bytes).array();
+  }
+
+  private static byte[] checkpoint(final long ts) {
+    return ByteBuffer.allocate(9).put((byte) 2).putLong(ts).array();
+  }
+
+  @Test
+  public void testParseSchema() {
+    final AvroSchema schema = AvroSchema.parse(VALUE_SCHEMA);
+    Assert.assertEquals(AvroSchema.Kind.RECORD, schema.getKind());
+    Assert.assertEquals("t", schema.getName());
+    Assert.assertEquals("default.test", schema.getNamespace());
+    Assert.assertEquals(8, schema.getFields().size());
+    final AvroSchema name = schema.getFields().get(1).getSchema();
+    Assert.assertEquals(AvroSchema.Kind.UNION, name.getKind());
+    Assert.assertEquals(AvroSchema.Kind.STRING, name.nonNull().getKind());
+    Assert.assertEquals("VARCHAR", name.nonNull().getTiDBType());
+    final AvroSchema price = schema.getFields().get(2).getSchema();
+    Assert.assertTrue(price.isDecimal());
+    Assert.assertEquals(2, price.getScale());
+
+    final AvroSchema recursive = AvroSchema.parse("{\"type\":\"record\",\"name\":\"node\","
+        + "\"fields\":[{\"name\":\"next\",\"type\":[\"null\",\"node\"]}]}");
+    Assert.assertSame(recursive, recursive.getFields().get(0).getSchema().nonNull());
+  }
+
+  @Test
+  public void testDecodeRow() {
+    final long ts = 429918007904436226L;
+    final EventDecoder decoder = Codec.avro(registry).decode(key(1), row(1, "a", ts));
+    final Event event = decoder.next();
+    Assert.assertFalse(decoder.hasNext());
+    Assert.assertEquals(Type.ROW_CHANGED, event.getType());
+    Assert.assertEquals("test", event.getSchema());
+    Assert.assertEquals("t", event.getTable());
+    Assert.assertEquals(ts, event.getTs());
+    Assert.assertTrue(event.getValue() instanceof RowInsertedValue);
+    final RowColumn[] columns = event.asRowChanged().getNewValue();
+    // the TiDB extension fields are not columns
+    Assert.assertEquals(5, columns.length);
+    Assert.assertEquals("id", columns[0].getName());
+    Assert.assertEquals(1, columns[0].getValue());
+    Assert.assertTrue(columns[0].isWhereHandle());
+    Assert.assertTrue(RowColumn.isHandleKey(columns[0].getFlags()));
+    Assert.assertEquals("a", columns[1].getValue());
+    Assert.assertFalse(columns[1].isWhereHandle());
+    Assert.assertEquals(new BigDecimal("-1.50"), columns[2].getValue());
+    Assert.assertEquals(new BigInteger("18446744073709551615"), columns[3].getOriginalValue());
+    Assert.assertTrue(RowColumn.isUnsigned(columns[3].getFlags()));
+    Assert.assertEquals(RowColumn.Type.BIT, columns[4].getType());
+    Assert.assertEquals(0x0102L, columns[4].getValue());
+
+    final RowColumn[] nullName = Codec.avro(registry).decode(key(2), row(2, null, ts)).next()
+        .asRowChanged().getNewValue();
+    Assert.assertNull(nullName[1].getOriginalValue());
+  }
+
+  @Test
+  public void testDecodeDeleted() {
+    final Event event = Codec.avro(registry).decode(key(3), null).next();
+    Assert.assertEquals(Type.ROW_CHANGED, event.getType());
+    Assert.assertEquals("t", event.getTable());
+    Assert.assertEquals(-1, event.getTs());
+    Assert.assertTrue(event.getValue() instanceof RowDeletedValue);
+    final RowColumn[] columns = event.asRowChanged().getOldValue();
+    Assert.assertEquals(1, columns.length);
+    Assert.assertEquals(3, columns[0].getValue());
+    Assert.assertTrue(columns[0].isWhereHandle());
+  }
+
+  @Test
+  public void testDecodeDDLAndCheckpoint() {
+    Event event = Codec.avro(registry).decode(null, ddl("{\"query\":\"create table t(id int "
+        + "primary key)\",\"type\":3,\"schema\":\"test\",\"table\":\"t\","
+        + "\"commitTs\":429918007904436225}")).next();
+    Assert.assertEquals(Type.DDL, event.getType());
+    Assert.assertEquals(DDLValue.Type.CREATE_TABLE, event.asDDL().getType());
+    Assert.assertEquals("create table t(id int primary key)", event.asDDL().getQuery());
+    Assert.assertEquals("test", event.getSchema());
+    Assert.assertEquals(429918007904436225L, event.getTs());
+
+    event = Codec.avro(registry).decode(null, checkpoint(429918007904436228L)).next();
+    Assert.assertEquals(Type.RESOLVED, event.getType());
+    Assert.assertEquals(429918007904436228L, event.getTs());
+  }
+
+  @Test
+  public void testFilter() {
+    final List<byte[][]> messages = new ArrayList<>();
+    messages.add(new byte[][]{null, ddl("{\"query\":\"create table u(id bigint)\",\"type\":3,"
+        + "\"schema\":\"test\",\"table\":\"u\",\"commitTs\":429918007904436225}")});
+    messages.add(new byte[][]{key(1), row(1, "a", 429918007904436226L)});
+    messages.add(new byte[][]{null, new Writer(otherSchema).writeLong(7).writeString("u")
+        .writeLong(429918007904436227L).toByteArray()});
+    messages.add(new byte[][]{key(1), null});
+    messages.add(new byte[][]{null, checkpoint(429918007904436228L)});
+    final List<Event> all = new ArrayList<>();
+    for (byte[][] message : messages) {
+      Codec.avro(registry).decode(message[0], message[1]).forEach(all::add);
+    }
+    Assert.assertEquals(5, all.size());
+    for (KeyFilter filter : new KeyFilter[]{
+        new KeyFilter(null, null, null, 429918007904436226L),
+        new KeyFilter(EnumSet.of(Type.DDL), null, null, 0),
+        new KeyFilter(null, null, Collections.singleton("u"), 0),
+        new KeyFilter(null, Collections.singleton("no_such_schema"), null, 0)}) {
+      final Codec codec = Codec.avro(registry, filter);
+      final List<Event> filtered = new ArrayList<>();
+      for (byte[][] message : messages) {
+        codec.decode(message[0], message[1]).forEach(filtered::add);
+      }
+      Expect.verifyFiltered(all, filter, filtered.iterator());
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.tidb.bigdata.cdc;
+
+import io.tidb.bigdata.cdc.Key.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CanalJsonDecoderTest {
+  private static final Codec CODEC = Codec.canalJson();
+
+  private static final String INSERT = "{\"id\":0,\"database\":\"test\",\"table\":\"t\","
+      + "\"pkNames\":[\"id\"],\"isDdl\":false,\"type\":\"INSERT\",\"es\":1639633094670,"
+      + "\"ts\":1639633095489,\"sql\":\"\",\"sqlType\":{\"id\":4,\"name\":12,\"price\":3,"
+      + "\"big\":-5,\"data\":2004},\"mysqlType\":{\"id\":\"int\",\"name\":\"varchar(32)\","
+      + "\"price\":\"decimal(10,2)\",\"big\":\"bigint unsigned\",\"data\":\"blob\"},"
+      + "\"data\":[{\"id\":\"1\",\"name\":\"a\",\"price\":\"1.50\","
+      + "\"big\":\"18446744073709551615\",\"data\":\"\\u00ff\"},"
+      + "{\"id\":\"2\",\"name\":null,\"price\":\"2.00\",\"big\":\"0\",\"data\":null}],"
+      + "\"old\":null,\"_tidb\":{\"commitTs\":429918007904436226}}";
+
+  private static final String UPDATE = "{\"id\":0,\"database\":\"test\",\"table\":\"t\","
+      + "\"pkNames\":[\"id\"],\"isDdl\":false,\"type\":\"UPDATE\",\"es\":1639633094670,"
+      + "\"ts\":1639633095489,\"sql\":\"\",\"mysqlType\":{\"id\":\"int\","
+      + "\"name\":\"varchar(32)\"},\"data\":[{\"id\":\"1\",\"name\":\"b\"}],"
+      + "\"old\":[{\"name\":\"a\"}]}";
+
+  private static final String DELETE = "{\"id\":0,\"database\":\"test\",\"table\":\"u\","
+      + "\"pkNames\":null,\"isDdl\":false,\"type\":\"DELETE\",\"es\":1639633094670,"
+      + "\"ts\":1639633095489,\"sql\":\"\",\"mysqlType\":{\"id\":\"int\"},"
+      + "\"data\":[{\"id\":\"3\"}],\"old\":null,\"_tidb\":{\"commitTs\":429918007904436227}}";
+
+  private static final String DDL = "{\"id\":0,\"database\":\"test\",\"table\":\"t\","
+      + "\"pkNames\":null,\"isDdl\":true,\"type\":\"CREATE\",\"es\":1639633094670,"
+      + "\"ts\":1639633095489,\"sql\":\"create table t(id int primary key)\",\"sqlType\":null,"
+      + "\"mysqlType\":null,\"data\":null,\"old\":null,"
+      + "\"_tidb\":{\"commitTs\":429918007904436225}}";
+
+  private static final String WATERMARK = "{\"id\":0,\"database\":\"\",\"table\":\"\","
+      + "\"pkNames\":null,\"isDdl\":false,\"type\":\"TIDB_WATERMARK\",\"es\":1639633094670,"
+      + "\"ts\":1639633095489,\"sql\":\"\",\"sqlType\":null,\"mysqlType\":null,\"data\":null,"
+      + "\"old\":null,\"_tidb\":{\"watermarkTs\":429918007904436228}}";
+
+  private static EventDecoder decode(final Codec codec, final String... messages) {
+    return codec.decode(String.join("\n", messages).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDecodeInsert() {
+    final List<Event> events = new ArrayList<>();
+    decode(CODEC, INSERT).forEach(events::add);
+    Assert.assertEquals(2, events.size());
+    final Event event = events.get(0);
+    Assert.assertEquals(Type.ROW_CHANGED, event.getType());
+    Assert.assertEquals("test", event.getSchema());
+    Assert.assertEquals("t", event.getTable());
+    Assert.assertEquals(429918007904436226L, event.getTs());
+    Assert.assertTrue(event.getValue() instanceof RowInsertedValue);
+    final RowColumn[] columns = event.asRowChanged().getNewValue();
+    Assert.assertEquals(5, columns.length);
+    Assert.assertEquals(1, columns[0].getValue());
+    Assert.assertTrue(columns[0].isWhereHandle());
+    Assert.assertTrue(RowColumn.isPrimaryKey(columns[0].getFlags()));
+    Assert.assertEquals("a", columns[1].getValue());
+    Assert.assertFalse(columns[1].isWhereHandle());
+    Assert.assertEquals(new BigDecimal("1.50"), columns[2].getValue());
+    Assert.assertEquals(new BigInteger("18446744073709551615"), columns[3].getOriginalValue());
+    Assert.assertTrue(RowColumn.isUnsigned(columns[3].getFlags()));
+    // blob shares the type code with text, the binary flag tells them apart
+    Assert.assertArrayEquals(new byte[]{(byte) 0xff}, (byte[]) columns[4].getOriginalValue());
+    Assert.assertTrue(RowColumn.isBinary(columns[4].getFlags()));
+
+    final RowColumn[] second = events.get(1).asRowChanged().getNewValue();
+    Assert.assertEquals(2, second[0].getValue());
+    Assert.assertNull(second[1].getOriginalValue());
+    Assert.assertNull(second[4].getOriginalValue());
+  }
+
+  @Test
+  public void testDecodeUpdateAndDelete() {
+    final EventDecoder decoder = decode(CODEC, UPDATE, DELETE);
+    Event event = decoder.next();
+    Assert.assertTrue(event.getValue() instanceof RowUpdatedValue);
+    // without the TiDB extension the ts comes from the execution time
+    Assert.assertEquals(Key.fromTimestamp(1639633094670L), event.getTs());
+    final RowColumn[] oldColumns = event.asRowChanged().getOldValue();
+    final RowColumn[] newColumns = event.asRowChanged().getNewValue();
+    Assert.assertEquals(1, oldColumns[0].getValue());
+    Assert.assertEquals("a", oldColumns[1].getValue());
+    Assert.assertEquals(1, newColumns[0].getValue());
+    Assert.assertEquals("b", newColumns[1].getValue());
+
+    event = decoder.next();
+    Assert.assertTrue(event.getValue() instanceof RowDeletedValue);
+    Assert.assertEquals("u", event.getTable());
+    Assert.assertEquals(3, event.asRowChanged().getOldValue()[0].getValue());
+    Assert.assertFalse(event.asRowChanged().getOldValue()[0].isWhereHandle());
+    Assert.assertFalse(decoder.hasNext());
+  }
+
+  @Test
+  public void testDecodeDDLAndWatermark() {
+    final EventDecoder decoder = decode(CODEC, DDL, WATERMARK);
+    Event event = decoder.next();
+    Assert.assertEquals(Type.DDL, event.getType());
+    Assert.assertEquals(DDLValue.Type.CREATE_TABLE, event.asDDL().getType());
+    Assert.assertEquals("create table t(id int primary key)", event.asDDL().getQuery());
+    Assert.assertEquals("test", event.getSchema());
+    Assert.assertEquals("t", event.getTable());
+    Assert.assertEquals(429918007904436225L, event.getTs());
+
+    event = decoder.next();
+    Assert.assertEquals(Type.RESOLVED, event.getType());
+    Assert.assertNull(event.getSchema());
+    Assert.assertNull(event.getTable());
+    Assert.assertEquals(429918007904436228L, event.getTs());
+    Assert.assertFalse(decoder.hasNext());
+  }
+
+  @Test
+  public void testFilter() {
+    final String[] messages = new String[]{DDL, INSERT, UPDATE, DELETE, WATERMARK};
+    final List<Event> all = new ArrayList<>();
+    decode(CODEC, messages).forEach(all::add);
+    Assert.assertEquals(6, all.size());
+    for (KeyFilter filter : new KeyFilter[]{
+        new KeyFilter(null, null, null, 429918007904436226L),
+        new KeyFilter(EnumSet.of(Type.DDL), null, null, 0),
+        new KeyFilter(null, null, Collections.singleton("u"), 0),
+        new KeyFilter(null, Collections.singleton("no_such_schema"), null, 0)}) {
+      final Codec codec = Codec.canalJson(filter);
+      Expect.verifyFiltered(all, filter, decode(codec, messages));
+      Expect.verifyFiltered(all, filter, Arrays.asList(EventChunkDecoder.canalJson(
+          String.join(" ", messages).getBytes(StandardCharsets.UTF_8), filter).next())
+          .iterator());
+    }
+  }
+}
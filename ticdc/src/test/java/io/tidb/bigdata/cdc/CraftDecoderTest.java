@@ -18,9 +18,16 @@ package io.tidb.bigdata.cdc;
 
 
 import static io.tidb.bigdata.cdc.FileLoader.decode;
+import static io.tidb.bigdata.cdc.FileLoader.listFiles;
 
 import io.tidb.bigdata.cdc.Key.Type;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -92,6 +99,67 @@ public class CraftDecoderTest {
     });
   }
 
+  @Test
+  public void testProjection() throws IOException {
+    for (String fileName : new String[]{"row_0", "row_1", "row_2"}) {
+      for (Event evt : decode(CODEC, fileName)) {
+        final RowColumn[] columns = evt.asRowChanged().getNewValue();
+        final RowColumn last = columns[columns.length - 1];
+        final Codec projected = Codec.craft(Collections.singleton(last.getName()));
+        for (Event projectedEvt : decode(projected, fileName)) {
+          Assert.assertEquals(evt.getKey(), projectedEvt.getKey());
+          final RowColumn[] projectedColumns = projectedEvt.asRowChanged().getNewValue();
+          Assert.assertEquals(1, projectedColumns.length);
+          Assert.assertEquals(last.getName(), projectedColumns[0].getName());
+          Assert.assertEquals(last.getType(), projectedColumns[0].getType());
+          Assert.assertTrue(Objects.deepEquals(last.getOriginalValue(),
+              projectedColumns[0].getOriginalValue()));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFilter() throws IOException {
+    for (File file : listFiles(CODEC, "value")) {
+      final List<Event> all = new ArrayList<>();
+      decode(CODEC, file.getName()).forEach(all::add);
+      for (Event evt : all) {
+        for (KeyFilter filter : new KeyFilter[]{
+            new KeyFilter(null, null, null, evt.getTs() + 1),
+            new KeyFilter(EnumSet.of(Type.DDL), null, null, 0),
+            new KeyFilter(null, null, Collections.singleton(evt.getTable()), 0),
+            new KeyFilter(null, Collections.singleton("no_such_schema"), null, 0)}) {
+          final Codec codec = Codec.craft(null, filter);
+          Expect.verifyFiltered(all, filter, decode(codec, file.getName()));
+          Expect.verifyFiltered(all, filter, decode(codec, file.getName()).iterator());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testInternedNames() throws IOException {
+    for (String fileName : new String[]{"row_0", "row_1", "row_2"}) {
+      final List<Event> first = new ArrayList<>();
+      decode(CODEC, fileName).forEach(first::add);
+      int idx = 0;
+      for (Event evt : decode(CODEC, fileName)) {
+        final Event expected = first.get(idx++);
+        Assert.assertEquals(expected.getKey(), evt.getKey());
+        Assert.assertSame(expected.getSchema(), evt.getSchema());
+        Assert.assertSame(expected.getTable(), evt.getTable());
+        final RowColumn[] expectedColumns = expected.asRowChanged().getNewValue();
+        final RowColumn[] columns = evt.asRowChanged().getNewValue();
+        Assert.assertEquals(expectedColumns.length, columns.length);
+        for (int column = 0; column < columns.length; ++column) {
+          Assert.assertSame(expectedColumns[column].getName(), columns[column].getName());
+        }
+      }
+      Assert.assertEquals(first.size(), idx);
+    }
+  }
+
   @Test
   public void testDDL() throws IOException {
     long lastTs = verifyDDL("ddl_0", -1,
@@ -17,6 +17,9 @@
 package io.tidb.bigdata.cdc;
 
 import io.tidb.bigdata.cdc.RowColumn.Type;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 import java.util.function.BiConsumer;
 import org.junit.Assert;
 
@@ -96,4 +99,38 @@ public class Expect {
       }
     }
   }
-}
\ No newline at end of file
+
+  /*
+   * Verify that the events decoded with the filter are the accepted ones of all the events
+   */
+  public static void verifyFiltered(final List<Event> all, final KeyFilter filter,
+      final Iterator<Event> filtered) {
+    for (final Event expected : all) {
+      if (!filter.accept(expected.getKey())) {
+        continue;
+      }
+      Assert.assertTrue(filtered.hasNext());
+      final Event event = filtered.next();
+      Assert.assertEquals(expected.getKey(), event.getKey());
+      Assert.assertEquals(expected.getValue().getClass(), event.getValue().getClass());
+      if (event.getType() == Key.Type.ROW_CHANGED) {
+        verifyColumns(expected.asRowChanged().getOldValue(), event.asRowChanged().getOldValue());
+        verifyColumns(expected.asRowChanged().getNewValue(), event.asRowChanged().getNewValue());
+      }
+    }
+    Assert.assertFalse(filtered.hasNext());
+  }
+
+  private static void verifyColumns(final RowColumn[] expected, final RowColumn[] columns) {
+    if (expected == null) {
+      Assert.assertNull(columns);
+      return;
+    }
+    Assert.assertEquals(expected.length, columns.length);
+    for (int idx = 0; idx < expected.length; idx++) {
+      Assert.assertEquals(expected[idx].getName(), columns[idx].getName());
+      Assert.assertTrue(Objects.deepEquals(expected[idx].getOriginalValue(),
+          columns[idx].getOriginalValue()));
+    }
+  }
+}
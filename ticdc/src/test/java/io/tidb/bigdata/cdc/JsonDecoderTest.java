@@ -24,7 +24,14 @@ import static io.tidb.bigdata.cdc.FileLoader.listFiles;
 import io.tidb.bigdata.cdc.Key.Type;
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -91,6 +98,32 @@ public class JsonDecoderTest {
     return lastTs;
   }
 
+  @Test
+  public void testDecodeTokens() {
+    final byte[] json = ("{\"u\": {"
+        + "\"a\": {\"t\": 15, \"v\": \"x\\\"\\u00e9\\n\u4e2dy\"},"
+        + "\"b\": {\"t\": 8, \"f\": 128, \"v\": 18446744073709551615},"
+        + "\"c\": {\"v\": 1.5e3, \"t\": 5},"
+        + "\"d\": {\"t\": 3, \"h\": true, \"v\": -7},"
+        + "\"e\": {\"t\": 8, \"v\": 4294967296},"
+        + "\"f\": {\"t\": 15, \"v\": null}}}").getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer value = ByteBuffer.allocate(Long.BYTES + json.length);
+    value.putLong(json.length).put(json);
+    final RowColumn[] columns =
+        ((RowInsertedValue) ValueDecoder.json(value.array()).next()).getNewValue();
+    Assert.assertEquals(6, columns.length);
+    Assert.assertEquals("a", columns[0].getName());
+    Assert.assertEquals("x\"\u00e9\n\u4e2dy", columns[0].getOriginalValue());
+    Assert.assertEquals(new BigInteger("18446744073709551615"), columns[1].getOriginalValue());
+    Assert.assertTrue(RowColumn.isUnsigned(columns[1].getFlags()));
+    Assert.assertEquals(1500.0, columns[2].getOriginalValue());
+    Assert.assertEquals(RowColumn.Type.DOUBLE, columns[2].getType());
+    Assert.assertEquals(-7, columns[3].getOriginalValue());
+    Assert.assertTrue(columns[3].isWhereHandle());
+    Assert.assertEquals(4294967296L, columns[4].getOriginalValue());
+    Assert.assertNull(columns[5].getOriginalValue());
+  }
+
   @Test
   public void testDecodeAll() throws IOException {
     final File[] keyTests = listFiles(CODEC, "key");
@@ -111,6 +144,25 @@ public class JsonDecoderTest {
     }
   }
 
+  @Test
+  public void testFilter() throws IOException {
+    for (File file : listFiles(CODEC, "value")) {
+      final List<Event> all = new ArrayList<>();
+      decode(CODEC, file.getName()).forEach(all::add);
+      for (Event evt : all) {
+        for (KeyFilter filter : new KeyFilter[]{
+            new KeyFilter(null, null, null, evt.getTs() + 1),
+            new KeyFilter(EnumSet.of(Type.DDL), null, null, 0),
+            new KeyFilter(null, null, Collections.singleton(evt.getTable()), 0),
+            new KeyFilter(null, Collections.singleton("no_such_schema"), null, 0)}) {
+          final Codec codec = Codec.json(filter);
+          Expect.verifyFiltered(all, filter, decode(codec, file.getName()));
+          Expect.verifyFiltered(all, filter, decode(codec, file.getName()).iterator());
+        }
+      }
+    }
+  }
+
   @Test
   public void testDDL() throws IOException {
     long lastTs = verifyDDL("ddl_0", -1,
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.cdc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Micro benchmark of the partition queue of EventStream against the blocking queues of the JDK,
+ * it is not run by the tests. Run it from the ticdc module with:
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *       io.tidb.bigdata.cdc.QueueBenchmark [queue...]
+ *
+ * For every queue it reports the time to pass events from a producer thread to a consumer thread
+ * through a queue of CAPACITY events, and the CPU time burnt by a consumer waiting on an empty
+ * queue for IDLE_MILLIS. Busy spinning needs a spare core for each of the two threads.
+ */
+public final class QueueBenchmark {
+
+  private static final int CAPACITY = 1024;
+  private static final int EVENTS = 2_000_000;
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+  private static final long IDLE_MILLIS = 1000;
+
+  private interface Queue {
+    void put(final Event event) throws InterruptedException;
+
+    Event take() throws InterruptedException;
+  }
+
+  private static Queue spsc(final WaitStrategy waitStrategy) {
+    final SpscEventQueue queue = new SpscEventQueue(CAPACITY, waitStrategy);
+    return new Queue() {
+      @Override
+      public void put(final Event event) throws InterruptedException {
+        queue.put(event);
+      }
+
+      @Override
+      public Event take() throws InterruptedException {
+        return queue.take();
+      }
+    };
+  }
+
+  private static Queue jdk(final BlockingQueue<Event> queue) {
+    return new Queue() {
+      @Override
+      public void put(final Event event) throws InterruptedException {
+        queue.put(event);
+      }
+
+      @Override
+      public Event take() throws InterruptedException {
+        return queue.take();
+      }
+    };
+  }
+
+  private static Queue create(final String name) {
+    switch (name) {
+      case "LinkedBlockingQueue":
+        return jdk(new LinkedBlockingQueue<>(CAPACITY));
+      case "ArrayBlockingQueue":
+        return jdk(new ArrayBlockingQueue<>(CAPACITY));
+      default:
+        return spsc(WaitStrategy.valueOf(name));
+    }
+  }
+
+  private static Thread start(final String name, final Runnable runnable) {
+    final Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  /*
+   * Nanoseconds per event passed from the producer to the consumer
+   */
+  private static double transfer(final Queue queue, final Event event) throws Exception {
+    final Thread producer = start("producer", () -> {
+      try {
+        for (int idx = 0; idx < EVENTS; ++idx) {
+          queue.put(event);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    final long start = System.nanoTime();
+    for (int idx = 0; idx < EVENTS; ++idx) {
+      if (queue.take() != event) {
+        throw new IllegalStateException("Unexpected event");
+      }
+    }
+    final long elapsed = System.nanoTime() - start;
+    producer.join();
+    return (double) elapsed / EVENTS;
+  }
+
+  /*
+   * Milliseconds of CPU time spent by a consumer waiting on an empty queue
+   */
+  private static double idle(final Queue queue, final Event event) throws Exception {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    final AtomicLong cpuNanos = new AtomicLong();
+    final Thread consumer = start("consumer", () -> {
+      try {
+        final long start = threads.getCurrentThreadCpuTime();
+        queue.take();
+        cpuNanos.set(threads.getCurrentThreadCpuTime() - start);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    Thread.sleep(IDLE_MILLIS);
+    queue.put(event);
+    consumer.join();
+    return cpuNanos.get() / 1e6;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final Event event = new Event(new Key("test", "t", 0, Key.Type.ROW_CHANGED.code(), 1),
+        new RowInsertedValue(new RowColumn[0]));
+    final String[] queues = args.length > 0 ? args : new String[]{
+        "BUSY_SPIN", "YIELD", "PARK", "BLOCK", "LinkedBlockingQueue", "ArrayBlockingQueue"};
+    System.out.printf("%-20s %16s %24s%n", "queue", "ns/event", "idle CPU ms per second");
+    for (final String name : queues) {
+      for (int run = 0; run < WARMUP_RUNS; ++run) {
+        transfer(create(name), event);
+      }
+      final double[] nanos = new double[RUNS];
+      for (int run = 0; run < RUNS; ++run) {
+        nanos[run] = transfer(create(name), event);
+      }
+      Arrays.sort(nanos);
+      final double idleMillis = idle(create(name), event) * 1000 / IDLE_MILLIS;
+      System.out.printf("%-20s %16.1f %24.1f%n", name, nanos[RUNS / 2], idleMillis);
+    }
+  }
+}
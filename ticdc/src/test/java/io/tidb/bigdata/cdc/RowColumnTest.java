@@ -26,15 +26,18 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalQueries;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Random;
 import java.util.function.BiConsumer;
 import junit.framework.TestCase;
 import org.junit.Assert;
@@ -153,8 +156,7 @@ public class RowColumnTest extends TestCase {
 
   @Test
   public void testDecode() {
-    for (final JsonValueDecoder it = new JsonValueDecoder(value,
-        ParserFactory.json().createParser());
+    for (final JsonValueDecoder it = new JsonValueDecoder(value);
         it.hasNext(); ) {
       final RowInsertedValue insert = (RowInsertedValue) it.next();
       Assert.assertEquals(insert.getNewValue().length, 27);
@@ -180,6 +182,65 @@ public class RowColumnTest extends TestCase {
     runCoercionTests(createFromStringCoercionTests());
   }
 
+  private static RowColumn column(final Object value, final Type type) {
+    return new RowColumn("c", value, false, type.code(), 0);
+  }
+
+  @Test
+  public void testPrimitiveAccessors() {
+    Assert.assertTrue(column(null, Type.BIGINT).isNullValue());
+    Assert.assertNull(column(null, Type.BIGINT).getValue());
+    Assert.assertEquals(-7L, column(-7L, Type.BIGINT).getLong());
+    Assert.assertEquals(Long.MIN_VALUE,
+        column("-9223372036854775808", Type.BIGINT).getLong());
+    Assert.assertEquals(Long.MAX_VALUE, column("9223372036854775807", Type.BIGINT).getLong());
+    Assert.assertEquals(3, column(3L, Type.INT).getInt());
+    Assert.assertTrue(column(1L, Type.TINYINT).getBoolean());
+    Assert.assertFalse(column("0", Type.TINYINT).getBoolean());
+    Assert.assertEquals(1.5, column("1.5", Type.DOUBLE).getDouble(), 0);
+    Assert.assertEquals(2.5f, column(2.5, Type.FLOAT).getFloat(), 0);
+
+    Assert.assertEquals(LocalTime.of(23, 59, 59, 120000000).toNanoOfDay(),
+        column("23:59:59.12", Type.TIME).getNanoOfDay());
+    Assert.assertEquals(-((838 * 60 + 59) * 60 + 59) * 1000000000L,
+        column("-838:59:59", Type.TIME).getNanoOfDay());
+
+    final RowColumn decimal = column("-0012.340", Type.DECIMAL);
+    Assert.assertEquals(3, decimal.getDecimalScale());
+    Assert.assertEquals(-12340, decimal.getUnscaledLong());
+    Assert.assertEquals(0, column("42", Type.DECIMAL).getDecimalScale());
+    Assert.assertEquals(-1, column("1234567890.1234567891", Type.DECIMAL).getDecimalScale());
+    Assert.assertEquals(2, column(new BigDecimal("1.25"), Type.DECIMAL).getDecimalScale());
+    Assert.assertEquals(125, column(new BigDecimal("1.25"), Type.DECIMAL).getUnscaledLong());
+
+    for (String invalid : new String[]{"2021-02-29", "2021-13-01", "0000-00-00", "2021-1-01"}) {
+      try {
+        column(invalid, Type.DATE).getEpochDay();
+        Assert.fail("Parsed invalid date " + invalid);
+      } catch (IllegalArgumentException expected) {
+        // expected
+      }
+    }
+
+    // the hand written parsers must agree with java.time
+    final Random random = new Random(42);
+    for (int idx = 0; idx < 10000; idx++) {
+      final LocalDateTime dateTime = LocalDateTime.of(random.nextInt(9999) + 1,
+          random.nextInt(12) + 1, random.nextInt(28) + 1, random.nextInt(24),
+          random.nextInt(60), random.nextInt(60), random.nextInt(1000000) * 1000);
+      final String date = dateTime.toLocalDate().toString();
+      final String time = dateTime.toLocalTime().format(RowColumn.SQL_TIME_FORMAT);
+      Assert.assertEquals(dateTime.toLocalDate().toEpochDay(),
+          column(date, Type.DATE).getEpochDay());
+      Assert.assertEquals(dateTime.toLocalTime().toNanoOfDay(),
+          column(time, Type.TIME).getNanoOfDay());
+      final long micros = dateTime.toEpochSecond(ZoneOffset.UTC) * 1000000
+          + dateTime.getNano() / 1000;
+      Assert.assertEquals(micros, column(date + " " + time, Type.DATETIME).getEpochMicros());
+      Assert.assertEquals(micros, column(dateTime, Type.DATETIME).getEpochMicros());
+    }
+  }
+
   private static class CoercionTest {
 
     final Object from;
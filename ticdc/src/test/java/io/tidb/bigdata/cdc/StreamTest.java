@@ -21,12 +21,20 @@ import static io.tidb.bigdata.cdc.FileLoader.getFile;
 import static io.tidb.bigdata.cdc.FileLoader.getFileContent;
 
 import io.tidb.bigdata.cdc.json.JsonParser;
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class StreamTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private byte[][] loadFiles(final String prefix, final int number) throws IOException {
     final byte[][] files = new byte[number][];
     for (int idx = 0; idx < number; ++idx) {
@@ -57,6 +65,193 @@ public class StreamTest {
     Assert.assertEquals(expectedCount, 0);
   }
 
+  private void testEvents(final String prefix, final int number)
+      throws IOException, InterruptedException {
+    final byte[][] keys = loadFiles("key/" + prefix, number);
+    final byte[][] values = loadFiles("value/" + prefix, number);
+    final EventStream stream = new EventStream();
+    int expectedCount = 0;
+    for (int idx = 0; idx < number; ++idx) {
+      expectedCount += stream
+          .put(0, EventChunkDecoder.create(keys[idx], values[idx]).next());
+    }
+
+    Event event;
+    long lastTs = -1;
+    while ((event = stream.poll(0)) != null) {
+      Assert.assertTrue(lastTs < event.getTs());
+      lastTs = event.getTs();
+      expectedCount--;
+    }
+
+    Assert.assertEquals(expectedCount, 0);
+  }
+
+  @Test
+  public void testQueue() throws IOException, InterruptedException {
+    final Event event = EventChunkDecoder.create(loadFiles("key/row_", 1)[0],
+        loadFiles("value/row_", 1)[0], ParserFactory.json().createParser()).next()[0];
+    final int total = 100000;
+    for (int capacity : new int[]{1, 16, Integer.MAX_VALUE}) {
+      final SpscEventQueue queue = new SpscEventQueue(capacity, WaitStrategy.YIELD);
+      final Thread producer = new Thread(() -> {
+        try {
+          for (int idx = 0; idx < total; ++idx) {
+            queue.put(event);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      producer.start();
+      final Event[] buffer = new Event[64];
+      int count = 0;
+      while (count < total) {
+        Assert.assertSame(event, queue.take());
+        count++;
+        count += queue.drainTo(buffer, 0, Math.min(buffer.length, total - count));
+      }
+      producer.join();
+      Assert.assertNull(queue.poll());
+    }
+  }
+
+  private static void awaitParked(final Thread thread) throws InterruptedException {
+    // parked without a timeout, i.e. it stays asleep until it is signalled
+    while (thread.getState() != Thread.State.WAITING) {
+      Assert.assertTrue(thread.isAlive());
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testBlockingQueue() throws IOException, InterruptedException {
+    final Event event = EventChunkDecoder.create(loadFiles("key/row_", 1)[0],
+        loadFiles("value/row_", 1)[0]).next()[0];
+    final int total = 100000;
+    for (int capacity : new int[]{1, 16, Integer.MAX_VALUE}) {
+      final SpscEventQueue queue = new SpscEventQueue(capacity, WaitStrategy.BLOCK);
+      final Thread producer = new Thread(() -> {
+        try {
+          for (int idx = 0; idx < total; ++idx) {
+            queue.put(event);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      producer.start();
+      for (int count = 0; count < total; ++count) {
+        Assert.assertSame(event, queue.take());
+        if (count % 10000 == 0 && capacity != Integer.MAX_VALUE) {
+          // let the producer park on the full queue
+          awaitParked(producer);
+        }
+      }
+      producer.join();
+      Assert.assertNull(queue.poll());
+      Assert.assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  public void testBlockingTake() throws IOException, InterruptedException {
+    final Event row = EventChunkDecoder.create(loadFiles("key/row_", 1)[0],
+        loadFiles("value/row_", 1)[0]).next()[0];
+    try (PartitionedStream stream = new PartitionedStream(1, WaitStrategy.BLOCK,
+        new SpillLog(folder.newFolder(), 4096))) {
+      final int total = 3;
+      final AtomicLongArray taken = new AtomicLongArray(total);
+      final Thread consumer = new Thread(() -> {
+        try {
+          for (int idx = 0; idx < total; ++idx) {
+            taken.set(idx, stream.take().getTs());
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      consumer.start();
+      awaitParked(consumer);
+      stream.put(new Event(new Key(row.getSchema(), row.getTable(), row.getPartition(),
+          Key.Type.ROW_CHANGED.code(), 1), row.getValue()));
+      while (taken.get(0) == 0) {
+        Thread.sleep(1);
+      }
+      // the queue holds a single event, the others are spilled
+      awaitParked(consumer);
+      stream.put(new Event[]{
+          new Event(new Key(row.getSchema(), row.getTable(), row.getPartition(),
+              Key.Type.ROW_CHANGED.code(), 2), row.getValue()),
+          new Event(new Key(row.getSchema(), row.getTable(), row.getPartition(),
+              Key.Type.ROW_CHANGED.code(), 3), row.getValue())});
+      consumer.join(10000);
+      Assert.assertFalse(consumer.isAlive());
+      for (int idx = 0; idx < total; ++idx) {
+        Assert.assertEquals(idx + 1, taken.get(idx));
+      }
+    }
+  }
+
+  @Test
+  public void testSpill() throws IOException, InterruptedException {
+    final Event row = EventChunkDecoder.create(loadFiles("key/row_", 1)[0],
+        loadFiles("value/row_", 1)[0], ParserFactory.json().createParser()).next()[0];
+    final int total = 10000;
+    try (PartitionedStream stream = new PartitionedStream(4, WaitStrategy.YIELD,
+        new SpillLog(folder.newFolder(), 4096))) {
+      final Thread producer = new Thread(() -> {
+        try {
+          for (int idx = 1; idx <= total; ++idx) {
+            stream.put(new Event(new Key(row.getSchema(), row.getTable(), row.getPartition(),
+                Key.Type.ROW_CHANGED.code(), idx), row.getValue()));
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      producer.start();
+      for (int idx = 1; idx <= total; ++idx) {
+        final Event event = stream.take();
+        Assert.assertEquals(idx, event.getTs());
+        Assert.assertEquals(row.getKey().getTable(), event.getTable());
+        Assert.assertEquals(row.getValue(), event.getValue());
+      }
+      producer.join();
+      Assert.assertNull(stream.poll());
+    }
+  }
+
+  @Test
+  public void testSpillLog() throws IOException {
+    final File directory = folder.newFolder();
+    final StringBuilder builder = new StringBuilder();
+    for (int idx = 0; idx < 100000; ++idx) {
+      builder.append((char) ('a' + idx % 26));
+    }
+    // larger than both the segments and the read buffer
+    final String large = builder.toString();
+    final int total = 10;
+    try (SpillLog spill = new SpillLog(directory, 4096)) {
+      for (int idx = 1; idx <= total; ++idx) {
+        spill.append(new Event(new Key("test", "t", 0, Key.Type.ROW_CHANGED.code(), idx),
+            new RowInsertedValue(new RowColumn[]{
+                new RowColumn("v", idx % 2 == 0 ? large : "small", false, 15, 0)})));
+      }
+      for (int idx = 1; idx <= total; ++idx) {
+        final Event event = spill.poll();
+        Assert.assertEquals(idx, event.getTs());
+        Assert.assertEquals(idx % 2 == 0 ? large : "small",
+            event.asRowChanged().getNewValue()[0].getValue());
+      }
+      Assert.assertNull(spill.poll());
+      Assert.assertTrue(spill.isEmpty());
+      // fully read segments are deleted, except for the one being written
+      Assert.assertEquals(1, directory.list().length);
+    }
+    Assert.assertEquals(0, directory.list().length);
+  }
+
   @Test
   public void test() throws IOException, InterruptedException {
     JsonParser parser = ParserFactory.json().createParser();
@@ -64,4 +259,11 @@ public class StreamTest {
     testEvents(parser, "row_", 3);
     testEvents(parser, "rts_", 3);
   }
+
+  @Test
+  public void testWithoutParser() throws IOException, InterruptedException {
+    testEvents("ddl_", 3);
+    testEvents("row_", 3);
+    testEvents("rts_", 3);
+  }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.cdc.craft;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Micro benchmark of the varint chunk decoders of Codec, which decode the varints of a chunk one
+ * by one, against unpacking the leading single byte varints of 8 bytes loaded at once as a little
+ * endian word, it is not run by the tests. Run it from the ticdc module with:
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *       io.tidb.bigdata.cdc.craft.CodecBenchmark
+ *
+ * Chunks hold CHUNK_SIZE varints, like the columns of a row group, and the message holds CHUNKS
+ * of them. Single byte chunks are like types, flags and size deltas, mixed chunks have a quarter
+ * of single byte values, the others of every length.
+ */
+public final class CodecBenchmark {
+
+  private static final int CHUNK_SIZE = 64;
+  private static final int CHUNKS = 16384;
+  private static final int WARMUP_RUNS = 10;
+  private static final int RUNS = 15;
+  // the highest bit of every byte in a little endian word
+  private static final long CONTINUATION_BITS = 0x8080808080808080L;
+
+  private interface Decoder {
+    /*
+     * Decode every chunk of the message, returns a checksum so the work is not optimized away
+     */
+    long decode(final byte[] message, final long[] buffer);
+  }
+
+  private static final Decoder CODEC = (message, buffer) -> {
+    final Codec codec = new Codec(message);
+    long sum = 0;
+    for (int chunk = 0; chunk < CHUNKS; ++chunk) {
+      sum += codec.decodeUvarintChunk(CHUNK_SIZE, buffer)[CHUNK_SIZE - 1];
+    }
+    return sum;
+  };
+
+  private static final Decoder WORD_BY_WORD = (message, buffer) -> {
+    final int[] pos = new int[1];
+    long sum = 0;
+    for (int chunk = 0; chunk < CHUNKS; ++chunk) {
+      decodeWordByWord(message, pos, buffer);
+      sum += buffer[CHUNK_SIZE - 1];
+    }
+    return sum;
+  };
+
+  private static void decodeWordByWord(final byte[] message, final int[] pos,
+      final long[] result) {
+    int idx = 0;
+    while (idx < CHUNK_SIZE) {
+      if (CHUNK_SIZE - idx >= Long.BYTES && message.length - pos[0] >= Long.BYTES) {
+        final long word = getRawLittleEndian64(message, pos[0]);
+        final int singles = Long.numberOfTrailingZeros(word & CONTINUATION_BITS) >>> 3;
+        for (int shift = 0; shift < singles * Byte.SIZE; shift += Byte.SIZE) {
+          result[idx++] = (word >>> shift) & 0xff;
+        }
+        pos[0] += singles;
+        if (singles == Long.BYTES) {
+          continue;
+        }
+      }
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        final byte b = message[pos[0]++];
+        value |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          break;
+        }
+      }
+      result[idx++] = value;
+    }
+  }
+
+  private static long getRawLittleEndian64(final byte[] buffer, final int pos) {
+    return (((buffer[pos] & 0xffL))
+        | ((buffer[pos + 1] & 0xffL) << 8)
+        | ((buffer[pos + 2] & 0xffL) << 16)
+        | ((buffer[pos + 3] & 0xffL) << 24)
+        | ((buffer[pos + 4] & 0xffL) << 32)
+        | ((buffer[pos + 5] & 0xffL) << 40)
+        | ((buffer[pos + 6] & 0xffL) << 48)
+        | ((buffer[pos + 7] & 0xffL) << 56));
+  }
+
+  private static void encodeUvarint(final ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static byte[] message(final boolean singleByte) {
+    final Random random = new Random(42);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int idx = 0; idx < CHUNK_SIZE * CHUNKS; ++idx) {
+      final long value;
+      if (singleByte || random.nextInt(4) == 0) {
+        value = random.nextInt(128);
+      } else {
+        value = random.nextLong() >>> random.nextInt(64);
+      }
+      encodeUvarint(out, value);
+    }
+    return out.toByteArray();
+  }
+
+  /*
+   * Median nanoseconds per varint
+   */
+  private static double run(final byte[] message, final Decoder decoder) {
+    final long[] buffer = new long[CHUNK_SIZE];
+    final double[] nanos = new double[RUNS];
+    long checksum = 0;
+    for (int run = 0; run < WARMUP_RUNS + RUNS; ++run) {
+      final long start = System.nanoTime();
+      checksum += decoder.decode(message, buffer);
+      final long elapsed = System.nanoTime() - start;
+      if (run >= WARMUP_RUNS) {
+        nanos[run - WARMUP_RUNS] = (double) elapsed / (CHUNK_SIZE * CHUNKS);
+      }
+    }
+    if (checksum == 42) {
+      System.out.println();
+    }
+    Arrays.sort(nanos);
+    return nanos[RUNS / 2];
+  }
+
+  public static void main(final String[] args) {
+    System.out.printf("%-12s %16s %16s%n", "chunks", "Codec ns", "word by word ns");
+    for (final boolean singleByte : new boolean[]{true, false}) {
+      final byte[] message = message(singleByte);
+      System.out.printf("%-12s %16.2f %16.2f%n", singleByte ? "single byte" : "mixed",
+          run(message, CODEC), run(message, WORD_BY_WORD));
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 TiDB Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.tidb.bigdata.cdc.craft;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Verify chunk decoders against decoding the varints one by one, over randomly generated chunks
+ */
+public class CodecTest {
+  private static final int ROUNDS = 2000;
+  private static final int MAX_CHUNK_SIZE = 64;
+
+  private static void encodeUvarint(final ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long encodeZigZag64(final long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /*
+   * Mostly single byte values, mixed with values of every length to break the fast path
+   */
+  private static long randomValue(final Random random) {
+    switch (random.nextInt(4)) {
+      case 0:
+      case 1:
+        return random.nextInt(64) - 32;
+      case 2:
+        return random.nextLong() >> random.nextInt(64);
+      default:
+        return random.nextLong();
+    }
+  }
+
+  private static long[] randomValues(final Random random, final int size) {
+    final long[] values = new long[size];
+    final boolean small = random.nextBoolean();
+    for (int idx = 0; idx < size; ++idx) {
+      values[idx] = small ? random.nextInt(128) : randomValue(random);
+    }
+    return values;
+  }
+
+  private static byte[] encode(final long[] values, final boolean zigZag, final int padding) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (long value : values) {
+      encodeUvarint(out, zigZag ? encodeZigZag64(value) : value);
+    }
+    for (int idx = 0; idx < padding; ++idx) {
+      out.write(0xFF);
+    }
+    return out.toByteArray();
+  }
+
+  private static long[] decodeOneByOne(final Codec codec, final int size, final boolean zigZag,
+      final boolean delta) {
+    final long[] result = new long[size];
+    for (int idx = 0; idx < size; ++idx) {
+      result[idx] = zigZag ? codec.decodeVarint() : codec.decodeUvarint();
+      if (delta && idx > 0) {
+        result[idx] += result[idx - 1];
+      }
+    }
+    return result;
+  }
+
+  private static void verify(final long seed, final boolean zigZag, final boolean delta) {
+    final Random random = new Random(seed);
+    // reused by all rounds, with garbage left by the previous rounds
+    final long[] buffer = new long[MAX_CHUNK_SIZE];
+    final int[] intBuffer = new int[MAX_CHUNK_SIZE];
+    for (int round = 0; round < ROUNDS; ++round) {
+      final int size = random.nextInt(MAX_CHUNK_SIZE + 1);
+      final long[] values = randomValues(random, size);
+      final int padding = random.nextInt(10);
+      final byte[] bytes = encode(values, zigZag, padding);
+      final String message = "seed " + seed + " round " + round;
+
+      final Codec reference = new Codec(bytes);
+      final long[] expected = decodeOneByOne(reference, size, zigZag, delta);
+      Assert.assertEquals(message, padding, reference.available());
+
+      final Codec codec = new Codec(bytes);
+      final long[] actual;
+      if (zigZag) {
+        actual = delta ? codec.decodeDeltaVarintChunk(size, buffer)
+            : codec.decodeVarintChunk(size, buffer);
+      } else {
+        actual = delta ? codec.decodeDeltaUvarintChunk(size, buffer)
+            : codec.decodeUvarintChunk(size, buffer);
+      }
+      Assert.assertSame(message, buffer, actual);
+      for (int idx = 0; idx < size; ++idx) {
+        Assert.assertEquals(message + " index " + idx, expected[idx], actual[idx]);
+      }
+      Assert.assertEquals(message, padding, codec.available());
+
+      if (zigZag && delta) {
+        final Codec intCodec = new Codec(bytes);
+        Assert.assertSame(message, intBuffer, intCodec.decodeDeltaVarintChunk(size, intBuffer));
+        for (int idx = 0; idx < size; ++idx) {
+          Assert.assertEquals(message + " index " + idx, (int) expected[idx], intBuffer[idx]);
+        }
+        Assert.assertEquals(message, padding, intCodec.available());
+      }
+    }
+  }
+
+  @Test
+  public void testUvarintChunk() {
+    verify(1, false, false);
+  }
+
+  @Test
+  public void testVarintChunk() {
+    verify(2, true, false);
+  }
+
+  @Test
+  public void testDeltaUvarintChunk() {
+    verify(3, false, true);
+  }
+
+  @Test
+  public void testDeltaVarintChunk() {
+    verify(4, true, true);
+  }
+
+  @Test
+  public void testAllocatingChunkDecoders() {
+    final long[] values = new long[]{0, 1, 127, 128, -1, 300, 5, 6, 7, 8, 9, 10};
+    final byte[] bytes = encode(values, true, 0);
+    Assert.assertArrayEquals(values, new Codec(bytes).decodeVarintChunk(values.length));
+  }
+
+  @Test
+  public void testUnderflow() {
+    final byte[] bytes = encode(new long[]{1, 2, 3, 4, 5, 6, 7, 300}, false, 0);
+    final Codec codec = new Codec(bytes, 0, bytes.length - 1);
+    Assert.assertThrows(IllegalStateException.class, () -> codec.decodeUvarintChunk(8));
+  }
+}
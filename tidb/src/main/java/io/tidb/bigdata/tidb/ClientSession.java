@@ -17,6 +17,7 @@
 package io.tidb.bigdata.tidb;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static io.tidb.bigdata.tidb.SqlUtils.QUERY_PD_SQL;
@@ -30,6 +31,7 @@ import com.google.common.collect.Streams;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -38,6 +40,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -47,10 +50,16 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tikv.common.BytePairWrapper;
+import org.tikv.common.Snapshot;
 import org.tikv.common.TiConfiguration;
 import org.tikv.common.TiSession;
 import org.tikv.common.catalog.Catalog;
+import org.tikv.common.codec.TableCodec;
+import org.tikv.common.key.IndexKey;
+import org.tikv.common.key.Key;
 import org.tikv.common.key.RowKey;
+import org.tikv.common.key.TypedKey;
 import org.tikv.common.meta.TiColumnInfo;
 import org.tikv.common.meta.TiDAGRequest;
 import org.tikv.common.meta.TiIndexColumn;
@@ -60,6 +69,7 @@ import org.tikv.common.meta.TiTableInfo;
 import org.tikv.common.meta.TiTimestamp;
 import org.tikv.common.operation.iterator.CoprocessorIterator;
 import org.tikv.common.row.Row;
+import org.tikv.common.util.BackOffer;
 import org.tikv.common.util.KeyRangeUtils;
 import org.tikv.common.util.RangeSplitter;
 import org.tikv.kvproto.Coprocessor;
@@ -76,6 +86,8 @@ public final class ClientSession implements AutoCloseable {
 
   static final Logger LOG = LoggerFactory.getLogger(ClientSession.class);
 
+  private static final int MAX_OLD_ENCODE_VALUE_LENGTH = 9;
+
   private final ClientConfig config;
 
   private final TiSession session;
@@ -280,6 +292,76 @@ public final class ClientSession implements AutoCloseable {
             session);
   }
 
+  public Snapshot createSnapshot() {
+    return session.createSnapshot();
+  }
+
+  public Snapshot createSnapshot(TiTimestamp timestamp) {
+    return session.createSnapshot(timestamp);
+  }
+
+  /**
+   * Point get rows of a table by their int handles.
+   *
+   * @return rows in the same order as the handles, null if the row does not exist
+   */
+  public List<Row> batchGetRows(Snapshot snapshot, TiTableInfo table, List<Long> handles) {
+    List<byte[]> values = batchGet(snapshot, handles.stream()
+        .map(handle -> RowKey.toRowKey(table.getId(), handle).getBytes())
+        .collect(Collectors.toList()));
+    List<Row> rows = new ArrayList<>(values.size());
+    for (int i = 0; i < values.size(); i++) {
+      byte[] value = values.get(i);
+      rows.add(value == null ? null : TableCodec.decodeRow(value, handles.get(i), table));
+    }
+    return rows;
+  }
+
+  /**
+   * Point get the int handles of rows through a unique index.
+   *
+   * @param indexValues values of the index columns, in the order of the index columns
+   * @return handles in the same order as the index values, null if the row does not exist
+   */
+  public List<Long> batchGetHandles(Snapshot snapshot, TiTableInfo table, TiIndexInfo index,
+      List<Object[]> indexValues) {
+    checkArgument(index.isUnique(), "Index %s is not unique", index.getName());
+    List<TiIndexColumn> indexColumns = index.getIndexColumns();
+    List<byte[]> keys = new ArrayList<>(indexValues.size());
+    for (Object[] values : indexValues) {
+      Key[] dataKeys = new Key[indexColumns.size()];
+      for (int i = 0; i < dataKeys.length; i++) {
+        dataKeys[i] = TypedKey.toTypedKey(values[i],
+            table.getColumn(indexColumns.get(i).getOffset()).getType());
+      }
+      keys.add(IndexKey.toIndexKey(table.getId(), index.getId(), dataKeys).getBytes());
+    }
+    return batchGet(snapshot, keys).stream()
+        .map(value -> value == null ? null : decodeUniqueIndexHandle(value))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Same as DecodeHandleInUniqueIndexValue of TiDB for int handles: old style values are the
+   * handle itself, newer ones start with the length of a tail which holds the handle.
+   */
+  private static Long decodeUniqueIndexHandle(byte[] value) {
+    int offset = value.length <= MAX_OLD_ENCODE_VALUE_LENGTH ? 0
+        : value.length - (value[0] & 0xFF);
+    return ByteBuffer.wrap(value, offset, Long.BYTES).getLong();
+  }
+
+  private List<byte[]> batchGet(Snapshot snapshot, List<byte[]> keys) {
+    Map<ByteBuffer, byte[]> values = new HashMap<>();
+    for (BytePairWrapper pair : snapshot.batchGet(BackOffer.BATCH_GET_MAX_BACKOFF, keys)) {
+      if (pair.getValue() != null && pair.getValue().length > 0) {
+        values.put(ByteBuffer.wrap(pair.getKey()), pair.getValue());
+      }
+    }
+    return keys.stream().map(key -> values.get(ByteBuffer.wrap(key)))
+        .collect(Collectors.toList());
+  }
+
   private void loadPdAddresses() {
     if (config.getPdAddresses() == null) {
       List<String> pdAddressesList = new ArrayList<>();
@@ -407,6 +489,23 @@ public final class ClientSession implements AutoCloseable {
         .filter(name -> !primaryKeyColumns.contains(name)).collect(Collectors.toList());
   }
 
+  /**
+   * @return columns of the primary key, or of the first unique index if the table has no primary
+   *     key, which identify a row on their own; empty if the table has neither
+   */
+  public List<String> getRowKeyColumns(String databaseName, String tableName) {
+    List<String> primaryKeyColumns = getPrimaryKeyColumns(databaseName, tableName);
+    if (!primaryKeyColumns.isEmpty()) {
+      return primaryKeyColumns;
+    }
+    return getTableMust(databaseName, tableName).getIndices().stream()
+        .filter(TiIndexInfo::isUnique)
+        .findFirst()
+        .map(index -> index.getIndexColumns().stream().map(TiIndexColumn::getName)
+            .collect(Collectors.toList()))
+        .orElseGet(ArrayList::new);
+  }
+
   public TiTimestamp getTimestamp() {
     return session.getTimestamp();
   }
@@ -113,6 +113,14 @@ public final class Expressions {
     return new IsNull(exp);
   }
 
+  public static Expression isNotNull(Expression exp) {
+    return not(isNull(exp));
+  }
+
+  public static Expression between(Expression exp, Expression lower, Expression upper) {
+    return and(greaterEqual(exp, lower), lessEqual(exp, upper));
+  }
+
   public static Expression not(Expression exp) {
     return new Not(exp);
   }
@@ -44,21 +44,51 @@ public class SqlUtils {
 
   public static String getInsertSql(String databaseName, String tableName,
       List<String> columnNames) {
+    return getBatchInsertSql(databaseName, tableName, columnNames, 1);
+  }
+
+  /**
+   * Insert several rows with a single statement, parameters are bound row by row.
+   */
+  public static String getBatchInsertSql(String databaseName, String tableName,
+      List<String> columnNames, int rowCount) {
     return format(
-        "INSERT INTO `%s`.`%s`(%s) VALUES(%s)",
+        "INSERT INTO `%s`.`%s`(%s) VALUES%s",
         databaseName,
         tableName,
         columnNames.stream().map(name -> format("`%s`", name)).collect(Collectors.joining(",")),
-        join(",", nCopies(columnNames.size(), "?"))
+        join(",", nCopies(rowCount, format("(%s)", join(",", nCopies(columnNames.size(), "?")))))
     );
   }
 
   public static String getUpsertSql(String databaseName, String tableName,
       List<String> columnNames) {
-    String insertSql = getInsertSql(databaseName, tableName, columnNames);
+    return getBatchUpsertSql(databaseName, tableName, columnNames, 1);
+  }
+
+  public static String getBatchUpsertSql(String databaseName, String tableName,
+      List<String> columnNames, int rowCount) {
+    String insertSql = getBatchInsertSql(databaseName, tableName, columnNames, rowCount);
     return format("%s ON DUPLICATE KEY UPDATE %s", insertSql,
         columnNames.stream().map(columnName -> format("`%s`=VALUES(`%s`)", columnName, columnName))
             .collect(Collectors.joining(",")));
   }
 
+  /**
+   * Delete the rows matching any of several keys with a single statement, parameters are bound
+   * key by key.
+   */
+  public static String getBatchDeleteSql(String databaseName, String tableName,
+      List<String> keyColumnNames, int rowCount) {
+    String keyColumns =
+        keyColumnNames.stream().map(name -> format("`%s`", name)).collect(Collectors.joining(","));
+    String placeholder = join(",", nCopies(keyColumnNames.size(), "?"));
+    if (keyColumnNames.size() > 1) {
+      keyColumns = format("(%s)", keyColumns);
+      placeholder = format("(%s)", placeholder);
+    }
+    return format("DELETE FROM `%s`.`%s` WHERE %s IN (%s)", databaseName, tableName, keyColumns,
+        join(",", nCopies(rowCount, placeholder)));
+  }
+
 }
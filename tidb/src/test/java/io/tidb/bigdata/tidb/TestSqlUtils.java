@@ -1,10 +1,14 @@
 package io.tidb.bigdata.tidb;
 
+import static io.tidb.bigdata.tidb.SqlUtils.getBatchDeleteSql;
+import static io.tidb.bigdata.tidb.SqlUtils.getBatchInsertSql;
+import static io.tidb.bigdata.tidb.SqlUtils.getBatchUpsertSql;
 import static io.tidb.bigdata.tidb.SqlUtils.getCreateTableSql;
 import static io.tidb.bigdata.tidb.SqlUtils.getInsertSql;
 import static io.tidb.bigdata.tidb.SqlUtils.getUpsertSql;
 
 import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class TestSqlUtils {
@@ -46,4 +50,30 @@ public class TestSqlUtils {
     System.out.println(getUpsertSql(databaseName, tableName, columnNames));
   }
 
+  @Test
+  public void testBatchInsertSql() {
+    Assert.assertEquals(getInsertSql(databaseName, tableName, columnNames),
+        getBatchInsertSql(databaseName, tableName, columnNames, 1));
+    Assert.assertEquals("INSERT INTO `default_database`.`default_table`(`c1`,`c2`) "
+            + "VALUES(?,?),(?,?),(?,?)",
+        getBatchInsertSql(databaseName, tableName, primaryKeyColumns, 3));
+  }
+
+  @Test
+  public void testBatchUpsertSql() {
+    Assert.assertEquals(getUpsertSql(databaseName, tableName, columnNames),
+        getBatchUpsertSql(databaseName, tableName, columnNames, 1));
+    Assert.assertEquals("INSERT INTO `default_database`.`default_table`(`c1`,`c2`) "
+            + "VALUES(?,?),(?,?) ON DUPLICATE KEY UPDATE `c1`=VALUES(`c1`),`c2`=VALUES(`c2`)",
+        getBatchUpsertSql(databaseName, tableName, primaryKeyColumns, 2));
+  }
+
+  @Test
+  public void testBatchDeleteSql() {
+    Assert.assertEquals("DELETE FROM `default_database`.`default_table` WHERE `c1` IN (?,?)",
+        getBatchDeleteSql(databaseName, tableName, ImmutableList.of("c1"), 2));
+    Assert.assertEquals("DELETE FROM `default_database`.`default_table` "
+            + "WHERE (`c1`,`c2`) IN ((?,?),(?,?))",
+        getBatchDeleteSql(databaseName, tableName, primaryKeyColumns, 2));
+  }
 }